@@ -0,0 +1,232 @@
+package me.fengyj.common.exceptions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * The circuit breaker of a resource, which rejects the calls to the resource while it's failing. The outcomes of the
+ * calls are counted in a sliding window of time buckets. When the failure rate of the window reaches the threshold,
+ * the breaker opens and rejects all the calls for a while. After that one call is let through as a probe: the breaker
+ * closes if it succeeds, or opens again if it fails.
+ * <p>
+ * All the methods are lock free. Get the breakers from a {@link CircuitBreakerRegistry}.
+ */
+public final class CircuitBreaker {
+
+    private static final long CLOSED = 0;
+
+    private final ResourceInfo resource;
+    private final CircuitBreakerRegistry registry;
+    private final LongSupplier clock;
+    private final AtomicReferenceArray<Bucket> buckets;
+    // 0 if it's closed, the time it's open until if it's positive,
+    // or the negative time the probe started at if it's half open.
+    private final AtomicLong state = new AtomicLong(CLOSED);
+
+    public enum State {
+        /**
+         * The calls are let through and counted.
+         */
+        Closed,
+        /**
+         * The calls are rejected.
+         */
+        Open,
+        /**
+         * A probe call is in progress, the other calls are rejected.
+         */
+        HalfOpen
+    }
+
+    /**
+     * The permission of a call, returned by {@link #tryAcquire()}. Only the permit of the probe of a half open breaker
+     * can close it, or open it again, and only while the probe isn't replaced by another one.
+     */
+    public static final class Permit {
+
+        // the permit of a call which isn't the probe
+        private static final Permit CALL = new Permit(CLOSED);
+
+        // the state set by the probe, or CLOSED if it's not the probe
+        private final long probe;
+
+        private Permit(long probe) {
+
+            this.probe = probe;
+        }
+
+        public boolean isProbe() {
+
+            return probe != CLOSED;
+        }
+    }
+
+    // the counts of a time bucket, it's replaced as a whole so the counts are updated without a lock.
+    private record Bucket(long epoch, int calls, int failures) { }
+
+    CircuitBreaker(ResourceInfo resource, CircuitBreakerRegistry registry, LongSupplier clock) {
+
+        this.resource = resource;
+        this.registry = registry;
+        this.clock = clock;
+        this.buckets = new AtomicReferenceArray<>(registry.getBucketCount());
+    }
+
+    public ResourceInfo getResource() {
+
+        return resource;
+    }
+
+    public State getState() {
+
+        long current = state.get();
+        if (current == CLOSED)
+            return State.Closed;
+        // an open breaker is going to let a probe through, so it's reported as half open after the wait.
+        return current > 0 && clock.getAsLong() < current ? State.Open : State.HalfOpen;
+    }
+
+    /**
+     * Checks whether a call to the resource can be made. The caller must report the outcome of the call with the
+     * permit by {@link #recordSuccess(Permit)}, {@link #recordFailure(Permit)} or {@link #release(Permit)} if it's
+     * allowed.
+     *
+     * @return the permit of the call, or null if the breaker is open, or the probe of a half open breaker is in
+     *         progress
+     */
+    public Permit tryAcquire() {
+
+        while (true) {
+            long current = state.get();
+            if (current == CLOSED)
+                return Permit.CALL;
+            long now = clock.getAsLong();
+            if (current > 0) {
+                if (now < current)
+                    return null;
+            } else if (now < -current + registry.getOpenMillis()) {
+                return null;
+            }
+            // the open time is over, or the probe doesn't report back in time, the winner becomes the probe.
+            long probe = -Math.max(now, 1);
+            if (state.compareAndSet(current, probe))
+                return new Permit(probe);
+        }
+    }
+
+    /**
+     * Reports a call succeeded, which closes the breaker if the call is its probe.
+     */
+    public void recordSuccess(Permit permit) {
+
+        record(false);
+        if (permit.isProbe() && state.compareAndSet(permit.probe, CLOSED)) {
+            // the failures before the breaker opened are history.
+            for (int i = 0; i < buckets.length(); i++)
+                buckets.set(i, null);
+        }
+    }
+
+    /**
+     * Reports a call which isn't the probe succeeded, e.g. it's made without {@link #tryAcquire()}.
+     */
+    public void recordSuccess() {
+
+        recordSuccess(Permit.CALL);
+    }
+
+    /**
+     * Reports a call failed, which opens the breaker again if the call is its probe, or opens a closed breaker if the
+     * failure rate reaches the threshold.
+     */
+    public void recordFailure(Permit permit) {
+
+        record(true);
+        if (permit.isProbe()) {
+            state.compareAndSet(permit.probe, clock.getAsLong() + registry.getOpenMillis());
+        } else if (state.get() == CLOSED && isOverThreshold()) {
+            state.compareAndSet(CLOSED, clock.getAsLong() + registry.getOpenMillis());
+        }
+    }
+
+    /**
+     * Reports a call which isn't the probe failed, e.g. it's made without {@link #tryAcquire()}.
+     */
+    public void recordFailure() {
+
+        recordFailure(Permit.CALL);
+    }
+
+    /**
+     * Reports a call ended without telling whether the resource works, e.g. it failed by the caller. It lets another
+     * probe through if the call is the probe.
+     */
+    public void release(Permit permit) {
+
+        if (permit.isProbe())
+            state.compareAndSet(permit.probe, Math.max(clock.getAsLong(), 1));
+    }
+
+    /**
+     * Returns the count of the calls in the sliding window.
+     */
+    public int getCalls() {
+
+        return (int) (counts() >>> 32);
+    }
+
+    /**
+     * Returns the rate of the failed calls in the sliding window, or 0 if there isn't any call.
+     */
+    public double getFailureRate() {
+
+        long counts = counts();
+        int calls = (int) (counts >>> 32);
+        return calls == 0 ? 0 : (double) (int) counts / calls;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("%s/%s (%s)", resource.type(), resource.name(), getState());
+    }
+
+    private boolean isOverThreshold() {
+
+        long counts = counts();
+        int calls = (int) (counts >>> 32);
+        return calls >= registry.getMinimumCalls()
+            && (int) counts >= registry.getFailureRateThreshold() * calls;
+    }
+
+    private void record(boolean failed) {
+
+        long epoch = clock.getAsLong() / registry.getBucketMillis();
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            var bucket = buckets.get(index);
+            Bucket updated = bucket == null || bucket.epoch != epoch
+                ? new Bucket(epoch, 1, failed ? 1 : 0)
+                : new Bucket(epoch, bucket.calls + 1, bucket.failures + (failed ? 1 : 0));
+            if (buckets.compareAndSet(index, bucket, updated))
+                return;
+        }
+    }
+
+    // the count of the calls in the high 32 bits, and the count of the failures in the low 32 bits.
+    private long counts() {
+
+        long epoch = clock.getAsLong() / registry.getBucketMillis();
+        long calls = 0;
+        long failures = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            var bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch > epoch - buckets.length() && bucket.epoch <= epoch) {
+                calls += bucket.calls;
+                failures += bucket.failures;
+            }
+        }
+        return calls << 32 | failures;
+    }
+}
@@ -0,0 +1,110 @@
+package me.fengyj.common.exceptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The circuit breakers of the resources, one for each {@link ResourceInfo}, which share the same settings. Pass it
+ * to a {@link RetryPolicy} to stop retrying the resources which are down.
+ */
+public class CircuitBreakerRegistry {
+
+    public static final int DEFAULT_BUCKET_COUNT = 10;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<ResourceInfo, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * The same as {@link #CircuitBreakerRegistry(double, int, int, double, double)}, the window slides by a tenth of
+     * it.
+     */
+    public CircuitBreakerRegistry(
+            double windowSeconds,
+            int minimumCalls,
+            double failureRateThreshold,
+            double openSeconds) {
+
+        this(windowSeconds, DEFAULT_BUCKET_COUNT, minimumCalls, failureRateThreshold, openSeconds);
+    }
+
+    /**
+     * @param windowSeconds        the length of the sliding window the failure rate is counted in, in seconds
+     * @param bucketCount          the count of the time buckets of the window, which slides by one bucket at a time
+     * @param minimumCalls         the count of the calls in the window required to open a breaker
+     * @param failureRateThreshold the failure rate opening a breaker, from 0 to 1
+     * @param openSeconds          how long an open breaker rejects the calls before the probe, in seconds
+     */
+    public CircuitBreakerRegistry(
+            double windowSeconds,
+            int bucketCount,
+            int minimumCalls,
+            double failureRateThreshold,
+            double openSeconds) {
+
+        this(windowSeconds, bucketCount, minimumCalls, failureRateThreshold, openSeconds, System::currentTimeMillis);
+    }
+
+    CircuitBreakerRegistry(
+            double windowSeconds,
+            int bucketCount,
+            int minimumCalls,
+            double failureRateThreshold,
+            double openSeconds,
+            LongSupplier clock) {
+
+        this.bucketCount = Math.max(bucketCount, 1);
+        this.bucketMillis = Math.max((long) (windowSeconds * 1000) / this.bucketCount, 1);
+        this.minimumCalls = Math.max(minimumCalls, 1);
+        this.failureRateThreshold = Math.min(Math.max(failureRateThreshold, 0), 1);
+        this.openMillis = Math.max((long) (openSeconds * 1000), 1);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the circuit breaker of the resource, which is created when it's required.
+     */
+    public CircuitBreaker get(ResourceInfo resource) {
+
+        return breakers.computeIfAbsent(resource, r -> new CircuitBreaker(r, this, clock));
+    }
+
+    /**
+     * Returns the circuit breakers created.
+     */
+    public List<CircuitBreaker> getAll() {
+
+        return new ArrayList<>(breakers.values());
+    }
+
+    long getBucketMillis() {
+
+        return bucketMillis;
+    }
+
+    int getBucketCount() {
+
+        return bucketCount;
+    }
+
+    int getMinimumCalls() {
+
+        return minimumCalls;
+    }
+
+    double getFailureRateThreshold() {
+
+        return failureRateThreshold;
+    }
+
+    long getOpenMillis() {
+
+        return openMillis;
+    }
+}
@@ -13,7 +13,7 @@ public class ExceptionUtils {
     
     public static <T extends Throwable> T log(Logger logger, T throwable) {
 
-        return log(logger, null);
+        return log(logger, throwable, null);
     }
 
     public static <T extends Throwable> T  log(Logger logger, T throwable, String msg) {
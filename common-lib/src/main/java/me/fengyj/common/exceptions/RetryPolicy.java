@@ -12,18 +12,23 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class RetryPolicy {
 
     private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+    private static final ThreadFactory virtualThreadFactory = Thread.ofVirtual().name("retry-policy-", 1).factory();
 
     private final int maxRetryTimes;
     private final int retryInterval;
     private final Set<AdditionIntervalPolicy> intervalPolicies;
     private final Random random;
+    private final CircuitBreakerRegistry circuitBreakers;
 
     /**
      * define a retry policy
@@ -34,6 +39,24 @@ public class RetryPolicy {
      */
     public RetryPolicy(int maxRetryTimes, double retryInterval, AdditionIntervalPolicy... intervalPolicies) {
 
+        this(null, maxRetryTimes, retryInterval, intervalPolicies);
+    }
+
+    /**
+     * define a retry policy which stops retrying the resources while their circuit breakers are open.
+     *
+     * @param circuitBreakers  the circuit breakers of the resources, or null if it's not required
+     * @param maxRetryTimes    max retry times
+     * @param retryInterval    interval in seconds
+     * @param intervalPolicies if it's null, will use fixed interval to retry.
+     */
+    public RetryPolicy(
+            CircuitBreakerRegistry circuitBreakers,
+            int maxRetryTimes,
+            double retryInterval,
+            AdditionIntervalPolicy... intervalPolicies) {
+
+        this.circuitBreakers = circuitBreakers;
         this.maxRetryTimes = Math.max(maxRetryTimes, 1);
         this.retryInterval = retryInterval < 0 ? 0 : (int) (retryInterval * 1000);
         if (intervalPolicies == null || intervalPolicies.length == 0)
@@ -51,12 +74,37 @@ public class RetryPolicy {
             Consumer<RetrievableException> actionWhenCatch,
             Runnable actionWhenFinally) {
 
+        return get(null, supplier, actionWhenCatch, actionWhenFinally);
+    }
+
+    /**
+     * Retries the action which calls the resource. If the policy has the circuit breakers, the breaker of the
+     * resource is checked before each attempt, and an open breaker fails the call fast with a
+     * {@link RetrievableException} of the resource. When the resource is null, it's taken from the first
+     * {@link RetrievableException} of the action.
+     */
+    public <T> T get(
+            ResourceInfo resource,
+            ExceptionableSupplier<T, RetrievableException> supplier,
+            Consumer<RetrievableException> actionWhenCatch,
+            Runnable actionWhenFinally) {
+
         RetrievableException lastEx = null;
         int retry = 0;
         while (retry++ < this.maxRetryTimes) {
+            CircuitBreaker breaker = getCircuitBreaker(resource);
+            CircuitBreaker.Permit permit = breaker != null ? breaker.tryAcquire() : null;
+            if (breaker != null && permit == null)
+                throw rejected(breaker, retry - 1, lastEx);
             try {
-                return supplier.get();
+                T value = supplier.get();
+                if (breaker != null)
+                    breaker.recordSuccess(permit);
+                return value;
             } catch (RetrievableException ex) {
+                if (resource == null)
+                    resource = ex.getResourceInfo();
+                recordFailure(breaker, permit, resource);
                 ex.setTriedTimes(retry);
                 lastEx = ex;
                 if (actionWhenCatch != null)
@@ -64,9 +112,14 @@ public class RetryPolicy {
                 if (retry == this.maxRetryTimes) {
                     logger.debug("Tried over the max times and failed.", ex);
                     throw ex;
-                } else if (this.retryInterval > 0) {
-                    ThreadUtils.sleep(getInterval(retry));
+                } else if (this.retryInterval > 0 && !pause(getInterval(retry))) {
+                    logger.debug("Interrupted during the backoff, stop retrying.", ex);
+                    throw ex;
                 }
+            } catch (RuntimeException | Error ex) {
+                if (breaker != null)
+                    breaker.release(permit);
+                throw ex;
             } finally {
                 if (actionWhenFinally != null)
                     actionWhenFinally.run();
@@ -78,81 +131,248 @@ public class RetryPolicy {
             throw new RuntimeException("Suppose shouldn't get this error.");
     }
 
-    private <T> CompletableFuture<T> getAsync(
+    /**
+     * Retries the asynchronous action until the future of it completes normally. When an attempt fails, the
+     * exception handle is called with the exception, and the action is retried only if the handle throws a
+     * {@link RetrievableException}. The next attempt is scheduled by a shared timer after the interval, so no thread
+     * is blocked during the backoff. The retries are called on the common {@link ForkJoinPool}, use
+     * {@link #getAsync(Supplier, Consumer, Executor)} for an action which blocks.
+     * Cancelling the returned future stops the retries.
+     */
+    public <T> CompletableFuture<T> getAsync(
+            Supplier<CompletableFuture<T>> supplier,
+            Consumer<Throwable> exceptionHandle) {
+
+        return getAsync(null, supplier, exceptionHandle, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The same as {@link #getAsync(Supplier, Consumer)}, but the retries of the action are called on the executor.
+     */
+    public <T> CompletableFuture<T> getAsync(
             Supplier<CompletableFuture<T>> supplier,
             Consumer<Throwable> exceptionHandle,
-            int triedTimes) {
+            Executor executor) {
+
+        return getAsync(null, supplier, exceptionHandle, executor);
+    }
+
+    /**
+     * The same as {@link #getAsync(Supplier, Consumer, Executor)}, and the circuit breaker of the resource is checked
+     * before each attempt, see {@link #get(ResourceInfo, ExceptionableSupplier, Consumer, Runnable)}.
+     */
+    public <T> CompletableFuture<T> getAsync(
+            ResourceInfo resource,
+            Supplier<CompletableFuture<T>> supplier,
+            Consumer<Throwable> exceptionHandle,
+            Executor executor) {
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        getAsync(resource, supplier, exceptionHandle, executor, result, 0, null);
+        return result;
+    }
+
+    private <T> void getAsync(
+            ResourceInfo resource,
+            Supplier<CompletableFuture<T>> supplier,
+            Consumer<Throwable> exceptionHandle,
+            Executor executor,
+            CompletableFuture<T> result,
+            int triedTimes,
+            Throwable lastFail) {
 
         final int times = triedTimes + 1;
 
-        CompletableFuture<T> future = supplier.get();
-
-        return future.thenApply(CompletableFuture::completedFuture)
-                .exceptionally(ex -> {
-                    Throwable fail = ex instanceof CompletionException ? ex.getCause() : ex;
-                    if (times < this.maxRetryTimes) {
-                        try {
-                            exceptionHandle.accept(ex);
-                        } catch (RetrievableException e) {
-                            e.setTriedTimes(times);
-                            if (this.retryInterval > 0) {
-
-                                ThreadUtils.sleep(getInterval(times));
-                                return getAsync(
-                                        supplier,
-                                        exceptionHandle,
-                                        times);
-                            }
-                        } catch (Throwable e) {
-                            fail = e;
-                        }
-                    } else if (fail instanceof RetrievableException) {
-                        logger.debug("Tried over the max times and failed.", fail);
+        // the retries are stopped once the result is cancelled.
+        if (result.isDone())
+            return;
+
+        CircuitBreaker breaker = getCircuitBreaker(resource);
+        CircuitBreaker.Permit permit = breaker != null ? breaker.tryAcquire() : null;
+        if (breaker != null && permit == null) {
+            result.completeExceptionally(rejected(breaker, triedTimes, lastFail));
+            return;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = supplier.get();
+        } catch (Throwable e) {
+            future = ThreadUtils.failFuture(e);
+        }
+
+        future.whenComplete((value, ex) -> {
+            if (ex == null) {
+                if (breaker != null)
+                    breaker.recordSuccess(permit);
+                result.complete(value);
+                return;
+            }
+            Throwable fail = ex instanceof CompletionException ? ex.getCause() : ex;
+            if (times < this.maxRetryTimes) {
+                try {
+                    exceptionHandle.accept(ex);
+                } catch (RetrievableException e) {
+                    ResourceInfo failed = resource != null ? resource : e.getResourceInfo();
+                    recordFailure(breaker, permit, failed);
+                    e.setTriedTimes(times);
+                    if (this.retryInterval > 0) {
+
+                        CompletableFuture.delayedExecutor(getInterval(times), TimeUnit.MILLISECONDS, executor)
+                                .execute(() -> getAsync(
+                                        failed, supplier, exceptionHandle, executor, result, times, e));
+                        return;
                     }
-                    CompletableFuture<T> failFuture = new CompletableFuture<>();
-                    failFuture.completeExceptionally(fail);
-                    return failFuture;
-                }).thenCompose(Function.identity());
+                } catch (Throwable e) {
+                    fail = e;
+                }
+                if (breaker != null)
+                    breaker.release(permit);
+            } else if (fail instanceof RetrievableException retrievable) {
+                recordFailure(breaker, permit, resource != null ? resource : retrievable.getResourceInfo());
+                logger.debug("Tried over the max times and failed.", fail);
+            } else if (breaker != null) {
+                breaker.release(permit);
+            }
+            result.completeExceptionally(fail);
+        });
     }
 
-    public <T> CompletableFuture<T> getAsync(
-            Supplier<CompletableFuture<T>> supplier,
-            Consumer<Throwable> exceptionHandle) {
+    public void run(
+            ExceptionableRunnable<RetrievableException> action,
+            Consumer<RetrievableException> actionWhenCatch,
+            Runnable actionWhenFinally) {
 
-        return getAsync(supplier, exceptionHandle, 0);
+        run(null, action, actionWhenCatch, actionWhenFinally);
     }
 
+    /**
+     * Retries the action which calls the resource, see {@link #get(ResourceInfo, ExceptionableSupplier, Consumer,
+     * Runnable)}.
+     */
     public void run(
+            ResourceInfo resource,
             ExceptionableRunnable<RetrievableException> action,
             Consumer<RetrievableException> actionWhenCatch,
             Runnable actionWhenFinally) {
 
-        int retry = 0;
-        RetrievableException lastEx = null;
-        while (retry++ < this.maxRetryTimes) {
-            try {
-                action.run();
-                return;
-            } catch (RetrievableException ex) {
-                ex.setTriedTimes(retry);
-                lastEx = ex;
-                if (actionWhenCatch != null)
-                    actionWhenCatch.accept(ex);
-                if (retry >= this.maxRetryTimes) {
+        get(resource, () -> {
+            action.run();
+            return null;
+        }, actionWhenCatch, actionWhenFinally);
+    }
 
-                    logger.debug("Tried over the max times and failed.", ex);
-                    throw ex;
-                } else if (this.retryInterval > 0) {
+    /**
+     * Returns the circuit breakers of the resources, or null if the policy doesn't have them.
+     */
+    public CircuitBreakerRegistry getCircuitBreakers() {
 
-                    ThreadUtils.sleep(getInterval(retry));
-                }
-            } finally {
-                if (actionWhenFinally != null)
-                    actionWhenFinally.run();
+        return circuitBreakers;
+    }
+
+    public <T> CompletableFuture<T> getOnVirtualThread(
+            ExceptionableSupplier<T, RetrievableException> supplier,
+            Consumer<RetrievableException> actionWhenCatch,
+            Runnable actionWhenFinally) {
+
+        return getOnVirtualThread(null, supplier, actionWhenCatch, actionWhenFinally);
+    }
+
+    /**
+     * Calls {@link #get(ResourceInfo, ExceptionableSupplier, Consumer, Runnable)} on a new virtual thread, so the
+     * caller isn't blocked by the backoffs, and thousands of retrying calls don't need a pool of platform threads. A
+     * sleeping virtual thread is unmounted from its carrier thread, unless the action holds a monitor. Cancelling the
+     * returned future interrupts the thread, which stops retrying.
+     */
+    public <T> CompletableFuture<T> getOnVirtualThread(
+            ResourceInfo resource,
+            ExceptionableSupplier<T, RetrievableException> supplier,
+            Consumer<RetrievableException> actionWhenCatch,
+            Runnable actionWhenFinally) {
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Thread thread = virtualThreadFactory.newThread(() -> {
+            try {
+                result.complete(get(resource, supplier, actionWhenCatch, actionWhenFinally));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
             }
+        });
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled())
+                thread.interrupt();
+        });
+        thread.start();
+        return result;
+    }
+
+    public CompletableFuture<Void> runOnVirtualThread(
+            ExceptionableRunnable<RetrievableException> action,
+            Consumer<RetrievableException> actionWhenCatch,
+            Runnable actionWhenFinally) {
+
+        return runOnVirtualThread(null, action, actionWhenCatch, actionWhenFinally);
+    }
+
+    /**
+     * Calls {@link #run(ResourceInfo, ExceptionableRunnable, Consumer, Runnable)} on a new virtual thread, see
+     * {@link #getOnVirtualThread(ResourceInfo, ExceptionableSupplier, Consumer, Runnable)}.
+     */
+    public CompletableFuture<Void> runOnVirtualThread(
+            ResourceInfo resource,
+            ExceptionableRunnable<RetrievableException> action,
+            Consumer<RetrievableException> actionWhenCatch,
+            Runnable actionWhenFinally) {
+
+        return getOnVirtualThread(resource, () -> {
+            action.run();
+            return null;
+        }, actionWhenCatch, actionWhenFinally);
+    }
+
+    /**
+     * Waits for the backoff.
+     *
+     * @return false if the thread is interrupted
+     */
+    private static boolean pause(int ms) {
+
+        ThreadUtils.sleep(ms);
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    private CircuitBreaker getCircuitBreaker(ResourceInfo resource) {
+
+        return this.circuitBreakers == null || resource == null ? null : this.circuitBreakers.get(resource);
+    }
+
+    /**
+     * Records the failure by the permit, or to the breaker of the resource learned from the failure, which isn't
+     * acquired.
+     */
+    private void recordFailure(CircuitBreaker breaker, CircuitBreaker.Permit permit, ResourceInfo resource) {
+
+        if (breaker != null) {
+            breaker.recordFailure(permit);
+            return;
         }
-        if(lastEx != null)
-            throw lastEx;
+        CircuitBreaker failed = getCircuitBreaker(resource);
+        if (failed != null)
+            failed.recordFailure();
+    }
+
+    private static RetrievableException rejected(CircuitBreaker breaker, int triedTimes, Throwable lastFail) {
+
+        ResourceInfo resource = breaker.getResource();
+        RetrievableException ex = new RetrievableException(
+                ErrorSeverity.Warning,
+                resource,
+                String.format(
+                        "The circuit breaker of the resource (%s: %s) is open.", resource.type(), resource.name()),
+                lastFail);
+        ex.setTriedTimes(triedTimes);
+        logger.debug("The circuit breaker is open, stop retrying.", ex);
+        return ex;
     }
 
     private int getInterval(int times) {
@@ -175,7 +395,7 @@ public class RetryPolicy {
             }
         }
 
-        return interval;
+        return Math.max(interval, 0);
     }
 
     public enum AdditionIntervalPolicy {
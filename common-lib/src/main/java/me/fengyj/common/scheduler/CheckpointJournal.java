@@ -0,0 +1,572 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.exceptions.ErrorSeverity;
+import me.fengyj.common.exceptions.InfrastructureException;
+import me.fengyj.common.exceptions.ResourceInfo;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Keeps the last fire time of every job in a memory-mapped, append-only file, so a scheduler can go on from where
+ * it stopped after a restart. Recording a fire time appends a record to the mapped file, and opening the journal
+ * replays the file from the start, the latest record of a job wins.
+ * <p>
+ * The file starts with a header of the magic number and the version, followed by the records of the layout
+ * {@code [short length of the job id][job id in UTF-8][long fire time]}. The length is written after the rest of the
+ * record, so a record torn by a crash has the length 0, which is where the replay stops. The file is compacted to
+ * the latest record of each job once the old records are as large as the latest ones, and it's doubled when it's
+ * full of the latest records. A replaced mapping is unmapped right away instead of waiting for the GC.
+ * <p>
+ * The records are in the page cache once they are written, so they survive a crash of the process. Call
+ * {@link #flush()} to make them survive a crash of the OS as well. It's thread-safe.
+ *
+ * @see CronScheduler#setJournal(CheckpointJournal)
+ */
+public final class CheckpointJournal implements AutoCloseable {
+
+    static final int MAGIC = 0x43524A4C; // "CRJL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int MIN_CAPACITY = 64 * 1024;
+    // the fire time of a removed job
+    private static final long REMOVED = Long.MIN_VALUE;
+    // Unsafe.invokeCleaner(ByteBuffer) to unmap a buffer, or null if it's not available
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final Path path;
+    private final ResourceInfo resourceInfo;
+    private final FireTimes lastFireTimes = new FireTimes();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // the size of the records if there is only the latest record of each job
+    private long liveSize = HEADER_SIZE;
+
+    private CheckpointJournal(Path path) {
+
+        this.path = path;
+        this.resourceInfo = new ResourceInfo("File", path.toString());
+    }
+
+    /**
+     * Opens the journal file, creates it if it doesn't exist, and replays it.
+     *
+     * @param path the path of the journal file
+     * @return the journal with the last fire times in the file
+     * @throws IOException if the file cannot be read, or it isn't a journal file
+     */
+    public static CheckpointJournal open(Path path) throws IOException {
+
+        var journal = new CheckpointJournal(path);
+        journal.channel = FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            journal.replay();
+        } catch (IOException | RuntimeException e) {
+            unmap(journal.buffer);
+            journal.channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    public Path getPath() {
+
+        return path;
+    }
+
+    /**
+     * Returns the last fire time of the job, or -1 if there isn't one.
+     */
+    public synchronized long getLastFireTime(String jobId) {
+
+        var id = jobId.getBytes(StandardCharsets.UTF_8);
+        long time = lastFireTimes.get(id, id.length);
+        return time == REMOVED ? -1 : time;
+    }
+
+    /**
+     * Returns a copy of the last fire times of all jobs.
+     */
+    public synchronized Map<String, Long> getLastFireTimes() {
+
+        Map<String, Long> copy = HashMap.newHashMap(lastFireTimes.size());
+        lastFireTimes.forEach(copy::put);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Returns the count of the jobs in the journal.
+     */
+    public synchronized int size() {
+
+        return lastFireTimes.size();
+    }
+
+    /**
+     * Records the fire time as the last one of the job. It's ignored if it's not later than the recorded one, the
+     * runs of a job can finish out of order.
+     *
+     * @param jobId    the id of the job, at most 32767 bytes in UTF-8
+     * @param fireTime the fire time in milliseconds since the epoch
+     */
+    public synchronized void record(String jobId, long fireTime) {
+
+        var id = jobId.getBytes(StandardCharsets.UTF_8);
+        long last = lastFireTimes.get(id, id.length);
+        if (last == REMOVED || last < fireTime) {
+            append(id, fireTime);
+        }
+    }
+
+    /**
+     * Removes the job from the journal.
+     */
+    public synchronized void remove(String jobId) {
+
+        var id = jobId.getBytes(StandardCharsets.UTF_8);
+        if (lastFireTimes.get(id, id.length) != REMOVED) {
+            append(id, REMOVED);
+        }
+    }
+
+    /**
+     * Rewrites the file with the latest record of each job only.
+     */
+    public synchronized void compact() {
+
+        try {
+            rewrite(Math.max(MIN_CAPACITY, liveSize * 2));
+        } catch (IOException e) {
+            throw failed("compact", e);
+        }
+    }
+
+    /**
+     * Writes the records to the storage device.
+     */
+    public synchronized void flush() {
+
+        ensureOpen().force();
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (buffer == null) {
+            return;
+        }
+        try {
+            buffer.force();
+            unmap(buffer);
+            buffer = null;
+            channel.close();
+        } catch (IOException e) {
+            throw failed("close", e);
+        }
+    }
+
+    private void append(byte[] id, long fireTime) {
+
+        if (id.length == 0 || id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("The job id must be 1 to 32767 bytes in UTF-8.");
+        }
+        int size = recordSize(id.length);
+        if (ensureOpen().remaining() < size) {
+            try {
+                // the file is full of the latest records, it's compacted below before the old records fill it.
+                rewrite(Math.max(buffer.capacity() * 2L, (liveSize + size) * 2));
+            } catch (IOException e) {
+                throw failed("append", e);
+            }
+        }
+
+        int pos = buffer.position();
+        buffer.put(pos + 2, id);
+        buffer.putLong(pos + 2 + id.length, fireTime);
+        buffer.putShort(pos, (short) id.length);
+        buffer.position(pos + size);
+
+        long previous = fireTime == REMOVED
+                        ? lastFireTimes.remove(id, id.length)
+                        : lastFireTimes.put(id, id.length, fireTime);
+        if (previous == REMOVED && fireTime != REMOVED) {
+            liveSize += size;
+        } else if (previous != REMOVED && fireTime == REMOVED) {
+            liveSize -= size;
+        }
+
+        // the rewrites take a time in proportion to the appends since the last one.
+        long oldSize = buffer.position() - liveSize;
+        if (oldSize >= Math.max(liveSize, MIN_CAPACITY / 2)) {
+            try {
+                rewrite(Math.max(MIN_CAPACITY, liveSize * 2));
+            } catch (IOException e) {
+                throw failed("compact", e);
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+
+        long fileSize = channel.size();
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException(String.format("The journal file (%s) is too large.", path));
+        }
+        if (fileSize < HEADER_SIZE) {
+            map(MIN_CAPACITY);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).position(HEADER_SIZE);
+            return;
+        }
+        map(fileSize);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(String.format("The file (%s) isn't a checkpoint journal.", path));
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(String.format(
+                "The checkpoint journal (%s) is of the version %d, which isn't supported.", path, buffer.getInt(4)));
+        }
+
+        // counts the records first, so the table isn't resized during the replay.
+        int end = HEADER_SIZE;
+        int count = 0;
+        while (end + 2 <= buffer.capacity()) {
+            int length = buffer.getShort(end);
+            if (length <= 0 || end + recordSize(length) > buffer.capacity()) {
+                break;
+            }
+            end += recordSize(length);
+            count++;
+        }
+        lastFireTimes.presize(count, end - HEADER_SIZE - count * 8);
+
+        int pos = HEADER_SIZE;
+        var id = new byte[Short.MAX_VALUE];
+        while (pos < end) {
+            int length = buffer.getShort(pos);
+            buffer.get(pos + 2, id, 0, length);
+            long fireTime = buffer.getLong(pos + 2 + length);
+            if (fireTime == REMOVED) {
+                if (lastFireTimes.remove(id, length) != REMOVED) {
+                    liveSize -= recordSize(length);
+                }
+            } else if (lastFireTimes.put(id, length, fireTime) == REMOVED) {
+                liveSize += recordSize(length);
+            }
+            pos += recordSize(length);
+        }
+        // the bytes of a torn record are overwritten by the next one.
+        buffer.position(pos);
+        if (pos - liveSize >= Math.max(liveSize, MIN_CAPACITY / 2)) {
+            rewrite(Math.max(MIN_CAPACITY, liveSize * 2));
+        }
+    }
+
+    /**
+     * Writes the latest records to a new file of the given size, and replaces the journal file with it.
+     */
+    private void rewrite(long capacity) throws IOException {
+
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException(String.format("The journal file (%s) is too large.", path));
+        }
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int pos;
+        try (var tmpChannel = FileChannel.open(
+            tmp,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            var tmpBuffer = tmpChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            try {
+                tmpBuffer.putInt(MAGIC).putInt(VERSION);
+                lastFireTimes.writeTo(tmpBuffer);
+                pos = tmpBuffer.position();
+                tmpBuffer.force();
+            } finally {
+                unmap(tmpBuffer);
+            }
+        }
+
+        // a mapped file cannot be replaced on Windows.
+        unmap(buffer);
+        buffer = null;
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(capacity);
+        buffer.position(pos);
+    }
+
+    private void map(long capacity) throws IOException {
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private MappedByteBuffer ensureOpen() {
+
+        if (buffer == null) {
+            throw new IllegalStateException(String.format("The checkpoint journal (%s) is closed.", path));
+        }
+        return buffer;
+    }
+
+    /**
+     * Unmaps the buffer, which mustn't be accessed after that. The mapping is left to the GC if the JDK doesn't
+     * support it.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+
+        if (buffer == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            // it's still unmapped by the GC.
+        }
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+
+        try {
+            var unsafeClass = Class.forName("sun.misc.Unsafe");
+            var field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static int recordSize(int idLength) {
+
+        return 2 + idLength + 8;
+    }
+
+    private InfrastructureException failed(String action, IOException e) {
+
+        return InfrastructureException.create(
+            ErrorSeverity.Error,
+            resourceInfo,
+            String.format("Failed to %s the checkpoint journal (%s).", action, path),
+            e);
+    }
+
+    /**
+     * The last fire times of the jobs in an open addressing hash table. The ids of the jobs are kept in UTF-8 in one
+     * array, so neither the ids nor the times are objects, and a large journal is replayed without much garbage. It
+     * returns {@link #REMOVED} for a missing job.
+     */
+    private static final class FireTimes {
+
+        // the ids, each of them after 2 bytes of its length
+        private byte[] ids = new byte[1024];
+        private int idsSize;
+        // the bytes of the removed ids in the array
+        private int removedSize;
+        // the offsets of the ids plus 1, 0 for an empty slot
+        private int[] offsets = new int[16];
+        private int[] hashes = new int[16];
+        private long[] values = new long[16];
+        private int size;
+
+        int size() {
+
+            return size;
+        }
+
+        /**
+         * Makes the empty table large enough for the count of the jobs, and the total length of their ids.
+         */
+        void presize(int count, int idsLength) {
+
+            int capacity = offsets.length;
+            while (capacity < count * 2L) {
+                capacity *= 2;
+            }
+            offsets = new int[capacity];
+            hashes = new int[capacity];
+            values = new long[capacity];
+            ids = new byte[Math.max(ids.length, idsLength)];
+        }
+
+        long get(byte[] id, int length) {
+
+            int i = find(id, length, hash(id, length));
+            return i >= 0 ? values[i] : REMOVED;
+        }
+
+        long put(byte[] id, int length, long value) {
+
+            int hash = hash(id, length);
+            int i = find(id, length, hash);
+            if (i >= 0) {
+                long previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = -i - 1;
+            if (idsSize + 2 + length > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, idsSize + 2 + length));
+            }
+            ids[idsSize] = (byte) (length >>> 8);
+            ids[idsSize + 1] = (byte) length;
+            System.arraycopy(id, 0, ids, idsSize + 2, length);
+            offsets[i] = idsSize + 1;
+            hashes[i] = hash;
+            values[i] = value;
+            idsSize += 2 + length;
+            if (++size * 2 > offsets.length) {
+                resize();
+            }
+            return REMOVED;
+        }
+
+        long remove(byte[] id, int length) {
+
+            int i = find(id, length, hash(id, length));
+            if (i < 0) {
+                return REMOVED;
+            }
+            long previous = values[i];
+            // moves the jobs after the hole back, unless it's before their own index, so a lookup doesn't stop at it.
+            int mask = offsets.length - 1;
+            int hole = i;
+            for (int j = next(i); offsets[j] != 0; j = next(j)) {
+                if (((j - hashes[j]) & mask) >= ((j - hole) & mask)) {
+                    offsets[hole] = offsets[j];
+                    hashes[hole] = hashes[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            offsets[hole] = 0;
+            size--;
+            removedSize += 2 + length;
+            if (removedSize > idsSize / 2) {
+                compactIds();
+            }
+            return previous;
+        }
+
+        void forEach(ObjLongConsumer<String> action) {
+
+            for (int i = 0; i < offsets.length; i++) {
+                if (offsets[i] != 0) {
+                    int offset = offsets[i] - 1;
+                    action.accept(new String(ids, offset + 2, length(offset), StandardCharsets.UTF_8), values[i]);
+                }
+            }
+        }
+
+        /**
+         * Puts the records of the jobs to the buffer.
+         */
+        void writeTo(ByteBuffer buffer) {
+
+            for (int i = 0; i < offsets.length; i++) {
+                if (offsets[i] != 0) {
+                    int offset = offsets[i] - 1;
+                    int length = length(offset);
+                    buffer.putShort((short) length).put(ids, offset + 2, length).putLong(values[i]);
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the job, or -(the index of the empty slot for it) - 1 if it isn't in the table.
+         */
+        private int find(byte[] id, int length, int hash) {
+
+            int i = hash & (offsets.length - 1);
+            for (; offsets[i] != 0; i = next(i)) {
+                int offset = offsets[i] - 1;
+                if (hashes[i] == hash
+                    && Arrays.equals(ids, offset + 2, offset + 2 + length(offset), id, 0, length)) {
+                    return i;
+                }
+            }
+            return -i - 1;
+        }
+
+        private int length(int offset) {
+
+            return (ids[offset] & 0xFF) << 8 | ids[offset + 1] & 0xFF;
+        }
+
+        private void resize() {
+
+            var oldOffsets = offsets;
+            var oldHashes = hashes;
+            var oldValues = values;
+            offsets = new int[oldOffsets.length * 2];
+            hashes = new int[oldOffsets.length * 2];
+            values = new long[oldOffsets.length * 2];
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != 0) {
+                    int j = oldHashes[i] & (offsets.length - 1);
+                    while (offsets[j] != 0) {
+                        j = next(j);
+                    }
+                    offsets[j] = oldOffsets[i];
+                    hashes[j] = oldHashes[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+
+        // drops the ids of the removed jobs from the array.
+        private void compactIds() {
+
+            var compacted = new byte[Math.max(1024, (idsSize - removedSize) * 2)];
+            int compactedSize = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                if (offsets[i] != 0) {
+                    int offset = offsets[i] - 1;
+                    int n = 2 + length(offset);
+                    System.arraycopy(ids, offset, compacted, compactedSize, n);
+                    offsets[i] = compactedSize + 1;
+                    compactedSize += n;
+                }
+            }
+            ids = compacted;
+            idsSize = compactedSize;
+            removedSize = 0;
+        }
+
+        private int next(int index) {
+
+            return (index + 1) & (offsets.length - 1);
+        }
+
+        // the index is the low bits of the mixed hash. A table is rewritten in the order of its indexes, and the low
+        // bits spread the jobs read back in that order over a smaller table, where the high bits would cluster them.
+        private static int hash(byte[] id, int length) {
+
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + id[i];
+            }
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.exceptions.ErrorSeverity;
+import me.fengyj.common.exceptions.ExceptionUtils;
+import me.fengyj.common.exceptions.GeneralException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs each job once across the nodes of a cluster. Every node schedules the same jobs, the job ids are split into
+ * shards by consistent hashing, and a node only puts the jobs of the shards it holds a lease on into its
+ * {@link CronScheduler}, so the expressions of a job are only evaluated by one node.
+ * <p>
+ * The nodes know each other by a lease on their ids renewed as a heartbeat, and the owner of a shard is picked among
+ * the live nodes by rendezvous hashing, so a node joining or leaving only moves the shards it takes or gives up.
+ * The leases are renewed every third of the lease time. A node runs a fire time of a shard only if it's before the
+ * end of its lease, and the next owner goes on from there:
+ * <ul>
+ *     <li>a shard moved to a joining node is released at the end of the lease, the old owner runs the fire times
+ *     before it and the new one runs the rest;</li>
+ *     <li>the shards of a closed node are released at once, and taken by the other nodes within a third of the
+ *     lease time, which is a late run rather than a misfire if it's shorter than the misfire threshold;</li>
+ *     <li>the shards of a crashed node are taken after its leases end, the fire times missed since then are
+ *     handled by the misfire policy of the jobs.</li>
+ * </ul>
+ * The fire times between the last run of a crashed node and the end of its lease are lost, and so are the ones of a
+ * node which cannot renew its lease in time. The clocks of the nodes are expected to be in sync within a tick.
+ *
+ * @see LeaseStore
+ */
+public final class ClusterCronScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCronScheduler.class);
+
+    private record JobSpec(String id, CompiledCronExpression expression, MisfirePolicy policy, LongConsumer task) {
+    }
+
+    /**
+     * A lease of a shard held by this node, and the jobs of the shard scheduled while it's held.
+     */
+    private static final class Term {
+
+        // the last fire time run by the previous owner, or -1 if the shard is never leased
+        final long from;
+        // the fire times before it are run by this node
+        volatile long validUntil;
+        // the time the lease is released at, or -1 if it isn't handed off
+        long handOffAt = -1;
+        final Map<String, CronJob> jobs = new HashMap<>();
+
+        Term(long from, long validUntil) {
+
+            this.from = from;
+            this.validUntil = validUntil;
+        }
+    }
+
+    private final String cluster;
+    private final String nodeId;
+    private final CronScheduler scheduler;
+    private final LeaseStore store;
+    private final ShardRing ring;
+    private final long leaseMillis;
+    private final String nodePrefix;
+    private final String shardPrefix;
+
+    // guarded by this
+    private final List<Map<String, JobSpec>> shardJobs;
+    private final Term[] terms;
+    private Set<String> nodes = Set.of();
+
+    private final Thread rebalancer;
+    private volatile boolean running = true;
+
+    /**
+     * @param cluster     the name of the cluster, which is the prefix of the keys of the leases
+     * @param nodeId      the id of this node, it must be unique in the cluster
+     * @param scheduler   the scheduler to run the jobs of the shards owned by this node, it's closed by
+     *                    {@link #close()}
+     * @param store       the store of the leases shared by the nodes
+     * @param shardCount  the count of the shards, it must be the same on all the nodes
+     * @param leaseMillis how long a lease lasts if it isn't renewed, in milliseconds
+     */
+    public ClusterCronScheduler(
+        String cluster,
+        String nodeId,
+        CronScheduler scheduler,
+        LeaseStore store,
+        int shardCount,
+        long leaseMillis) {
+
+        if (leaseMillis < 3) {
+            throw new IllegalArgumentException("leaseMillis must be at least 3");
+        }
+        this.cluster = cluster;
+        this.nodeId = nodeId;
+        this.scheduler = scheduler;
+        this.store = store;
+        this.ring = new ShardRing(shardCount);
+        this.leaseMillis = leaseMillis;
+        this.nodePrefix = cluster + "/node/";
+        this.shardPrefix = cluster + "/shard/";
+        this.shardJobs = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shardJobs.add(new HashMap<>());
+        }
+        this.terms = new Term[shardCount];
+
+        this.rebalancer = new Thread(this::runRebalancer, scheduler.getName() + "-rebalancer");
+        this.rebalancer.setDaemon(true);
+        this.rebalancer.start();
+    }
+
+    /**
+     * Schedules the task to run at the fire times of the expression on the node owning the shard of the job. A node
+     * taking over the shard goes on from the end of the lease of the previous owner, and the fire times missed
+     * since then are handled by the misfire policy.
+     *
+     * @param id         the id of the job, which decides the shard of it
+     * @param expression the expression of the fire times
+     * @param policy     what to do with the missed fire times
+     * @param task       the task to run, which accepts the fire time it runs for
+     * @throws IllegalArgumentException if a job of the id is already scheduled
+     */
+    public synchronized void schedule(
+        String id, CompiledCronExpression expression, MisfirePolicy policy, LongConsumer task) {
+
+        if (!running) {
+            throw new IllegalStateException(String.format("The cluster scheduler (%s) is closed.", nodeId));
+        }
+        int shard = ring.shardOf(id);
+        var spec = new JobSpec(id, expression, policy, task);
+        if (shardJobs.get(shard).putIfAbsent(id, spec) != null) {
+            throw new IllegalArgumentException(String.format("The job (%s) is already scheduled.", id));
+        }
+        var term = terms[shard];
+        if (term != null) {
+            // the previous owner may still run the fire times until the end of its lease.
+            scheduleLocally(term, spec, term.from > System.currentTimeMillis() ? term.from : -1);
+        }
+    }
+
+    /**
+     * Cancels the job on this node, the other nodes need to cancel it as well.
+     *
+     * @return false if there is no job of the id
+     */
+    public synchronized boolean cancel(String id) {
+
+        int shard = ring.shardOf(id);
+        if (shardJobs.get(shard).remove(id) == null) {
+            return false;
+        }
+        var term = terms[shard];
+        if (term != null) {
+            var job = term.jobs.remove(id);
+            if (job != null) {
+                scheduler.cancel(job);
+            }
+        }
+        return true;
+    }
+
+    public String getNodeId() {
+
+        return nodeId;
+    }
+
+    public CronScheduler getScheduler() {
+
+        return scheduler;
+    }
+
+    /**
+     * Returns the shard of the job id, it's the same on all the nodes.
+     */
+    public int getShard(String id) {
+
+        return ring.shardOf(id);
+    }
+
+    /**
+     * Returns the shards this node holds the leases on, in order, including the ones being handed off.
+     */
+    public synchronized List<Integer> getOwnedShards() {
+
+        var owned = new ArrayList<Integer>();
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] != null) {
+                owned.add(i);
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Returns the ids of the live nodes found by the last renewal, including this one.
+     */
+    public synchronized Set<String> getNodes() {
+
+        return nodes;
+    }
+
+    /**
+     * Releases the leases, so the other nodes take the shards over, and closes the scheduler after the fire times
+     * before the releases are run. It waits for the ends of the leases being handed off.
+     */
+    @Override
+    public void close() {
+
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        LockSupport.unpark(rebalancer);
+        try {
+            rebalancer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long last;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            // the fire times before it are dispatched by the timer within the next tick.
+            last = now + scheduler.getTickMillis();
+            for (int shard = 0; shard < terms.length; shard++) {
+                var term = terms[shard];
+                if (term == null) {
+                    continue;
+                }
+                if (term.handOffAt == -1) {
+                    term.validUntil = Math.min(term.validUntil, last);
+                    term.handOffAt = term.validUntil;
+                    try {
+                        store.release(shardPrefix + shard, nodeId, term.handOffAt);
+                    } catch (RuntimeException e) {
+                        ExceptionUtils.log(logger, e);
+                    }
+                }
+                last = Math.max(last, term.handOffAt);
+            }
+            try {
+                store.release(nodePrefix + nodeId, nodeId, now);
+            } catch (RuntimeException e) {
+                ExceptionUtils.log(logger, e);
+            }
+        }
+        long wait = last + scheduler.getTickMillis() - System.currentTimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        scheduler.close();
+    }
+
+    private void runRebalancer() {
+
+        while (running) {
+            try {
+                rebalance();
+            } catch (Throwable e) {
+                ExceptionUtils.log(logger, GeneralException.create(
+                    ErrorSeverity.Critical,
+                    String.format("The node (%s) of the cluster (%s) failed to renew the leases.", nodeId, cluster),
+                    e));
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(leaseMillis / 3));
+        }
+    }
+
+    private synchronized void rebalance() {
+
+        if (!running) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long until = now + leaseMillis;
+        if (store.tryAcquire(nodePrefix + nodeId, nodeId, now, until) == -1) {
+            // 2 nodes of the same id would run the jobs twice.
+            logger.error(String.format(
+                "The node id (%s) is used by another node of the cluster (%s), its shards are given up.",
+                nodeId, cluster));
+            for (int shard = 0; shard < terms.length; shard++) {
+                stop(shard);
+            }
+            return;
+        }
+        var live = new TreeSet<String>();
+        for (var lease : store.list(nodePrefix)) {
+            if (lease.isValid(now)) {
+                live.add(lease.owner());
+            }
+        }
+        live.add(nodeId);
+        nodes = Collections.unmodifiableSet(live);
+
+        for (int shard = 0; shard < terms.length; shard++) {
+            var term = terms[shard];
+            var key = shardPrefix + shard;
+            boolean preferred = nodeId.equals(ShardRing.ownerOf(shard, live));
+            if (term == null) {
+                if (preferred) {
+                    long previous = store.tryAcquire(key, nodeId, now, until);
+                    if (previous != -1) {
+                        start(shard, previous, until);
+                    }
+                }
+            } else if (term.handOffAt != -1) {
+                if (now >= term.handOffAt) {
+                    stop(shard);
+                }
+            } else if (!preferred) {
+                // the fire times from the end of the lease are run by the new owner.
+                term.handOffAt = term.validUntil;
+                if (!store.release(key, nodeId, term.handOffAt)) {
+                    stop(shard);
+                }
+            } else {
+                long previous = store.tryAcquire(key, nodeId, now, until);
+                if (previous == term.validUntil) {
+                    term.validUntil = until;
+                    continue;
+                }
+                logger.warn(String.format(
+                    "The node (%s) of the cluster (%s) lost the lease of the shard %d.", nodeId, cluster, shard));
+                stop(shard);
+                // it's taken and released by another node in between.
+                if (previous != -1) {
+                    start(shard, previous, until);
+                }
+            }
+        }
+    }
+
+    private void start(int shard, long previousValidUntil, long validUntil) {
+
+        // a shard never leased starts from now, otherwise from where the previous owner stopped.
+        var term = new Term(previousValidUntil == 0 ? -1 : previousValidUntil - 1, validUntil);
+        terms[shard] = term;
+        for (var spec : shardJobs.get(shard).values()) {
+            scheduleLocally(term, spec, term.from);
+        }
+    }
+
+    private void stop(int shard) {
+
+        var term = terms[shard];
+        if (term == null) {
+            return;
+        }
+        terms[shard] = null;
+        for (var job : term.jobs.values()) {
+            scheduler.cancel(job);
+        }
+    }
+
+    private void scheduleLocally(Term term, JobSpec spec, long lastFireTime) {
+
+        var task = spec.task();
+        var job = scheduler.schedule(spec.id(), spec.expression(), spec.policy(), lastFireTime, fireTime -> {
+            if (fireTime < term.validUntil) {
+                task.accept(fireTime);
+            }
+        });
+        term.jobs.put(spec.id(), job);
+    }
+}
@@ -0,0 +1,217 @@
+package me.fengyj.common.scheduler;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.stream.LongStream;
+
+/**
+ * The immutable form of a {@link CronExpression} bound to a time zone. The expression is parsed once and never
+ * changed afterwards, so an instance can be shared by any number of jobs and threads. Get one with
+ * {@link CronExpression#compile(String, ZoneId)}, which returns the cached instance for the same expression and
+ * time zone. Use {@link #excluding(ExclusionCalendar)} to skip the days of an exclusion calendar, e.g. the holidays.
+ */
+public final class CompiledCronExpression {
+
+    // never exposed, so nothing can call setTimeZone on it. all methods used below take the zone explicitly.
+    private final CronExpression expression;
+    private final ZoneId zone;
+    // it's the key of the job groups of a scheduler, which is hashed on every fire time of the groups.
+    private final int hash;
+
+    CompiledCronExpression(CronExpression expression, ZoneId zone) {
+
+        this.expression = expression;
+        this.zone = zone;
+        this.hash = hashCodeOf(expression, zone);
+    }
+
+    public String getCronExpression() {
+
+        return expression.getCronExpression();
+    }
+
+    public ZoneId getZone() {
+
+        return zone;
+    }
+
+    /**
+     * Returns the calendar of the days the expression doesn't fire on, or null if there isn't one.
+     */
+    public ExclusionCalendar getExclusionCalendar() {
+
+        return expression.getExclusionCalendar();
+    }
+
+    /**
+     * Returns the same expression which doesn't fire on the days of the given calendar. This instance isn't changed.
+     *
+     * @param calendar the exclusion calendar, or null to fire on all the matched days
+     * @return the expression with the exclusion calendar
+     */
+    public CompiledCronExpression excluding(ExclusionCalendar calendar) {
+
+        if (Objects.equals(calendar, getExclusionCalendar())) {
+            return this;
+        }
+        var copy = new CronExpression(expression);
+        copy.setExclusionCalendar(calendar);
+        return new CompiledCronExpression(copy, zone);
+    }
+
+    /**
+     * @see CronExpression#isSatisfiedBy(long, ZoneId)
+     */
+    public boolean isSatisfiedBy(long epochMillis) {
+
+        return expression.isSatisfiedBy(epochMillis, zone);
+    }
+
+    /**
+     * @see CronExpression#nextFireEpochMillis(long, ZoneId)
+     */
+    public long nextFireEpochMillis(long afterEpochMillis) {
+
+        return expression.nextFireEpochMillis(afterEpochMillis, zone);
+    }
+
+    /**
+     * @see CronExpression#previousFireEpochMillis(long, ZoneId)
+     */
+    public long previousFireEpochMillis(long beforeEpochMillis) {
+
+        return expression.previousFireEpochMillis(beforeEpochMillis, zone);
+    }
+
+    /**
+     * @see CronExpression#nextInvalidEpochMillis(long, ZoneId)
+     */
+    public long nextInvalidEpochMillis(long afterEpochMillis) {
+
+        return expression.nextInvalidEpochMillis(afterEpochMillis, zone);
+    }
+
+    /**
+     * Returns the next fire time after the given time, in the time zone of this expression.
+     *
+     * @see CronExpression#next(ZonedDateTime)
+     */
+    public ZonedDateTime next(ZonedDateTime after) {
+
+        long next = nextFireEpochMillis(after.toInstant().toEpochMilli());
+        return next == -1 ? null : ZonedDateTime.ofInstant(Instant.ofEpochMilli(next), zone);
+    }
+
+    /**
+     * @see CronExpression#fireTimes(long, long, ZoneId)
+     */
+    public LongStream fireTimes(long fromMillis, long toMillis) {
+
+        return expression.fireTimes(fromMillis, toMillis, zone);
+    }
+
+    /**
+     * @see CronExpression#countFireTimes(long, long, ZoneId)
+     */
+    public long countFireTimes(long fromMillis, long toMillis) {
+
+        return expression.countFireTimes(fromMillis, toMillis, zone);
+    }
+
+    /**
+     * Returns the parsed expression, which is only read by the classes of this package.
+     */
+    CronExpression expression() {
+
+        return expression;
+    }
+
+    /**
+     * Returns the cursor of the fire times after the given time.
+     */
+    FireTimeCursor cursor(long afterEpochMillis) {
+
+        return new FireTimeCursor(expression, afterEpochMillis, zone);
+    }
+
+    /**
+     * @see CronExpression#nextN(long, int, ZoneId)
+     */
+    public long[] nextN(long from, int n) {
+
+        return expression.nextN(from, n, zone);
+    }
+
+    /**
+     * Returns the compact binary form of the parsed expression, its time zone and exclusion calendar, to be shipped
+     * to another process or cached on disk.
+     *
+     * @see CronExpression#toBytes()
+     */
+    public byte[] toBytes() {
+
+        return expression.toBytes(zone.getId());
+    }
+
+    /**
+     * Loads the expression from the binary form returned by {@link #toBytes()}, without parsing it again.
+     *
+     * @param bytes the binary form
+     * @return the compiled expression
+     * @throws IOException if it isn't a binary form of a cron expression with a time zone, or it's of a version not
+     *                     supported
+     */
+    public static CompiledCronExpression fromBytes(byte[] bytes) throws IOException {
+
+        var decoded = CronExpression.decode(bytes);
+        if (decoded.zoneId().isEmpty()) {
+            throw new IOException("The binary form of the cron expression has no time zone.");
+        }
+        // the time zone ID has been checked when it's decoded.
+        return new CompiledCronExpression(decoded.expression(), ZoneId.of(decoded.zoneId()));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (this == obj) return true;
+        if (!(obj instanceof CompiledCronExpression other)) return false;
+        if (hash != other.hash) return false;
+        return isSame(expression, zone, other.expression, other.zone);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return hash;
+    }
+
+    /**
+     * Returns true if both expressions are equal in the zones. The text of a combined expression is only a
+     * description, so it's compared by the field sets.
+     */
+    static boolean isSame(CronExpression x, ZoneId xZone, CronExpression y, ZoneId yZone) {
+
+        if (x.isSynthetic() != y.isSynthetic()
+            || (x.isSynthetic() ? !x.hasSameFields(y) : !x.getCronExpression().equals(y.getCronExpression()))) {
+            return false;
+        }
+        return xZone.equals(yZone) && Objects.equals(x.getExclusionCalendar(), y.getExclusionCalendar());
+    }
+
+    static int hashCodeOf(CronExpression expression, ZoneId zone) {
+
+        int hash = expression.isSynthetic() ? expression.fieldsHashCode() : expression.getCronExpression().hashCode();
+        return (hash * 31 + zone.hashCode()) * 31 + Objects.hashCode(expression.getExclusionCalendar());
+    }
+
+    @Override
+    public String toString() {
+
+        var calendar = getExclusionCalendar();
+        return getCronExpression() + " " + zone + (calendar == null ? "" : " excluding " + calendar);
+    }
+}
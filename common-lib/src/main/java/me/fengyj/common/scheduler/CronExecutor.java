@@ -0,0 +1,336 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.exceptions.ErrorSeverity;
+import me.fengyj.common.exceptions.ExceptionUtils;
+import me.fengyj.common.exceptions.GeneralException;
+import me.fengyj.common.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the tasks at the fire times of their cron expressions, the cron form of
+ * {@link java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate} for recurring work. The tasks are in a
+ * priority queue ordered by their next fire times, and one timer thread sleeps until the earliest one, so there is
+ * no timer per task. The tasks run on the executor, e.g. virtual threads or a named pool, see
+ * {@link #ofVirtualThreads(String)}.
+ * <p>
+ * A task never runs in parallel with itself: if it's still running at the next fire time, that run is skipped and
+ * counted by {@link Registration#getSkippedRuns()}. The fire times missed by a pause of the process are skipped as
+ * well, the task runs once when the timer wakes up. Use {@link CronScheduler} for a large count of jobs, or to
+ * handle the misfires by a policy.
+ */
+public final class CronExecutor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CronExecutor.class);
+
+    private final String name;
+    private final ExecutorService executor;
+    private final boolean shutdownOnClose;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // signalled when a task becomes the earliest one, or the executor is closed
+    private final Condition changed = lock.newCondition();
+    // guarded by the lock, the cancelled tasks are dropped when they are polled
+    private final PriorityQueue<Registration> queue =
+        new PriorityQueue<>(Comparator.comparingLong(r -> r.nextFireTime));
+    // guarded by the lock, the count of the cancelled tasks still in the queue
+    private int cancelledCount;
+    private final Thread timer;
+    private volatile boolean running = true;
+
+    /**
+     * A task registered to a {@link CronExecutor}, which can be used to cancel it.
+     */
+    public final class Registration {
+
+        private final CompiledCronExpression expression;
+        private final Runnable task;
+        private final AtomicBoolean active = new AtomicBoolean();
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong skippedRuns = new AtomicLong();
+        // guarded by the lock, -1 if the task doesn't fire any more
+        private long nextFireTime;
+        private volatile boolean cancelled;
+
+        private Registration(CompiledCronExpression expression, Runnable task, long nextFireTime) {
+
+            this.expression = expression;
+            this.task = task;
+            this.nextFireTime = nextFireTime;
+        }
+
+        public CompiledCronExpression getExpression() {
+
+            return expression;
+        }
+
+        /**
+         * Returns the next fire time in milliseconds since the epoch, or -1 if the task doesn't fire any more.
+         */
+        public long getNextFireTime() {
+
+            lock.lock();
+            try {
+                return cancelled ? -1 : nextFireTime;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns whether a run of the task is in progress.
+         */
+        public boolean isRunning() {
+
+            return active.get();
+        }
+
+        /**
+         * Returns the count of the runs started.
+         */
+        public long getRuns() {
+
+            return runs.get();
+        }
+
+        /**
+         * Returns the count of the fire times skipped because the previous run isn't finished.
+         */
+        public long getSkippedRuns() {
+
+            return skippedRuns.get();
+        }
+
+        public boolean isCancelled() {
+
+            return cancelled;
+        }
+
+        /**
+         * Cancels the task. It doesn't run after this method returns, but a run already started isn't interrupted.
+         *
+         * @return false if the task is already cancelled or doesn't fire any more
+         */
+        public boolean cancel() {
+
+            lock.lock();
+            try {
+                if (cancelled || nextFireTime == -1) {
+                    return false;
+                }
+                cancelled = true;
+                // the task stays in the queue until it's polled, unless the cancelled ones are the most of it.
+                if (++cancelledCount > queue.size() / 2) {
+                    queue.removeIf(r -> r.cancelled);
+                    cancelledCount = 0;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void run() {
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                ExceptionUtils.log(logger, GeneralException.create(
+                    ErrorSeverity.Error,
+                    String.format("The task (%s) of the cron executor (%s) failed.", expression, name),
+                    e));
+            } finally {
+                active.set(false);
+            }
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format("%s (%s)", task, expression);
+        }
+    }
+
+    /**
+     * @param name            the name of the executor, which is the prefix of the name of the timer thread
+     * @param executor        the executor to run the tasks
+     * @param shutdownOnClose whether the executor is shut down by {@link #close()}
+     */
+    public CronExecutor(String name, ExecutorService executor, boolean shutdownOnClose) {
+
+        this.name = name;
+        this.executor = executor;
+        this.shutdownOnClose = shutdownOnClose;
+
+        this.timer = new Thread(this::runTimer, name + "-timer");
+        this.timer.setDaemon(true);
+        this.timer.start();
+    }
+
+    /**
+     * Creates an executor running the cron tasks on virtual threads, the threads are named with the prefix of the
+     * given name. The virtual threads are shut down when the executor is closed.
+     */
+    public static CronExecutor ofVirtualThreads(String name) {
+
+        var factory = Thread.ofVirtual().name(name + "-thread-", 1).factory();
+        return new CronExecutor(name, Executors.newThreadPerTaskExecutor(factory), true);
+    }
+
+    /**
+     * Creates an executor running the cron tasks in a fixed pool of the given name, which is shut down when the
+     * executor is closed.
+     *
+     * @param threadCount the count of the threads, or null for the count of the CPUs
+     */
+    public static CronExecutor ofPool(String name, Integer threadCount) {
+
+        return new CronExecutor(name, ThreadUtils.createFixedPool(name, threadCount), true);
+    }
+
+    /**
+     * Registers the task to run at the fire times of the expression after now, in the time zone of the expression.
+     * The expression is copied, changing it afterwards doesn't change the fire times.
+     *
+     * @return the registration, which never runs if {@link Registration#getNextFireTime()} of it is -1
+     */
+    public Registration schedule(CronExpression expression, Runnable task) {
+
+        return schedule(
+            new CompiledCronExpression(new CronExpression(expression), expression.getTimeZone().toZoneId()), task);
+    }
+
+    /**
+     * Registers the task to run at the fire times of the expression after now.
+     *
+     * @return the registration, which never runs if {@link Registration#getNextFireTime()} of it is -1
+     */
+    public Registration schedule(CompiledCronExpression expression, Runnable task) {
+
+        if (!running) {
+            throw new IllegalStateException(String.format("The cron executor (%s) is closed.", name));
+        }
+        var registration = new Registration(
+            expression, task, expression.nextFireEpochMillis(System.currentTimeMillis()));
+        if (registration.nextFireTime == -1) {
+            return registration;
+        }
+        lock.lock();
+        try {
+            queue.add(registration);
+            if (queue.peek() == registration) {
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return registration;
+    }
+
+    /**
+     * Returns the count of the tasks which are going to fire.
+     */
+    public int getTaskCount() {
+
+        lock.lock();
+        try {
+            return queue.size() - cancelledCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Stops the timer thread. The runs already started go on, and the executor is shut down if it's required.
+     */
+    @Override
+    public void close() {
+
+        lock.lock();
+        try {
+            running = false;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            timer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (shutdownOnClose) {
+            ThreadUtils.shutdown(
+                executor,
+                String.format("The executor of the cron executor (%s) didn't stop in time.", name),
+                10, TimeUnit.SECONDS, logger);
+        }
+    }
+
+    private void runTimer() {
+
+        lock.lock();
+        try {
+            while (running) {
+                var first = queue.peek();
+                long now = System.currentTimeMillis();
+                if (first == null) {
+                    changed.await();
+                } else if (first.cancelled) {
+                    queue.poll();
+                    cancelledCount--;
+                } else if (first.nextFireTime > now) {
+                    changed.awaitNanos(TimeUnit.MILLISECONDS.toNanos(first.nextFireTime - now));
+                } else {
+                    queue.poll();
+                    fire(first);
+                    // the fire times missed by a pause are skipped.
+                    first.nextFireTime = first.expression.nextFireEpochMillis(Math.max(first.nextFireTime, now));
+                    if (first.nextFireTime != -1) {
+                        queue.add(first);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn(String.format("The timer of the cron executor (%s) is interrupted.", name));
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fire(Registration registration) {
+
+        if (!registration.active.compareAndSet(false, true)) {
+            registration.skippedRuns.incrementAndGet();
+            logger.debug(String.format(
+                "The task (%s) of the cron executor (%s) is still running, a run is skipped.", registration, name));
+            return;
+        }
+        registration.runs.incrementAndGet();
+        try {
+            executor.execute(registration::run);
+        } catch (RejectedExecutionException e) {
+            registration.active.set(false);
+            ExceptionUtils.log(logger, GeneralException.create(
+                ErrorSeverity.Error,
+                String.format("The executor of the cron executor (%s) rejected the task (%s).", name, registration),
+                e));
+        }
+    }
+}
@@ -6,9 +6,26 @@ import me.fengyj.common.exceptions.ErrorSeverity;
 import me.fengyj.common.exceptions.GeneralException;
 import me.fengyj.common.exceptions.InfrastructureException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.time.DateTimeException;
 import java.text.ParseException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides a parser and evaluator for unix-like cron expressions. Cron
@@ -188,8 +205,6 @@ public final class CronExpression implements Serializable, Cloneable {
     protected static final int YEAR = 6;
     protected static final int ALL_SPEC_INT = 99; // '*'
     protected static final int NO_SPEC_INT = 98; // '?'
-    protected static final Integer ALL_SPEC = ALL_SPEC_INT;
-    protected static final Integer NO_SPEC = NO_SPEC_INT;
 
     protected static final Map<String, Integer> monthMap = new HashMap<String, Integer>(20);
     protected static final Map<String, Integer> dayMap = new HashMap<String, Integer>(60);
@@ -219,13 +234,20 @@ public final class CronExpression implements Serializable, Cloneable {
 
     private final String cronExpression;
     private TimeZone timeZone = null;
-    protected transient TreeSet<Integer> seconds;
-    protected transient TreeSet<Integer> minutes;
-    protected transient TreeSet<Integer> hours;
-    protected transient TreeSet<Integer> daysOfMonth;
-    protected transient TreeSet<Integer> months;
-    protected transient TreeSet<Integer> daysOfWeek;
-    protected transient TreeSet<Integer> years;
+    private ExclusionCalendar exclusionCalendar = null;
+    // every field is kept as a bitmask, bit n is set when the value n is included.
+    // days of month, months and days of week are 1-based, so bit 0 of them is never set.
+    protected transient long seconds;
+    protected transient long minutes;
+    protected transient long hours;
+    protected transient long daysOfMonth;
+    protected transient long months;
+    protected transient long daysOfWeek;
+    // bit (n & 63) of years[n >>> 6] is set when the year n is included.
+    protected transient long[] years;
+    // bit (1 << type) is set when the field is specified by '*' or '?'.
+    protected transient int allSpecFields = 0;
+    protected transient int noSpecFields = 0;
 
     protected transient boolean lastdayOfWeek = false;
     protected transient int nthdayOfWeek = 0;
@@ -233,9 +255,39 @@ public final class CronExpression implements Serializable, Cloneable {
     protected transient boolean nearestWeekday = false;
     protected transient int lastdayOffset = 0;
     protected transient boolean expressionParsed = false;
+    // the days bitmasks of a month, indexed by (the last day of the month - 28) * 7 + (the first day of week - 1).
+    // a month has one of 4 lengths and starts from one of 7 days of the week, so it's everything L, W and # need.
+    protected transient long[] daysOfMonthTable;
+    // true if it's constructed from the field sets, the day fields are only in the table then.
+    private transient boolean synthetic = false;
 
     public static final int MAX_YEAR = Calendar.getInstance().get(Calendar.YEAR) + 100;
 
+    public static final int COMPILED_CACHE_CAPACITY = 4096;
+
+    private record CompiledKey(String expression, ZoneId zone) {
+    }
+
+    /**
+     * The cached compiled expression, which is marked when it's used. The eviction drops the entries not used since
+     * the previous eviction, see {@link #evictCompiled()}.
+     */
+    private static final class CompiledEntry {
+
+        private final CompiledCronExpression compiled;
+        // a new entry counts as used, so it isn't dropped by the sweep right after it's added.
+        private volatile boolean used = true;
+
+        CompiledEntry(CompiledCronExpression compiled) {
+
+            this.compiled = compiled;
+        }
+    }
+
+    private static final Map<CompiledKey, CompiledEntry> compiledCache = new ConcurrentHashMap<>();
+    // the hand of the CLOCK eviction, it goes on from where the previous eviction stops
+    private static Iterator<CompiledEntry> compiledHand;
+
     /**
      * Constructs a new <CODE>CronExpression</CODE> based on the specified
      * parameter.
@@ -247,13 +299,28 @@ public final class CronExpression implements Serializable, Cloneable {
      */
     public CronExpression(String cronExpression) throws ParseException {
 
+        this(cronExpression, true);
+    }
+
+    /**
+     * Parses the expression, the error is thrown without the stack trace if {@code fillStackTrace} is false.
+     */
+    private CronExpression(String cronExpression, boolean fillStackTrace) throws ParseException {
+
         if (cronExpression == null) {
             throw new IllegalArgumentException("cronExpression cannot be null");
         }
 
         this.cronExpression = cronExpression.toUpperCase(Locale.US);
 
-        buildExpression(this.cronExpression);
+        try {
+            buildExpression(this.cronExpression);
+        } catch (ExpressionParseException ex) {
+            if (fillStackTrace) {
+                throw new ParseException(ex.getMessage(), ex.getErrorOffset());
+            }
+            throw ex;
+        }
     }
 
     /**
@@ -264,22 +331,68 @@ public final class CronExpression implements Serializable, Cloneable {
      */
     public CronExpression(CronExpression expression) {
         /*
-         * We don't call the other constructor here since we need to swallow the
-         * ParseException. We also elide some of the sanity checking as it is
-         * not logically trippable.
+         * The parsed fields are copied rather than parsing the expression
+         * again. The arrays are copied too, so the copies share nothing.
          */
         this.cronExpression = expression.getCronExpression();
-        try {
-            buildExpression(cronExpression);
-        } catch (ParseException ex) {
-            throw new GeneralException(
-                ErrorSeverity.Critical,
-                String.format("Cron expression (%s) cannot be parsed.", expression.cronExpression),
-                ex);
-        }
+        this.seconds = expression.seconds;
+        this.minutes = expression.minutes;
+        this.hours = expression.hours;
+        this.daysOfMonth = expression.daysOfMonth;
+        this.months = expression.months;
+        this.daysOfWeek = expression.daysOfWeek;
+        this.years = expression.years.clone();
+        this.allSpecFields = expression.allSpecFields;
+        this.noSpecFields = expression.noSpecFields;
+        this.lastdayOfWeek = expression.lastdayOfWeek;
+        this.nthdayOfWeek = expression.nthdayOfWeek;
+        this.lastdayOfMonth = expression.lastdayOfMonth;
+        this.nearestWeekday = expression.nearestWeekday;
+        this.lastdayOffset = expression.lastdayOffset;
+        this.expressionParsed = expression.expressionParsed;
+        this.daysOfMonthTable = expression.daysOfMonthTable.clone();
+        this.synthetic = expression.synthetic;
         if (expression.getTimeZone() != null) {
             setTimeZone((TimeZone) expression.getTimeZone().clone());
         }
+        this.exclusionCalendar = expression.exclusionCalendar;
+    }
+
+    /**
+     * Constructs the expression of the given field sets, e.g. the intersection of 2 expressions computed field by
+     * field. The days are given as the table of the matched days of a month by its last day and its first day of the
+     * week, see {@link #getDaysOfMonth(int, int)}. The text is only a description, it cannot be parsed back, so the
+     * instance is never exposed: encoding it doesn't work.
+     */
+    CronExpression(
+        String description,
+        long seconds,
+        long minutes,
+        long hours,
+        long months,
+        long[] years,
+        long[] daysOfMonthTable,
+        ExclusionCalendar exclusionCalendar) {
+
+        this.cronExpression = description;
+        this.synthetic = true;
+        this.expressionParsed = true;
+        this.seconds = seconds;
+        this.minutes = minutes;
+        this.hours = hours;
+        this.months = months;
+        this.years = years;
+        this.daysOfMonthTable = daysOfMonthTable;
+        this.exclusionCalendar = exclusionCalendar;
+        // the days are only read from the table, the day-of-month field tells whether every day is matched.
+        boolean everyDay = true;
+        for (int ldom = 28; ldom <= 31 && everyDay; ldom++) {
+            long all = -1L >>> (63 - ldom) & ~1L;
+            for (int dow = 1; dow <= 7 && everyDay; dow++) {
+                everyDay = (daysOfMonthTable[(ldom - 28) * 7 + dow - 1] & all) == all;
+            }
+        }
+        this.daysOfMonth = everyDay ? 0xFFFFFFFEL : 0L;
     }
 
     /**
@@ -293,6 +406,14 @@ public final class CronExpression implements Serializable, Cloneable {
      */
     public boolean isSatisfiedBy(Date date) {
 
+        ZoneId zone = getTimeZone().toZoneId();
+        long epochSecond = Math.floorDiv(date.getTime(), 1000);
+        if (synthetic || !isNearTransition(epochSecond, ZoneTransitions.of(zone))) {
+            return isSatisfiedBy(date.getTime(), zone);
+        }
+
+        // around a transition, keep it the same as getTimeAfter, which fires the repeated wall-clock times at the
+        // later offset. a repeated wall-clock time is tested at the later offset as well.
         Calendar testDateCal = Calendar.getInstance(getTimeZone());
         testDateCal.setTime(date);
         testDateCal.set(Calendar.MILLISECOND, 0);
@@ -305,6 +426,33 @@ public final class CronExpression implements Serializable, Cloneable {
         return ((timeAfter != null) && (timeAfter.equals(originalDate)));
     }
 
+    /**
+     * Indicates whether the given instant, truncated to the second, is a fire time of the expression in the given
+     * time zone. The instant is converted to the wall-clock time once and each field is tested directly, nothing is
+     * searched.
+     *
+     * @param epochMillis the instant in milliseconds since the epoch
+     * @param zone        the time zone the expression is evaluated in
+     * @return true if {@link #nextFireEpochMillis(long, ZoneId)} of the instant before it returns it
+     */
+    public boolean isSatisfiedBy(long epochMillis, ZoneId zone) {
+
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+        if (epochSecond < BEFORE_YEAR_ZERO || epochSecond >= END_OF_MAX_YEAR) {
+            return false;
+        }
+        ZoneTransitions transitions = ZoneTransitions.of(zone);
+        int index = transitions.indexAt(epochSecond);
+        if (index >= 0 && epochSecond < transitions.instant(index) + transitions.length(index)) {
+            // right after a gap, the instant is the fire time of both the wall-clock time in the gap and the one
+            // after the gap. right after an overlap, the repeated wall-clock times don't fire.
+            return transitions.isGap(index)
+                   && (isLocalMatch(epochSecond + transitions.offsetBefore(index))
+                       || isLocalMatch(epochSecond + transitions.offsetAfter(index)));
+        }
+        return isLocalMatch(epochSecond + transitions.offsetAfter(index));
+    }
+
     /**
      * Returns the next date/time <I>after</I> the given date/time which
      * satisfies the cron expression.
@@ -328,34 +476,85 @@ public final class CronExpression implements Serializable, Cloneable {
      */
     public Date getNextInvalidTimeAfter(Date date) {
 
-        long difference = 1000;
-
-        //move back to the nearest second so differences will be accurate
-        Calendar adjustCal = Calendar.getInstance(getTimeZone());
-        adjustCal.setTime(date);
-        adjustCal.set(Calendar.MILLISECOND, 0);
-        Date lastDate = adjustCal.getTime();
+        return new Date(nextInvalidEpochMillis(date.getTime(), getTimeZone().toZoneId()));
+    }
 
-        Date newDate;
+    /**
+     * Returns the next second <I>after</I> the given instant which does <I>not</I> satisfy the expression, evaluated
+     * in the given time zone. It's computed from the parsed fields directly, so the cost doesn't depend on how long
+     * the run of the matched seconds is.
+     *
+     * @param afterEpochMillis the instant, in milliseconds since the epoch, to begin the search after
+     * @param zone             the time zone the expression is evaluated in
+     * @return the next invalid time in milliseconds since the epoch
+     */
+    public long nextInvalidEpochMillis(long afterEpochMillis, ZoneId zone) {
 
-        //FUTURE_TODO: (QUARTZ-481) IMPROVE THIS! The following is a BAD solution to this problem. Performance will be very bad here, depending on the cron expression. It is, however A solution.
+        long start = Math.floorDiv(afterEpochMillis, 1000) + 1;
+        if (start > END_OF_MAX_YEAR || start < BEFORE_YEAR_ZERO) {
+            return start * 1000;
+        }
+        ZoneTransitions transitions = ZoneTransitions.of(zone);
+        long local = start + transitions.offsetAt(start);
 
-        //keep getting the next included time until it's farther than one second
-        // apart. At that point, lastDate is the last valid fire time. We return
-        // the second immediately following it.
-        while (difference == 1000) {
-            newDate = getTimeAfter(lastDate);
-            if (newDate == null)
-                break;
+        return Math.max(transitions.toEpochSecond(nextLocalMismatch(local)), start) * 1000;
+    }
 
-            difference = newDate.getTime() - lastDate.getTime();
+    /**
+     * Returns the next fire time <I>after</I> the given instant, evaluated in the given time zone.
+     * It works on the primitive year/month/day/hour values, and the zone offset of a candidate is looked up in the
+     * precomputed transitions of the zone by a binary search.
+     * <P>
+     * A fire time which falls into a daylight saving gap fires at the same offset into the gap after the clocks
+     * moved forward, e.g. 02:30 fires at 03:30 if the clocks go from 02:00 to 03:00. The wall-clock times repeated
+     * by an overlap only fire once, at the earlier offset.
+     *
+     * @param afterEpochMillis the instant, in milliseconds since the epoch, to begin the search after
+     * @param zone             the time zone the expression is evaluated in
+     * @return the next fire time in milliseconds since the epoch, or -1 if there isn't one
+     */
+    public long nextFireEpochMillis(long afterEpochMillis, ZoneId zone) {
 
-            if (difference == 1000) {
-                lastDate = newDate;
+        // CronTrigger does not deal with milliseconds
+        long start = Math.floorDiv(afterEpochMillis, 1000) + 1;
+        if (start > END_OF_MAX_YEAR) {
+            return -1;
+        }
+        start = Math.max(start, BEFORE_YEAR_ZERO);
+
+        ZoneTransitions transitions = ZoneTransitions.of(zone);
+        long local = toLocalSearchStart(start, transitions);
+        while (true) {
+            long match = nextLocalMatch(local);
+            if (match == NO_TIME) {
+                return -1;
+            }
+            long instant = transitions.toEpochSecond(match);
+            if (instant >= start) {
+                int index = transitions.indexAt(instant);
+                if (isInGap(instant, index, transitions)) {
+                    instant = firstInGap(Math.max(start, transitions.instant(index)), index, transitions);
+                }
+                return instant * 1000;
             }
+            local = match + 1;
         }
+    }
+
+    /**
+     * Returns the next fire time <I>after</I> the given date/time, evaluated in its time zone.
+     *
+     * @param after the date/time to begin the search after
+     * @return the next fire time in the same time zone, or null if there isn't one
+     * @see #nextFireEpochMillis(long, ZoneId)
+     */
+    public ZonedDateTime next(ZonedDateTime after) {
 
-        return new Date(lastDate.getTime() + 1000);
+        long next = nextFireEpochMillis(after.toInstant().toEpochMilli(), after.getZone());
+        if (next == -1) {
+            return null;
+        }
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(next), after.getZone());
     }
 
     /**
@@ -380,6 +579,79 @@ public final class CronExpression implements Serializable, Cloneable {
         this.timeZone = timeZone;
     }
 
+    /**
+     * Returns the calendar of the days this <code>CronExpression</code> doesn't fire on, or null if there isn't one.
+     */
+    public ExclusionCalendar getExclusionCalendar() {
+
+        return exclusionCalendar;
+    }
+
+    /**
+     * Sets the calendar of the days this <code>CronExpression</code> doesn't fire on, e.g. the holidays. The
+     * excluded days are skipped by all the evaluations, the same as the days which don't match the day fields.
+     *
+     * @param exclusionCalendar the calendar, or null to fire on all the matched days
+     */
+    public void setExclusionCalendar(ExclusionCalendar exclusionCalendar) {
+
+        this.exclusionCalendar = exclusionCalendar;
+    }
+
+    /**
+     * Returns true if it's constructed from the field sets, whose text is only a description.
+     */
+    boolean isSynthetic() {
+
+        return synthetic;
+    }
+
+    /**
+     * Returns true if the field sets of both expressions match the same times. The exclusion calendars aren't
+     * compared.
+     */
+    boolean hasSameFields(CronExpression other) {
+
+        return seconds == other.seconds
+               && minutes == other.minutes
+               && hours == other.hours
+               && months == other.months
+               && sameBits(years, other.years)
+               && Arrays.equals(daysOfMonthTable, other.daysOfMonthTable);
+    }
+
+    /**
+     * Returns the hash code of the field sets, consistent with {@link #hasSameFields(CronExpression)}.
+     */
+    int fieldsHashCode() {
+
+        int hash = Long.hashCode(seconds);
+        hash = hash * 31 + Long.hashCode(minutes);
+        hash = hash * 31 + Long.hashCode(hours);
+        hash = hash * 31 + Long.hashCode(months);
+        // the trailing empty words of the years don't count.
+        for (int i = lastNonZero(years); i >= 0; i--) {
+            hash = hash * 31 + Long.hashCode(years[i]);
+        }
+        return hash * 31 + Arrays.hashCode(daysOfMonthTable);
+    }
+
+    // the same bits, the arrays may have different lengths.
+    private static boolean sameBits(long[] x, long[] y) {
+
+        int last = lastNonZero(x);
+        return last == lastNonZero(y) && Arrays.equals(x, 0, last + 1, y, 0, last + 1);
+    }
+
+    private static int lastNonZero(long[] bits) {
+
+        int i = bits.length - 1;
+        while (i >= 0 && bits[i] == 0L) {
+            i--;
+        }
+        return i;
+    }
+
     /**
      * Returns the string representation of the <CODE>CronExpression</CODE>
      *
@@ -401,13 +673,29 @@ public final class CronExpression implements Serializable, Cloneable {
      */
     public static boolean isValidExpression(String cronExpression) {
 
-        try {
-            new CronExpression(cronExpression);
-        } catch (ParseException pe) {
-            return false;
+        if (cronExpression == null) {
+            throw new IllegalArgumentException("cronExpression cannot be null");
         }
 
-        return true;
+        return validate(cronExpression) == null;
+    }
+
+    /**
+     * Parses the expression and returns the error, or null if it's valid. The error has the field and the position
+     * where the parsing failed, and no stack trace, so an invalid expression costs about the same as a valid one.
+     *
+     * @see CronExpressionValidator
+     */
+    static ExpressionParseException validate(String cronExpression) {
+
+        try {
+            new CronExpression(cronExpression, false);
+            return null;
+        } catch (ExpressionParseException ex) {
+            return ex;
+        } catch (ParseException ex) {
+            return new ExpressionParseException(ex.getMessage(), ex.getErrorOffset(), -1, Math.max(ex.getErrorOffset(), 0));
+        }
     }
 
     public static void validateExpression(String cronExpression) throws ParseException {
@@ -415,6 +703,121 @@ public final class CronExpression implements Serializable, Cloneable {
         new CronExpression(cronExpression);
     }
 
+    /**
+     * Returns the compiled form of the expression in the given time zone. The compiled expressions are cached by
+     * the expression string and the time zone, so the jobs sharing an expression share one parsed instance. The
+     * string is normalized as the parser reads it, i.e. in upper case with the fields separated by one space. The
+     * cache keeps at most {@link #COMPILED_CACHE_CAPACITY} entries. When it's full, an eighth of them are dropped by
+     * the CLOCK algorithm, which keeps the entries used since the hand of the last sweep passed them.
+     *
+     * @param cronExpression the expression to compile
+     * @param zone           the time zone the expression is evaluated in
+     * @return the compiled expression
+     * @throws ParseException if the expression cannot be parsed
+     */
+    public static CompiledCronExpression compile(String cronExpression, ZoneId zone) throws ParseException {
+
+        if (cronExpression == null) {
+            throw new IllegalArgumentException("cronExpression cannot be null");
+        }
+        if (zone == null) {
+            throw new IllegalArgumentException("zone cannot be null");
+        }
+        var normalized = normalize(cronExpression);
+        var key = new CompiledKey(normalized, zone);
+        var entry = compiledCache.get(key);
+        if (entry != null) {
+            // only written when it changes, so the hits don't contend on it.
+            if (!entry.used) {
+                entry.used = true;
+            }
+            return entry.compiled;
+        }
+        // parse outside of the map, computeIfAbsent cannot throw the ParseException.
+        CronExpression expression;
+        try {
+            expression = new CronExpression(normalized, false);
+        } catch (ExpressionParseException ex) {
+            // the offsets in a field are relative to the value, only the ones in the whole expression move.
+            int offset = ex.getField() == -1 && ex.getErrorOffset() > 0
+                ? originalOffset(cronExpression, normalized, ex.getErrorOffset())
+                : ex.getErrorOffset();
+            throw new ParseException(ex.getMessage(), offset);
+        }
+        if (compiledCache.size() >= COMPILED_CACHE_CAPACITY) {
+            evictCompiled();
+        }
+        entry = new CompiledEntry(new CompiledCronExpression(expression, zone));
+        var existing = compiledCache.putIfAbsent(key, entry);
+        return existing != null ? existing.compiled : entry.compiled;
+    }
+
+    /**
+     * Drops an eighth of the compiled expressions by the CLOCK algorithm: the hand goes round the entries, an entry
+     * used since the hand passed it is kept and unmarked, an entry not used is dropped.
+     */
+    private static synchronized void evictCompiled() {
+
+        int target = COMPILED_CACHE_CAPACITY - COMPILED_CACHE_CAPACITY / 8;
+        // 2 rounds at most, all the entries are unmarked by the first one.
+        for (int i = 2 * compiledCache.size(); i > 0 && compiledCache.size() > target; i--) {
+            if (compiledHand == null || !compiledHand.hasNext()) {
+                compiledHand = compiledCache.values().iterator();
+                if (!compiledHand.hasNext()) {
+                    return;
+                }
+            }
+            var entry = compiledHand.next();
+            if (entry.used) {
+                entry.used = false;
+            } else {
+                compiledHand.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the expression as the parser reads it: in upper case, and the fields separated by one space.
+     */
+    private static String normalize(String cronExpression) {
+
+        var tokens = new StringTokenizer(cronExpression.toUpperCase(Locale.US), " \t", false);
+        var normalized = new StringBuilder(cronExpression.length());
+        while (tokens.hasMoreTokens()) {
+            if (!normalized.isEmpty()) {
+                normalized.append(' ');
+            }
+            normalized.append(tokens.nextToken());
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Returns the offset in the given string of the one in its normalized form.
+     */
+    private static int originalOffset(String cronExpression, String normalized, int offset) {
+
+        if (offset >= normalized.length()) {
+            return cronExpression.length();
+        }
+        int at = 0;
+        boolean inField = false;
+        for (int i = 0; i < cronExpression.length(); i++) {
+            char c = cronExpression.charAt(i);
+            boolean separator = c == ' ' || c == '\t';
+            // the separators between 2 fields are one space in the normalized form.
+            if (separator && !inField) {
+                continue;
+            }
+            if (at == offset) {
+                return i;
+            }
+            at++;
+            inField = !separator;
+        }
+        return cronExpression.length();
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     //
     // Expression Parsing Functions
@@ -425,67 +828,67 @@ public final class CronExpression implements Serializable, Cloneable {
 
         expressionParsed = true;
 
+        // the field and the position in the expression of the value being parsed, for the errors
+        int field = -1;
+        int position = 0;
         try {
 
-            if (seconds == null) {
-                seconds = new TreeSet<Integer>();
-            }
-            if (minutes == null) {
-                minutes = new TreeSet<Integer>();
-            }
-            if (hours == null) {
-                hours = new TreeSet<Integer>();
-            }
-            if (daysOfMonth == null) {
-                daysOfMonth = new TreeSet<Integer>();
-            }
-            if (months == null) {
-                months = new TreeSet<Integer>();
-            }
-            if (daysOfWeek == null) {
-                daysOfWeek = new TreeSet<Integer>();
-            }
-            if (years == null) {
-                years = new TreeSet<Integer>();
-            }
+            seconds = 0L;
+            minutes = 0L;
+            hours = 0L;
+            daysOfMonth = 0L;
+            months = 0L;
+            daysOfWeek = 0L;
+            years = new long[(MAX_YEAR >>> 6) + 1];
+            allSpecFields = 0;
+            noSpecFields = 0;
 
             int exprOn = SECOND;
 
             StringTokenizer exprsTok = new StringTokenizer(expression, " \t",
                                                            false);
 
+            int fieldAt = 0;
             while (exprsTok.hasMoreTokens() && exprOn <= YEAR) {
                 String expr = exprsTok.nextToken().trim();
+                fieldAt = expression.indexOf(expr, fieldAt);
+                field = exprOn;
+                position = fieldAt;
 
                 // throw an exception if L is used with other days of the month
                 if (exprOn == DAY_OF_MONTH && expr.indexOf('L') != -1 && expr.length() > 1 && expr.contains(",")) {
-                    throw new ParseException(
+                    throw new ExpressionParseException(
                         "Support for specifying 'L' and 'LW' with other days of the month is not implemented",
                         -1);
                 }
                 // throw an exception if L is used with other days of the week
                 if (exprOn == DAY_OF_WEEK && expr.indexOf('L') != -1 && expr.length() > 1 && expr.contains(",")) {
-                    throw new ParseException(
+                    throw new ExpressionParseException(
                         "Support for specifying 'L' with other days of the week is not implemented",
                         -1);
                 }
                 if (exprOn == DAY_OF_WEEK && expr.indexOf('#') != -1 && expr.indexOf(
                     '#',
                     expr.indexOf('#') + 1) != -1) {
-                    throw new ParseException("Support for specifying multiple \"nth\" days is not implemented.", -1);
+                    throw new ExpressionParseException("Support for specifying multiple \"nth\" days is not implemented.", -1);
                 }
 
                 StringTokenizer vTok = new StringTokenizer(expr, ",");
                 while (vTok.hasMoreTokens()) {
                     String v = vTok.nextToken();
+                    position = expression.indexOf(v, position);
                     storeExpressionVals(0, v, exprOn);
+                    position += v.length();
                 }
 
+                fieldAt += expr.length();
                 exprOn++;
             }
+            field = -1;
+            position = 0;
 
             if (exprOn <= DAY_OF_WEEK) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "Unexpected end of expression.",
                     expression.length());
             }
@@ -494,25 +897,78 @@ public final class CronExpression implements Serializable, Cloneable {
                 storeExpressionVals(0, "*", YEAR);
             }
 
-            TreeSet<Integer> dow = getSet(DAY_OF_WEEK);
-            TreeSet<Integer> dom = getSet(DAY_OF_MONTH);
-
             // Copying the logic from the UnsupportedOperationException below
-            boolean dayOfMSpec = !dom.contains(NO_SPEC);
-            boolean dayOfWSpec = !dow.contains(NO_SPEC);
+            boolean dayOfMSpec = !isNoSpec(DAY_OF_MONTH);
+            boolean dayOfWSpec = !isNoSpec(DAY_OF_WEEK);
 
             if (!dayOfMSpec || dayOfWSpec) {
                 if (!dayOfWSpec || dayOfMSpec) {
-                    throw new ParseException(
+                    throw new ExpressionParseException(
                         "Support for specifying both a day-of-week AND a day-of-month parameter is not implemented.",
                         0);
                 }
             }
+
+            buildDaysOfMonthTable();
         } catch (ParseException pe) {
-            throw pe;
+            // the offsets of the values are relative to the value, and -1 if it's the whole value.
+            throw new ExpressionParseException(
+                pe.getMessage(), pe.getErrorOffset(), field, position + Math.max(pe.getErrorOffset(), 0));
         } catch (Exception e) {
-            throw new ParseException("Illegal cron expression format ("
-                                         + e + ")", 0);
+            throw new ExpressionParseException("Illegal cron expression format ("
+                                         + e + ")", 0, field, position);
+        }
+    }
+
+    /**
+     * The error of parsing an expression. Besides the offset of {@link ParseException}, which is relative to the
+     * value being parsed, it has the field and the position in the whole expression. The stack trace isn't filled,
+     * the public constructor throws a {@link ParseException} with the stack trace instead.
+     */
+    static final class ExpressionParseException extends ParseException {
+
+        private static final long serialVersionUID = 1L;
+
+        // SECOND to YEAR, or -1 if the error isn't in a field
+        private final int field;
+        private final int position;
+
+        ExpressionParseException(String message, int errorOffset) {
+
+            this(message, errorOffset, -1, Math.max(errorOffset, 0));
+        }
+
+        ExpressionParseException(String message, int errorOffset, int field, int position) {
+
+            super(message, errorOffset);
+            this.field = field;
+            this.position = position;
+        }
+
+        int getField() {
+
+            return field;
+        }
+
+        int getPosition() {
+
+            return position;
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+
+            return this;
+        }
+    }
+
+    private void buildDaysOfMonthTable() {
+
+        daysOfMonthTable = new long[28];
+        for (int ldom = 28; ldom <= 31; ldom++) {
+            for (int dow = 1; dow <= 7; dow++) {
+                daysOfMonthTable[(ldom - 28) * 7 + dow - 1] = computeDaysOfMonth(ldom, dow);
+            }
         }
     }
 
@@ -532,7 +988,7 @@ public final class CronExpression implements Serializable, Cloneable {
             if (type == MONTH) {
                 sval = getMonthNumber(sub) + 1;
                 if (sval <= 0) {
-                    throw new ParseException("Invalid Month value: '" + sub + "'", i);
+                    throw new ExpressionParseException("Invalid Month value: '" + sub + "'", i);
                 }
                 if (s.length() > i + 3) {
                     c = s.charAt(i + 3);
@@ -541,14 +997,14 @@ public final class CronExpression implements Serializable, Cloneable {
                         sub = s.substring(i, i + 3);
                         eval = getMonthNumber(sub) + 1;
                         if (eval <= 0) {
-                            throw new ParseException("Invalid Month value: '" + sub + "'", i);
+                            throw new ExpressionParseException("Invalid Month value: '" + sub + "'", i);
                         }
                     }
                 }
             } else if (type == DAY_OF_WEEK) {
                 sval = getDayOfWeekNumber(sub);
                 if (sval < 0) {
-                    throw new ParseException("Invalid Day-of-Week value: '"
+                    throw new ExpressionParseException("Invalid Day-of-Week value: '"
                                                  + sub + "'", i);
                 }
                 if (s.length() > i + 3) {
@@ -558,7 +1014,7 @@ public final class CronExpression implements Serializable, Cloneable {
                         sub = s.substring(i, i + 3);
                         eval = getDayOfWeekNumber(sub);
                         if (eval < 0) {
-                            throw new ParseException(
+                            throw new ExpressionParseException(
                                 "Invalid Day-of-Week value: '" + sub
                                     + "'", i);
                         }
@@ -570,7 +1026,7 @@ public final class CronExpression implements Serializable, Cloneable {
                                 throw new Exception();
                             }
                         } catch (Exception e) {
-                            throw new ParseException(
+                            throw new ExpressionParseException(
                                 "A numeric value between 1 and 5 must follow the '#' option",
                                 i);
                         }
@@ -581,7 +1037,7 @@ public final class CronExpression implements Serializable, Cloneable {
                 }
 
             } else {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "Illegal characters for this position: '" + sub + "'",
                     i);
             }
@@ -596,18 +1052,17 @@ public final class CronExpression implements Serializable, Cloneable {
             i++;
             if ((i + 1) < s.length()
                 && (s.charAt(i) != ' ' && s.charAt(i + 1) != '\t')) {
-                throw new ParseException("Illegal character after '?': "
+                throw new ExpressionParseException("Illegal character after '?': "
                                              + s.charAt(i), i);
             }
             if (type != DAY_OF_WEEK && type != DAY_OF_MONTH) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "'?' can only be specified for Day-of-Month or Day-of-Week.",
                     i);
             }
             if (type == DAY_OF_WEEK && !lastdayOfMonth) {
-                int val = daysOfMonth.last();
-                if (val == NO_SPEC_INT) {
-                    throw new ParseException(
+                if (isNoSpec(DAY_OF_MONTH)) {
+                    throw new ExpressionParseException(
                         "'?' can only be specified for Day-of-Month -OR- Day-of-Week.",
                         i);
                 }
@@ -624,7 +1079,7 @@ public final class CronExpression implements Serializable, Cloneable {
             } else if (c == '/'
                 && ((i + 1) >= s.length() || s.charAt(i + 1) == ' ' || s
                 .charAt(i + 1) == '\t')) {
-                throw new ParseException("'/' must be followed by an integer.", i);
+                throw new ExpressionParseException("'/' must be followed by an integer.", i);
             } else if (c == '*') {
                 i++;
             }
@@ -632,7 +1087,7 @@ public final class CronExpression implements Serializable, Cloneable {
             if (c == '/') { // is an increment specified?
                 i++;
                 if (i >= s.length()) {
-                    throw new ParseException("Unexpected end of string.", i);
+                    throw new ExpressionParseException("Unexpected end of string.", i);
                 }
 
                 incr = getNumericValue(s, i);
@@ -662,7 +1117,7 @@ public final class CronExpression implements Serializable, Cloneable {
                     ValueSet vs = getValue(0, s, i + 1);
                     lastdayOffset = vs.value;
                     if (lastdayOffset > 30)
-                        throw new ParseException("Offset from last day must be <= 30", i + 1);
+                        throw new ExpressionParseException("Offset from last day must be <= 30", i + 1);
                     i = vs.pos;
                 }
                 if (s.length() > i) {
@@ -690,7 +1145,7 @@ public final class CronExpression implements Serializable, Cloneable {
                 return i;
             }
         } else {
-            throw new ParseException("Unexpected character: " + c, i);
+            throw new ExpressionParseException("Unexpected character: " + c, i);
         }
 
         return i;
@@ -699,15 +1154,15 @@ public final class CronExpression implements Serializable, Cloneable {
     private void checkIncrementRange(int incr, int type, int idxPos) throws ParseException {
 
         if (incr > 59 && (type == SECOND || type == MINUTE)) {
-            throw new ParseException("Increment > 60 : " + incr, idxPos);
+            throw new ExpressionParseException("Increment > 60 : " + incr, idxPos);
         } else if (incr > 23 && (type == HOUR)) {
-            throw new ParseException("Increment > 24 : " + incr, idxPos);
+            throw new ExpressionParseException("Increment > 24 : " + incr, idxPos);
         } else if (incr > 31 && (type == DAY_OF_MONTH)) {
-            throw new ParseException("Increment > 31 : " + incr, idxPos);
+            throw new ExpressionParseException("Increment > 31 : " + incr, idxPos);
         } else if (incr > 7 && (type == DAY_OF_WEEK)) {
-            throw new ParseException("Increment > 7 : " + incr, idxPos);
+            throw new ExpressionParseException("Increment > 7 : " + incr, idxPos);
         } else if (incr > 12 && (type == MONTH)) {
-            throw new ParseException("Increment > 12 : " + incr, idxPos);
+            throw new ExpressionParseException("Increment > 12 : " + incr, idxPos);
         }
     }
 
@@ -727,13 +1182,12 @@ public final class CronExpression implements Serializable, Cloneable {
         if (c == 'L') {
             if (type == DAY_OF_WEEK) {
                 if (val < 1 || val > 7)
-                    throw new ParseException("Day-of-Week values must be between 1 and 7", -1);
+                    throw new ExpressionParseException("Day-of-Week values must be between 1 and 7", -1);
                 lastdayOfWeek = true;
             } else {
-                throw new ParseException("'L' option is not valid here. (pos=" + i + ")", i);
+                throw new ExpressionParseException("'L' option is not valid here. (pos=" + i + ")", i);
             }
-            TreeSet<Integer> set = getSet(type);
-            set.add(val);
+            addToField(type, val);
             i++;
             return i;
         }
@@ -742,21 +1196,20 @@ public final class CronExpression implements Serializable, Cloneable {
             if (type == DAY_OF_MONTH) {
                 nearestWeekday = true;
             } else {
-                throw new ParseException("'W' option is not valid here. (pos=" + i + ")", i);
+                throw new ExpressionParseException("'W' option is not valid here. (pos=" + i + ")", i);
             }
             if (val > 31)
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "The 'W' option does not make sense with values larger than 31 (max number of days in a month)",
                     i);
-            TreeSet<Integer> set = getSet(type);
-            set.add(val);
+            addToField(type, val);
             i++;
             return i;
         }
 
         if (c == '#') {
             if (type != DAY_OF_WEEK) {
-                throw new ParseException("'#' option is not valid here. (pos=" + i + ")", i);
+                throw new ExpressionParseException("'#' option is not valid here. (pos=" + i + ")", i);
             }
             i++;
             try {
@@ -765,13 +1218,12 @@ public final class CronExpression implements Serializable, Cloneable {
                     throw new Exception();
                 }
             } catch (Exception e) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "A numeric value between 1 and 5 must follow the '#' option",
                     i);
             }
 
-            TreeSet<Integer> set = getSet(type);
-            set.add(val);
+            addToField(type, val);
             i++;
             return i;
         }
@@ -820,7 +1272,7 @@ public final class CronExpression implements Serializable, Cloneable {
 
         if (c == '/') {
             if ((i + 1) >= s.length() || s.charAt(i + 1) == ' ' || s.charAt(i + 1) == '\t') {
-                throw new ParseException("'/' must be followed by an integer.", i);
+                throw new ExpressionParseException("'/' must be followed by an integer.", i);
             }
 
             i++;
@@ -841,7 +1293,7 @@ public final class CronExpression implements Serializable, Cloneable {
                 i = vs.pos;
                 return i;
             } else {
-                throw new ParseException("Unexpected character '" + c + "' after '/'", i);
+                throw new ExpressionParseException("Unexpected character '" + c + "' after '/'", i);
             }
         }
 
@@ -860,22 +1312,22 @@ public final class CronExpression implements Serializable, Cloneable {
         StringBuilder buf = new StringBuilder();
 
         buf.append("seconds: ");
-        buf.append(getExpressionSetSummary(seconds));
+        buf.append(getExpressionSetSummary(SECOND));
         buf.append("\n");
         buf.append("minutes: ");
-        buf.append(getExpressionSetSummary(minutes));
+        buf.append(getExpressionSetSummary(MINUTE));
         buf.append("\n");
         buf.append("hours: ");
-        buf.append(getExpressionSetSummary(hours));
+        buf.append(getExpressionSetSummary(HOUR));
         buf.append("\n");
         buf.append("daysOfMonth: ");
-        buf.append(getExpressionSetSummary(daysOfMonth));
+        buf.append(getExpressionSetSummary(DAY_OF_MONTH));
         buf.append("\n");
         buf.append("months: ");
-        buf.append(getExpressionSetSummary(months));
+        buf.append(getExpressionSetSummary(MONTH));
         buf.append("\n");
         buf.append("daysOfWeek: ");
-        buf.append(getExpressionSetSummary(daysOfWeek));
+        buf.append(getExpressionSetSummary(DAY_OF_WEEK));
         buf.append("\n");
         buf.append("lastdayOfWeek: ");
         buf.append(lastdayOfWeek);
@@ -890,33 +1342,32 @@ public final class CronExpression implements Serializable, Cloneable {
         buf.append(lastdayOfMonth);
         buf.append("\n");
         buf.append("years: ");
-        buf.append(getExpressionSetSummary(years));
+        buf.append(getExpressionSetSummary(YEAR));
         buf.append("\n");
 
         return buf.toString();
     }
 
-    protected String getExpressionSetSummary(java.util.Set<Integer> set) {
+    protected String getExpressionSetSummary(int type) {
 
-        if (set.contains(NO_SPEC)) {
+        if (isNoSpec(type)) {
             return "?";
         }
-        if (set.contains(ALL_SPEC)) {
+        if (isAllSpec(type)) {
             return "*";
         }
 
         StringBuilder buf = new StringBuilder();
 
-        Iterator<Integer> itr = set.iterator();
         boolean first = true;
-        while (itr.hasNext()) {
-            Integer iVal = itr.next();
-            String val = iVal.toString();
+        int val = type == YEAR ? nextSetBit(years, 0) : nextSetBit(getField(type), 0);
+        while (val != -1) {
             if (!first) {
                 buf.append(",");
             }
             buf.append(val);
             first = false;
+            val = type == YEAR ? nextSetBit(years, val + 1) : nextSetBit(getField(type), val + 1);
         }
 
         return buf.toString();
@@ -924,10 +1375,10 @@ public final class CronExpression implements Serializable, Cloneable {
 
     protected String getExpressionSetSummary(java.util.ArrayList<Integer> list) {
 
-        if (list.contains(NO_SPEC)) {
+        if (list.contains(NO_SPEC_INT)) {
             return "?";
         }
-        if (list.contains(ALL_SPEC)) {
+        if (list.contains(ALL_SPEC_INT)) {
             return "*";
         }
 
@@ -967,43 +1418,41 @@ public final class CronExpression implements Serializable, Cloneable {
     protected void addToSet(int val, int end, int incr, int type)
         throws ParseException {
 
-        TreeSet<Integer> set = getSet(type);
-
         if (type == SECOND || type == MINUTE) {
             if ((val < 0 || val > 59 || end > 59) && (val != ALL_SPEC_INT)) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "Minute and Second values must be between 0 and 59",
                     -1);
             }
         } else if (type == HOUR) {
             if ((val < 0 || val > 23 || end > 23) && (val != ALL_SPEC_INT)) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "Hour values must be between 0 and 23", -1);
             }
         } else if (type == DAY_OF_MONTH) {
             if ((val < 1 || val > 31 || end > 31) && (val != ALL_SPEC_INT)
                 && (val != NO_SPEC_INT)) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "Day of month values must be between 1 and 31", -1);
             }
         } else if (type == MONTH) {
             if ((val < 1 || val > 12 || end > 12) && (val != ALL_SPEC_INT)) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "Month values must be between 1 and 12", -1);
             }
         } else if (type == DAY_OF_WEEK) {
             if ((val == 0 || val > 7 || end > 7) && (val != ALL_SPEC_INT)
                 && (val != NO_SPEC_INT)) {
-                throw new ParseException(
+                throw new ExpressionParseException(
                     "Day-of-Week values must be between 1 and 7", -1);
             }
         }
 
         if ((incr == 0 || incr == -1) && val != ALL_SPEC_INT) {
-            if (val != -1) {
-                set.add(val);
+            if (val == NO_SPEC_INT || val == -1) {
+                noSpecFields |= 1 << type;
             } else {
-                set.add(NO_SPEC);
+                addToField(type, val);
             }
 
             return;
@@ -1014,7 +1463,7 @@ public final class CronExpression implements Serializable, Cloneable {
 
         if (val == ALL_SPEC_INT && incr <= 0) {
             incr = 1;
-            set.add(ALL_SPEC); // put in a marker, but also fill values
+            allSpecFields |= 1 << type; // put in a marker, but also fill values
         }
 
         if (type == SECOND || type == MINUTE) {
@@ -1096,7 +1545,7 @@ public final class CronExpression implements Serializable, Cloneable {
         for (int i = startAt; i <= stopAt; i += incr) {
             if (max == -1) {
                 // ie: there's no max to overflow over
-                set.add(i);
+                addToField(type, i);
             } else {
                 // take the modulus to get the real value
                 int i2 = i % max;
@@ -1106,12 +1555,47 @@ public final class CronExpression implements Serializable, Cloneable {
                     i2 = max;
                 }
 
-                set.add(i2);
+                addToField(type, i2);
             }
         }
     }
 
-    TreeSet<Integer> getSet(int type) {
+    private void addToField(int type, int val) {
+
+        switch (type) {
+            case SECOND:
+                seconds |= 1L << val;
+                break;
+            case MINUTE:
+                minutes |= 1L << val;
+                break;
+            case HOUR:
+                hours |= 1L << val;
+                break;
+            case DAY_OF_MONTH:
+                daysOfMonth |= 1L << val;
+                break;
+            case MONTH:
+                months |= 1L << val;
+                break;
+            case DAY_OF_WEEK:
+                daysOfWeek |= 1L << val;
+                break;
+            case YEAR:
+                if ((val >>> 6) >= years.length) {
+                    years = Arrays.copyOf(years, (val >>> 6) + 1);
+                }
+                years[val >>> 6] |= 1L << val;
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected type encountered");
+        }
+    }
+
+    /**
+     * Returns the bitmask of the field. The years aren't supported because they don't fit in a long.
+     */
+    long getField(int type) {
 
         switch (type) {
             case SECOND:
@@ -1126,68 +1610,217 @@ public final class CronExpression implements Serializable, Cloneable {
                 return months;
             case DAY_OF_WEEK:
                 return daysOfWeek;
-            case YEAR:
-                return years;
             default:
-                return null;
+                throw new IllegalArgumentException("Unexpected type encountered");
         }
     }
 
-    protected ValueSet getValue(int v, String s, int i) {
-
-        char c = s.charAt(i);
-        StringBuilder s1 = new StringBuilder(String.valueOf(v));
-        while (c >= '0' && c <= '9') {
-            s1.append(c);
-            i++;
-            if (i >= s.length()) {
-                break;
-            }
-            c = s.charAt(i);
-        }
-        ValueSet val = new ValueSet();
+    boolean isAllSpec(int type) {
 
-        val.pos = (i < s.length()) ? i : i + 1;
-        val.value = Integer.parseInt(s1.toString());
-        return val;
+        return (allSpecFields & (1 << type)) != 0;
     }
 
-    protected int getNumericValue(String s, int i) {
+    boolean isNoSpec(int type) {
 
-        int endOfVal = findNextWhiteSpace(i, s);
-        String val = s.substring(i, endOfVal);
-        return Integer.parseInt(val);
+        return (noSpecFields & (1 << type)) != 0;
     }
 
-    protected int getMonthNumber(String s) {
-
-        Integer integer = monthMap.get(s);
+    /**
+     * Returns the lowest set bit which is equal to or greater than {@code from}, or -1 if there isn't one.
+     */
+    static int nextSetBit(long mask, int from) {
 
-        if (integer == null) {
+        if (from > 63) {
             return -1;
         }
-
-        return integer;
+        long m = mask & (-1L << Math.max(from, 0));
+        return m == 0 ? -1 : Long.numberOfTrailingZeros(m);
     }
 
-    protected int getDayOfWeekNumber(String s) {
-
-        Integer integer = dayMap.get(s);
+    static int nextSetBit(long[] mask, int from) {
 
-        if (integer == null) {
+        from = Math.max(from, 0);
+        int idx = from >>> 6;
+        if (idx >= mask.length) {
             return -1;
         }
-
-        return integer;
+        long m = mask[idx] & (-1L << from);
+        while (m == 0) {
+            if (++idx == mask.length) {
+                return -1;
+            }
+            m = mask[idx];
+        }
+        return (idx << 6) + Long.numberOfTrailingZeros(m);
     }
 
-    ////////////////////////////////////////////////////////////////////////////
-    //
-    // Computation Functions
-    //
-    ////////////////////////////////////////////////////////////////////////////
+    static int nextClearBit(long[] mask, int from) {
 
-    public Date getTimeAfter(Date afterTime) {
+        from = Math.max(from, 0);
+        int idx = from >>> 6;
+        if (idx >= mask.length) {
+            return from;
+        }
+        long m = ~mask[idx] & (-1L << from);
+        while (m == 0) {
+            if (++idx == mask.length) {
+                return idx << 6;
+            }
+            m = ~mask[idx];
+        }
+        return (idx << 6) + Long.numberOfTrailingZeros(m);
+    }
+
+    /**
+     * Returns the highest set bit which is equal to or less than {@code from}, or -1 if there isn't one.
+     */
+    static int prevSetBit(long mask, int from) {
+
+        if (from < 0) {
+            return -1;
+        }
+        long m = mask & (-1L >>> (63 - Math.min(from, 63)));
+        return m == 0 ? -1 : 63 - Long.numberOfLeadingZeros(m);
+    }
+
+    static int prevSetBit(long[] mask, int from) {
+
+        if (from < 0) {
+            return -1;
+        }
+        int idx = from >>> 6;
+        long m;
+        if (idx >= mask.length) {
+            idx = mask.length - 1;
+            m = mask[idx];
+        } else {
+            m = mask[idx] & (-1L >>> (63 - (from & 63)));
+        }
+        while (m == 0) {
+            if (--idx < 0) {
+                return -1;
+            }
+            m = mask[idx];
+        }
+        return (idx << 6) + 63 - Long.numberOfLeadingZeros(m);
+    }
+
+    static int firstSetBit(long mask) {
+
+        return mask == 0 ? -1 : Long.numberOfTrailingZeros(mask);
+    }
+
+    protected ValueSet getValue(int v, String s, int i) {
+
+        char c = s.charAt(i);
+        StringBuilder s1 = new StringBuilder(String.valueOf(v));
+        while (c >= '0' && c <= '9') {
+            s1.append(c);
+            i++;
+            if (i >= s.length()) {
+                break;
+            }
+            c = s.charAt(i);
+        }
+        ValueSet val = new ValueSet();
+
+        val.pos = (i < s.length()) ? i : i + 1;
+        val.value = Integer.parseInt(s1.toString());
+        return val;
+    }
+
+    protected int getNumericValue(String s, int i) {
+
+        int endOfVal = findNextWhiteSpace(i, s);
+        String val = s.substring(i, endOfVal);
+        return Integer.parseInt(val);
+    }
+
+    protected int getMonthNumber(String s) {
+
+        Integer integer = monthMap.get(s);
+
+        if (integer == null) {
+            return -1;
+        }
+
+        return integer;
+    }
+
+    protected int getDayOfWeekNumber(String s) {
+
+        Integer integer = dayMap.get(s);
+
+        if (integer == null) {
+            return -1;
+        }
+
+        return integer;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    // Computation Functions
+    //
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the next fire time <I>after</I> the given date/time, evaluated in the time zone of this expression.
+     * <P>
+     * Unlike {@link #nextFireEpochMillis(long, ZoneId)}, the wall-clock times repeated by an overlap fire at the later
+     * offset, and a fire time in a gap only fires if the search moves it onto a matched wall-clock time after the
+     * gap, the same as it always did. Away from the transitions of the zone both give the same fire times, so the
+     * fields are only searched by a {@link Calendar} within a few days of a transition.
+     *
+     * @param afterTime the date/time to begin the search after
+     * @return the next fire time, or null if there isn't one
+     */
+    public Date getTimeAfter(Date afterTime) {
+
+        ZoneId zone = getTimeZone().toZoneId();
+        long next = nextFireEpochMillis(afterTime.getTime(), zone);
+        ZoneTransitions transitions = ZoneTransitions.of(zone);
+        if (synthetic
+            || (!isNearTransition(Math.floorDiv(afterTime.getTime(), 1000) + 1, transitions)
+                && (next == -1 || !isNearTransition(Math.floorDiv(next, 1000), transitions)))) {
+            return next == -1 ? null : new Date(next);
+        }
+
+        Date time = getTimeAfterByCalendar(afterTime);
+        var calendar = exclusionCalendar;
+        while (time != null && calendar != null) {
+            long epochSecond = time.getTime() / 1000;
+            long local = epochSecond + transitions.offsetAt(epochSecond);
+            int date = toCivilDate(Math.floorDiv(local, SECONDS_PER_DAY));
+            if ((calendar.getExcludedDays(civilYear(date), civilMonth(date)) & (1L << civilDay(date))) == 0) {
+                break;
+            }
+            // the search goes on from the last second of the excluded day.
+            long dayEnd = (Math.floorDiv(local, SECONDS_PER_DAY) + 1) * SECONDS_PER_DAY - 1;
+            long after = Math.max(transitions.toEpochSecond(dayEnd), epochSecond);
+            time = getTimeAfterByCalendar(new Date(after * 1000));
+        }
+        return time;
+    }
+
+    /**
+     * Indicates whether a transition of the zone is within a few days of the instant. The search by the fields of a
+     * {@link Calendar} from there can step onto the wall-clock times of the transition, a gap or an overlap is a day
+     * long at most.
+     */
+    static boolean isNearTransition(long epochSecond, ZoneTransitions transitions) {
+
+        int index = transitions.indexAt(epochSecond + 3 * SECONDS_PER_DAY);
+        return index >= 0 && transitions.instant(index) > epochSecond - 3 * SECONDS_PER_DAY;
+    }
+
+    /**
+     * Searches the next fire time by the fields of a {@link Calendar}, the way the expression is always evaluated
+     * for the {@link Date} methods. Setting a field to a wall-clock time in a gap moves it forward by the length of
+     * the gap before the search goes on, and a repeated wall-clock time of an overlap is at the later offset.
+     * It doesn't know the exclusion calendar, and the day fields must be parsed ones.
+     */
+    private Date getTimeAfterByCalendar(Date afterTime) {
 
         // Computation is based on Gregorian year only.
         Calendar cl = new java.util.GregorianCalendar(getTimeZone());
@@ -1208,18 +1841,18 @@ public final class CronExpression implements Serializable, Cloneable {
                 return null;
             }
 
-            SortedSet<Integer> st = null;
+            int st;
             int t = 0;
 
             int sec = cl.get(Calendar.SECOND);
             int min = cl.get(Calendar.MINUTE);
 
             // get second.................................................
-            st = seconds.tailSet(sec);
-            if (st != null && st.size() != 0) {
-                sec = st.first();
+            st = nextSetBit(seconds, sec);
+            if (st != -1) {
+                sec = st;
             } else {
-                sec = seconds.first();
+                sec = firstSetBit(seconds);
                 min++;
                 cl.set(Calendar.MINUTE, min);
             }
@@ -1230,12 +1863,12 @@ public final class CronExpression implements Serializable, Cloneable {
             t = -1;
 
             // get minute.................................................
-            st = minutes.tailSet(min);
-            if (st != null && st.size() != 0) {
+            st = nextSetBit(minutes, min);
+            if (st != -1) {
                 t = min;
-                min = st.first();
+                min = st;
             } else {
-                min = minutes.first();
+                min = firstSetBit(minutes);
                 hr++;
             }
             if (min != t) {
@@ -1251,12 +1884,12 @@ public final class CronExpression implements Serializable, Cloneable {
             t = -1;
 
             // get hour...................................................
-            st = hours.tailSet(hr);
-            if (st != null && st.size() != 0) {
+            st = nextSetBit(hours, hr);
+            if (st != -1) {
                 t = hr;
-                hr = st.first();
+                hr = st;
             } else {
-                hr = hours.first();
+                hr = firstSetBit(hours);
                 day++;
             }
             if (hr != t) {
@@ -1276,10 +1909,10 @@ public final class CronExpression implements Serializable, Cloneable {
             int tmon = mon;
 
             // get day...................................................
-            boolean dayOfMSpec = !daysOfMonth.contains(NO_SPEC);
-            boolean dayOfWSpec = !daysOfWeek.contains(NO_SPEC);
+            boolean dayOfMSpec = !isNoSpec(DAY_OF_MONTH);
+            boolean dayOfWSpec = !isNoSpec(DAY_OF_WEEK);
             if (dayOfMSpec && !dayOfWSpec) { // get day by day of month rule
-                st = daysOfMonth.tailSet(day);
+                st = nextSetBit(daysOfMonth, day);
                 if (lastdayOfMonth) {
                     if (!nearestWeekday) {
                         t = day;
@@ -1333,7 +1966,7 @@ public final class CronExpression implements Serializable, Cloneable {
                     }
                 } else if (nearestWeekday) {
                     t = day;
-                    day = daysOfMonth.first();
+                    day = firstSetBit(daysOfMonth);
 
                     java.util.Calendar tcal = java.util.Calendar.getInstance(getTimeZone());
                     tcal.set(Calendar.SECOND, 0);
@@ -1363,20 +1996,20 @@ public final class CronExpression implements Serializable, Cloneable {
                     tcal.set(Calendar.MONTH, mon - 1);
                     Date nTime = tcal.getTime();
                     if (nTime.before(afterTime)) {
-                        day = daysOfMonth.first();
+                        day = firstSetBit(daysOfMonth);
                         mon++;
                     }
-                } else if (st != null && st.size() != 0) {
+                } else if (st != -1) {
                     t = day;
-                    day = st.first();
+                    day = st;
                     // make sure we don't over-run a short month, such as february
                     int lastDay = getLastDayOfMonth(mon, cl.get(Calendar.YEAR));
                     if (day > lastDay) {
-                        day = daysOfMonth.first();
+                        day = firstSetBit(daysOfMonth);
                         mon++;
                     }
                 } else {
-                    day = daysOfMonth.first();
+                    day = firstSetBit(daysOfMonth);
                     mon++;
                 }
 
@@ -1393,7 +2026,7 @@ public final class CronExpression implements Serializable, Cloneable {
             } else if (dayOfWSpec && !dayOfMSpec) { // get day by day of week rule
                 if (lastdayOfWeek) { // are we looking for the last XXX day of
                     // the month?
-                    int dow = daysOfWeek.first(); // desired
+                    int dow = firstSetBit(daysOfWeek); // desired
                     // d-o-w
                     int cDow = cl.get(Calendar.DAY_OF_WEEK); // current d-o-w
                     int daysToAdd = 0;
@@ -1436,7 +2069,7 @@ public final class CronExpression implements Serializable, Cloneable {
 
                 } else if (nthdayOfWeek != 0) {
                     // are we looking for the Nth XXX day in the month?
-                    int dow = daysOfWeek.first(); // desired
+                    int dow = firstSetBit(daysOfWeek); // desired
                     // d-o-w
                     int cDow = cl.get(Calendar.DAY_OF_WEEK); // current d-o-w
                     int daysToAdd = 0;
@@ -1477,11 +2110,11 @@ public final class CronExpression implements Serializable, Cloneable {
                     }
                 } else {
                     int cDow = cl.get(Calendar.DAY_OF_WEEK); // current d-o-w
-                    int dow = daysOfWeek.first(); // desired
+                    int dow = firstSetBit(daysOfWeek); // desired
                     // d-o-w
-                    st = daysOfWeek.tailSet(cDow);
-                    if (st != null && st.size() > 0) {
-                        dow = st.first();
+                    st = nextSetBit(daysOfWeek, cDow);
+                    if (st != -1) {
+                        dow = st;
                     }
 
                     int daysToAdd = 0;
@@ -1533,12 +2166,12 @@ public final class CronExpression implements Serializable, Cloneable {
             }
 
             // get month...................................................
-            st = months.tailSet(mon);
-            if (st != null && st.size() != 0) {
+            st = nextSetBit(months, mon);
+            if (st != -1) {
                 t = mon;
-                mon = st.first();
+                mon = st;
             } else {
-                mon = months.first();
+                mon = firstSetBit(months);
                 year++;
             }
             if (mon != t) {
@@ -1560,10 +2193,10 @@ public final class CronExpression implements Serializable, Cloneable {
             t = -1;
 
             // get year...................................................
-            st = years.tailSet(year);
-            if (st != null && st.size() != 0) {
+            st = nextSetBit(years, year);
+            if (st != -1) {
                 t = year;
-                year = st.first();
+                year = st;
             } else {
                 return null; // ran out of years...
             }
@@ -1602,30 +2235,844 @@ public final class CronExpression implements Serializable, Cloneable {
         }
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    // Wall-clock Computation Functions
+    //
+    // The wall-clock (local) time is handled as the seconds since
+    // 1970-01-01T00:00:00 of the wall clock, so no Calendar is needed.
+    //
+    ////////////////////////////////////////////////////////////////////////////
+
+    static final long NO_TIME = Long.MIN_VALUE;
+    static final int SECONDS_PER_DAY = 86400;
+    // a day later than the end of MAX_YEAR in any time zone, nothing fires after it.
+    static final long END_OF_MAX_YEAR = toEpochDay(MAX_YEAR + 1, 1, 2) * SECONDS_PER_DAY;
+    // a day earlier than the start of the year 0 in any time zone, nothing fires before it.
+    static final long BEFORE_YEAR_ZERO = toEpochDay(-1, 12, 31) * SECONDS_PER_DAY;
+
+    /**
+     * Returns the first wall-clock time which is equal to or later than the given one and satisfies the expression,
+     * or {@link #NO_TIME} if there isn't one before {@link #MAX_YEAR} runs out.
+     */
+    long nextLocalMatch(long local) {
+
+        long epochDay = Math.floorDiv(local, SECONDS_PER_DAY);
+        int secOfDay = Math.floorMod(local, SECONDS_PER_DAY);
+        int date = toCivilDate(epochDay);
+        int year = civilYear(date);
+        int mon = civilMonth(date);
+        int day = civilDay(date);
+        int hr = secOfDay / 3600;
+        int min = secOfDay / 60 % 60;
+        int sec = secOfDay % 60;
+
+        // when a field runs out of values, the next higher field is increased and the lower ones are reset.
+        // running out is detected by the bitmasks themselves, e.g. there is no bit 24 in hours or bit 32 in days.
+        while (true) {
+            int t = nextSetBit(years, year);
+            if (t == -1 || t > MAX_YEAR) {
+                return NO_TIME;
+            }
+            if (t != year) {
+                year = t;
+                mon = 1;
+                day = 1;
+                hr = min = sec = 0;
+            }
+
+            t = nextSetBit(months, mon);
+            if (t == -1) {
+                year++;
+                mon = day = 1;
+                hr = min = sec = 0;
+                continue;
+            }
+            if (t != mon) {
+                mon = t;
+                day = 1;
+                hr = min = sec = 0;
+            }
+
+            t = nextSetBit(getDaysOfMonth(year, mon), day);
+            if (t == -1) {
+                mon++;
+                day = 1;
+                hr = min = sec = 0;
+                continue;
+            }
+            if (t != day) {
+                day = t;
+                hr = min = sec = 0;
+            }
+
+            t = nextSetBit(hours, hr);
+            if (t == -1) {
+                day++;
+                hr = min = sec = 0;
+                continue;
+            }
+            if (t != hr) {
+                hr = t;
+                min = sec = 0;
+            }
+
+            t = nextSetBit(minutes, min);
+            if (t == -1) {
+                hr++;
+                min = sec = 0;
+                continue;
+            }
+            if (t != min) {
+                min = t;
+                sec = 0;
+            }
+
+            t = nextSetBit(seconds, sec);
+            if (t == -1) {
+                min++;
+                sec = 0;
+                continue;
+            }
+
+            return toEpochDay(year, mon, day) * SECONDS_PER_DAY + hr * 3600 + min * 60 + t;
+        }
+    }
+
+    /**
+     * Returns the first wall-clock time which is equal to or later than the given one and doesn't satisfy the
+     * expression. A time doesn't satisfy the expression as soon as any field doesn't, so it's the earliest of the
+     * times at which each field stops matching.
+     */
+    long nextLocalMismatch(long local) {
+
+        long epochDay = Math.floorDiv(local, SECONDS_PER_DAY);
+        int secOfDay = Math.floorMod(local, SECONDS_PER_DAY);
+        int date = toCivilDate(epochDay);
+        int year = civilYear(date);
+        int mon = civilMonth(date);
+        int day = civilDay(date);
+        int hr = secOfDay / 3600;
+        int min = secOfDay / 60 % 60;
+        int sec = secOfDay % 60;
+
+        long dayStart = epochDay * SECONDS_PER_DAY;
+        long end = Long.MAX_VALUE;
+        end = Math.min(end, nextMismatch(seconds, 60, sec, local - sec, 1));
+        end = Math.min(end, nextMismatch(minutes, 60, min, dayStart + hr * 3600L, 60));
+        end = Math.min(end, nextMismatch(hours, 24, hr, dayStart, 3600));
+        end = Math.min(end, nextMismatchDay(year, mon, day));
+
+        int t = nextSetBit(~months & 0x1FFEL, mon);
+        if (t != -1) {
+            end = Math.min(end, toEpochDay(year, t, 1) * SECONDS_PER_DAY);
+        } else if ((t = nextSetBit(~months & 0x1FFEL, 1)) != -1) {
+            end = Math.min(end, toEpochDay(year + 1, t, 1) * SECONDS_PER_DAY);
+        }
+
+        // the years after MAX_YEAR are never matched.
+        t = Math.min(nextClearBit(years, year), MAX_YEAR + 1);
+        end = Math.min(end, toEpochDay(t, 1, 1) * SECONDS_PER_DAY);
+
+        return Math.max(end, local);
+    }
+
+    /**
+     * Returns the start of the first unit, which is equal to or later than the given one, isn't in the mask.
+     *
+     * @param mask        the bitmask of the field, values are from 0 to {@code size - 1}
+     * @param size        the count of the units in the parent unit
+     * @param value       the current value of the field
+     * @param parentStart the start of the current parent unit
+     * @param unit        the length of the unit in seconds
+     */
+    private static long nextMismatch(long mask, int size, int value, long parentStart, int unit) {
+
+        long clear = ~mask & (-1L >>> (64 - size));
+        int t = nextSetBit(clear, value);
+        if (t != -1) {
+            return parentStart + (long) t * unit;
+        }
+        t = firstSetBit(clear);
+        if (t != -1) {
+            return parentStart + (long) (size + t) * unit;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private long nextMismatchDay(int year, int mon, int day) {
+
+        boolean everyDay = exclusionCalendar == null
+                           && (isNoSpec(DAY_OF_MONTH)
+                               ? !lastdayOfWeek && nthdayOfWeek == 0 && (daysOfWeek & 0xFEL) == 0xFEL
+                               : !lastdayOfMonth && !nearestWeekday && (daysOfMonth & 0xFFFFFFFEL) == 0xFFFFFFFEL);
+        if (everyDay) {
+            return Long.MAX_VALUE;
+        }
+        while (year <= MAX_YEAR) {
+            long clear = ~getDaysOfMonth(year, mon) & (-1L >>> (63 - getLastDayOfMonth(mon, year))) & ~1L;
+            int t = nextSetBit(clear, day);
+            if (t != -1) {
+                return toEpochDay(year, mon, t) * SECONDS_PER_DAY;
+            }
+            day = 1;
+            if (++mon > 12) {
+                mon = 1;
+                year++;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Indicates whether the wall-clock time satisfies the expression.
+     */
+    boolean isLocalMatch(long local) {
+
+        int secOfDay = Math.floorMod(local, SECONDS_PER_DAY);
+        if ((seconds & (1L << (secOfDay % 60))) == 0
+            || (minutes & (1L << (secOfDay / 60 % 60))) == 0
+            || (hours & (1L << (secOfDay / 3600))) == 0) {
+            return false;
+        }
+        return isMatchedDay(Math.floorDiv(local, SECONDS_PER_DAY));
+    }
+
+    /**
+     * Returns the count of the wall-clock times in [from, to) which satisfy the expression.
+     */
+    long countLocalMatches(long from, long to) {
+
+        long fromDay = Math.floorDiv(from, SECONDS_PER_DAY);
+        long toDay = Math.floorDiv(to, SECONDS_PER_DAY);
+        int fromSec = Math.floorMod(from, SECONDS_PER_DAY);
+        int toSec = Math.floorMod(to, SECONDS_PER_DAY);
+
+        if (fromDay == toDay) {
+            return isMatchedDay(fromDay) ? countTimesOfDay(toSec) - countTimesOfDay(fromSec) : 0L;
+        }
+        long count = countMatchedDays(fromDay + 1, toDay) * countTimesOfDay(SECONDS_PER_DAY);
+        if (isMatchedDay(fromDay)) {
+            count += countTimesOfDay(SECONDS_PER_DAY) - countTimesOfDay(fromSec);
+        }
+        if (isMatchedDay(toDay)) {
+            count += countTimesOfDay(toSec);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the count of the times of a day, which are earlier than the given second of the day, satisfying the
+     * hour, minute and second fields.
+     */
+    private long countTimesOfDay(int secOfDay) {
+
+        int hr = secOfDay / 3600;
+        int min = secOfDay / 60 % 60;
+        int sec = secOfDay % 60;
+        long perMinute = Long.bitCount(seconds);
+        long perHour = Long.bitCount(minutes) * perMinute;
+
+        long count = Long.bitCount(hours & ~(-1L << hr)) * perHour;
+        if (hr < 24 && (hours & (1L << hr)) != 0) {
+            count += Long.bitCount(minutes & ~(-1L << min)) * perMinute;
+            if ((minutes & (1L << min)) != 0) {
+                count += Long.bitCount(seconds & ~(-1L << sec));
+            }
+        }
+        return count;
+    }
+
+    private boolean isMatchedDay(long epochDay) {
+
+        int date = toCivilDate(epochDay);
+        int year = civilYear(date);
+        int mon = civilMonth(date);
+        return year >= 0 && year <= MAX_YEAR
+               && (years[year >>> 6] & (1L << year)) != 0
+               && (months & (1L << mon)) != 0
+               && (getDaysOfMonth(year, mon) & (1L << civilDay(date))) != 0;
+    }
+
+    /**
+     * Returns the count of the days in [fromDay, toDay) which satisfy the day, month and year fields.
+     */
+    private long countMatchedDays(long fromDay, long toDay) {
+
+        if (fromDay >= toDay) {
+            return 0L;
+        }
+        int from = toCivilDate(fromDay);
+        int to = toCivilDate(toDay);
+        int year = civilYear(from);
+        int mon = civilMonth(from);
+        // the bitmasks of the days in [fromDay, toDay) of the first and the last month
+        long firstDays = -1L << civilDay(from);
+        long lastDays = ~(-1L << civilDay(to));
+
+        long count = 0L;
+        int lastYear = Math.min(civilYear(to), MAX_YEAR);
+        while (year <= lastYear) {
+            boolean isLast = year == civilYear(to) && mon == civilMonth(to);
+            if (year >= 0 && (years[year >>> 6] & (1L << year)) != 0 && (months & (1L << mon)) != 0) {
+                long days = getDaysOfMonth(year, mon) & firstDays;
+                if (isLast) {
+                    days &= lastDays;
+                }
+                count += Long.bitCount(days);
+            }
+            if (isLast) {
+                break;
+            }
+            firstDays = -1L;
+            if (++mon > 12) {
+                mon = 1;
+                year++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the bitmask of the days in the month which satisfy the day-of-month and day-of-week fields, including
+     * the 'L', 'W' and '#' options, and aren't excluded by the exclusion calendar. Bit n is set when the day n is
+     * included.
+     */
+    long getDaysOfMonth(int year, int mon) {
+
+        int ldom = getLastDayOfMonth(mon, year);
+        int firstDow = dayOfWeek(toEpochDay(year, mon, 1));
+        long days = daysOfMonthTable[(ldom - 28) * 7 + firstDow - 1];
+        var calendar = exclusionCalendar;
+        return calendar == null ? days : days & ~calendar.getExcludedDays(year, mon);
+    }
+
+    /**
+     * Returns the bitmask of the days of a month, which has the given last day and starts from the given day of the
+     * week, satisfying the day-of-month and day-of-week fields.
+     */
+    private long computeDaysOfMonth(int ldom, int firstDow) {
+
+        if (!isNoSpec(DAY_OF_MONTH)) {
+            if (lastdayOfMonth || nearestWeekday) {
+                int day = lastdayOfMonth ? ldom - lastdayOffset : firstSetBit(daysOfMonth);
+                if (day < 1 || day > ldom) {
+                    return 0L;
+                }
+                if (nearestWeekday) {
+                    int dow = (firstDow + day - 2) % 7 + 1;
+                    if (dow == Calendar.SATURDAY) {
+                        day = day == 1 ? day + 2 : day - 1;
+                    } else if (dow == Calendar.SUNDAY) {
+                        day = day == ldom ? day - 2 : day + 1;
+                    }
+                }
+                return 1L << day;
+            }
+            return daysOfMonth & (-1L >>> (63 - ldom));
+        }
+
+        if (lastdayOfWeek || nthdayOfWeek != 0) {
+            int first = 1 + Math.floorMod(firstSetBit(daysOfWeek) - firstDow, 7);
+            int day = lastdayOfWeek ? first + (ldom - first) / 7 * 7 : first + (nthdayOfWeek - 1) * 7;
+            return day > ldom ? 0L : 1L << day;
+        }
+
+        long mask = 0L;
+        for (int dow = firstSetBit(daysOfWeek); dow != -1; dow = nextSetBit(daysOfWeek, dow + 1)) {
+            for (int day = 1 + Math.floorMod(dow - firstDow, 7); day <= ldom; day += 7) {
+                mask |= 1L << day;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the wall-clock time to start searching from for the fire times which are equal to or later than the
+     * given instant. Right after a gap, the search starts from the skipped wall-clock times so the fire times in the
+     * gap aren't lost. Right after an overlap, the repeated wall-clock times are skipped since they have fired.
+     */
+    static long toLocalSearchStart(long epochSecond, ZoneTransitions transitions) {
+
+        int index = transitions.indexAt(epochSecond);
+        if (index >= 0 && epochSecond < transitions.instant(index) + transitions.length(index)) {
+            int before = transitions.offsetBefore(index);
+            return transitions.isGap(index) ? epochSecond + before : transitions.instant(index) + before;
+        }
+        return epochSecond + transitions.offsetAfter(index);
+    }
+
+    /**
+     * Indicates whether the instant is right after a gap, where it's the fire time of both a wall-clock time in the
+     * gap and the one after the gap.
+     *
+     * @param index the index of the last transition at or before the instant
+     */
+    static boolean isInGap(long epochSecond, int index, ZoneTransitions transitions) {
+
+        return index >= 0
+               && transitions.isGap(index)
+               && epochSecond < transitions.instant(index) + transitions.length(index);
+    }
+
+    /**
+     * Returns the first fire time from the given instant to the end of the period right after the gap, or NO_TIME
+     * if there isn't one. The wall-clock times in the gap and the ones after the gap are searched separately, their
+     * instants interleave unless the length of the gap is a multiple of the fields, e.g. a gap of 30 minutes.
+     */
+    long firstInGap(long epochSecond, int index, ZoneTransitions transitions) {
+
+        long at = transitions.instant(index);
+        int length = transitions.length(index);
+        long offset = epochSecond - at;
+        long first = length;
+        for (long from : new long[]{transitions.localStart(index), transitions.localEnd(index)}) {
+            long match = nextLocalMatch(from + offset);
+            if (match != NO_TIME && match - from < first) {
+                first = match - from;
+            }
+        }
+        return first < length ? at + first : NO_TIME;
+    }
+
+    /**
+     * Returns the last fire time from the start of the period right after the gap to the given instant, or NO_TIME
+     * if there isn't one.
+     *
+     * @see #firstInGap(long, int, ZoneTransitions)
+     */
+    long lastInGap(long epochSecond, int index, ZoneTransitions transitions) {
+
+        long at = transitions.instant(index);
+        long offset = epochSecond - at;
+        long last = -1;
+        for (long from : new long[]{transitions.localStart(index), transitions.localEnd(index)}) {
+            long match = prevLocalMatch(from + offset);
+            if (match != NO_TIME && match >= from && match - from > last) {
+                last = match - from;
+            }
+        }
+        return last >= 0 ? at + last : NO_TIME;
+    }
+
+    /**
+     * Returns the days since 1970-01-01 of the date in the proleptic Gregorian calendar.
+     */
+    static long toEpochDay(int year, int mon, int day) {
+
+        // see http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+        long y = mon <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (mon + (mon > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Returns the date of the days since 1970-01-01, packed as {@code year << 9 | month << 5 | day}.
+     */
+    static int toCivilDate(long epochDay) {
+
+        // see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int mon = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (mon <= 2 ? 1 : 0));
+        return year << 9 | mon << 5 | day;
+    }
+
+    static int civilYear(int date) {
+
+        return date >> 9;
+    }
+
+    static int civilMonth(int date) {
+
+        return (date >> 5) & 0xF;
+    }
+
+    static int civilDay(int date) {
+
+        return date & 0x1F;
+    }
+
+    /**
+     * Returns the day of week of the days since 1970-01-01, 1 (Sunday) to 7 (Saturday) as the expression uses.
+     */
+    static int dayOfWeek(long epochDay) {
+
+        // 1970-01-01 is a Thursday
+        return Math.floorMod(epochDay + 4, 7) + 1;
+    }
+
+    /**
+     * Returns the last wall-clock time which is equal to or earlier than the given one and satisfies the
+     * expression, or {@link #NO_TIME} if there isn't one. It mirrors {@link #nextLocalMatch(long)}.
+     */
+    long prevLocalMatch(long local) {
+
+        long epochDay = Math.floorDiv(local, SECONDS_PER_DAY);
+        int secOfDay = Math.floorMod(local, SECONDS_PER_DAY);
+        int date = toCivilDate(epochDay);
+        int year = civilYear(date);
+        int mon = civilMonth(date);
+        int day = civilDay(date);
+        int hr = secOfDay / 3600;
+        int min = secOfDay / 60 % 60;
+        int sec = secOfDay % 60;
+
+        if (year > MAX_YEAR) {
+            year = MAX_YEAR;
+            mon = 12;
+            day = 31;
+            hr = 23;
+            min = sec = 59;
+        }
+
+        // when a field runs out of values, the next higher field is decreased and the lower ones are set to their
+        // last values. day 31 is used as the last day of any month since the day bitmask never goes beyond it.
+        while (true) {
+            int t = prevSetBit(years, year);
+            if (t == -1) {
+                return NO_TIME;
+            }
+            if (t != year) {
+                year = t;
+                mon = 12;
+                day = 31;
+                hr = 23;
+                min = sec = 59;
+            }
+
+            t = prevSetBit(months, mon);
+            if (t == -1) {
+                year--;
+                mon = 12;
+                day = 31;
+                hr = 23;
+                min = sec = 59;
+                continue;
+            }
+            if (t != mon) {
+                mon = t;
+                day = 31;
+                hr = 23;
+                min = sec = 59;
+            }
+
+            t = prevSetBit(getDaysOfMonth(year, mon), day);
+            if (t == -1) {
+                mon--;
+                day = 31;
+                hr = 23;
+                min = sec = 59;
+                continue;
+            }
+            if (t != day) {
+                day = t;
+                hr = 23;
+                min = sec = 59;
+            }
+
+            t = prevSetBit(hours, hr);
+            if (t == -1) {
+                day--;
+                hr = 23;
+                min = sec = 59;
+                continue;
+            }
+            if (t != hr) {
+                hr = t;
+                min = sec = 59;
+            }
+
+            t = prevSetBit(minutes, min);
+            if (t == -1) {
+                hr--;
+                min = sec = 59;
+                continue;
+            }
+            if (t != min) {
+                min = t;
+                sec = 59;
+            }
+
+            t = prevSetBit(seconds, sec);
+            if (t == -1) {
+                min--;
+                sec = 59;
+                continue;
+            }
+
+            return toEpochDay(year, mon, day) * SECONDS_PER_DAY + hr * 3600 + min * 60 + t;
+        }
+    }
+
     /**
-     * NOT YET IMPLEMENTED: Returns the time before the given time
-     * that the <code>CronExpression</code> matches.
+     * Returns the wall-clock time to start searching backward from for the fire times which are equal to or earlier
+     * than the given instant. Right after an overlap, the repeated wall-clock times have fired at the earlier offset,
+     * so the search starts from the end of them.
+     */
+    private static long toLocalReverseSearchStart(long epochSecond, ZoneTransitions transitions) {
+
+        int index = transitions.indexAt(epochSecond);
+        if (index >= 0 && !transitions.isGap(index)
+            && epochSecond < transitions.instant(index) + transitions.length(index)) {
+            return transitions.instant(index) + transitions.offsetBefore(index) - 1;
+        }
+        return epochSecond + transitions.offsetAfter(index);
+    }
+
+    /**
+     * Returns the last time <I>before</I> the given time that the
+     * <code>CronExpression</code> matches.
+     * <P>
+     * It's the reverse of {@link #getTimeAfter(Date)}, so the wall-clock times repeated by an overlap fire at the
+     * later offset as well. Within a few days of a transition of the zone, the fire time is searched by
+     * {@link #getTimeAfter(Date)}.
+     *
+     * @param endTime the date/time at which to begin the backward search
+     * @return the last fire time before the given time, or null if there isn't one
      */
     public Date getTimeBefore(Date endTime) {
-        // FUTURE_TODO: implement QUARTZ-423
-        return null;
+
+        ZoneId zone = getTimeZone().toZoneId();
+        long before = previousFireEpochMillis(endTime.getTime(), zone);
+        ZoneTransitions transitions = ZoneTransitions.of(zone);
+        if (synthetic
+            || (!isNearTransition(Math.floorDiv(endTime.getTime() - 1, 1000), transitions)
+                && (before == -1 || !isNearTransition(Math.floorDiv(before, 1000), transitions)))) {
+            return before == -1 ? null : new Date(before);
+        }
+        return getTimeBeforeByTimeAfter(endTime.getTime(), before, transitions);
     }
 
     /**
-     * NOT YET IMPLEMENTED: Returns the final time that the
-     * <code>CronExpression</code> will match.
+     * Searches the last fire time of {@link #getTimeAfter(Date)} before the end. The fire times away from the
+     * transitions are the same for both searches, so it starts from the last one of them before the end, and
+     * searches by halves the last second the fire time after which is still before the end.
+     *
+     * @param before the last fire time before the end by {@link #previousFireEpochMillis(long, ZoneId)}
+     */
+    private Date getTimeBeforeByTimeAfter(long endEpochMillis, long before, ZoneTransitions transitions) {
+
+        ZoneId zone = getTimeZone().toZoneId();
+        long last = Math.floorDiv(endEpochMillis - 1, 1000);
+        // the second before the transitions, in case there isn't a fire time away from them.
+        long from = last - 6 * SECONDS_PER_DAY;
+        while (before != -1 && isNearTransition(Math.floorDiv(before, 1000), transitions)) {
+            int index = transitions.indexAt(Math.floorDiv(before, 1000) + 3 * SECONDS_PER_DAY);
+            from = transitions.instant(index) - 3 * SECONDS_PER_DAY - 1;
+            before = previousFireEpochMillis((from + 1) * 1000, zone);
+        }
+        long low = before == -1 ? from : Math.floorDiv(before, 1000) - 1;
+        if (timeAfter(low) >= endEpochMillis) {
+            return null;
+        }
+        // the fire time after the low one is before the end, the one after the high one isn't.
+        long high = last;
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (timeAfter(middle) < endEpochMillis) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return new Date(timeAfter(low));
+    }
+
+    /**
+     * Returns {@link #getTimeAfter(Date)} of the second in milliseconds, or {@link Long#MAX_VALUE} if there isn't one.
+     */
+    private long timeAfter(long epochSecond) {
+
+        Date time = getTimeAfter(new Date(epochSecond * 1000));
+        return time == null ? Long.MAX_VALUE : time.getTime();
+    }
+
+    /**
+     * Returns the final time that the <code>CronExpression</code> will
+     * match, or null if the year field isn't bounded, which means it never ends.
      */
     public Date getFinalFireTime() {
-        // FUTURE_TODO: implement QUARTZ-423
-        return null;
+
+        if (isAllSpec(YEAR)) {
+            return null;
+        }
+        return getTimeBefore(new Date(Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the last fire time <I>before</I> the given instant, evaluated in the given time zone. The search goes
+     * backward over the parsed fields the same way {@link #nextFireEpochMillis(long, ZoneId)} goes forward, and the
+     * daylight saving gaps and overlaps are handled the same way as well.
+     *
+     * @param beforeEpochMillis the instant, in milliseconds since the epoch, to begin the backward search before
+     * @param zone              the time zone the expression is evaluated in
+     * @return the last fire time in milliseconds since the epoch, or -1 if there isn't one
+     */
+    public long previousFireEpochMillis(long beforeEpochMillis, ZoneId zone) {
+
+        // the fire times are whole seconds, so the last possible one is the second before the given instant.
+        long end = Math.min(Math.floorDiv(beforeEpochMillis - 1, 1000), END_OF_MAX_YEAR);
+        if (end < BEFORE_YEAR_ZERO) {
+            return -1;
+        }
+
+        ZoneTransitions transitions = ZoneTransitions.of(zone);
+        long local = toLocalReverseSearchStart(end, transitions);
+        while (true) {
+            long match = prevLocalMatch(local);
+            if (match == NO_TIME) {
+                return -1;
+            }
+            long instant = transitions.toEpochSecond(match);
+            if (instant <= end) {
+                int index = transitions.indexAt(instant);
+                if (isInGap(instant, index, transitions)) {
+                    long windowEnd = transitions.instant(index) + transitions.length(index) - 1;
+                    instant = lastInGap(Math.min(end, windowEnd), index, transitions);
+                }
+                return instant * 1000;
+            }
+            local = match - 1;
+        }
+    }
+
+    /**
+     * Returns the last fire time <I>before</I> the given date/time, evaluated in its time zone.
+     *
+     * @param before the date/time to begin the backward search before
+     * @return the last fire time in the same time zone, or null if there isn't one
+     * @see #previousFireEpochMillis(long, ZoneId)
+     */
+    public ZonedDateTime previous(ZonedDateTime before) {
+
+        long previous = previousFireEpochMillis(before.toInstant().toEpochMilli(), before.getZone());
+        if (previous == -1) {
+            return null;
+        }
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(previous), before.getZone());
     }
 
-    protected boolean isLeapYear(int year) {
+    /**
+     * Returns the fire times from {@code fromMillis} (inclusive) to {@code toMillis} (exclusive), evaluated in the
+     * given time zone. The stream is backed by a cursor which keeps the field values and the zone offset between
+     * the fire times, so it's much cheaper than calling {@link #nextFireEpochMillis(long, ZoneId)} in a loop.
+     *
+     * @param fromMillis the start of the time range, in milliseconds since the epoch
+     * @param toMillis   the end of the time range, in milliseconds since the epoch
+     * @param zone       the time zone the expression is evaluated in
+     * @return the ordered fire times in milliseconds since the epoch
+     */
+    public LongStream fireTimes(long fromMillis, long toMillis, ZoneId zone) {
+
+        FireTimeCursor cursor = new FireTimeCursor(this, Math.max(fromMillis, Long.MIN_VALUE + 1) - 1, zone);
+        return StreamSupport.longStream(
+            Spliterators.spliteratorUnknownSize(
+                cursor,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED
+                    | Spliterator.NONNULL | Spliterator.IMMUTABLE),
+            false).takeWhile(t -> t < toMillis);
+    }
+
+    /**
+     * Returns the count of the fire times from {@code fromMillis} (inclusive) to {@code toMillis} (exclusive),
+     * evaluated in the given time zone. The fire times aren't enumerated, the count is computed from the count of
+     * the matched days in each month and the count of the matched times in a day. Only the short periods right
+     * after the daylight saving transitions are walked through, since the wall-clock times don't map to the instants
+     * one by one there.
+     *
+     * @param fromMillis the start of the time range, in milliseconds since the epoch
+     * @param toMillis   the end of the time range, in milliseconds since the epoch
+     * @param zone       the time zone the expression is evaluated in
+     * @return the count of the fire times, the same as {@code fireTimes(fromMillis, toMillis, zone).count()}
+     */
+    public long countFireTimes(long fromMillis, long toMillis, ZoneId zone) {
+
+        // the fire times are whole seconds
+        long from = Math.max(Math.ceilDiv(fromMillis, 1000), BEFORE_YEAR_ZERO);
+        long to = Math.min(Math.ceilDiv(toMillis, 1000), END_OF_MAX_YEAR);
+        if (from >= to) {
+            return 0L;
+        }
+
+        ZoneTransitions transitions = ZoneTransitions.of(zone);
+        long count = 0L;
+        long cur = from;
+        int index = transitions.indexAt(from);
+        if (index < 0 || from >= transitions.instant(index) + transitions.length(index)) {
+            index++;
+        }
+        int last = transitions.indexAt(to - 1);
+        for (; index <= last; index++) {
+            long at = transitions.instant(index);
+            if (cur < at) {
+                int offset = transitions.offsetBefore(index);
+                count += countLocalMatches(cur + offset, at + offset);
+                cur = at;
+            }
+            // right after a transition, a wall-clock time moved out of a gap shares the instant with the one after
+            // the gap, and the repeated wall-clock times of an overlap don't fire again.
+            long end = Math.min(at + transitions.length(index), to);
+            if (cur < end) {
+                count += new FireTimeCursor(this, cur * 1000 - 1, zone).countBefore(end * 1000);
+                cur = end;
+            }
+        }
+        if (cur < to) {
+            int offset = transitions.offsetAt(cur);
+            count += countLocalMatches(cur + offset, to + offset);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the next {@code n} fire times <I>after</I> the given instant, evaluated in the time zone of this
+     * expression.
+     *
+     * @see #nextN(long, int, ZoneId)
+     */
+    public long[] nextN(long from, int n) {
+
+        return nextN(from, n, getTimeZone().toZoneId());
+    }
+
+    /**
+     * Returns the next {@code n} fire times <I>after</I> the given instant, evaluated in the given time zone.
+     *
+     * @param from the instant, in milliseconds since the epoch, to begin the search after
+     * @param n    the count of the fire times to return
+     * @param zone the time zone the expression is evaluated in
+     * @return the fire times in milliseconds since the epoch, fewer than {@code n} if the expression runs out
+     */
+    public long[] nextN(long from, int n, ZoneId zone) {
+
+        if (n < 0) {
+            throw new IllegalArgumentException("n cannot be negative");
+        }
+        FireTimeCursor cursor = new FireTimeCursor(this, from, zone);
+        long[] times = new long[n];
+        int count = 0;
+        while (count < n && cursor.hasNext()) {
+            times[count++] = cursor.nextLong();
+        }
+        return count == n ? times : Arrays.copyOf(times, count);
+    }
+
+    protected static boolean isLeapYear(int year) {
 
         return ((year % 4 == 0 && year % 100 != 0) || (year % 400 == 0));
     }
 
-    protected int getLastDayOfMonth(int monthNum, int year) {
+    protected static int getLastDayOfMonth(int monthNum, int year) {
 
         switch (monthNum) {
             case 1:
@@ -1658,14 +3105,254 @@ public final class CronExpression implements Serializable, Cloneable {
         }
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    //
+    // Binary Encoding Functions
+    //
+    ////////////////////////////////////////////////////////////////////////////
+
+    static final short BINARY_MAGIC = 0x4358; // "CX"
+    static final byte BINARY_VERSION = 1;
+
+    private static final int FLAG_LAST_DAY_OF_WEEK = 1;
+    private static final int FLAG_LAST_DAY_OF_MONTH = 2;
+    private static final int FLAG_NEAREST_WEEKDAY = 4;
+    private static final int FLAG_EXCLUSION_CALENDAR = 8;
+
+    /**
+     * Returns the compact binary form of the parsed expression, which is loaded by {@link #fromBytes(byte[])}
+     * without parsing the expression again. It starts with a magic number and the version, followed by the
+     * time zone, the expression string, the field bitmasks as variable-length integers, the years as ranges and the
+     * 'L', 'W' and '#' options. It's usually less than 1/10 of the Java serialization.
+     *
+     * @return the binary form
+     */
+    public byte[] toBytes() {
+
+        return toBytes(timeZone == null ? null : timeZone.getID());
+    }
+
+    byte[] toBytes(String zoneId) {
+
+        var bytes = new ByteArrayOutputStream(64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeShort(BINARY_MAGIC);
+            out.writeByte(BINARY_VERSION);
+            out.writeUTF(zoneId == null ? "" : zoneId);
+            writeFields(out);
+        } catch (IOException e) {
+            // never happens, it's in memory.
+            throw new GeneralException(ErrorSeverity.Critical, "Failed to encode the cron expression.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Loads the expression from the binary form returned by {@link #toBytes()}.
+     *
+     * @param bytes the binary form
+     * @return the expression, with the time zone and the exclusion calendar it was encoded with
+     * @throws IOException if it isn't a binary form of a cron expression, or it's of a version not supported
+     */
+    public static CronExpression fromBytes(byte[] bytes) throws IOException {
+
+        return decode(bytes).expression();
+    }
+
+    /**
+     * The expression loaded from the binary form, and the ID of the time zone it was encoded with, or an empty
+     * string if there wasn't one.
+     */
+    record Decoded(CronExpression expression, String zoneId) {
+    }
+
+    static Decoded decode(byte[] bytes) throws IOException {
+
+        var in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readShort() != BINARY_MAGIC) {
+            throw new StreamCorruptedException("The bytes aren't a binary form of a cron expression.");
+        }
+        int version = in.readByte();
+        if (version != BINARY_VERSION) {
+            throw new IOException(String.format(
+                "The binary form of the cron expression is of the version %d, which isn't supported.", version));
+        }
+        String zoneId = in.readUTF();
+        var expression = new CronExpression(in);
+        if (in.available() > 0) {
+            throw new StreamCorruptedException("There are unexpected bytes after the cron expression.");
+        }
+        if (!zoneId.isEmpty()) {
+            try {
+                expression.timeZone = TimeZone.getTimeZone(ZoneId.of(zoneId));
+            } catch (DateTimeException e) {
+                throw new IOException(String.format("The time zone (%s) of the cron expression is unknown.", zoneId), e);
+            }
+        }
+        return new Decoded(expression, zoneId);
+    }
+
+    private CronExpression(DataInput in) throws IOException {
+
+        this.cronExpression = in.readUTF();
+        seconds = readMask(in, 0xFFFFFFFFFFFFFFFL);
+        minutes = readMask(in, 0xFFFFFFFFFFFFFFFL);
+        hours = readMask(in, 0xFFFFFFL);
+        daysOfMonth = readMask(in, 0xFFFFFFFEL);
+        months = readMask(in, 0x1FFEL);
+        daysOfWeek = readMask(in, 0xFEL);
+
+        years = new long[(MAX_YEAR >>> 6) + 1];
+        int year = -1;
+        for (long ranges = readVarLong(in); ranges > 0; ranges--) {
+            long from = year + 1 + readVarLong(in);
+            long to = from + readVarLong(in);
+            if (to > 9999) {
+                throw new StreamCorruptedException("The years of the cron expression are out of range.");
+            }
+            for (year = (int) from; year <= to; year++) {
+                addToField(YEAR, year);
+            }
+            year = (int) to;
+        }
+
+        allSpecFields = in.readUnsignedByte();
+        noSpecFields = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        lastdayOfWeek = (flags & FLAG_LAST_DAY_OF_WEEK) != 0;
+        lastdayOfMonth = (flags & FLAG_LAST_DAY_OF_MONTH) != 0;
+        nearestWeekday = (flags & FLAG_NEAREST_WEEKDAY) != 0;
+        nthdayOfWeek = in.readUnsignedByte();
+        lastdayOffset = in.readUnsignedByte();
+        if (nthdayOfWeek > 5 || lastdayOffset > 30) {
+            throw new StreamCorruptedException("The day options of the cron expression are out of range.");
+        }
+        if ((flags & FLAG_EXCLUSION_CALENDAR) != 0) {
+            exclusionCalendar = ExclusionCalendar.readFrom(in);
+        }
+
+        expressionParsed = true;
+        buildDaysOfMonthTable();
+    }
+
+    private void writeFields(DataOutput out) throws IOException {
+
+        out.writeUTF(cronExpression);
+        writeVarLong(out, seconds);
+        writeVarLong(out, minutes);
+        writeVarLong(out, hours);
+        writeVarLong(out, daysOfMonth);
+        writeVarLong(out, months);
+        writeVarLong(out, daysOfWeek);
+
+        // the years as the ranges of the set bits, each one is the distance from the previous range and the length.
+        var ranges = new ArrayList<int[]>();
+        for (int from = nextSetBit(years, 0); from != -1; ) {
+            int to = nextClearBit(years, from);
+            ranges.add(new int[]{from, to - 1});
+            from = nextSetBit(years, to);
+        }
+        writeVarLong(out, ranges.size());
+        int year = -1;
+        for (var range : ranges) {
+            writeVarLong(out, range[0] - year - 1);
+            writeVarLong(out, range[1] - range[0]);
+            year = range[1];
+        }
+
+        out.writeByte(allSpecFields);
+        out.writeByte(noSpecFields);
+        out.writeByte((lastdayOfWeek ? FLAG_LAST_DAY_OF_WEEK : 0)
+                      | (lastdayOfMonth ? FLAG_LAST_DAY_OF_MONTH : 0)
+                      | (nearestWeekday ? FLAG_NEAREST_WEEKDAY : 0)
+                      | (exclusionCalendar != null ? FLAG_EXCLUSION_CALENDAR : 0));
+        out.writeByte(nthdayOfWeek);
+        out.writeByte(lastdayOffset);
+        if (exclusionCalendar != null) {
+            exclusionCalendar.writeTo(out);
+        }
+    }
+
+    private static long readMask(DataInput in, long valid) throws IOException {
+
+        long mask = readVarLong(in);
+        if ((mask & ~valid) != 0) {
+            throw new StreamCorruptedException("The field values of the cron expression are out of range.");
+        }
+        return mask;
+    }
+
+    /**
+     * Writes the unsigned value in 7-bit groups, the high bit of a byte is set when more bytes follow.
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("The variable-length integer is too long.");
+    }
+
+    /**
+     * Serialized as the binary form, so it's loaded without parsing the expression again.
+     */
+    private Object writeReplace() {
+
+        return new BinaryForm(toBytes());
+    }
+
+    /**
+     * Reads the instances serialized before the binary form is used.
+     */
     private void readObject(java.io.ObjectInputStream stream)
         throws java.io.IOException, ClassNotFoundException {
 
         stream.defaultReadObject();
         try {
             buildExpression(cronExpression);
-        } catch (Exception ignore) {
-        } // never happens
+        } catch (ParseException e) {
+            var ex = new InvalidObjectException(
+                String.format("Cron expression (%s) cannot be parsed.", cronExpression));
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    private static final class BinaryForm implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+
+        BinaryForm(byte[] bytes) {
+
+            this.bytes = bytes;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+
+            try {
+                return fromBytes(bytes);
+            } catch (IOException e) {
+                var ex = new InvalidObjectException(e.getMessage());
+                ex.initCause(e);
+                throw ex;
+            }
+        }
     }
 
     @Override
@@ -2,8 +2,10 @@ package me.fengyj.common.scheduler;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import static me.fengyj.common.scheduler.CronExpressionDescriptor.CronExpressionPart.*;
@@ -11,6 +13,10 @@ import static me.fengyj.common.scheduler.CronExpressionDescriptor.DescriptionTyp
 
 /**
  * https://github.com/voidburn/cron-expression-descriptor
+ * <p>
+ * The descriptions are cached by the expression, the options and the description type, see
+ * {@link #describe(String, Options, DescriptionType)}. It's safe to use an instance from multiple threads. The
+ * descriptions of a subclass, which can override the protected methods, aren't cached.
  */
 public class CronExpressionDescriptor {
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -27,20 +33,8 @@ public class CronExpressionDescriptor {
     private static final String  EMPTY_STRING        = "";
     private static final String  LOCALIZATION_BUNDLE = "localization";
 
-    // Patterns
-    private final Pattern   specialCharactersSearchPattern       = Pattern.compile("[/\\-,*]");
-    private final Pattern   lastDayOffsetPattern                 = Pattern.compile("L-(\\d{1,2})");
-    private final Pattern   weekDayNumberMatches                 = Pattern.compile("(\\d{1,2}W)|(W\\d{1,2})");
-    private final Pattern   yearPattern                          = Pattern.compile("(\\d{4})");
-    private final Pattern   segmentRangesOrMultipleSearchPattern = Pattern.compile("[/\\-,]");
-    private final Pattern   segmentAnyOrMultipleSearchPattern    = Pattern.compile("[*,]");
-    private final RxReplace stripTrailingChars                   = new RxReplace("[\\,\\s]*$") {
-        @Override
-        public String replacement() {
-            // Strip all matches
-            return "";
-        }
-    };
+    // the count of the descriptions kept in the cache
+    public static final int DESCRIPTION_CACHE_CAPACITY = 65536;
 
     // Data
     public enum DescriptionType {
@@ -55,12 +49,27 @@ public class CronExpressionDescriptor {
         YEAR
     }
 
+    // the key of the cached descriptions. the options are copied as they're mutable.
+    private record DescriptionKey(
+        String expression,
+        boolean throwExceptionOnParseError,
+        boolean verbose,
+        boolean use24HourTimeFormat,
+        boolean useJavaEeScheduleExpression,
+        DescriptionType type) {
+
+        Options options() {
+            return new Options(throwExceptionOnParseError, verbose, use24HourTimeFormat, useJavaEeScheduleExpression);
+        }
+    }
+
+    private static final Map<DescriptionKey, String> descriptionCache = new ConcurrentHashMap<>();
+
     // State
-    private String         expression;
-    private String[]       expressionParts;
-    private boolean        parsed;
-    private Options options;
-    private boolean        use24HourTimeFormat;
+    private volatile String  expression;
+    private volatile Options options;
+    // the parts of the expression being described, see generate()
+    private String[]         expressionParts;
 
     //endregion
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -75,7 +84,6 @@ public class CronExpressionDescriptor {
         }
 
         this.options = options;
-        this.use24HourTimeFormat = options.isUse24HourTimeFormat();
     }
 
     public Options getOptions() {
@@ -83,7 +91,7 @@ public class CronExpressionDescriptor {
     }
 
     public boolean isUse24HourTimeFormat() {
-        return use24HourTimeFormat;
+        return options.isUse24HourTimeFormat();
     }
 
     //endregion
@@ -120,10 +128,8 @@ public class CronExpressionDescriptor {
             throw new IllegalArgumentException("The expression to be described cannot be null or empty");
         }
 
-        this.parsed = false;
         this.expression = expression;
         this.options = options;
-        this.use24HourTimeFormat = options.isUse24HourTimeFormat();
     }
 
     //endregion
@@ -159,10 +165,8 @@ public class CronExpressionDescriptor {
             throw new IllegalArgumentException("Options cannot be null when setting a new expression");
         }
 
-        this.parsed = false;
         this.expression = expression;
         this.options = options;
-        this.use24HourTimeFormat = options.isUse24HourTimeFormat();
     }
 
     /**
@@ -181,18 +185,45 @@ public class CronExpressionDescriptor {
      * @return The cron expression description
      */
     public String getDescription(final DescriptionType type) {
+        final String expression = this.expression;
+        final Options options = this.options;
+
         // Sanity checks (required for the empty constructor)
         if (expression == null || expression.isEmpty() || options == null) {
             throw new IllegalArgumentException("The expression to parse and the options to use cannot be null or empty");
         }
 
+        if (getClass() == CronExpressionDescriptor.class) {
+            return describe(expression, options, type);
+        }
+
+        // a subclass can override how the parts are described, so its descriptions are generated every time.
+        synchronized (this) {
+            return generate(expression, options, type);
+        }
+    }
+
+    /**
+     * Generates the description without caching it
+     *
+     * @param expression The cron expression to describe
+     * @param options    The options to use, it's not modified or kept
+     * @param type       Which part(s) of the expression to describe
+     * @return The cron expression description
+     */
+    private static String generateDescription(final String expression, final Options options, final DescriptionType type) {
+        return new CronExpressionDescriptor().generate(expression, options, type);
+    }
+
+    /**
+     * Generates the description with the protected methods of this instance, which keeps the parts of the expression
+     * until the next call.
+     */
+    private String generate(final String expression, final Options options, final DescriptionType type) {
         String description;
         try {
-            if (!parsed) {
-                final CronExpressionParser parser = new CronExpressionParser(expression, options);
-                expressionParts = parser.parse();
-                parsed = true;
-            }
+            this.options = options;
+            this.expressionParts = new CronExpressionParser(expression, options).parse();
 
             switch (type) {
                 case TIMEOFDAY:
@@ -275,14 +306,14 @@ public class CronExpressionDescriptor {
         final StringBuilder description = new StringBuilder();
 
         // Handle special cases first
-        if (!specialCharactersSearchPattern.matcher(minuteExpression).find() && !specialCharactersSearchPattern.matcher(hourExpression).find() && !specialCharactersSearchPattern.matcher(secondsExpression).find()) {
+        if (!containsAny(minuteExpression, "/-,*") && !containsAny(hourExpression, "/-,*") && !containsAny(secondsExpression, "/-,*")) {
             // Specific time of day (i.e. 10 14)
             description.append("At ").append(formatTime(hourExpression, minuteExpression, secondsExpression));
-        } else if (secondsExpression.equals("") && minuteExpression.contains("-") && !minuteExpression.contains(",") && !specialCharactersSearchPattern.matcher(hourExpression).find()) {
+        } else if (secondsExpression.equals("") && minuteExpression.contains("-") && !minuteExpression.contains(",") && !containsAny(hourExpression, "/-,*")) {
             // Minute range in single hour (i.e. 0-10 11)
             final String[] minuteParts = minuteExpression.split("-");
             description.append(String.format("Every minute between %s and %s", formatTime(hourExpression, minuteParts[0]), formatTime(hourExpression, minuteParts[1])));
-        } else if (secondsExpression.equals("") && hourExpression.contains(",") && !hourExpression.contains("-") && !specialCharactersSearchPattern.matcher(minuteExpression).find()) {
+        } else if (secondsExpression.equals("") && hourExpression.contains(",") && !hourExpression.contains("-") && !containsAny(minuteExpression, "/-,*")) {
             // Hours list with single minute (o.e. 30 6,14,16)
             final String[] hourParts = hourExpression.split(",");
             description.append("At");
@@ -521,17 +552,19 @@ public class CronExpressionDescriptor {
                 description = ", on the last weekday of the month";
                 break;
             default:
-                final Matcher weekDayNumberMatcher = weekDayNumberMatches.matcher(expression);
-                if (weekDayNumberMatcher.matches()) {
-                    final int weekDayNumber = Integer.parseInt(weekDayNumberMatcher.group(0).replace("W", ""));
+                // {1-2 digits}W or W{1-2 digits}
+                final String weekDayNumberDigits = expression.endsWith("W") ? expression.substring(0, expression.length() - 1)
+                                                 : expression.startsWith("W") ? expression.substring(1) : EMPTY_STRING;
+                if (weekDayNumberDigits.length() <= 2 && isDigits(weekDayNumberDigits)) {
+                    final int weekDayNumber = Integer.parseInt(weekDayNumberDigits);
                     final String dayString = weekDayNumber == 1 ? "first weekday" : String.format("weekday nearest day %s", weekDayNumber);
 
                     description = String.format(", on the %s of the month", dayString);
                 } else {
                     // Handle "last day offset" (i.e. L-5:  "5 days before the last day of the month")
-                    final Matcher lastDayOffsetMatcher = lastDayOffsetPattern.matcher(expression);
-                    if (lastDayOffsetMatcher.matches()) {
-                        final String offSetDays = lastDayOffsetMatcher.group(1);
+                    // L-{1-2 digits}
+                    if (expression.startsWith("L-") && expression.length() <= 4 && isDigits(expression.substring(2))) {
+                        final String offSetDays = expression.substring(2);
                         description = String.format(", %s days before the last day of the month", offSetDays);
                     } else {
                         description = getSegmentDescription(expression,
@@ -565,7 +598,7 @@ public class CronExpressionDescriptor {
         return getSegmentDescription(expressionParts[6],
                                      "",
                                      desc -> {
-                                         if (yearPattern.matcher(desc).matches()) {
+                                         if (desc.length() == 4 && isDigits(desc)) {
                                              final Calendar calendar = Calendar.getInstance();
                                              calendar.set(Integer.parseInt(desc), Calendar.JANUARY, 1);
 
@@ -612,7 +645,7 @@ public class CronExpressionDescriptor {
             description = "";
         } else if (expression.equals("*")) {
             description = allDescription;
-        } else if (!segmentRangesOrMultipleSearchPattern.matcher(expression).find()) {
+        } else if (!containsAny(expression, "/-,")) {
             description = String.format(getDescriptionFormat.getFor(expression), getSingleItemDescription.getFor(expression));
         } else if (expression.contains("/")) {
             final String[] segments = expression.split("/");
@@ -626,7 +659,7 @@ public class CronExpressionDescriptor {
                 }
 
                 description += betweenSegmentDescription;
-            } else if (!segmentAnyOrMultipleSearchPattern.matcher(expression).find()) {
+            } else if (!containsAny(expression, "*,")) {
                 // Strip any leading comma
                 final String rangeItemDescription = String.format(getDescriptionFormat.getFor(segments[0]), getSingleItemDescription.getFor(segments[0])).replace(", ", "");
 
@@ -708,7 +741,7 @@ public class CronExpressionDescriptor {
         String period = "";
 
         int hour = Integer.parseInt(hourExpression);
-        if (!use24HourTimeFormat) {
+        if (!options.isUse24HourTimeFormat()) {
             period = (hour >= 12) ? "PM" : "AM";
 
             // Prepend leading space
@@ -753,7 +786,11 @@ public class CronExpressionDescriptor {
             description = description.replace(", every day", "");
 
             // Strip trailing commas and spaces, if any
-            description = stripTrailingChars.replace(description);
+            int end = description.length();
+            while (end > 0 && (description.charAt(end - 1) == ',' || isWhitespace(description.charAt(end - 1)))) {
+                end--;
+            }
+            description = description.substring(0, end);
         }
 
         return description;
@@ -773,7 +810,89 @@ public class CronExpressionDescriptor {
      * @return The requested expression's description
      */
     public static String getDescription(final String expression) {
-        return new CronExpressionDescriptor(expression).getDescription(FULL);
+        return describe(expression, DEFAULT_OPTIONS, FULL);
+    }
+
+    /**
+     * Generates a human readable String for the Cron Expression. The descriptions are cached by the expression, the
+     * options and the type, the cache keeps at most {@link #DESCRIPTION_CACHE_CAPACITY} entries, an arbitrary entry is
+     * dropped when it's full. The descriptions of invalid expressions are cached too if the options don't throw the
+     * parse errors.
+     *
+     * @param expression The cron expression String
+     * @param options    The options to use, the values at the time of the call are used
+     * @param type       Which part(s) of the expression to describe
+     * @return The requested expression's description
+     */
+    public static String describe(final String expression, final Options options, final DescriptionType type) {
+        // Sanity checks
+        if (expression == null || expression.isEmpty()) {
+            throw new IllegalArgumentException("The expression to be described cannot be null or empty");
+        }
+
+        if (options == null || type == null) {
+            throw new IllegalArgumentException("The options and the description type cannot be null");
+        }
+
+        final DescriptionKey key = new DescriptionKey(
+            expression,
+            options.isThrowExceptionOnParseError(),
+            options.isVerbose(),
+            options.isUse24HourTimeFormat(),
+            options.isUseJavaEeScheduleExpression(),
+            type);
+        String description = descriptionCache.get(key);
+        if (description != null) {
+            return description;
+        }
+
+        // generate outside of the map, a parse error is thrown to the caller and isn't cached.
+        description = generateDescription(expression, key.options(), type);
+        if (descriptionCache.size() >= DESCRIPTION_CACHE_CAPACITY) {
+            final Iterator<DescriptionKey> it = descriptionCache.keySet().iterator();
+            while (descriptionCache.size() >= DESCRIPTION_CACHE_CAPACITY && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        descriptionCache.putIfAbsent(key, description);
+
+        return description;
+    }
+
+    private static boolean containsAny(final String value, final String chars) {
+        for (int i = 0; i < value.length(); i++) {
+            if (chars.indexOf(value.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Not empty and only has the digits 0-9
+    private static boolean isDigits(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+
+        return !value.isEmpty();
+    }
+
+    // The same characters as \s of the regular expressions
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // Ends with a 4 digits year
+    private static boolean endsWithYear(final String value) {
+        return value.length() >= 4 && isDigits(value.substring(value.length() - 4));
     }
 
     // Data types
@@ -843,7 +962,7 @@ public class CronExpressionDescriptor {
 
     //endregion
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    public class CronExpressionParser {
+    public static class CronExpressionParser {
         ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
         //region FIELDS
 
@@ -869,7 +988,7 @@ public class CronExpressionDescriptor {
         // ^(?:([0-5]?[0-9],)*)(?:(?!^)[0-5]?[0-9])$            -> Multiple values {0-59},{0-59},{0-59}...
         // ^(?:[0-5]?[0-9])-(?:[0-5]?[0-9])$                    -> Range {0-59}-{0-59}
         // ^(?:[0-5]?[0-9])-(?:[0-5]?[0-9])/(?:[0-5]?[0-9])$    -> Range AND Frequency {0-59}-{0-59}/{0-59}
-        private final Pattern secsAndMinsValidationPattern = Pattern.compile("^(?:\\*|^0)$|^(?:[0-5]?[0-9])$|^(?:(?:\\*|[0-5]?[0-9])/[0-5]?[0-9])$|^(?:([0-5]?[0-9],)*)(?:(?!^)[0-5]?[0-9])$|^(?:[0-5]?[0-9])-(?:[0-5]?[0-9])$|^(?:[0-5]?[0-9])-(?:[0-5]?[0-9])/(?:[0-5]?[0-9])$");
+        private static final Pattern secsAndMinsValidationPattern = Pattern.compile("^(?:\\*|^0)$|^(?:[0-5]?[0-9])$|^(?:(?:\\*|[0-5]?[0-9])/[0-5]?[0-9])$|^(?:([0-5]?[0-9],)*)(?:(?!^)[0-5]?[0-9])$|^(?:[0-5]?[0-9])-(?:[0-5]?[0-9])$|^(?:[0-5]?[0-9])-(?:[0-5]?[0-9])/(?:[0-5]?[0-9])$");
 
         // HOURS in the range and frequencies 0-23
         //
@@ -879,7 +998,7 @@ public class CronExpressionDescriptor {
         // ^(?:(?:[0-1]?[0-9],)|(?:2[0-3],))*(?:(?:(?!^)[0-1]?[0-9])|(?:(?!^)2[0-3]))$                      -> Multiple values {0-23},{0-23},{0-23},...
         // ^(?:(?:[0-1]?[0-9])|(?:2[0-3]))-(?:(?:[0-1]?[0-9])|(?:2[0-3]))$                                  -> Range {0-23}-{0-23}
         // ^(?:(?:[0-1]?[0-9])|(?:2[0-3]))-(?:(?:[0-1]?[0-9])|(?:2[0-3]))/(?:(?:[0-1]?[0-9])|(?:2[0-3]))$   -> Range AND Frequency {0-23}-{0-23}/{0-23}
-        private final Pattern hoursValidationPattern = Pattern.compile("^(?:\\*|^0)$|^(?:[0-1]?[0-9]|2?[0-3])$|^(?:(?:\\*|[0-1]?[0-9])|(?:2[0-3]))/(?:(?:[0-1]?[0-9])|(?:2[0-3]))$|^(?:(?:[0-1]?[0-9],)|(?:2[0-3],))*(?:(?:(?!^)[0-1]?[0-9])|(?:(?!^)2[0-3]))$|^(?:(?:[0-1]?[0-9])|(?:2[0-3]))-(?:(?:[0-1]?[0-9])|(?:2[0-3]))$|^(?:(?:[0-1]?[0-9])|(?:2[0-3]))-(?:(?:[0-1]?[0-9])|(?:2[0-3]))/(?:(?:[0-1]?[0-9])|(?:2[0-3]))$");
+        private static final Pattern hoursValidationPattern = Pattern.compile("^(?:\\*|^0)$|^(?:[0-1]?[0-9]|2?[0-3])$|^(?:(?:\\*|[0-1]?[0-9])|(?:2[0-3]))/(?:(?:[0-1]?[0-9])|(?:2[0-3]))$|^(?:(?:[0-1]?[0-9],)|(?:2[0-3],))*(?:(?:(?!^)[0-1]?[0-9])|(?:(?!^)2[0-3]))$|^(?:(?:[0-1]?[0-9])|(?:2[0-3]))-(?:(?:[0-1]?[0-9])|(?:2[0-3]))$|^(?:(?:[0-1]?[0-9])|(?:2[0-3]))-(?:(?:[0-1]?[0-9])|(?:2[0-3]))/(?:(?:[0-1]?[0-9])|(?:2[0-3]))$");
 
         // DAYS OF MONTH in the range and frequency 1-31
         //
@@ -895,7 +1014,7 @@ public class CronExpressionDescriptor {
         //                                                                                                                            L-{1-30} Nth day befor the end of the month,
         //                                                                                                                            {1-31}W On the nearest day to the Nth of the month
         //                                                                                                                         }
-        private final Pattern domValidationPattern = Pattern.compile("^(?:\\*)$|^(?:[1-9]|1[0-9]|2[0-9]|3[0-1])$|^(?:\\*|[1-9]|1[0-9]|2[0-9]|3[0-1])/(?:[0-9]|1[0-9]|2[0-9]|3[0-1])$|^(?:(?:[1-9],)|(?:1[0-9],)|(?:2[0-9],)|(?:3[0-1],))+(?:(?:[1-9])|(?:1[0-9])|(?:2[0-9])|(?:3[0-1]))$|^(?:(?:[1-9]|1[0-9]|2[0-9]|3[0-1])-(?:[1-9]|1[0-9]|2[0-9]|3[0-1]))$|^(?:(?:[1-9]|1[0-9]|2[0-9]|3[0-1])-(?:[1-9]|1[0-9]|2[0-9]|3[0-1]))/(?:[0-9]|1[0-9]|2[0-9]|3[0-1])$|^(?:(?:L)|(?:LW)|(?:L)-(?:[1-9]|1[0-9]|2[0-9]|30)|(?:(?:[1-9]|1[0-9]|2[0-9]|3[0-1])W))$");
+        private static final Pattern domValidationPattern = Pattern.compile("^(?:\\*)$|^(?:[1-9]|1[0-9]|2[0-9]|3[0-1])$|^(?:\\*|[1-9]|1[0-9]|2[0-9]|3[0-1])/(?:[0-9]|1[0-9]|2[0-9]|3[0-1])$|^(?:(?:[1-9],)|(?:1[0-9],)|(?:2[0-9],)|(?:3[0-1],))+(?:(?:[1-9])|(?:1[0-9])|(?:2[0-9])|(?:3[0-1]))$|^(?:(?:[1-9]|1[0-9]|2[0-9]|3[0-1])-(?:[1-9]|1[0-9]|2[0-9]|3[0-1]))$|^(?:(?:[1-9]|1[0-9]|2[0-9]|3[0-1])-(?:[1-9]|1[0-9]|2[0-9]|3[0-1]))/(?:[0-9]|1[0-9]|2[0-9]|3[0-1])$|^(?:(?:L)|(?:LW)|(?:L)-(?:[1-9]|1[0-9]|2[0-9]|30)|(?:(?:[1-9]|1[0-9]|2[0-9]|3[0-1])W))$");
 
         // MONTHS in the range and frequencies 1-12
         //
@@ -905,7 +1024,7 @@ public class CronExpressionDescriptor {
         // ^(?:[1-9],|1[0-2],)*(?:(?!^)[1-9]|(?!^)1[0-2])$      -> Multiple values {1-12},{1-12},{1-12}...
         // ^(?:[1-9]|1[0-2])-(?:[1-9]|1[0-2])$                  -> Range {1-12}-{1-12}
         // ^(?:[1-9]|1[0-2])-(?:[1-9]|1[0-2])/(?:[0-9]|1[0-2])$ -> Range AND Frequency {1-12}-{1-12}/{0-12}
-        private final Pattern monthsValidationPattern = Pattern.compile("^(?:\\*)$|^(?:[1-9]|1[0-2])$|^(?:\\*|[1-9]|1[0-2])/(?:[0-9]|1[0-2])$|^(?:[1-9],|1[0-2],)*(?:(?!^)[1-9]|(?!^)1[0-2])$|^(?:[1-9]|1[0-2])-(?:[1-9]|1[0-2])$|^(?:[1-9]|1[0-2])-(?:[1-9]|1[0-2])/(?:[0-9]|1[0-2])$");
+        private static final Pattern monthsValidationPattern = Pattern.compile("^(?:\\*)$|^(?:[1-9]|1[0-2])$|^(?:\\*|[1-9]|1[0-2])/(?:[0-9]|1[0-2])$|^(?:[1-9],|1[0-2],)*(?:(?!^)[1-9]|(?!^)1[0-2])$|^(?:[1-9]|1[0-2])-(?:[1-9]|1[0-2])$|^(?:[1-9]|1[0-2])-(?:[1-9]|1[0-2])/(?:[0-9]|1[0-2])$");
 
         // DAY OF WEEK in the range 0-6
         //
@@ -917,7 +1036,7 @@ public class CronExpressionDescriptor {
         // ^(?:[0-6])-(?:[0-6])/(?:[0-7])$  -> Range AND Frequency {0-6}-{0-6}/{0-7}
         // ^(?:[0-6]L)$                     -> Last weekday of the month {0-6}L
         // ^(?:[0-6]#[1-5])$                -> Nth Weekday of the month {0-6}#{1-5}
-        private final Pattern dowValidationPattern = Pattern.compile("^(?:\\*)$|^(?:[0-6])$|^(?:\\*|[0-6])/(?:[0-6])$|^(?:[0-6],)*(?:(?!^)[0-6])$|^(?:[0-6])-(?:[0-6])$|^(?:[0-6])-(?:[0-6])/(?:[0-7])$|^(?:[0-6]L)$|^(?:[0-6]#[1-5])$");
+        private static final Pattern dowValidationPattern = Pattern.compile("^(?:\\*)$|^(?:[0-6])$|^(?:\\*|[0-6])/(?:[0-6])$|^(?:[0-6],)*(?:(?!^)[0-6])$|^(?:[0-6])-(?:[0-6])$|^(?:[0-6])-(?:[0-6])/(?:[0-7])$|^(?:[0-6]L)$|^(?:[0-6]#[1-5])$");
 
         // YEARS in the range 1970-2999
         //
@@ -927,52 +1046,7 @@ public class CronExpressionDescriptor {
         // ^(?:\\d{4},)*(?:(?!^)\\d{4})$            -> Multiple values {any 4 digit number},{any 4 digit number},{any 4 digit number}... (specific validity must be checked outside the match -> 1970-2099)
         // ^(?:\\d{4})-(?:\\d{4})$                  -> Range {any 4 digit number}-{any 4 digit number} (specific validity must be checked outside the match -> 1970-2099)
         // ^(?:\\d{4})-(?:\\d{4})/(?:\\d{1,3})$     -> Range AND Frequency {any 4 digit number}-{any 4 digit number}/{any 3 digit number}
-        private final Pattern yearsValidationPattern = Pattern.compile("^(?:\\*)$|^\\d{4}$|^(?:\\*|\\d{4})/(?:\\d{1,3})$|^(?:\\d{4},)*(?:(?!^)\\d{4})$|^(?:\\d{4})-(?:\\d{4})$|^(?:\\d{4})-(?:\\d{4})/(?:\\d{1,3})$");
-
-        // Pattern matching
-        private final Pattern   yearPattern             = Pattern.compile(".*\\d{4}$");
-        private final Pattern   rangeTokenSearchPattern = Pattern.compile("[*/]");
-        private final Pattern   stepValueSearchPattern  = Pattern.compile("[*\\-,]");
-        private final Pattern   singleItemTokenPattern  = Pattern.compile("^[0-9]+$");
-        private final RxReplace dowReplacer             = new RxReplace("(^\\d)|([^#/\\s]\\d)") {
-            @Override
-            public String replacement() {
-                // Skip anything preceeded by # or /
-                final String value = group(1) != null ? group(1) : group(2);
-
-                // Extract digit part (i.e. if "-2" or ",2", just take 2)
-                final String dowDigits = value.replaceAll("\\D", "");
-                String dowDigitsAdjusted = dowDigits;
-
-                // We're about to adjust based on a start index, we should reject out of bounds values before we do so
-                if (Integer.parseInt(dowDigits) > 7) {
-                    throw new CronExpressionParseException(String.format("The expression describing the %s field is not in a valid format", "DAY OF WEEK"), DOW);
-                }
-
-                // JEE considers 7 and 0 as sunday when specifying DOW (https://docs.oracle.com/javaee/7/tutorial/ejb-basicexamples004.htm)
-                if (options.useJavaEeScheduleExpression) {
-                    if (dowDigits.equals("7")) {
-                        dowDigitsAdjusted = "0";
-                    }
-                } else {
-                    // Adjust Day of Week index for regular cron expressions (5 parts only). In regular cron "7" is accepted as sunday but not considered standard.
-                    if (partsCount == 5) {
-                        if (dowDigits.equals("7")) {
-                            dowDigitsAdjusted = "0";
-                        }
-                    } else {
-                        // If the expression has more than 5 parts (which means it includes seconds and/or years), Sunday is specified as 1 and Saturday is specified as 7.
-                        // To normalize, we bring it back in the 0-6 range.
-                        //
-                        // See Quartz cron triggers (http://www.quartz-scheduler.org/documentation/quartz-2.3.0/tutorials/crontrigger.html)
-                        dowDigitsAdjusted = String.valueOf(Integer.parseInt(dowDigits) - 1);
-                    }
-                }
-
-
-                return value.replace(dowDigits, dowDigitsAdjusted);
-            }
-        };
+        private static final Pattern yearsValidationPattern = Pattern.compile("^(?:\\*)$|^\\d{4}$|^(?:\\*|\\d{4})/(?:\\d{1,3})$|^(?:\\d{4},)*(?:(?!^)\\d{4})$|^(?:\\d{4})-(?:\\d{4})$|^(?:\\d{4})-(?:\\d{4})/(?:\\d{1,3})$");
 
         // State
         private final String         expression;
@@ -986,7 +1060,7 @@ public class CronExpressionDescriptor {
         //region SUBCLASSES
 
         // Parse exception
-        public class CronExpressionParseException extends RuntimeException {
+        public static class CronExpressionParseException extends RuntimeException {
             final CronExpressionPart part;
 
             public CronExpressionPart getPart() {
@@ -1067,7 +1141,7 @@ public class CronExpressionDescriptor {
                 // Ways we detect:
                 //   1. Last part is a literal year (i.e. 2020)
                 //   2. 3rd or 5th part is specified as "?" (DOM or DOW)
-                boolean isYearWithNoSecondsPart = yearPattern.matcher(expressionParts[5]).matches() || expressionParts[4].equals("?") || expressionParts[2].equals("?");
+                boolean isYearWithNoSecondsPart = endsWithYear(expressionParts[5]) || expressionParts[4].equals("?") || expressionParts[2].equals("?");
                 if (isYearWithNoSecondsPart) {
                     System.arraycopy(expressionParts, 0, parsed, 1, 6);
                 } else {
@@ -1223,7 +1297,7 @@ public class CronExpressionDescriptor {
             }
 
             // Adjust DOW based on dayOfWeekStartIndexZero option
-            parsed[5] = dowReplacer.replace(parsed[5]);
+            parsed[5] = adjustDaysOfWeek(parsed[5]);
 
             // Convert DOM '?' to '*'
             if (parsed[3].equals("?")) {
@@ -1262,7 +1336,7 @@ public class CronExpressionDescriptor {
             //     For example:
             //     0-20/3 9 * * * => 0-20/3 9-9 * * * (9 => 9-9)
             //     */5 3 * * * => */5 3-3 * * * (3 => 3-3)
-            if (singleItemTokenPattern.matcher(parsed[2]).matches() && (rangeTokenSearchPattern.matcher(parsed[1]).find() || rangeTokenSearchPattern.matcher(parsed[0]).find())) {
+            if (isDigits(parsed[2]) && (containsAny(parsed[1], "*/") || containsAny(parsed[0], "*/"))) {
                 parsed[2] += "-" + parsed[2];
             }
 
@@ -1285,7 +1359,7 @@ public class CronExpressionDescriptor {
                 // For Example:
                 //  - month part '3/2' will be converted to '3-12/2' (every 2 months between March and December)
                 //  - DOW part '3/2' will be converted to '3-6/2' (every 2 days between Tuesday and Saturday)
-                if (parsed[i].contains("/") && !stepValueSearchPattern.matcher(parsed[i]).find()) {
+                if (parsed[i].contains("/") && !containsAny(parsed[i], "*-,")) {
                     String stepRangeThrough = null;
                     switch (i) {
                         case 4:
@@ -1326,6 +1400,65 @@ public class CronExpressionDescriptor {
             }
         }
 
+        /**
+         * Adjusts the day of week numbers to the 0-6 range, the same as replacing each match of
+         * {@code (^\d)|([^#/\s]\d)}. The numbers after # or / aren't days of week, so they're skipped.
+         *
+         * @param dow The day of week part
+         * @return The adjusted day of week part
+         */
+        private String adjustDaysOfWeek(final String dow) {
+            final StringBuilder result = new StringBuilder(dow.length());
+            int i = 0;
+            while (i < dow.length()) {
+                final int length;
+                if (i == 0 && isDigit(dow.charAt(0))) {
+                    length = 1;
+                } else if (i + 1 < dow.length() && isDigit(dow.charAt(i + 1)) && dow.charAt(i) != '#' && dow.charAt(i) != '/' && !isWhitespace(dow.charAt(i))) {
+                    length = 2;
+                } else {
+                    result.append(dow.charAt(i++));
+                    continue;
+                }
+
+                final String value = dow.substring(i, i + length);
+                i += length;
+
+                // Extract digit part (i.e. if "-2" or ",2", just take 2)
+                final String dowDigits = isDigit(value.charAt(0)) ? value : value.substring(1);
+                String dowDigitsAdjusted = dowDigits;
+
+                // We're about to adjust based on a start index, we should reject out of bounds values before we do so
+                if (Integer.parseInt(dowDigits) > 7) {
+                    throw new CronExpressionParseException(String.format("The expression describing the %s field is not in a valid format", "DAY OF WEEK"), DOW);
+                }
+
+                // JEE considers 7 and 0 as sunday when specifying DOW (https://docs.oracle.com/javaee/7/tutorial/ejb-basicexamples004.htm)
+                if (options.useJavaEeScheduleExpression) {
+                    if (dowDigits.equals("7")) {
+                        dowDigitsAdjusted = "0";
+                    }
+                } else {
+                    // Adjust Day of Week index for regular cron expressions (5 parts only). In regular cron "7" is accepted as sunday but not considered standard.
+                    if (partsCount == 5) {
+                        if (dowDigits.equals("7")) {
+                            dowDigitsAdjusted = "0";
+                        }
+                    } else {
+                        // If the expression has more than 5 parts (which means it includes seconds and/or years), Sunday is specified as 1 and Saturday is specified as 7.
+                        // To normalize, we bring it back in the 0-6 range.
+                        //
+                        // See Quartz cron triggers (http://www.quartz-scheduler.org/documentation/quartz-2.3.0/tutorials/crontrigger.html)
+                        dowDigitsAdjusted = String.valueOf(Integer.parseInt(dowDigits) - 1);
+                    }
+                }
+
+                result.append(value.replace(dowDigits, dowDigitsAdjusted));
+            }
+
+            return result.toString();
+        }
+
         //endregion
         ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     }
@@ -1412,79 +1545,4 @@ public class CronExpressionDescriptor {
         //endregion
         ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     }
-
-    public abstract class RxReplace {
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        //region FIELDS
-
-        private final Pattern pattern;
-        private Matcher matcher;
-
-        //endregion
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        //region CONSTRUCTORS
-
-        /**
-         * Constructor
-         *
-         * @param regex The regular expression to use for replacement
-         */
-        public RxReplace(final String regex) {
-            this.pattern = Pattern.compile(regex);
-        }
-
-        //endregion
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        //region METHODS
-
-        /**
-         * Overridden to compute a replacement for each match. Use the method 'group' to access the captured groups.
-         *
-         * @return String The replaced string
-         */
-        public abstract String replacement();
-
-        /**
-         * Returns the input subsequence captured by the given group during the previous match operation.
-         *
-         * @param i The group index (starting at 0)
-         * @return The contents of the requested group
-         */
-        public String group(int i) {
-            return matcher.group(i);
-        }
-
-        /**
-         * Returns the result of rewriting 'original' by invoking the method 'replacement' for each match of the regular expression supplied to the constructor
-         *
-         * @param original The original string
-         * @return The rewritten string after replacements
-         */
-        public String replace(final CharSequence original) {
-            // Get a matcher for the original pattern
-            this.matcher = pattern.matcher(original);
-
-            final StringBuffer result = new StringBuffer(original.length());
-            while (matcher.find()) {
-                // Discard everything up until the current match (we just want to update the matcher's cursor)
-                matcher.appendReplacement(result, "");
-
-                // Perform implemented replacement and append the resulting string to the buffer
-                result.append(replacement());
-            }
-
-            // Append the rest of the sequence
-            matcher.appendTail(result);
-
-            // Return the rewritten string
-            return result.toString();
-        }
-
-        //endregion
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.scheduler.CronExpressionDescriptor.CronExpressionPart;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validates the cron expressions in bulk, e.g. the ones of the imported job definitions. The identical expressions
+ * are validated once, and the distinct ones are validated in parallel on a {@link ForkJoinPool}. An invalid
+ * expression is reported as a {@link ValidationError} instead of an exception.
+ * <p>
+ * The expressions are validated the same way as {@link CronExpression#isValidExpression(String)}.
+ */
+public final class CronExpressionValidator {
+
+    // the count of the expressions validated by a task without splitting it further
+    private static final int BATCH_SIZE = 256;
+
+    private CronExpressionValidator() {
+
+    }
+
+    /**
+     * The error of an invalid expression.
+     *
+     * @param expression the invalid expression
+     * @param field      the field where the error is, or {@link CronExpressionPart#ALL} if it isn't in one field
+     * @param position   the 0-based position in the expression where the error is
+     * @param message    the message of the error
+     */
+    public record ValidationError(String expression, CronExpressionPart field, int position, String message) {
+
+        @Override
+        public String toString() {
+
+            return String.format("%s (%s at %d): %s", expression, field.getValue(), position, message);
+        }
+    }
+
+    /**
+     * Validates the expression.
+     *
+     * @param expression the expression to validate
+     * @return the error, or null if the expression is valid
+     */
+    public static ValidationError validate(String expression) {
+
+        if (expression == null) {
+            return new ValidationError(null, CronExpressionPart.ALL, 0, "The expression cannot be null.");
+        }
+        var error = CronExpression.validate(expression);
+        if (error == null) {
+            return null;
+        }
+        var field = error.getField() < 0 ? CronExpressionPart.ALL : CronExpressionPart.values()[error.getField()];
+        return new ValidationError(expression, field, error.getPosition(), error.getMessage());
+    }
+
+    /**
+     * Validates the expressions on the common {@link ForkJoinPool}.
+     *
+     * @see #validateAll(Stream, ForkJoinPool)
+     */
+    public static Map<String, ValidationError> validateAll(Collection<String> expressions) {
+
+        return validateAll(expressions.stream(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates the expressions on the common {@link ForkJoinPool}.
+     *
+     * @see #validateAll(Stream, ForkJoinPool)
+     */
+    public static Map<String, ValidationError> validateAll(Stream<String> expressions) {
+
+        return validateAll(expressions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates the expressions in parallel on the pool. The identical expressions are validated once.
+     *
+     * @param expressions the expressions to validate, a null one is reported as invalid
+     * @param pool        the pool to validate the expressions on
+     * @return the errors of the invalid expressions keyed by the expression, in the order they first appear. It's
+     * empty if all the expressions are valid.
+     */
+    public static Map<String, ValidationError> validateAll(Stream<String> expressions, ForkJoinPool pool) {
+
+        var distinct = expressions.collect(Collectors.toCollection(LinkedHashSet::new)).toArray(new String[0]);
+        var errors = new ValidationError[distinct.length];
+        pool.invoke(new ValidateTask(distinct, errors, 0, distinct.length));
+
+        var result = new LinkedHashMap<String, ValidationError>();
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) {
+                result.put(distinct[i], errors[i]);
+            }
+        }
+        return result;
+    }
+
+    private static final class ValidateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] expressions;
+        // the error of each expression, written by the task which validates it
+        private final transient ValidationError[] errors;
+        private final int from;
+        private final int to;
+
+        ValidateTask(String[] expressions, ValidationError[] errors, int from, int to) {
+
+            this.expressions = expressions;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    errors[i] = validate(expressions[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                new ValidateTask(expressions, errors, from, middle),
+                new ValidateTask(expressions, errors, middle, to));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package me.fengyj.common.scheduler;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A job scheduled in a {@link CronScheduler}. It's returned by {@link CronScheduler#schedule} and can be used to
+ * cancel the job.
+ */
+public final class CronJob {
+
+    private final String id;
+    private final CompiledCronExpression expression;
+    private final MisfirePolicy misfirePolicy;
+    private final LongConsumer task;
+    // the first fire time in milliseconds since the epoch, the group has the next ones after it joins one.
+    final long firstFireTime;
+    volatile JobGroup group;
+    volatile boolean cancelled;
+    // only accessed by the timer thread. the index in the group, and if it's no longer counted as a scheduled job.
+    int index;
+    boolean removed;
+
+    CronJob(
+        String id,
+        CompiledCronExpression expression,
+        MisfirePolicy misfirePolicy,
+        LongConsumer task,
+        long firstFireTime) {
+
+        this.id = id;
+        this.expression = expression;
+        this.misfirePolicy = misfirePolicy;
+        this.task = task;
+        this.firstFireTime = firstFireTime;
+    }
+
+    public String getId() {
+
+        return id;
+    }
+
+    public CompiledCronExpression getExpression() {
+
+        return expression;
+    }
+
+    public MisfirePolicy getMisfirePolicy() {
+
+        return misfirePolicy;
+    }
+
+    LongConsumer getTask() {
+
+        return task;
+    }
+
+    /**
+     * Returns the next fire time in milliseconds since the epoch, or -1 if the job doesn't fire any more.
+     */
+    public long getNextFireTime() {
+
+        if (cancelled) {
+            return -1;
+        }
+        var current = group;
+        return current == null ? firstFireTime : current.nextFireTime;
+    }
+
+    public boolean isCancelled() {
+
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("%s (%s)", id, expression);
+    }
+}
@@ -0,0 +1,679 @@
+package me.fengyj.common.scheduler;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.LongStream;
+
+/**
+ * A set of fire times built from cron expressions by union, intersection and difference, e.g. a trading window
+ * minus a maintenance window.
+ * <p>
+ * The expressions in the same time zone are combined field by field where the result is an expression again: the
+ * intersection always is, the union is when the expressions differ in one field only, and the difference is when
+ * the fields of the first expression are in the ones of the second except one field, or one field of them has no
+ * common value. Such a schedule is evaluated as fast as a single expression. The days are combined as the days
+ * matched in a month, so the 'L', 'W' and '#' options work as well. The fields are the wall-clock times, so right
+ * after a daylight saving gap, where 2 wall-clock times share an instant, the result can differ from combining the
+ * instants.
+ * <p>
+ * Otherwise the schedules are evaluated by moving their cursors past each other: a fire time of the first schedule
+ * of a difference which is in the second one moves the search to the next time not in the second one, so a long run
+ * of the second schedule is skipped in one step rather than scanned second by second. The schedules of an
+ * intersection in 2 time zones are compared by the seconds of the day they fire at: between the transitions of the
+ * zones the offsets are fixed, and a span in which the seconds of one never fall on the ones of the other is
+ * skipped in one step, so 2 schedules which never meet are found out by a step per transition.
+ */
+public abstract class CronSchedule {
+
+    CronSchedule() {
+
+    }
+
+    /**
+     * Returns the schedule of the fire times of the expression.
+     */
+    public static CronSchedule of(CompiledCronExpression expression) {
+
+        return new FieldSchedule(
+            expression.expression(), expression.getZone(), expression.getCronExpression(),
+            expression.getExclusionCalendar());
+    }
+
+    /**
+     * Returns the next fire time <I>after</I> the given instant.
+     *
+     * @param afterEpochMillis the instant, in milliseconds since the epoch, to begin the search after
+     * @return the next fire time in milliseconds since the epoch, or -1 if there isn't one
+     */
+    public abstract long nextFireEpochMillis(long afterEpochMillis);
+
+    /**
+     * Returns the next second <I>after</I> the given instant which isn't a fire time.
+     *
+     * @param afterEpochMillis the instant, in milliseconds since the epoch, to begin the search after
+     * @return the next second which isn't a fire time, in milliseconds since the epoch
+     */
+    public abstract long nextInvalidEpochMillis(long afterEpochMillis);
+
+    /**
+     * Indicates whether the instant, truncated to the second, is a fire time.
+     */
+    public abstract boolean isSatisfiedBy(long epochMillis);
+
+    /**
+     * Returns whether the schedule is evaluated as one expression of the combined field sets.
+     */
+    abstract boolean isFieldBased();
+
+    /**
+     * Returns the time zone of all the expressions of the schedule, or null if they aren't in one time zone.
+     */
+    abstract ZoneId zone();
+
+    /**
+     * Returns the seconds of a day in {@link #zone()} the fire times can be at, as a bitmap of
+     * {@link CronExpression#SECONDS_PER_DAY} bits. A fire time moved forward by a daylight saving gap isn't in it.
+     */
+    abstract long[] secondsOfDay();
+
+    /**
+     * Returns the fire times from {@code fromMillis} (inclusive) to {@code toMillis} (exclusive).
+     */
+    public LongStream fireTimes(long fromMillis, long toMillis) {
+
+        return LongStream.iterate(
+            nextFireEpochMillis(fromMillis - 1), t -> t != -1 && t < toMillis, this::nextFireEpochMillis);
+    }
+
+    /**
+     * Returns the schedule of the fire times of this one or the other one.
+     */
+    public CronSchedule union(CronSchedule other) {
+
+        var combined = FieldSchedule.combine(this, other, Operation.UNION);
+        return combined != null ? combined : new Union(this, other);
+    }
+
+    /**
+     * Returns the schedule of the fire times of both this one and the other one.
+     */
+    public CronSchedule intersect(CronSchedule other) {
+
+        var combined = FieldSchedule.combine(this, other, Operation.INTERSECTION);
+        return combined != null ? combined : new Intersection(this, other);
+    }
+
+    /**
+     * Returns the schedule of the fire times of this one which aren't the ones of the other one.
+     */
+    public CronSchedule minus(CronSchedule other) {
+
+        var combined = FieldSchedule.combine(this, other, Operation.DIFFERENCE);
+        return combined != null ? combined : new Difference(this, other);
+    }
+
+    private enum Operation {
+        UNION(" | "),
+        INTERSECTION(" & "),
+        DIFFERENCE(" - ");
+
+        private final String symbol;
+
+        Operation(String symbol) {
+
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * The schedule of an expression, parsed or combined from other expressions field by field.
+     */
+    private static final class FieldSchedule extends CronSchedule {
+
+        // the count of the fields: second, minute, hour, days of a month, month and year
+        private static final int FIELDS = 6;
+        private static final int DAYS = 3;
+        private static final int YEARS = 5;
+
+        private final CronExpression expression;
+        private final ZoneId zone;
+        private final String description;
+        private final ExclusionCalendar calendar;
+
+        FieldSchedule(CronExpression expression, ZoneId zone, String description, ExclusionCalendar calendar) {
+
+            this.expression = expression;
+            this.zone = zone;
+            this.description = description;
+            this.calendar = calendar;
+        }
+
+        @Override
+        public long nextFireEpochMillis(long afterEpochMillis) {
+
+            return expression.nextFireEpochMillis(afterEpochMillis, zone);
+        }
+
+        @Override
+        public long nextInvalidEpochMillis(long afterEpochMillis) {
+
+            return expression.nextInvalidEpochMillis(afterEpochMillis, zone);
+        }
+
+        @Override
+        public boolean isSatisfiedBy(long epochMillis) {
+
+            return expression.isSatisfiedBy(epochMillis, zone);
+        }
+
+        @Override
+        boolean isFieldBased() {
+
+            return true;
+        }
+
+        @Override
+        ZoneId zone() {
+
+            return zone;
+        }
+
+        @Override
+        long[] secondsOfDay() {
+
+            var bits = new long[CronExpression.SECONDS_PER_DAY >>> 6];
+            for (long hours = expression.hours; hours != 0; hours &= hours - 1) {
+                for (long minutes = expression.minutes; minutes != 0; minutes &= minutes - 1) {
+                    int start = Long.numberOfTrailingZeros(hours) * 3600 + Long.numberOfTrailingZeros(minutes) * 60;
+                    for (long seconds = expression.seconds; seconds != 0; seconds &= seconds - 1) {
+                        int second = start + Long.numberOfTrailingZeros(seconds);
+                        bits[second >>> 6] |= 1L << second;
+                    }
+                }
+            }
+            return bits;
+        }
+
+        /**
+         * The same as {@link CompiledCronExpression#equals(Object)}, a combined schedule is compared by the field
+         * sets rather than the description.
+         */
+        @Override
+        public boolean equals(Object obj) {
+
+            if (this == obj) return true;
+            if (!(obj instanceof FieldSchedule other)) return false;
+            return CompiledCronExpression.isSame(expression, zone, other.expression, other.zone);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return CompiledCronExpression.hashCodeOf(expression, zone);
+        }
+
+        @Override
+        public String toString() {
+
+            return description + " " + zone + (calendar == null ? "" : " excluding " + calendar);
+        }
+
+        /**
+         * Returns the schedule combined field by field, or null if the result isn't an expression.
+         */
+        static FieldSchedule combine(CronSchedule left, CronSchedule right, Operation operation) {
+
+            if (!(left instanceof FieldSchedule a) || !(right instanceof FieldSchedule b) || !a.zone.equals(b.zone)) {
+                return null;
+            }
+            // the excluded days are removed from the days after the fields are combined.
+            ExclusionCalendar calendar;
+            if (Objects.equals(a.calendar, b.calendar)) {
+                calendar = a.calendar;
+            } else if (operation == Operation.INTERSECTION) {
+                calendar = a.calendar == null
+                    ? b.calendar
+                    : b.calendar == null ? a.calendar : a.calendar.union(b.calendar);
+            } else if (operation == Operation.DIFFERENCE && b.calendar == null) {
+                calendar = a.calendar;
+            } else {
+                return null;
+            }
+
+            var x = a.fields();
+            var y = b.fields();
+            var result = new long[FIELDS][];
+            switch (operation) {
+                case INTERSECTION -> {
+                    for (int i = 0; i < FIELDS; i++) {
+                        result[i] = and(x[i], y[i]);
+                    }
+                }
+                case UNION -> {
+                    // a product of the field sets only if the others are the same.
+                    int differs = -1;
+                    for (int i = 0; i < FIELDS; i++) {
+                        if (!isEmpty(andNot(x[i], y[i])) || !isEmpty(andNot(y[i], x[i]))) {
+                            if (differs != -1) {
+                                return null;
+                            }
+                            differs = i;
+                        }
+                    }
+                    for (int i = 0; i < FIELDS; i++) {
+                        result[i] = i == differs ? or(x[i], y[i]) : x[i];
+                    }
+                }
+                case DIFFERENCE -> {
+                    // nothing is removed if a field has no common value.
+                    for (int i = 0; i < FIELDS; i++) {
+                        if (isEmpty(and(x[i], y[i]))) {
+                            return a.withCalendar(calendar);
+                        }
+                    }
+                    int outside = -1;
+                    for (int i = 0; i < FIELDS; i++) {
+                        if (!isEmpty(andNot(x[i], y[i]))) {
+                            if (outside != -1) {
+                                return null;
+                            }
+                            outside = i;
+                        }
+                    }
+                    // all the fire times are removed if all the fields are inside.
+                    for (int i = 0; i < FIELDS; i++) {
+                        result[i] = i == outside ? andNot(x[i], y[i]) : outside == -1 ? new long[x[i].length] : x[i];
+                    }
+                }
+            }
+
+            var description = "(" + a.description + ")" + operation.symbol + "(" + b.description + ")";
+            return new FieldSchedule(create(description, result, calendar), a.zone, description, calendar);
+        }
+
+        private FieldSchedule withCalendar(ExclusionCalendar calendar) {
+
+            return Objects.equals(calendar, this.calendar)
+                ? this
+                : new FieldSchedule(create(description, fields(), calendar), zone, description, calendar);
+        }
+
+        /**
+         * Returns the field sets as arrays, so they're combined the same way.
+         */
+        private long[][] fields() {
+
+            var fields = new long[FIELDS][];
+            fields[0] = new long[] { expression.seconds };
+            fields[1] = new long[] { expression.minutes };
+            fields[2] = new long[] { expression.hours };
+            fields[DAYS] = expression.daysOfMonthTable;
+            fields[4] = new long[] { expression.months };
+            fields[YEARS] = expression.years;
+            return fields;
+        }
+
+        private static CronExpression create(String description, long[][] fields, ExclusionCalendar calendar) {
+
+            var years = fields[YEARS];
+            // an empty field matches nothing, which is found at once by the empty years.
+            for (int i = 0; i < FIELDS; i++) {
+                if (isEmpty(fields[i])) {
+                    years = new long[(CronExpression.MAX_YEAR >>> 6) + 1];
+                    break;
+                }
+            }
+            return new CronExpression(
+                description, fields[0][0], fields[1][0], fields[2][0], fields[4][0], years, fields[DAYS], calendar);
+        }
+
+        private static long[] and(long[] x, long[] y) {
+
+            var result = new long[Math.max(x.length, y.length)];
+            for (int i = 0; i < Math.min(x.length, y.length); i++) {
+                result[i] = x[i] & y[i];
+            }
+            return result;
+        }
+
+        private static long[] or(long[] x, long[] y) {
+
+            var result = Arrays.copyOf(x, Math.max(x.length, y.length));
+            for (int i = 0; i < y.length; i++) {
+                result[i] |= y[i];
+            }
+            return result;
+        }
+
+        private static long[] andNot(long[] x, long[] y) {
+
+            var result = x.clone();
+            for (int i = 0; i < Math.min(x.length, y.length); i++) {
+                result[i] &= ~y[i];
+            }
+            return result;
+        }
+
+        private static boolean isEmpty(long[] field) {
+
+            for (long bits : field) {
+                if (bits != 0L) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private abstract static class Composite extends CronSchedule {
+
+        final CronSchedule left;
+        final CronSchedule right;
+        private final Operation operation;
+
+        Composite(CronSchedule left, CronSchedule right, Operation operation) {
+
+            this.left = left;
+            this.right = right;
+            this.operation = operation;
+        }
+
+        @Override
+        boolean isFieldBased() {
+
+            return false;
+        }
+
+        @Override
+        ZoneId zone() {
+
+            var zone = left.zone();
+            return zone != null && zone.equals(right.zone()) ? zone : null;
+        }
+
+        @Override
+        public String toString() {
+
+            return "(" + left + ")" + operation.symbol + "(" + right + ")";
+        }
+    }
+
+    private static final class Union extends Composite {
+
+        Union(CronSchedule left, CronSchedule right) {
+
+            super(left, right, Operation.UNION);
+        }
+
+        @Override
+        public long nextFireEpochMillis(long afterEpochMillis) {
+
+            long a = left.nextFireEpochMillis(afterEpochMillis);
+            long b = right.nextFireEpochMillis(afterEpochMillis);
+            return a == -1 ? b : b == -1 ? a : Math.min(a, b);
+        }
+
+        @Override
+        public long nextInvalidEpochMillis(long afterEpochMillis) {
+
+            long after = afterEpochMillis;
+            while (true) {
+                // the end of a run of the left one, and the end of the run of the right one covering it
+                long a = left.nextInvalidEpochMillis(after);
+                if (!right.isSatisfiedBy(a)) {
+                    return a;
+                }
+                long b = right.nextInvalidEpochMillis(a - 1);
+                if (!left.isSatisfiedBy(b)) {
+                    return b;
+                }
+                after = b - 1;
+            }
+        }
+
+        @Override
+        public boolean isSatisfiedBy(long epochMillis) {
+
+            return left.isSatisfiedBy(epochMillis) || right.isSatisfiedBy(epochMillis);
+        }
+
+        @Override
+        long[] secondsOfDay() {
+
+            var bits = left.secondsOfDay();
+            var other = right.secondsOfDay();
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] |= other[i];
+            }
+            return bits;
+        }
+    }
+
+    private static final class Intersection extends Composite {
+
+        // the transitions and the seconds of a day of both, or null if one of them isn't in one time zone
+        private final ZoneTransitions leftTransitions;
+        private final ZoneTransitions rightTransitions;
+        private final long[] leftSeconds;
+        private final long[] rightSeconds;
+        // the span found last, the following searches are mostly in it
+        private volatile Span lastSpan;
+
+        /**
+         * A span of instants in which the offsets of both time zones are fixed.
+         *
+         * @param start the start of the span in epoch seconds
+         * @param end   the end of the span in epoch seconds, exclusive
+         * @param meets whether a second of the day of one of them can fall on one of the other
+         */
+        private record Span(long start, long end, boolean meets) {
+        }
+
+        Intersection(CronSchedule left, CronSchedule right) {
+
+            super(left, right, Operation.INTERSECTION);
+            var leftZone = left.zone();
+            var rightZone = right.zone();
+            boolean zoned = leftZone != null && rightZone != null;
+            this.leftTransitions = zoned ? ZoneTransitions.of(leftZone) : null;
+            this.rightTransitions = zoned ? ZoneTransitions.of(rightZone) : null;
+            this.leftSeconds = zoned ? left.secondsOfDay() : null;
+            this.rightSeconds = zoned ? right.secondsOfDay() : null;
+        }
+
+        @Override
+        public long nextFireEpochMillis(long afterEpochMillis) {
+
+            long a = left.nextFireEpochMillis(afterEpochMillis);
+            // the fire times before it are in a span where they can meet.
+            long meetsUntil = Long.MIN_VALUE;
+            while (a != -1) {
+                long second = Math.floorDiv(a, 1000);
+                if (leftTransitions != null && second >= meetsUntil) {
+                    var span = span(second);
+                    if (!span.meets()) {
+                        if (span.end() == Long.MAX_VALUE) {
+                            return -1;
+                        }
+                        a = left.nextFireEpochMillis(span.end() * 1000 - 1);
+                        continue;
+                    }
+                    meetsUntil = span.end();
+                }
+                // each one moves to the next fire time of the other one.
+                long b = right.nextFireEpochMillis(a - 1);
+                if (b == a || b == -1) {
+                    return b;
+                }
+                a = left.nextFireEpochMillis(b - 1);
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the span of the instant. The seconds of the day of the right one are the ones of the left one
+         * plus the difference of the offsets. Right after a gap, the fire times moved forward by it are at the
+         * seconds plus the length of the gap, so the span ends there.
+         */
+        private Span span(long epochSecond) {
+
+            var last = lastSpan;
+            if (last != null && last.start() <= epochSecond && epochSecond < last.end()) {
+                return last;
+            }
+            int leftIndex = leftTransitions.indexAt(epochSecond);
+            int rightIndex = rightTransitions.indexAt(epochSecond);
+            long start = Math.max(
+                spanStart(leftTransitions, leftIndex, epochSecond),
+                spanStart(rightTransitions, rightIndex, epochSecond));
+            long end = Math.min(leftTransitions.nextInstant(leftIndex), rightTransitions.nextInstant(rightIndex));
+            int leftGap = gapAt(leftTransitions, leftIndex, epochSecond);
+            int rightGap = gapAt(rightTransitions, rightIndex, epochSecond);
+            if (leftGap != 0) {
+                end = Math.min(end, leftTransitions.instant(leftIndex) + leftGap);
+            }
+            if (rightGap != 0) {
+                end = Math.min(end, rightTransitions.instant(rightIndex) + rightGap);
+            }
+
+            var x = withGap(leftSeconds, leftGap);
+            var y = rotate(
+                withGap(rightSeconds, rightGap),
+                leftTransitions.offsetAfter(leftIndex) - rightTransitions.offsetAfter(rightIndex));
+            boolean meets = false;
+            for (int i = 0; i < x.length && !meets; i++) {
+                meets = (x[i] & y[i]) != 0;
+            }
+            var span = new Span(start, end, meets);
+            lastSpan = span;
+            return span;
+        }
+
+        /**
+         * Returns the start of the span of the instant by the transitions of one zone, the end of a gap starts one.
+         */
+        private static long spanStart(ZoneTransitions transitions, int index, long epochSecond) {
+
+            if (index < 0) {
+                return Long.MIN_VALUE;
+            }
+            long start = transitions.instant(index);
+            return transitions.isGap(index) && epochSecond >= start + transitions.length(index)
+                ? start + transitions.length(index)
+                : start;
+        }
+
+        /**
+         * Returns the length of the gap the instant is in, or 0 if it isn't in one.
+         */
+        private static int gapAt(ZoneTransitions transitions, int index, long epochSecond) {
+
+            return index >= 0 && transitions.isGap(index)
+                && epochSecond < transitions.instant(index) + transitions.length(index)
+                ? transitions.length(index)
+                : 0;
+        }
+
+        private static long[] withGap(long[] seconds, int gap) {
+
+            if (gap == 0) {
+                return seconds;
+            }
+            var bits = rotate(seconds, gap);
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] |= seconds[i];
+            }
+            return bits;
+        }
+
+        /**
+         * Returns the seconds of a day moved forward by the given seconds, the ones past the end of the day are
+         * at the start of it.
+         */
+        private static long[] rotate(long[] seconds, int shift) {
+
+            int n = seconds.length;
+            shift = Math.floorMod(shift, n << 6);
+            int words = shift >>> 6;
+            int bits = shift & 63;
+            var result = new long[n];
+            for (int i = 0; i < n; i++) {
+                result[(i + words) % n] |= seconds[i] << bits;
+                if (bits != 0) {
+                    result[(i + words + 1) % n] |= seconds[i] >>> (64 - bits);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public long nextInvalidEpochMillis(long afterEpochMillis) {
+
+            return Math.min(
+                left.nextInvalidEpochMillis(afterEpochMillis), right.nextInvalidEpochMillis(afterEpochMillis));
+        }
+
+        @Override
+        public boolean isSatisfiedBy(long epochMillis) {
+
+            return left.isSatisfiedBy(epochMillis) && right.isSatisfiedBy(epochMillis);
+        }
+
+        @Override
+        long[] secondsOfDay() {
+
+            var bits = left.secondsOfDay();
+            var other = right.secondsOfDay();
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= other[i];
+            }
+            return bits;
+        }
+    }
+
+    private static final class Difference extends Composite {
+
+        Difference(CronSchedule left, CronSchedule right) {
+
+            super(left, right, Operation.DIFFERENCE);
+        }
+
+        @Override
+        public long nextFireEpochMillis(long afterEpochMillis) {
+
+            long a = left.nextFireEpochMillis(afterEpochMillis);
+            while (a != -1 && right.isSatisfiedBy(a)) {
+                // skips the whole run of the right one.
+                a = left.nextFireEpochMillis(right.nextInvalidEpochMillis(a) - 1);
+            }
+            return a;
+        }
+
+        @Override
+        public long nextInvalidEpochMillis(long afterEpochMillis) {
+
+            long a = left.nextInvalidEpochMillis(afterEpochMillis);
+            long b = right.nextFireEpochMillis(afterEpochMillis);
+            return b == -1 ? a : Math.min(a, b);
+        }
+
+        @Override
+        public boolean isSatisfiedBy(long epochMillis) {
+
+            return left.isSatisfiedBy(epochMillis) && !right.isSatisfiedBy(epochMillis);
+        }
+
+        @Override
+        ZoneId zone() {
+
+            return left.zone();
+        }
+
+        @Override
+        long[] secondsOfDay() {
+
+            return left.secondsOfDay();
+        }
+    }
+}
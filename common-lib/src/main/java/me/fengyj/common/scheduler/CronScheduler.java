@@ -0,0 +1,566 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.exceptions.ErrorSeverity;
+import me.fengyj.common.exceptions.ExceptionUtils;
+import me.fengyj.common.exceptions.GeneralException;
+import me.fengyj.common.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs the jobs at the fire times of their cron expressions. The jobs are kept in a hierarchical
+ * {@link TimingWheel} which is only touched by one timer thread, so adding a job to it or moving a job to its next
+ * fire time is O(1) no matter how many jobs there are. On a tick some jobs are due at, the timer thread takes them
+ * out of the wheel, puts them back at their next fire times, and hands them to the executor in batches. It sleeps
+ * through the ticks without due jobs, and for as long as there is no job.
+ * <p>
+ * The jobs of an equal {@link CompiledCronExpression} which are due at the same time share a {@link JobGroup},
+ * which takes one slot of the wheel. The next fire time is computed once for a group, and the jobs of it are
+ * dispatched together, so the work of the timer thread grows with the count of the distinct expressions rather
+ * than the count of the jobs. A job scheduled from an old checkpoint is in a group of its own until it catches up.
+ * <p>
+ * The jobs are run at the start of the first tick which is not earlier than the fire time. A fire time later than
+ * that by more than the misfire threshold is a misfire, which happens after a long pause of the process or when a
+ * job is scheduled from an old checkpoint. All the fire times missed by a job are found in one pass with
+ * {@link CompiledCronExpression#countFireTimes(long, long)}, and the {@link MisfirePolicy} of the job decides
+ * which of them run. The catch-up runs are dispatched in the same batches as the other due jobs, and the misfires
+ * of a tick are logged once.
+ * <p>
+ * How late the jobs run, and how long the evaluation, the wait in the executor and the runs take, are counted in
+ * the histograms of {@link #getMetrics()}, per expression. They can be shown by JMX with {@link #registerMBean()}.
+ */
+public final class CronScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CronScheduler.class);
+
+    private record GroupKey(CompiledCronExpression expression, long fireTime) {
+    }
+
+    /**
+     * The jobs run for the fire times, the fire times in order for each job.
+     */
+    private record Firing(CronJob[] jobs, long[] fireTimes, SchedulerMetrics.GroupMetrics metrics) {
+    }
+
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_MISFIRE_THRESHOLD_MILLIS = 5000;
+    public static final int MAX_CATCH_UP_FIRES = 1000;
+
+    private final String name;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final long tickMillis;
+    private final int batchSize;
+    private final long misfireThreshold;
+
+    // only accessed by the timer thread
+    private final TimingWheel wheel;
+    private final Map<GroupKey, JobGroup> groups = new HashMap<>();
+    private final List<Firing> firings = new ArrayList<>();
+    private int misfiredJobs;
+    private long missedFires;
+    private long now;
+
+    // the jobs added or cancelled, which are applied to the wheel by the timer thread
+    private final Queue<CronJob> pendingJobs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger jobCount = new AtomicInteger();
+    private final Thread timer;
+    // the tick the parked timer thread wakes up at, Long.MIN_VALUE while it's running
+    private volatile long wakeTick = Long.MIN_VALUE;
+    private volatile boolean running = true;
+    private volatile CheckpointJournal journal;
+    private volatile int groupCount;
+    private final SchedulerMetrics metrics = new SchedulerMetrics();
+    private ObjectName mbeanName;
+
+    /**
+     * Creates a scheduler running the jobs in a pool of the same size as the count of the CPUs.
+     *
+     * @param name the name of the scheduler, which is the prefix of the thread names
+     */
+    public CronScheduler(String name) {
+
+        this(name, ThreadUtils.createPoolBaseOnCpu(name, 1), true,
+             DEFAULT_TICK_MILLIS, DEFAULT_BATCH_SIZE, DEFAULT_MISFIRE_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * @param name                   the name of the scheduler, which is the prefix of the thread names
+     * @param executor               the executor to run the jobs, it isn't shut down by {@link #close()}
+     * @param tickMillis             the length of a tick in milliseconds, it should be a divisor of 1000
+     * @param batchSize              the max count of the jobs run by one task submitted to the executor
+     * @param misfireThresholdMillis a fire time is missed if the job isn't due within this time after it
+     */
+    public CronScheduler(
+        String name,
+        ExecutorService executor,
+        long tickMillis,
+        int batchSize,
+        long misfireThresholdMillis) {
+
+        this(name, executor, false, tickMillis, batchSize, misfireThresholdMillis);
+    }
+
+    private CronScheduler(
+        String name,
+        ExecutorService executor,
+        boolean ownsExecutor,
+        long tickMillis,
+        int batchSize,
+        long misfireThresholdMillis) {
+
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.name = name;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.misfireThreshold = Math.max(misfireThresholdMillis, 0);
+        this.wheel = new TimingWheel(System.currentTimeMillis() / tickMillis);
+
+        this.timer = new Thread(this::runTimer, name + "-timer");
+        this.timer.setDaemon(true);
+        this.timer.start();
+    }
+
+    /**
+     * Schedules the task to run at the fire times of the expression after now, a misfire runs it once.
+     *
+     * @param id         the id of the job, it's only used for logging
+     * @param expression the expression of the fire times
+     * @param task       the task to run
+     * @return the job, which is never run if {@link CronJob#getNextFireTime()} of it is -1
+     */
+    public CronJob schedule(String id, CompiledCronExpression expression, Runnable task) {
+
+        return schedule(id, expression, MisfirePolicy.FireOnce, -1, fireTime -> task.run());
+    }
+
+    /**
+     * Schedules the task to run at the fire times of the expression after the last fire time. If the last fire
+     * time is a checkpoint from the past, the fire times between it and now are handled by the misfire policy.
+     *
+     * @param id            the id of the job, it's only used for logging
+     * @param expression    the expression of the fire times
+     * @param policy        what to do with the missed fire times
+     * @param lastFireTime  the last fire time in milliseconds since the epoch, or -1 to start from now
+     * @param task          the task to run, which accepts the fire time it runs for
+     * @return the job, which is never run if {@link CronJob#getNextFireTime()} of it is -1
+     */
+    public CronJob schedule(
+        String id,
+        CompiledCronExpression expression,
+        MisfirePolicy policy,
+        long lastFireTime,
+        LongConsumer task) {
+
+        if (!running) {
+            throw new IllegalStateException(String.format("The scheduler (%s) is closed.", name));
+        }
+        var job = new CronJob(id, expression, policy, task, expression.nextFireEpochMillis(
+            lastFireTime == -1 ? System.currentTimeMillis() : lastFireTime));
+        if (job.firstFireTime != -1) {
+            jobCount.incrementAndGet();
+            pendingJobs.add(job);
+            // a parked timer thread joins the job to its group at once, then sleeps until the next due tick.
+            if (wakeTick != Long.MIN_VALUE) {
+                LockSupport.unpark(timer);
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Cancels the job. The job isn't run after this method returns, but a run already started isn't interrupted.
+     *
+     * @return false if the job is already cancelled or doesn't fire any more
+     */
+    public boolean cancel(CronJob job) {
+
+        if (job.cancelled || job.getNextFireTime() == -1) {
+            return false;
+        }
+        job.cancelled = true;
+        pendingJobs.add(job);
+        // the group of the job is removed at once rather than when it's due.
+        if (wakeTick != Long.MIN_VALUE) {
+            LockSupport.unpark(timer);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the journal to record the fire time of a job after every run of it. On a restart, pass
+     * {@link CheckpointJournal#getLastFireTime(String)} of a job as the last fire time to
+     * {@link #schedule(String, CompiledCronExpression, MisfirePolicy, long, LongConsumer)}, the job goes on from
+     * there and the fire times missed while the process is down are handled by the misfire policy.
+     *
+     * @param journal the journal, or null to stop recording
+     */
+    public void setJournal(CheckpointJournal journal) {
+
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the count of the jobs which are going to fire.
+     */
+    public int getJobCount() {
+
+        return jobCount.get();
+    }
+
+    /**
+     * Returns the count of the job groups, the jobs of an expression due at the same time are in one group.
+     */
+    public int getGroupCount() {
+
+        return groupCount;
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Returns the length of a tick in milliseconds, a job runs within a tick after its fire time.
+     */
+    public long getTickMillis() {
+
+        return tickMillis;
+    }
+
+    /**
+     * Returns the latency histograms of the job groups, which tell how late the jobs run and why.
+     */
+    public SchedulerMetrics getMetrics() {
+
+        return metrics;
+    }
+
+    /**
+     * Registers the metrics to the platform MBean server, as
+     * {@code me.fengyj.common.scheduler:type=CronScheduler,name=<name>}. It's unregistered by {@link #close()}.
+     *
+     * @return the name of the MBean
+     */
+    public synchronized ObjectName registerMBean() {
+
+        if (mbeanName != null) {
+            return mbeanName;
+        }
+        try {
+            var objectName = new ObjectName(
+                "me.fengyj.common.scheduler:type=CronScheduler,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            mbeanName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw GeneralException.create(
+                ErrorSeverity.Error,
+                String.format("The metrics of the scheduler (%s) cannot be registered to JMX.", name),
+                e);
+        }
+    }
+
+    /**
+     * Stops the timer thread. The batches already handed to the executor still run, and the executor is shut down
+     * if it's created by the scheduler.
+     */
+    @Override
+    public void close() {
+
+        running = false;
+        LockSupport.unpark(timer);
+        try {
+            timer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unregisterMBean();
+        if (ownsExecutor) {
+            ThreadUtils.shutdown(
+                executor,
+                String.format("The executor of the scheduler (%s) didn't stop in time.", name),
+                10, TimeUnit.SECONDS, logger);
+        }
+    }
+
+    private synchronized void unregisterMBean() {
+
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException e) {
+            ExceptionUtils.log(logger, GeneralException.create(
+                ErrorSeverity.Warning,
+                String.format("The metrics of the scheduler (%s) cannot be unregistered from JMX.", name),
+                e));
+        }
+        mbeanName = null;
+    }
+
+    private void runTimer() {
+
+        while (running) {
+            try {
+                now = System.currentTimeMillis();
+                applyPendingJobs();
+                wheel.advanceTo(now / tickMillis, this::onDue);
+                dispatch();
+                logMisfires();
+                groupCount = groups.size();
+            } catch (Throwable e) {
+                ExceptionUtils.log(logger, GeneralException.create(
+                    ErrorSeverity.Critical,
+                    String.format("The timer of the scheduler (%s) got an unexpected exception.", name),
+                    e));
+            }
+            // parks until the next tick the wheel has something to do at, a job added before it wakes it up.
+            long next = wheel.nextTick();
+            wakeTick = next;
+            if (running && pendingJobs.isEmpty()) {
+                if (next == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long wait = next * tickMillis - System.currentTimeMillis();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+                    }
+                }
+            }
+            wakeTick = Long.MIN_VALUE;
+        }
+    }
+
+    private void applyPendingJobs() {
+
+        CronJob job;
+        while ((job = pendingJobs.poll()) != null) {
+            if (job.removed) {
+                continue;
+            }
+            if (job.cancelled) {
+                // the job is queued twice if it's cancelled before it joins a group.
+                var group = job.group;
+                if (group != null) {
+                    group.remove(job);
+                    if (group.size() == 0) {
+                        wheel.remove(group);
+                        groups.remove(new GroupKey(group.expression, group.nextFireTime));
+                        metrics.release(group.metrics);
+                    }
+                }
+                job.removed = true;
+                jobCount.decrementAndGet();
+            } else {
+                joinGroup(job, job.firstFireTime);
+            }
+        }
+    }
+
+    private void joinGroup(CronJob job, long fireTime) {
+
+        var key = new GroupKey(job.getExpression(), fireTime);
+        var group = groups.get(key);
+        if (group == null) {
+            group = new JobGroup(job.getExpression(), metrics.of(job.getExpression()), fireTime);
+            groups.put(key, group);
+            wheel.add(group, toTick(fireTime));
+        }
+        group.add(job);
+    }
+
+    private void onDue(TimingWheel.Entry entry) {
+
+        var group = (JobGroup) entry;
+        var expression = group.expression;
+        long fireTime = group.nextFireTime;
+        groups.remove(new GroupKey(expression, fireTime));
+
+        long next;
+        long start = System.nanoTime();
+        if (now - fireTime <= misfireThreshold) {
+            firings.add(new Firing(group.snapshot(), new long[] { fireTime }, group.metrics));
+            // the next one can be due too if the timer thread is a bit late, it's due again in this tick.
+            next = expression.nextFireEpochMillis(fireTime);
+        } else {
+            catchUp(group, fireTime);
+            next = expression.nextFireEpochMillis(now);
+        }
+        group.metrics.getEvaluationTime().record((System.nanoTime() - start) / 1000);
+
+        if (next == -1) {
+            group.nextFireTime = -1;
+            for (var job : group.snapshot()) {
+                if (!job.removed) {
+                    job.removed = true;
+                    jobCount.decrementAndGet();
+                }
+            }
+            metrics.release(group.metrics);
+            return;
+        }
+
+        var key = new GroupKey(expression, next);
+        var other = groups.get(key);
+        if (other == null) {
+            group.nextFireTime = next;
+            groups.put(key, group);
+            wheel.add(group, toTick(next));
+        } else if (other.size() >= group.size()) {
+            // the jobs scheduled from a checkpoint catch up with the others, they share the group from now on.
+            group.moveTo(other);
+            metrics.release(group.metrics);
+        } else {
+            wheel.remove(other);
+            other.moveTo(group);
+            metrics.release(other.metrics);
+            group.nextFireTime = next;
+            groups.put(key, group);
+            wheel.add(group, toTick(next));
+        }
+    }
+
+    /**
+     * Applies the misfire policies of the jobs to the fire times from the given one to now. The missed fire times
+     * are found once for the group.
+     */
+    private void catchUp(JobGroup group, long fireTime) {
+
+        var expression = group.expression;
+        long missed = expression.countFireTimes(fireTime, now + 1);
+        var jobs = group.snapshot();
+        misfiredJobs += jobs.length;
+        missedFires += missed * jobs.length;
+
+        var fireOnce = new ArrayList<CronJob>();
+        var fireAll = new ArrayList<CronJob>();
+        for (var job : jobs) {
+            switch (job.getMisfirePolicy()) {
+                case FireOnce -> fireOnce.add(job);
+                case FireAll -> fireAll.add(job);
+                case Skip -> {
+                }
+            }
+        }
+        if (!fireOnce.isEmpty()) {
+            firings.add(new Firing(
+                fireOnce.toArray(CronJob[]::new),
+                new long[] { expression.previousFireEpochMillis(now + 1) },
+                group.metrics));
+        }
+        if (!fireAll.isEmpty()) {
+            long from = fireTime;
+            if (missed > MAX_CATCH_UP_FIRES) {
+                // only the latest ones if there are too many.
+                from = now + 1;
+                for (int i = 0; i < MAX_CATCH_UP_FIRES; i++) {
+                    from = expression.previousFireEpochMillis(from);
+                }
+            }
+            firings.add(new Firing(
+                fireAll.toArray(CronJob[]::new), expression.fireTimes(from, now + 1).toArray(), group.metrics));
+        }
+    }
+
+    private void dispatch() {
+
+        for (var firing : firings) {
+            var jobs = firing.jobs();
+            // the catch-up runs of a job stay in one batch, so they run in order.
+            for (int from = 0; from < jobs.length; from += batchSize) {
+                int start = from;
+                int end = Math.min(from + batchSize, jobs.length);
+                long queuedAt = System.nanoTime();
+                try {
+                    executor.execute(() -> {
+                        firing.metrics().getQueueWait().record((System.nanoTime() - queuedAt) / 1000);
+                        runBatch(jobs, start, end, firing.fireTimes(), firing.metrics());
+                    });
+                } catch (RejectedExecutionException e) {
+                    ExceptionUtils.log(logger, GeneralException.create(
+                        ErrorSeverity.Error,
+                        String.format("The executor of the scheduler (%s) rejected %d jobs.", name, end - start),
+                        e));
+                }
+            }
+        }
+        firings.clear();
+    }
+
+    private void runBatch(
+        CronJob[] jobs, int from, int to, long[] fireTimes, SchedulerMetrics.GroupMetrics metrics) {
+
+        var checkpoints = journal;
+        for (long fireTime : fireTimes) {
+            for (int i = from; i < to; i++) {
+                var job = jobs[i];
+                if (job.cancelled) {
+                    continue;
+                }
+                metrics.getFireLag().record((System.currentTimeMillis() - fireTime) * 1000);
+                long start = System.nanoTime();
+                try {
+                    job.getTask().accept(fireTime);
+                } catch (Throwable e) {
+                    ExceptionUtils.log(logger, GeneralException.create(
+                        ErrorSeverity.Error,
+                        String.format("The cron job %s failed.", job),
+                        e));
+                }
+                metrics.getExecutionTime().record((System.nanoTime() - start) / 1000);
+                // a failed run is still a run, it isn't run again after a restart.
+                if (checkpoints != null) {
+                    try {
+                        checkpoints.record(job.getId(), fireTime);
+                    } catch (RuntimeException e) {
+                        ExceptionUtils.log(logger, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void logMisfires() {
+
+        if (misfiredJobs == 0) {
+            return;
+        }
+        logger.warn(String.format(
+            "The scheduler (%s) found %d jobs missed %d fire times in total.", name, misfiredJobs, missedFires));
+        misfiredJobs = 0;
+        missedFires = 0;
+    }
+
+    private long toTick(long epochMillis) {
+
+        // rounds up, so a job never runs before its fire time.
+        return Math.ceilDiv(epochMillis, tickMillis);
+    }
+}
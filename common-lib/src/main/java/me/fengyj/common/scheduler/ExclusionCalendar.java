@@ -0,0 +1,268 @@
+package me.fengyj.common.scheduler;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The days a cron expression doesn't fire on, e.g. the holidays of an exchange. The days are kept as one bitmap per
+ * year, bit n of a year is set when the (n + 1)th day of the year is excluded. It's immutable, so it can be shared by
+ * any number of expressions and threads.
+ * <p>
+ * An expression with an exclusion calendar takes the excluded days out of the bitmask of the matched days of a month,
+ * so a run of the excluded days is skipped at once when searching the next fire time, the same way as the days which
+ * don't match the day-of-month or day-of-week field.
+ *
+ * @see CronExpression#setExclusionCalendar(ExclusionCalendar)
+ * @see CompiledCronExpression#excluding(ExclusionCalendar)
+ */
+public final class ExclusionCalendar implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // the count of the longs of a year bitmap, 6 * 64 bits cover 366 days
+    private static final int WORDS_PER_YEAR = 6;
+    // the day of the year, 0-based, of the first day of each month in a common year
+    private static final int[] MONTH_STARTS = { 0, 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+
+    private final int firstYear;
+    // the bitmaps of the years from the first year, null if no day of the year is excluded.
+    private final long[][] years;
+    private final int size;
+    // it's used as a part of the key of the expression groups in the scheduler, so it's computed once.
+    private final int hash;
+
+    private ExclusionCalendar(int firstYear, long[][] years, int size) {
+
+        this.firstYear = firstYear;
+        this.years = years;
+        this.size = size;
+        int hash = size;
+        for (int i = 0; i < years.length; i++) {
+            if (years[i] != null) {
+                hash = hash * 31 + (firstYear + i) * 17 + Arrays.hashCode(years[i]);
+            }
+        }
+        this.hash = hash;
+    }
+
+    /**
+     * Creates a calendar which excludes the given days.
+     *
+     * @param days the excluded days, from the year 0 to {@link CronExpression#MAX_YEAR}
+     * @return the calendar
+     */
+    public static ExclusionCalendar of(Collection<LocalDate> days) {
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (var day : days) {
+            if (day.getYear() < 0 || day.getYear() > CronExpression.MAX_YEAR) {
+                throw new IllegalArgumentException(String.format(
+                    "The excluded day (%s) is out of the years from 0 to %d.", day, CronExpression.MAX_YEAR));
+            }
+            first = Math.min(first, day.getYear());
+            last = Math.max(last, day.getYear());
+        }
+        if (first > last) {
+            return new ExclusionCalendar(0, new long[0][], 0);
+        }
+
+        var years = new long[last - first + 1][];
+        int size = 0;
+        for (var day : days) {
+            var bitmap = years[day.getYear() - first];
+            if (bitmap == null) {
+                bitmap = years[day.getYear() - first] = new long[WORDS_PER_YEAR];
+            }
+            int bit = day.getDayOfYear() - 1;
+            if ((bitmap[bit >>> 6] & (1L << bit)) == 0) {
+                bitmap[bit >>> 6] |= 1L << bit;
+                size++;
+            }
+        }
+        return new ExclusionCalendar(first, years, size);
+    }
+
+    /**
+     * Creates a calendar which excludes the given days.
+     *
+     * @see #of(Collection)
+     */
+    public static ExclusionCalendar of(LocalDate... days) {
+
+        return of(List.of(days));
+    }
+
+    /**
+     * Returns a calendar which excludes the days of both calendars.
+     */
+    public ExclusionCalendar union(ExclusionCalendar other) {
+
+        if (other.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return other;
+        }
+        int first = Math.min(firstYear, other.firstYear);
+        int last = Math.max(firstYear + years.length, other.firstYear + other.years.length) - 1;
+        var merged = new long[last - first + 1][];
+        int count = 0;
+        for (int year = first; year <= last; year++) {
+            var a = getYear(year);
+            var b = other.getYear(year);
+            if (a == null && b == null) {
+                continue;
+            }
+            var bitmap = new long[WORDS_PER_YEAR];
+            for (int i = 0; i < WORDS_PER_YEAR; i++) {
+                bitmap[i] = (a == null ? 0L : a[i]) | (b == null ? 0L : b[i]);
+                count += Long.bitCount(bitmap[i]);
+            }
+            merged[year - first] = bitmap;
+        }
+        return new ExclusionCalendar(first, merged, count);
+    }
+
+    public boolean isExcluded(LocalDate day) {
+
+        var bitmap = getYear(day.getYear());
+        int bit = day.getDayOfYear() - 1;
+        return bitmap != null && (bitmap[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Returns the count of the excluded days.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Returns the bitmask of the excluded days in the month, bit n is set when the day n is excluded. It's in the
+     * same form as {@link CronExpression#getDaysOfMonth(int, int)}.
+     */
+    long getExcludedDays(int year, int mon) {
+
+        var bitmap = getYear(year);
+        if (bitmap == null) {
+            return 0L;
+        }
+        int from = MONTH_STARTS[mon] + (mon > 2 && CronExpression.isLeapYear(year) ? 1 : 0);
+        int word = from >>> 6;
+        int shift = from & 63;
+        long days = bitmap[word] >>> shift;
+        if (shift != 0 && word + 1 < WORDS_PER_YEAR) {
+            days |= bitmap[word + 1] << (64 - shift);
+        }
+        // day 1 is bit 1, and the days of the next month are dropped.
+        return (days << 1) & (-1L >>> (63 - CronExpression.getLastDayOfMonth(mon, year))) & ~1L;
+    }
+
+    /**
+     * Writes the bitmaps of the years which have excluded days, it's a part of the binary form of
+     * {@link CronExpression#toBytes()}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+
+        int count = 0;
+        for (var bitmap : years) {
+            if (bitmap != null) count++;
+        }
+        CronExpression.writeVarLong(out, firstYear);
+        CronExpression.writeVarLong(out, count);
+        int previous = firstYear;
+        for (int i = 0; i < years.length; i++) {
+            if (years[i] != null) {
+                // the distance from the previous year which has excluded days
+                CronExpression.writeVarLong(out, firstYear + i - previous);
+                previous = firstYear + i;
+                for (long word : years[i]) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    static ExclusionCalendar readFrom(DataInput in) throws IOException {
+
+        long first = CronExpression.readVarLong(in);
+        long count = CronExpression.readVarLong(in);
+        // the values are unsigned, a negative one is a corrupted one. the count is checked before anything is
+        // allocated by it.
+        if (first < 0 || first > CronExpression.MAX_YEAR || count < 0 || count > CronExpression.MAX_YEAR + 1 - first) {
+            throw new StreamCorruptedException("The years of the exclusion calendar are out of range.");
+        }
+        var bitmaps = new long[(int) count][];
+        var indexes = new int[(int) count];
+        int size = 0;
+        long year = first;
+        for (int i = 0; i < count; i++) {
+            // the years are in ascending order, only the first one can be at the distance 0.
+            long distance = CronExpression.readVarLong(in);
+            if (distance < (i > 0 ? 1 : 0) || distance > CronExpression.MAX_YEAR - year) {
+                throw new StreamCorruptedException("The years of the exclusion calendar are out of range.");
+            }
+            year += distance;
+            var bitmap = new long[WORDS_PER_YEAR];
+            for (int j = 0; j < WORDS_PER_YEAR; j++) {
+                bitmap[j] = in.readLong();
+                size += Long.bitCount(bitmap[j]);
+            }
+            // 366 days at most, and a year without excluded days isn't kept.
+            if ((bitmap[WORDS_PER_YEAR - 1] & (-1L << (366 - 64 * (WORDS_PER_YEAR - 1)))) != 0
+                || Arrays.stream(bitmap).allMatch(w -> w == 0)) {
+                throw new StreamCorruptedException("The days of the exclusion calendar are out of range.");
+            }
+            bitmaps[i] = bitmap;
+            indexes[i] = (int) (year - first);
+        }
+        var years = new long[count == 0 ? 0 : indexes[(int) count - 1] + 1][];
+        for (int i = 0; i < count; i++) {
+            years[indexes[i]] = bitmaps[i];
+        }
+        return new ExclusionCalendar(count == 0 ? 0 : (int) first, years, size);
+    }
+
+    private long[] getYear(int year) {
+
+        int index = year - firstYear;
+        return index >= 0 && index < years.length ? years[index] : null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (this == obj) return true;
+        if (!(obj instanceof ExclusionCalendar other)) return false;
+        if (size != other.size || hash != other.hash) return false;
+        if (size == 0) return true;
+        int last = Math.max(firstYear + years.length, other.firstYear + other.years.length);
+        for (int year = Math.min(firstYear, other.firstYear); year < last; year++) {
+            var a = getYear(year);
+            var b = other.getYear(year);
+            if (a != b && (a == null || b == null || !Arrays.equals(a, b))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("ExclusionCalendar(%d days)", size);
+    }
+}
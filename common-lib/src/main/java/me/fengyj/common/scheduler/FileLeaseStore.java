@@ -0,0 +1,174 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.exceptions.ErrorSeverity;
+import me.fengyj.common.exceptions.InfrastructureException;
+import me.fengyj.common.exceptions.ResourceInfo;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link LeaseStore} keeping each lease in a file of a directory, which is for the tests and the nodes of a
+ * cluster running on one machine. The file of a lease has the owner and the time it's valid until in 2 lines, and
+ * is replaced atomically on every change.
+ * <p>
+ * The changes are serialized by a lock of the file {@value #LOCK_FILE} in the directory, which works across the
+ * processes, and by a monitor for the threads of a process, since a file lock is held by the whole process.
+ */
+public final class FileLeaseStore implements LeaseStore {
+
+    static final String LOCK_FILE = "leases.lock";
+    static final String SUFFIX = ".lease";
+
+    // the file locks are held by the process, so the threads of it share one monitor for a directory.
+    private static final Map<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final ResourceInfo resourceInfo;
+    private final Object monitor;
+
+    private FileLeaseStore(Path directory) {
+
+        this.directory = directory;
+        this.resourceInfo = new ResourceInfo("File", directory.toString());
+        this.monitor = monitors.computeIfAbsent(directory, k -> new Object());
+    }
+
+    /**
+     * Opens the store in the directory, creates the directory if it doesn't exist.
+     *
+     * @param directory the directory of the lease files
+     * @throws IOException if the directory cannot be created
+     */
+    public static FileLeaseStore open(Path directory) throws IOException {
+
+        var normalized = directory.toAbsolutePath().normalize();
+        Files.createDirectories(normalized);
+        return new FileLeaseStore(normalized);
+    }
+
+    public Path getDirectory() {
+
+        return directory;
+    }
+
+    @Override
+    public long tryAcquire(String key, String owner, long now, long validUntil) {
+
+        if (owner == null || owner.isEmpty()) {
+            throw new IllegalArgumentException("The owner cannot be null or empty.");
+        }
+        return locked("acquire", key, () -> {
+            var lease = read(key);
+            if (lease != null && lease.isValid(now) && !owner.equals(lease.owner())) {
+                return -1L;
+            }
+            write(new Lease(key, owner, validUntil));
+            return lease == null ? 0L : lease.validUntil();
+        });
+    }
+
+    @Override
+    public boolean release(String key, String owner, long at) {
+
+        return locked("release", key, () -> {
+            var lease = read(key);
+            if (lease == null || !owner.equals(lease.owner())) {
+                return false;
+            }
+            write(new Lease(key, null, Math.min(at, lease.validUntil())));
+            return true;
+        });
+    }
+
+    @Override
+    public List<Lease> list(String prefix) {
+
+        return locked("list", prefix, () -> {
+            var leases = new ArrayList<Lease>();
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator) {
+                    var name = file.getFileName().toString();
+                    if (!name.endsWith(SUFFIX)) {
+                        continue;
+                    }
+                    var key = decode(name.substring(0, name.length() - SUFFIX.length()));
+                    if (key.startsWith(prefix)) {
+                        var lease = read(key);
+                        if (lease != null) {
+                            leases.add(lease);
+                        }
+                    }
+                }
+            }
+            return leases;
+        });
+    }
+
+    private interface Action<T> {
+
+        T run() throws IOException;
+    }
+
+    private <T> T locked(String action, String key, Action<T> body) {
+
+        synchronized (monitor) {
+            try (var channel = FileChannel.open(
+                directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 var ignored = channel.lock()) {
+                return body.run();
+            } catch (IOException e) {
+                throw InfrastructureException.create(
+                    ErrorSeverity.Error,
+                    resourceInfo,
+                    String.format("Failed to %s the lease (%s) in the lease store (%s).", action, key, directory),
+                    e);
+            }
+        }
+    }
+
+    private Lease read(String key) throws IOException {
+
+        var file = fileOf(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        var lines = Files.readString(file, StandardCharsets.UTF_8).split("\n", -1);
+        try {
+            var owner = lines[0].isEmpty() ? null : decode(lines[0]);
+            return new Lease(key, owner, Long.parseLong(lines[1].trim()));
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("The lease file (%s) is broken.", file), e);
+        }
+    }
+
+    private void write(Lease lease) throws IOException {
+
+        var file = fileOf(lease.key());
+        var temp = file.resolveSibling(file.getFileName() + ".tmp");
+        var owner = lease.owner() == null ? "" : URLEncoder.encode(lease.owner(), StandardCharsets.UTF_8);
+        Files.writeString(temp, owner + "\n" + lease.validUntil() + "\n", StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path fileOf(String key) {
+
+        return directory.resolve(URLEncoder.encode(key, StandardCharsets.UTF_8) + SUFFIX);
+    }
+
+    private static String decode(String value) {
+
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
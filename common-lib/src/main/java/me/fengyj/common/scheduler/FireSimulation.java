@@ -0,0 +1,264 @@
+package me.fengyj.common.scheduler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The count of the fire times of a set of expressions in each bucket of a time range, e.g. the fires per minute of
+ * all the jobs over the next year, to see the load of a schedule change before it's deployed.
+ * <p>
+ * The identical expressions are swept once and counted as many times as they appear. The distinct ones are split
+ * into partitions swept in parallel on a {@link ForkJoinPool}, and the histograms of the partitions are added up.
+ * A partition sweeps the time range once, with a priority queue of the fire time cursors of its expressions ordered
+ * by their next fire times: the cursor polled from the queue consumes its fire times in the bucket of the next one,
+ * and goes back to the queue with the fire time after them. So an expression firing once a month is touched 12
+ * times in a year, no matter how small the buckets are, and the fire times of an expression are never computed
+ * one by one from scratch as with {@link CronExpression#getNextValidTimeAfter(java.util.Date)}.
+ */
+public final class FireSimulation {
+
+    // the least count of the expressions swept by a task without splitting it further
+    private static final int PARTITION_SIZE = 64;
+    // the partitions per thread of the pool, each partition has a histogram of its own.
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final long fromMillis;
+    private final long toMillis;
+    private final long bucketMillis;
+    private final long[] counts;
+    private final long total;
+
+    private FireSimulation(long fromMillis, long toMillis, long bucketMillis, long[] counts) {
+
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.bucketMillis = bucketMillis;
+        this.counts = counts;
+        this.total = Arrays.stream(counts).sum();
+    }
+
+    /**
+     * Simulates the fire times on the common {@link ForkJoinPool}.
+     *
+     * @see #simulate(Collection, long, long, long, ForkJoinPool)
+     */
+    public static FireSimulation simulate(
+        Collection<CompiledCronExpression> expressions, long fromMillis, long toMillis, long bucketMillis) {
+
+        return simulate(expressions, fromMillis, toMillis, bucketMillis, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts the fire times of the expressions from {@code fromMillis} (inclusive) to {@code toMillis} (exclusive)
+     * in the buckets of the given length. The last bucket is shorter if the length doesn't divide the time range.
+     *
+     * @param expressions  the expressions of the jobs, an expression of many jobs appears as many times
+     * @param fromMillis   the start of the time range, in milliseconds since the epoch
+     * @param toMillis     the end of the time range, in milliseconds since the epoch
+     * @param bucketMillis the length of a bucket in milliseconds
+     * @param pool         the pool to sweep the partitions of the expressions on
+     * @return the counts of the fire times in the buckets
+     */
+    public static FireSimulation simulate(
+        Collection<CompiledCronExpression> expressions,
+        long fromMillis,
+        long toMillis,
+        long bucketMillis,
+        ForkJoinPool pool) {
+
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("bucketMillis must be positive");
+        }
+        if (toMillis < fromMillis) {
+            throw new IllegalArgumentException("toMillis cannot be earlier than fromMillis");
+        }
+        long buckets = Math.ceilDiv(toMillis - fromMillis, bucketMillis);
+        if (buckets > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many buckets, the bucket length is too short for the time range.");
+        }
+
+        // the jobs of an expression fire together, so it's swept once and counted as many times.
+        var weights = new LinkedHashMap<CompiledCronExpression, Long>();
+        for (var expression : expressions) {
+            weights.merge(expression, 1L, Long::sum);
+        }
+        var distinct = weights.keySet().toArray(new CompiledCronExpression[0]);
+        var weightOf = new long[distinct.length];
+        for (int i = 0; i < distinct.length; i++) {
+            weightOf[i] = weights.get(distinct[i]);
+        }
+
+        var sweep = new Sweep(distinct, weightOf, fromMillis, toMillis, bucketMillis, (int) buckets);
+        int partitionSize = Math.max(
+            PARTITION_SIZE, Math.ceilDiv(distinct.length, pool.getParallelism() * PARTITIONS_PER_THREAD));
+        long[] counts = distinct.length == 0
+            ? new long[(int) buckets]
+            : pool.invoke(new SweepTask(sweep, partitionSize, 0, distinct.length));
+        return new FireSimulation(fromMillis, toMillis, bucketMillis, counts);
+    }
+
+    public long getFromMillis() {
+
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+
+        return toMillis;
+    }
+
+    public long getBucketMillis() {
+
+        return bucketMillis;
+    }
+
+    public int getBucketCount() {
+
+        return counts.length;
+    }
+
+    /**
+     * Returns the start of the bucket in milliseconds since the epoch.
+     */
+    public long getBucketStart(int bucket) {
+
+        return fromMillis + bucket * bucketMillis;
+    }
+
+    /**
+     * Returns the count of the fire times in the bucket.
+     */
+    public long getCount(int bucket) {
+
+        return counts[bucket];
+    }
+
+    /**
+     * Returns a copy of the counts of all the buckets.
+     */
+    public long[] getCounts() {
+
+        return counts.clone();
+    }
+
+    /**
+     * Returns the count of all the fire times in the time range.
+     */
+    public long getTotal() {
+
+        return total;
+    }
+
+    /**
+     * Returns the first bucket of the largest count, or -1 if there is no bucket.
+     */
+    public int getPeakBucket() {
+
+        int peak = -1;
+        for (int i = 0; i < counts.length; i++) {
+            if (peak == -1 || counts[i] > counts[peak]) {
+                peak = i;
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Returns the largest count of a bucket.
+     */
+    public long getPeak() {
+
+        int peak = getPeakBucket();
+        return peak == -1 ? 0 : counts[peak];
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format(
+            "buckets=%d of %dms, total=%d, peak=%d at %d", counts.length, bucketMillis, total, getPeak(),
+            counts.length == 0 ? fromMillis : getBucketStart(getPeakBucket()));
+    }
+
+    private record Sweep(
+        CompiledCronExpression[] expressions,
+        long[] weights,
+        long fromMillis,
+        long toMillis,
+        long bucketMillis,
+        int buckets) {
+
+        /**
+         * Counts the fire times of the expressions from the index {@code from} (inclusive) to {@code to}
+         * (exclusive) in a histogram of its own.
+         */
+        long[] run(int from, int to) {
+
+            var counts = new long[buckets];
+            var queue = new PriorityQueue<Cursor>(to - from, Comparator.comparingLong(c -> c.cursor().peek()));
+            for (int i = from; i < to; i++) {
+                var cursor = expressions[i].cursor(fromMillis - 1);
+                long next = cursor.peek();
+                if (next != -1 && next < toMillis) {
+                    queue.add(new Cursor(cursor, weights[i]));
+                }
+            }
+            Cursor current;
+            while ((current = queue.poll()) != null) {
+                var cursor = current.cursor();
+                int bucket = (int) ((cursor.peek() - fromMillis) / bucketMillis);
+                long bucketEnd = Math.min(fromMillis + (bucket + 1) * bucketMillis, toMillis);
+                counts[bucket] += current.weight() * cursor.countBefore(bucketEnd);
+                long next = cursor.peek();
+                if (next != -1 && next < toMillis) {
+                    queue.add(current);
+                }
+            }
+            return counts;
+        }
+    }
+
+    // the cursor isn't moved while it's in the queue, so the order by the next fire time holds.
+    private record Cursor(FireTimeCursor cursor, long weight) {
+    }
+
+    private static final class SweepTask extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Sweep sweep;
+        private final int partitionSize;
+        private final int from;
+        private final int to;
+
+        SweepTask(Sweep sweep, int partitionSize, int from, int to) {
+
+            this.sweep = sweep;
+            this.partitionSize = partitionSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+
+            if (to - from <= partitionSize) {
+                return sweep.run(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            var right = new SweepTask(sweep, partitionSize, middle, to);
+            right.fork();
+            var counts = new SweepTask(sweep, partitionSize, from, middle).compute();
+            var others = right.join();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += others[i];
+            }
+            return counts;
+        }
+    }
+}
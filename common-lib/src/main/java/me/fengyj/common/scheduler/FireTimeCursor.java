@@ -0,0 +1,227 @@
+package me.fengyj.common.scheduler;
+
+import java.time.ZoneId;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static me.fengyj.common.scheduler.CronExpression.*;
+
+/**
+ * Iterates the fire times of a {@link CronExpression}. It keeps the wall-clock fields of the current fire time, the
+ * days bitmask of the current month and the zone offset until the next transition, so moving to the next fire time
+ * is usually a few bitmask lookups. Right after a gap, where the instants of the wall-clock times in the gap and the
+ * ones after it interleave, the fire times are searched one by one instead. The fire times are the same as calling
+ * {@link CronExpression#nextFireEpochMillis(long, ZoneId)} with the previous one repeatedly.
+ */
+final class FireTimeCursor implements PrimitiveIterator.OfLong {
+
+    private final CronExpression cron;
+    private final ZoneTransitions transitions;
+
+    // the wall-clock fields of the current match
+    private int year;
+    private int mon;
+    private int day;
+    private int hr;
+    private int min;
+    private int sec;
+    private long epochDay;
+    private long daysOfMonth;
+
+    // the wall-clock times in [localFrom, localTo) are at the same offset.
+    private int offset;
+    private long localFrom = Long.MAX_VALUE;
+    private long localTo = Long.MIN_VALUE;
+
+    // the index of the gap transition whose period the fire times are searched in, or -1
+    private int gapIndex = -1;
+
+    // the next fire time in epoch seconds, or NO_TIME if there isn't one
+    private long next;
+
+    FireTimeCursor(CronExpression cron, long afterEpochMillis, ZoneId zone) {
+
+        this.cron = cron;
+        this.transitions = ZoneTransitions.of(zone);
+
+        long start = Math.floorDiv(afterEpochMillis, 1000) + 1;
+        if (start > END_OF_MAX_YEAR) {
+            this.next = NO_TIME;
+            return;
+        }
+        start = Math.max(start, BEFORE_YEAR_ZERO);
+
+        this.next = seek(toLocalSearchStart(start, transitions)) ? find(start) : NO_TIME;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        return next != NO_TIME;
+    }
+
+    @Override
+    public long nextLong() {
+
+        if (next == NO_TIME) {
+            throw new NoSuchElementException();
+        }
+        long current = next;
+        if (gapIndex >= 0) {
+            next = findInGap(current + 1);
+        } else {
+            next = advance() ? find(current + 1) : NO_TIME;
+        }
+        return current * 1000;
+    }
+
+    /**
+     * Returns the next fire time in milliseconds since the epoch without consuming it, or -1 if there isn't one.
+     */
+    long peek() {
+
+        return next == NO_TIME ? -1 : next * 1000;
+    }
+
+    /**
+     * Consumes the fire times earlier than the given instant and returns the count of them.
+     */
+    long countBefore(long epochMillis) {
+
+        long count = 0L;
+        while (next != NO_TIME && next * 1000 < epochMillis) {
+            nextLong();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Moves to the first match at or after the wall-clock time.
+     */
+    private boolean seek(long local) {
+
+        long match = cron.nextLocalMatch(local);
+        if (match == NO_TIME) {
+            return false;
+        }
+        epochDay = Math.floorDiv(match, SECONDS_PER_DAY);
+        int secOfDay = Math.floorMod(match, SECONDS_PER_DAY);
+        int date = toCivilDate(epochDay);
+        year = civilYear(date);
+        mon = civilMonth(date);
+        day = civilDay(date);
+        hr = secOfDay / 3600;
+        min = secOfDay / 60 % 60;
+        sec = secOfDay % 60;
+        daysOfMonth = cron.getDaysOfMonth(year, mon);
+        return true;
+    }
+
+    /**
+     * Returns the instant of the current match, or of the first match after it, which is equal to or later than
+     * the given instant. The wall-clock times moved out of a gap can be earlier than the fire times found before.
+     */
+    private long find(long start) {
+
+        while (true) {
+            long instant = toEpochSecond(epochDay * SECONDS_PER_DAY + hr * 3600 + min * 60 + sec);
+            if (instant >= start) {
+                int index = transitions.indexAt(instant);
+                if (isInGap(instant, index, transitions)) {
+                    gapIndex = index;
+                    return cron.firstInGap(Math.max(start, transitions.instant(index)), index, transitions);
+                }
+                return instant;
+            }
+            if (!advance()) {
+                return NO_TIME;
+            }
+        }
+    }
+
+    /**
+     * Returns the next fire time in the period right after the gap, or goes on with the wall-clock times after the
+     * period if there isn't one.
+     */
+    private long findInGap(long start) {
+
+        long instant = cron.firstInGap(start, gapIndex, transitions);
+        if (instant != NO_TIME) {
+            return instant;
+        }
+        long local = transitions.localEnd(gapIndex) + transitions.length(gapIndex);
+        gapIndex = -1;
+        return seek(local) ? find(start) : NO_TIME;
+    }
+
+    /**
+     * Moves to the next match, from the lowest field to the highest one.
+     */
+    private boolean advance() {
+
+        int t = nextSetBit(cron.seconds, sec + 1);
+        if (t != -1) {
+            sec = t;
+            return true;
+        }
+        sec = firstSetBit(cron.seconds);
+
+        t = nextSetBit(cron.minutes, min + 1);
+        if (t != -1) {
+            min = t;
+            return true;
+        }
+        min = firstSetBit(cron.minutes);
+
+        t = nextSetBit(cron.hours, hr + 1);
+        if (t != -1) {
+            hr = t;
+            return true;
+        }
+        hr = firstSetBit(cron.hours);
+
+        t = nextSetBit(daysOfMonth, day + 1);
+        if (t != -1) {
+            epochDay += t - day;
+            day = t;
+            return true;
+        }
+
+        while (true) {
+            t = nextSetBit(cron.months, mon + 1);
+            if (t != -1) {
+                mon = t;
+            } else {
+                t = nextSetBit(cron.years, year + 1);
+                if (t == -1 || t > MAX_YEAR) {
+                    return false;
+                }
+                year = t;
+                mon = firstSetBit(cron.months);
+            }
+            daysOfMonth = cron.getDaysOfMonth(year, mon);
+            if (daysOfMonth != 0L) {
+                day = firstSetBit(daysOfMonth);
+                epochDay = toEpochDay(year, mon, day);
+                return true;
+            }
+        }
+    }
+
+    private long toEpochSecond(long local) {
+
+        if (local >= localFrom && local < localTo) {
+            return local - offset;
+        }
+        int index = transitions.indexOfLocal(local);
+        if (index >= 0 && local < transitions.localEnd(index)) {
+            // in a gap or an overlap, it's rare enough not to be cached.
+            return transitions.toEpochSecond(local);
+        }
+        offset = transitions.offsetAfter(index);
+        localFrom = index < 0 ? Long.MIN_VALUE : transitions.localEnd(index);
+        localTo = transitions.nextLocalStart(index);
+        return local - offset;
+    }
+}
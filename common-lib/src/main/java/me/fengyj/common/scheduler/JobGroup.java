@@ -0,0 +1,83 @@
+package me.fengyj.common.scheduler;
+
+import java.util.Arrays;
+
+/**
+ * The jobs of the same compiled expression which are due at the same fire time. A group takes one slot of the
+ * {@link TimingWheel}, and the next fire time is computed once for all the jobs in it.
+ * <p>
+ * It's only changed by the timer thread of the scheduler. The snapshot of the jobs handed to the executor is never
+ * changed, it's copied again only after a job joins or leaves the group.
+ */
+final class JobGroup extends TimingWheel.Entry {
+
+    final CompiledCronExpression expression;
+    final SchedulerMetrics.GroupMetrics metrics;
+    // the fire time the group is due at, -1 if it doesn't fire any more
+    volatile long nextFireTime;
+
+    private CronJob[] jobs = new CronJob[4];
+    private int size;
+    private CronJob[] snapshot;
+
+    JobGroup(CompiledCronExpression expression, SchedulerMetrics.GroupMetrics metrics, long nextFireTime) {
+
+        this.expression = expression;
+        this.metrics = metrics;
+        this.nextFireTime = nextFireTime;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    void add(CronJob job) {
+
+        if (size == jobs.length) {
+            jobs = Arrays.copyOf(jobs, size * 2);
+        }
+        job.index = size;
+        job.group = this;
+        jobs[size++] = job;
+        snapshot = null;
+    }
+
+    /**
+     * Removes the job in O(1), the last job takes its place.
+     */
+    void remove(CronJob job) {
+
+        int index = job.index;
+        var last = jobs[--size];
+        jobs[index] = last;
+        last.index = index;
+        jobs[size] = null;
+        job.group = null;
+        snapshot = null;
+    }
+
+    /**
+     * Moves all the jobs to the other group.
+     */
+    void moveTo(JobGroup other) {
+
+        for (int i = 0; i < size; i++) {
+            other.add(jobs[i]);
+            jobs[i] = null;
+        }
+        size = 0;
+        snapshot = null;
+    }
+
+    /**
+     * Returns the jobs in the group, the array must not be changed.
+     */
+    CronJob[] snapshot() {
+
+        if (snapshot == null) {
+            snapshot = Arrays.copyOf(jobs, size);
+        }
+        return snapshot;
+    }
+}
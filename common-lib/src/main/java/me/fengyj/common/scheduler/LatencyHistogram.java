@@ -0,0 +1,180 @@
+package me.fengyj.common.scheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in microseconds. A value is counted in a bucket by one atomic increment, the
+ * buckets are 2 per power of 2, so a percentile read from it is within 50% above the real one, which is enough to
+ * tell whether a fire is late by microseconds, milliseconds or seconds.
+ * <p>
+ * The values from 0 to 2^{@value #MAX_POWER} microseconds (about 12 days) are counted, the larger ones are counted
+ * as the largest bucket. It's about 700 bytes no matter how many values are recorded.
+ */
+public final class LatencyHistogram {
+
+    static final int MAX_POWER = 40;
+    // 0 and 1, then 2 buckets for each power of 2 from 2^1 to 2^MAX_POWER
+    static final int BUCKETS = 2 * MAX_POWER + 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Counts the value, a negative one is counted as 0.
+     *
+     * @param micros the duration in microseconds
+     */
+    public void record(long micros) {
+
+        long value = Math.max(micros, 0);
+        counts.incrementAndGet(indexOf(value));
+        total.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the counts at the moment. The values recorded while it's being taken can be partly counted.
+     */
+    public Snapshot snapshot() {
+
+        var buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = counts.get(i);
+        }
+        return new Snapshot(buckets, total.get(), max.get());
+    }
+
+    static int indexOf(long value) {
+
+        if (value < 2) {
+            return (int) value;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        if (power > MAX_POWER) {
+            return BUCKETS - 1;
+        }
+        // the bit after the highest one picks the lower or the upper half of the power
+        return 2 * power + (int) ((value >>> (power - 1)) & 1);
+    }
+
+    /**
+     * Returns the largest value counted in the bucket.
+     */
+    static long upperBoundOf(int index) {
+
+        if (index < 2) {
+            return index;
+        }
+        int power = index >>> 1;
+        long lower = (2L + (index & 1)) << (power - 1);
+        return lower + (1L << (power - 1)) - 1;
+    }
+
+    /**
+     * The counts of a histogram at a moment. The getters are the attributes shown by JMX.
+     */
+    public static final class Snapshot {
+
+        private final long[] buckets;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        Snapshot(long[] buckets, long total, long max) {
+
+            long count = 0;
+            for (long c : buckets) {
+                count += c;
+            }
+            this.buckets = buckets;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        public long getCount() {
+
+            return count;
+        }
+
+        /**
+         * Returns the sum of the values in microseconds.
+         */
+        public long getTotal() {
+
+            return total;
+        }
+
+        public long getMax() {
+
+            return max;
+        }
+
+        public double getMean() {
+
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        public long getP50() {
+
+            return getPercentile(50);
+        }
+
+        public long getP90() {
+
+            return getPercentile(90);
+        }
+
+        public long getP99() {
+
+            return getPercentile(99);
+        }
+
+        /**
+         * Returns the value in microseconds which the given percent of the values are not larger than, the upper
+         * bound of the bucket it's in. It's 0 if nothing is counted.
+         *
+         * @param percent from 0 to 100
+         */
+        public long getPercentile(double percent) {
+
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(Math.max(percent, 0), 100) / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns the counts of both snapshots.
+         */
+        public Snapshot merge(Snapshot other) {
+
+            var merged = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] = buckets[i] + other.buckets[i];
+            }
+            return new Snapshot(merged, total + other.total, Math.max(max, other.max));
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format(
+                "count=%d, mean=%.1fus, p50=%dus, p90=%dus, p99=%dus, max=%dus",
+                count, getMean(), getP50(), getP90(), getP99(), max);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package me.fengyj.common.scheduler;
+
+import java.util.List;
+
+/**
+ * The store of the time-limited leases shared by the nodes of a cluster, e.g. a table of a database or a directory
+ * of a shared file system. A lease is held by one owner until it ends, and taken by another owner after that. All
+ * the methods must be atomic across the nodes.
+ * <p>
+ * The {@link ClusterCronScheduler} takes a lease on each shard of the jobs it runs, and keeps a lease on its node id
+ * as the heartbeat the nodes know each other by.
+ *
+ * @see FileLeaseStore
+ */
+public interface LeaseStore {
+
+    /**
+     * A lease of the key.
+     *
+     * @param key        the key of the lease
+     * @param owner      the owner of the lease, or null if it's released
+     * @param validUntil the time the lease ends at in milliseconds since the epoch
+     */
+    record Lease(String key, String owner, long validUntil) {
+
+        public boolean isValid(long now) {
+
+            return owner != null && now < validUntil;
+        }
+    }
+
+    /**
+     * Takes the lease if it ended or is held by the owner already, and makes it valid until the given time.
+     *
+     * @param key        the key of the lease
+     * @param owner      the owner taking the lease
+     * @param now        the current time in milliseconds since the epoch
+     * @param validUntil the time the lease ends at
+     * @return the time the previous lease of the key ended at, 0 if the key is never leased, or -1 if the lease is
+     * held by another owner
+     */
+    long tryAcquire(String key, String owner, long now, long validUntil);
+
+    /**
+     * Ends the lease at the given time, it can be taken by any owner after that.
+     *
+     * @param key   the key of the lease
+     * @param owner the owner of the lease
+     * @param at    the time the lease ends at, it's not later than the time the lease is valid until
+     * @return false if the lease isn't held by the owner
+     */
+    boolean release(String key, String owner, long at);
+
+    /**
+     * Returns the leases of the keys starting with the prefix, including the ended ones.
+     */
+    List<Lease> list(String prefix);
+}
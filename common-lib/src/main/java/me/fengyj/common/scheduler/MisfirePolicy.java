@@ -0,0 +1,21 @@
+package me.fengyj.common.scheduler;
+
+/**
+ * What a {@link CronScheduler} does with the fire times of a job missed by a pause, like a long GC pause or a
+ * frozen container, or missed while the process is down.
+ */
+public enum MisfirePolicy {
+    /**
+     * Runs the job once for the latest missed fire time.
+     */
+    FireOnce,
+    /**
+     * Runs the job for every missed fire time, in order, up to {@link CronScheduler#MAX_CATCH_UP_FIRES} of the
+     * latest ones.
+     */
+    FireAll,
+    /**
+     * Doesn't run the job for the missed fire times.
+     */
+    Skip
+}
@@ -0,0 +1,188 @@
+package me.fengyj.common.scheduler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The latency histograms of the job groups of a {@link CronScheduler}, keyed by the expression of the groups. The
+ * jobs of an expression are in different groups only when some of them are catching up after a misfire, so they're
+ * counted together here.
+ * <p>
+ * The histograms are updated without locks: the evaluation time by the timer thread, the others by the threads of
+ * the executor. They tell where the time goes when the jobs run late:
+ * <ul>
+ *     <li>a long evaluation time means the expressions are costly to compute, it delays the timer thread;</li>
+ *     <li>a long queue wait means the executor is too busy;</li>
+ *     <li>a fire lag longer than the queue wait means the jobs before it in the same batch take long to run.</li>
+ * </ul>
+ */
+public final class SchedulerMetrics implements SchedulerMetricsMXBean {
+
+    private final Map<CompiledCronExpression, GroupMetrics> groups = new ConcurrentHashMap<>();
+
+    /**
+     * The histograms of the jobs of an expression, the durations are in microseconds.
+     */
+    public static final class GroupMetrics {
+
+        private final CompiledCronExpression expression;
+        private final LatencyHistogram fireLag = new LatencyHistogram();
+        private final LatencyHistogram evaluationTime = new LatencyHistogram();
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+        private final LatencyHistogram executionTime = new LatencyHistogram();
+        // the count of the job groups of the expression, only accessed by the timer thread of the scheduler
+        private int groupCount;
+
+        GroupMetrics(CompiledCronExpression expression) {
+
+            this.expression = expression;
+        }
+
+        public CompiledCronExpression getExpression() {
+
+            return expression;
+        }
+
+        /**
+         * Returns how late the runs start after their fire times. It's in milliseconds precision.
+         */
+        public LatencyHistogram getFireLag() {
+
+            return fireLag;
+        }
+
+        /**
+         * Returns how long it takes to compute the next fire time of the group, and the missed ones of a misfire.
+         */
+        public LatencyHistogram getEvaluationTime() {
+
+            return evaluationTime;
+        }
+
+        /**
+         * Returns how long the batches of the jobs wait in the executor before they start.
+         */
+        public LatencyHistogram getQueueWait() {
+
+            return queueWait;
+        }
+
+        /**
+         * Returns how long the runs of the jobs take.
+         */
+        public LatencyHistogram getExecutionTime() {
+
+            return executionTime;
+        }
+    }
+
+    /**
+     * Returns the metrics of a new job group of the expression. The metrics are kept until all the groups of the
+     * expression are released.
+     */
+    GroupMetrics of(CompiledCronExpression expression) {
+
+        var metrics = groups.get(expression);
+        if (metrics == null) {
+            metrics = groups.computeIfAbsent(expression, GroupMetrics::new);
+        }
+        metrics.groupCount++;
+        return metrics;
+    }
+
+    /**
+     * Releases the metrics of a job group which is removed, e.g. its last job is cancelled. The metrics of the
+     * expression are removed with its last group, the runs in progress can still record to them.
+     */
+    void release(GroupMetrics metrics) {
+
+        if (--metrics.groupCount == 0) {
+            groups.remove(metrics.expression, metrics);
+        }
+    }
+
+    /**
+     * Returns the metrics of the jobs of the expression, or null if no job of it is scheduled.
+     */
+    public GroupMetrics getGroupMetrics(CompiledCronExpression expression) {
+
+        return groups.get(expression);
+    }
+
+    public Collection<GroupMetrics> getAllGroupMetrics() {
+
+        return Collections.unmodifiableCollection(groups.values());
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getFireLag() {
+
+        return snapshots(GroupMetrics::getFireLag);
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getEvaluationTime() {
+
+        return snapshots(GroupMetrics::getEvaluationTime);
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getQueueWait() {
+
+        return snapshots(GroupMetrics::getQueueWait);
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getExecutionTime() {
+
+        return snapshots(GroupMetrics::getExecutionTime);
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getTotalFireLag() {
+
+        return total(GroupMetrics::getFireLag);
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getTotalEvaluationTime() {
+
+        return total(GroupMetrics::getEvaluationTime);
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getTotalQueueWait() {
+
+        return total(GroupMetrics::getQueueWait);
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getTotalExecutionTime() {
+
+        return total(GroupMetrics::getExecutionTime);
+    }
+
+    private Map<String, LatencyHistogram.Snapshot> snapshots(Function<GroupMetrics, LatencyHistogram> histogram) {
+
+        var result = new TreeMap<String, LatencyHistogram.Snapshot>();
+        for (var metrics : groups.values()) {
+            // the expressions with different exclusion calendars can have the same text.
+            result.merge(
+                metrics.expression.toString(), histogram.apply(metrics).snapshot(), LatencyHistogram.Snapshot::merge);
+        }
+        return result;
+    }
+
+    private LatencyHistogram.Snapshot total(Function<GroupMetrics, LatencyHistogram> histogram) {
+
+        var total = new LatencyHistogram().snapshot();
+        for (var metrics : groups.values()) {
+            total = total.merge(histogram.apply(metrics).snapshot());
+        }
+        return total;
+    }
+}
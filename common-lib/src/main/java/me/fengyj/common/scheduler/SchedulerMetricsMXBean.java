@@ -0,0 +1,41 @@
+package me.fengyj.common.scheduler;
+
+import java.util.Map;
+
+/**
+ * The metrics of a {@link CronScheduler} shown by JMX, see {@link CronScheduler#registerMBean()}. The maps are keyed
+ * by the expressions of the job groups, the durations are in microseconds.
+ */
+public interface SchedulerMetricsMXBean {
+
+    /**
+     * Returns how late the runs start after their fire times.
+     */
+    Map<String, LatencyHistogram.Snapshot> getFireLag();
+
+    /**
+     * Returns how long it takes to compute the next fire times, and the missed ones of a misfire.
+     */
+    Map<String, LatencyHistogram.Snapshot> getEvaluationTime();
+
+    /**
+     * Returns how long the batches wait in the executor before they start.
+     */
+    Map<String, LatencyHistogram.Snapshot> getQueueWait();
+
+    /**
+     * Returns how long the runs take.
+     */
+    Map<String, LatencyHistogram.Snapshot> getExecutionTime();
+
+    /**
+     * Returns the counts of the fire lag of all the groups, the same for the others.
+     */
+    LatencyHistogram.Snapshot getTotalFireLag();
+
+    LatencyHistogram.Snapshot getTotalEvaluationTime();
+
+    LatencyHistogram.Snapshot getTotalQueueWait();
+
+    LatencyHistogram.Snapshot getTotalExecutionTime();
+}
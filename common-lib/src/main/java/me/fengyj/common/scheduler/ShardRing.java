@@ -0,0 +1,104 @@
+package me.fengyj.common.scheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Splits the job ids into shards by consistent hashing. Each shard has {@value #VIRTUAL_POINTS} points on a ring of
+ * 64-bit hashes, and a job id belongs to the shard of the first point at or after its hash, so changing the count of
+ * the shards only moves the ids near the points added or removed.
+ * <p>
+ * The hash is computed from the UTF-8 bytes, so every node of a cluster puts a job id into the same shard.
+ */
+final class ShardRing {
+
+    static final int VIRTUAL_POINTS = 64;
+
+    private final int shardCount;
+    private final long[] points;
+    private final int[] shards;
+
+    ShardRing(int shardCount) {
+
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        this.shardCount = shardCount;
+        int size = shardCount * VIRTUAL_POINTS;
+        var entries = new long[size][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int i = 0; i < VIRTUAL_POINTS; i++) {
+                entries[shard * VIRTUAL_POINTS + i] = new long[] { hash("shard-" + shard + "#" + i), shard };
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.shards = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = entries[i][0];
+            shards[i] = (int) entries[i][1];
+        }
+    }
+
+    int getShardCount() {
+
+        return shardCount;
+    }
+
+    /**
+     * Returns the shard of the key, from 0 to the count of the shards - 1.
+     */
+    int shardOf(String key) {
+
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // the ring wraps around after the last point
+        return shards[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Returns the node preferred to own the shard, the one with the highest score of rendezvous hashing, so a node
+     * joining or leaving the cluster only moves the shards it takes or gives up.
+     *
+     * @return the node, or null if there is no node
+     */
+    static String ownerOf(int shard, Collection<String> nodes) {
+
+        String owner = null;
+        long best = 0;
+        for (var node : nodes) {
+            long score = mix(hash(node) ^ (shard * 0x9E3779B97F4A7C15L));
+            if (owner == null || score > best || (score == best && node.compareTo(owner) < 0)) {
+                owner = node;
+                best = score;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * FNV-1a of the UTF-8 bytes, then the finalizer of MurmurHash3 to spread the bits.
+     */
+    static long hash(String key) {
+
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,209 @@
+package me.fengyj.common.scheduler;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel of {@link #LEVELS} levels with {@link #SLOTS} slots each. The slots of level n cover
+ * 64^n ticks, so the wheel covers 64^6 ticks ahead. An entry is kept in a doubly linked list of a slot, adding and
+ * removing it are O(1). The entries of a higher level slot are moved to the lower levels when the wheel reaches the
+ * start of the slot.
+ * <p>
+ * It's not thread-safe, the scheduler only accesses it from the timer thread.
+ */
+final class TimingWheel {
+
+    static final int LEVELS = 6;
+    static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA = (1L << (LEVELS * SLOT_BITS)) - 1;
+
+    /**
+     * The entry kept in the wheel.
+     */
+    abstract static class Entry {
+
+        // the tick the entry is due at
+        long deadline;
+        Entry prev;
+        Entry next;
+        // the slot list head the entry is in, null if it's not in the wheel
+        Entry slot;
+
+        boolean isScheduled() {
+
+            return slot != null;
+        }
+    }
+
+    /**
+     * The list head of a slot.
+     */
+    private static final class Slot extends Entry {
+
+        Slot() {
+
+            prev = next = this;
+        }
+
+        boolean isEmpty() {
+
+            return next == this;
+        }
+    }
+
+    private final Slot[][] slots = new Slot[LEVELS][SLOTS];
+    // the entries which are already due when they are added
+    private final Slot overdue = new Slot();
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long currentTick) {
+
+        this.currentTick = currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < SLOTS; i++) {
+                slots[level][i] = new Slot();
+            }
+        }
+    }
+
+    long getCurrentTick() {
+
+        return currentTick;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    /**
+     * Adds the entry which is due at the given tick. An entry due at the current tick or earlier is returned by the
+     * next {@link #advanceTo(long, Consumer)}. An entry too far away is kept in the farthest slot and moved down
+     * again when the slot is reached.
+     */
+    void add(Entry entry, long deadline) {
+
+        if (entry.slot != null) {
+            remove(entry);
+        }
+        entry.deadline = deadline;
+        link(entry);
+        size++;
+    }
+
+    /**
+     * Removes the entry from the wheel, returns false if it isn't in the wheel.
+     */
+    boolean remove(Entry entry) {
+
+        if (entry.slot == null) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel to the given tick and passes the entries due at or before it to the consumer. The entries
+     * are removed from the wheel before the consumer is called, so the consumer can add them back.
+     */
+    void advanceTo(long tick, Consumer<Entry> consumer) {
+
+        if (size == 0) {
+            // nothing to move down or to drain on the way.
+            currentTick = Math.max(currentTick, tick);
+            return;
+        }
+        drain(overdue, consumer);
+        while (currentTick < tick) {
+            // skips the ticks which have nothing to do.
+            long next = Math.min(nextTick(), tick);
+            currentTick = Math.max(currentTick + 1, next);
+            // moves the entries of the higher levels down when the lower level bits are all zero.
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (level * SLOT_BITS)) - 1)) != 0) {
+                    break;
+                }
+                cascade(slots[level][(int) (currentTick >>> (level * SLOT_BITS)) & SLOT_MASK]);
+            }
+            drain(slots[0][(int) currentTick & SLOT_MASK], consumer);
+            drain(overdue, consumer);
+        }
+    }
+
+    /**
+     * Returns the next tick the wheel has something to do at: an entry is due, or the entries of a higher level slot
+     * are moved down. It's the current tick if an entry is already due, or {@link Long#MAX_VALUE} if it's empty.
+     */
+    long nextTick() {
+
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (!overdue.isEmpty()) {
+            return currentTick;
+        }
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            // the slots of a level are 1 to 64 rounds of the level away, the first one found is the nearest one.
+            int shift = level * SLOT_BITS;
+            long round = currentTick >>> shift;
+            for (int k = 1; k <= SLOTS; k++) {
+                if (!slots[level][(int) (round + k) & SLOT_MASK].isEmpty()) {
+                    next = Math.min(next, (round + k) << shift);
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void link(Entry entry) {
+
+        long delta = entry.deadline - currentTick;
+        Slot slot;
+        if (delta <= 0) {
+            slot = overdue;
+        } else {
+            long deadline = delta > MAX_DELTA ? currentTick + MAX_DELTA : entry.deadline;
+            int level = (63 - Long.numberOfLeadingZeros(deadline - currentTick)) / SLOT_BITS;
+            slot = slots[level][(int) (deadline >>> (level * SLOT_BITS)) & SLOT_MASK];
+        }
+        entry.slot = slot;
+        entry.prev = slot.prev;
+        entry.next = slot;
+        slot.prev.next = entry;
+        slot.prev = entry;
+    }
+
+    private static void unlink(Entry entry) {
+
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = entry.next = entry.slot = null;
+    }
+
+    private void cascade(Slot slot) {
+
+        Entry entry = slot.next;
+        while (entry != slot) {
+            Entry next = entry.next;
+            unlink(entry);
+            link(entry);
+            entry = next;
+        }
+    }
+
+    private void drain(Slot slot, Consumer<Entry> consumer) {
+
+        while (!slot.isEmpty()) {
+            Entry entry = slot.next;
+            unlink(entry);
+            size--;
+            consumer.accept(entry);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package me.fengyj.common.scheduler;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static me.fengyj.common.scheduler.CronExpression.BEFORE_YEAR_ZERO;
+import static me.fengyj.common.scheduler.CronExpression.END_OF_MAX_YEAR;
+import static me.fengyj.common.scheduler.CronExpression.SECONDS_PER_DAY;
+import static me.fengyj.common.scheduler.CronExpression.toEpochDay;
+
+/**
+ * The offset transitions of a time zone from the year 0, in sorted arrays. The offset of an instant or of a
+ * wall-clock time is found by a binary search, without going through {@link ZoneRules} or creating any object.
+ * The tables are cached per zone. They are built up to a few years after now at first, and extended by
+ * {@link #YEARS_PER_EXTENSION} years at a time when a later time is looked up, up to the end of
+ * {@link CronExpression#MAX_YEAR}.
+ * <p>
+ * The wall-clock times of a transition are the ones from {@link #localStart(int)} to {@link #localEnd(int)}. They
+ * are skipped for a gap, or repeated for an overlap. The cron expressions map such a time to the instant by the
+ * offset before the transition, that is, a time in a gap is moved forward by the length of the gap, and a repeated
+ * time is only at the earlier offset.
+ */
+final class ZoneTransitions {
+
+    static final int YEARS_PER_EXTENSION = 16;
+
+    private static final Map<ZoneId, ZoneTransitions> cache = new ConcurrentHashMap<>();
+    private static final int CURRENT_YEAR = Calendar.getInstance().get(Calendar.YEAR);
+
+    private final ZoneRules rules;
+    // the offset before the first transition
+    private final int initialOffset;
+    private volatile Table table;
+
+    /**
+     * The transitions before the instant {@code until}. An extended table starts with the same transitions, so the
+     * indexes found in an earlier table stay valid.
+     *
+     * @param instants      the instants of the transitions in epoch seconds
+     * @param localStarts   the wall-clock times where the transitions start, instants + min(offset before, after)
+     * @param offsetsBefore the offsets before the transitions
+     * @param offsetsAfter  the offsets after the transitions
+     * @param size          the count of the transitions, the arrays can be longer
+     */
+    private record Table(
+        long until, int untilYear, long[] instants, long[] localStarts, int[] offsetsBefore, int[] offsetsAfter,
+        int size) {
+    }
+
+    private ZoneTransitions(ZoneRules rules) {
+
+        this.rules = rules;
+        this.initialOffset = rules.getOffset(Instant.ofEpochSecond(BEFORE_YEAR_ZERO)).getTotalSeconds();
+        this.table = extend(
+            new Table(BEFORE_YEAR_ZERO, -1, new long[0], new long[0], new int[0], new int[0], 0),
+            CURRENT_YEAR + YEARS_PER_EXTENSION);
+    }
+
+    static ZoneTransitions of(ZoneId zone) {
+
+        var transitions = cache.get(zone);
+        if (transitions == null) {
+            transitions = cache.computeIfAbsent(zone, z -> new ZoneTransitions(z.getRules()));
+        }
+        return transitions;
+    }
+
+    boolean isFixedOffset() {
+
+        return rules.isFixedOffset();
+    }
+
+    /**
+     * Returns the instant the transitions are known before, in epoch seconds.
+     */
+    long coveredUntil() {
+
+        return table.until;
+    }
+
+    long instant(int index) {
+
+        return table.instants[index];
+    }
+
+    int offsetBefore(int index) {
+
+        return table.offsetsBefore[index];
+    }
+
+    /**
+     * Returns the offset after the transition in seconds, or the offset before the first transition if the index is
+     * -1.
+     */
+    int offsetAfter(int index) {
+
+        return index < 0 ? initialOffset : table.offsetsAfter[index];
+    }
+
+    boolean isGap(int index) {
+
+        var t = table;
+        return t.offsetsAfter[index] > t.offsetsBefore[index];
+    }
+
+    /**
+     * Returns the length of the gap or the overlap in seconds.
+     */
+    int length(int index) {
+
+        var t = table;
+        return Math.abs(t.offsetsAfter[index] - t.offsetsBefore[index]);
+    }
+
+    long localStart(int index) {
+
+        return table.localStarts[index];
+    }
+
+    /**
+     * Returns the wall-clock time where the transition ends, exclusive.
+     */
+    long localEnd(int index) {
+
+        return localStart(index) + length(index);
+    }
+
+    /**
+     * Returns the wall-clock time where the transition after the given one starts, or {@link Long#MAX_VALUE} if
+     * there isn't one.
+     *
+     * @param index the index of the transition, or -1 for the one before the first transition
+     */
+    long nextLocalStart(int index) {
+
+        var t = table;
+        while (index + 1 >= t.size && t.until < END_OF_MAX_YEAR) {
+            t = extend(t.untilYear + YEARS_PER_EXTENSION);
+        }
+        return index + 1 < t.size ? t.localStarts[index + 1] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the instant of the transition after the given one in epoch seconds, or {@link Long#MAX_VALUE} if there
+     * isn't one.
+     *
+     * @param index the index of the transition, or -1 for the one before the first transition
+     */
+    long nextInstant(int index) {
+
+        var t = table;
+        while (index + 1 >= t.size && t.until < END_OF_MAX_YEAR) {
+            t = extend(t.untilYear + YEARS_PER_EXTENSION);
+        }
+        return index + 1 < t.size ? t.instants[index + 1] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the index of the last transition at or before the instant, or -1 if there isn't one.
+     */
+    int indexAt(long epochSecond) {
+
+        var t = covering(epochSecond);
+        return floor(t.instants, t.size, epochSecond);
+    }
+
+    /**
+     * Returns the offset at the instant in seconds.
+     */
+    int offsetAt(long epochSecond) {
+
+        return offsetAfter(indexAt(epochSecond));
+    }
+
+    /**
+     * Returns the index of the last transition starting at or before the wall-clock time, or -1 if there isn't one.
+     */
+    int indexOfLocal(long local) {
+
+        // a wall-clock time is less than a day away from its instant.
+        var t = covering(local + SECONDS_PER_DAY);
+        return floor(t.localStarts, t.size, local);
+    }
+
+    /**
+     * Returns the instant of the wall-clock time. A time in a gap or an overlap is at the offset before the
+     * transition.
+     */
+    long toEpochSecond(long local) {
+
+        int index = indexOfLocal(local);
+        if (index < 0) {
+            return local - initialOffset;
+        }
+        return local < localEnd(index) ? local - offsetBefore(index) : local - offsetAfter(index);
+    }
+
+    /**
+     * Returns the table which has all the transitions at or before the instant.
+     */
+    private Table covering(long epochSecond) {
+
+        var t = table;
+        if (epochSecond < t.until || t.until >= END_OF_MAX_YEAR) {
+            return t;
+        }
+        int year = t.untilYear;
+        while (toEpochDay(year, 1, 1) * SECONDS_PER_DAY <= epochSecond && year <= CronExpression.MAX_YEAR) {
+            year += YEARS_PER_EXTENSION;
+        }
+        return extend(year);
+    }
+
+    private synchronized Table extend(int untilYear) {
+
+        var t = table;
+        if (t.untilYear >= untilYear || t.until >= END_OF_MAX_YEAR) {
+            return t;
+        }
+        table = extend(t, untilYear);
+        return table;
+    }
+
+    /**
+     * Returns a table with the transitions of the given table, and the ones after it before the year, or the end of
+     * {@link CronExpression#MAX_YEAR}.
+     */
+    private Table extend(Table t, int untilYear) {
+
+        long until = Math.min(toEpochDay(untilYear, 1, 1) * SECONDS_PER_DAY, END_OF_MAX_YEAR);
+        int count = t.size;
+        var instants = t.instants;
+        var localStarts = t.localStarts;
+        var offsetsBefore = t.offsetsBefore;
+        var offsetsAfter = t.offsetsAfter;
+        ZoneOffsetTransition trans = rules.nextTransition(
+            Instant.ofEpochSecond(count == 0 ? BEFORE_YEAR_ZERO : instants[count - 1]));
+        while (trans != null && trans.toEpochSecond() < until) {
+            if (count == instants.length) {
+                int capacity = Math.max(count * 2, 64);
+                instants = Arrays.copyOf(instants, capacity);
+                localStarts = Arrays.copyOf(localStarts, capacity);
+                offsetsBefore = Arrays.copyOf(offsetsBefore, capacity);
+                offsetsAfter = Arrays.copyOf(offsetsAfter, capacity);
+            }
+            instants[count] = trans.toEpochSecond();
+            offsetsBefore[count] = trans.getOffsetBefore().getTotalSeconds();
+            offsetsAfter[count] = trans.getOffsetAfter().getTotalSeconds();
+            localStarts[count] = instants[count] + Math.min(offsetsBefore[count], offsetsAfter[count]);
+            count++;
+            trans = rules.nextTransition(trans.getInstant());
+        }
+        return new Table(until, untilYear, instants, localStarts, offsetsBefore, offsetsAfter, count);
+    }
+
+    private static int floor(long[] values, int size, long key) {
+
+        int index = Arrays.binarySearch(values, 0, size, key);
+        return index >= 0 ? index : -index - 2;
+    }
+}
@@ -3,6 +3,7 @@ package me.fengyj.common.utils;
 import me.fengyj.common.exceptions.ErrorSeverity;
 import me.fengyj.common.exceptions.ExceptionUtils;
 import me.fengyj.common.exceptions.GeneralException;
+import me.fengyj.common.scheduler.CronExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +63,24 @@ public class ThreadUtils {
         return Executors.newFixedThreadPool(threadCount, new NamedThreadFactory(poolName, threadExceptionHandle));
     }
 
+    /**
+     * Creates an executor running the cron tasks on virtual threads, see {@link CronExecutor#ofVirtualThreads(String)}.
+     */
+    public static CronExecutor createCronExecutor(String name) {
+
+        return CronExecutor.ofVirtualThreads(name);
+    }
+
+    /**
+     * Creates an executor running the cron tasks in a fixed pool, see {@link CronExecutor#ofPool(String, Integer)}.
+     *
+     * @param threadCount the count of the threads, or null for the count of the CPUs
+     */
+    public static CronExecutor createCronExecutor(String name, Integer threadCount) {
+
+        return CronExecutor.ofPool(name, threadCount);
+    }
+
     public static boolean shutdown(ExecutorService execSvc, String msg, long timeout, TimeUnit unit, Logger logger) {
 
         try {
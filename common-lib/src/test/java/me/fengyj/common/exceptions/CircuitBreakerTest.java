@@ -0,0 +1,140 @@
+package me.fengyj.common.exceptions;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void test_open_and_probe() {
+
+        var clock = new AtomicLong(1_000_000);
+        var registry = new CircuitBreakerRegistry(10, 10, 5, 0.5, 30, clock::get);
+        var breaker = registry.get(new ResourceInfo("Service", "quotes"));
+        Assertions.assertSame(breaker, registry.get(new ResourceInfo("Service", "quotes")));
+
+        // not enough calls to open it.
+        for (int i = 0; i < 4; i++) {
+            var permit = breaker.tryAcquire();
+            Assertions.assertFalse(permit.isProbe());
+            breaker.recordFailure(permit);
+        }
+        Assertions.assertEquals(CircuitBreaker.State.Closed, breaker.getState());
+        breaker.recordSuccess(breaker.tryAcquire());
+        Assertions.assertEquals(0.8, breaker.getFailureRate(), 1e-9);
+        var late = breaker.tryAcquire();
+        breaker.recordFailure(breaker.tryAcquire());
+        Assertions.assertEquals(CircuitBreaker.State.Open, breaker.getState());
+        Assertions.assertNull(breaker.tryAcquire());
+
+        // only one probe after the open time, a failed probe opens it again.
+        clock.addAndGet(30_000);
+        Assertions.assertEquals(CircuitBreaker.State.HalfOpen, breaker.getState());
+        var probe = breaker.tryAcquire();
+        Assertions.assertTrue(probe.isProbe());
+        Assertions.assertNull(breaker.tryAcquire());
+        // a call acquired before it opened doesn't close it.
+        breaker.recordSuccess(late);
+        Assertions.assertEquals(CircuitBreaker.State.HalfOpen, breaker.getState());
+        Assertions.assertNull(breaker.tryAcquire());
+        breaker.recordFailure(probe);
+        Assertions.assertEquals(CircuitBreaker.State.Open, breaker.getState());
+        Assertions.assertNull(breaker.tryAcquire());
+
+        // a released probe lets another one through.
+        clock.addAndGet(30_000);
+        probe = breaker.tryAcquire();
+        breaker.release(probe);
+        var stale = breaker.tryAcquire();
+        Assertions.assertTrue(stale.isProbe());
+        Assertions.assertNull(breaker.tryAcquire());
+        // a probe which doesn't report back is replaced after the open time, and its report is ignored.
+        clock.addAndGet(30_000);
+        probe = breaker.tryAcquire();
+        Assertions.assertTrue(probe.isProbe());
+        breaker.recordFailure(stale);
+        breaker.release(stale);
+        Assertions.assertEquals(CircuitBreaker.State.HalfOpen, breaker.getState());
+        Assertions.assertNull(breaker.tryAcquire());
+
+        breaker.recordSuccess(probe);
+        Assertions.assertEquals(CircuitBreaker.State.Closed, breaker.getState());
+        Assertions.assertEquals(0, breaker.getCalls());
+        Assertions.assertFalse(breaker.tryAcquire().isProbe());
+        // a report of the probe after it's closed doesn't change it.
+        breaker.recordFailure(probe);
+        Assertions.assertEquals(CircuitBreaker.State.Closed, breaker.getState());
+    }
+
+    @Test
+    public void test_sliding_window() {
+
+        var clock = new AtomicLong(1_000_000);
+        var registry = new CircuitBreakerRegistry(10, 10, 5, 0.5, 30, clock::get);
+        var breaker = registry.get(new ResourceInfo("DB", "orders"));
+
+        for (int i = 0; i < 4; i++) {
+            breaker.recordFailure();
+            clock.addAndGet(3_000);
+        }
+        // the first failure is out of the window of 10 seconds.
+        Assertions.assertEquals(3, breaker.getCalls());
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        Assertions.assertEquals(0.8, breaker.getFailureRate(), 1e-9);
+        Assertions.assertEquals(CircuitBreaker.State.Open, breaker.getState());
+
+        clock.addAndGet(10_000);
+        Assertions.assertEquals(0, breaker.getCalls());
+        Assertions.assertEquals(0, breaker.getFailureRate());
+        Assertions.assertEquals(1, registry.getAll().size());
+    }
+
+    @Test
+    public void test_bucket_count() {
+
+        var clock = new AtomicLong(1_000_000);
+        // the window of 10 seconds slides by 5 seconds.
+        var registry = new CircuitBreakerRegistry(10, 2, 5, 0.5, 30, clock::get);
+        var breaker = registry.get(new ResourceInfo("DB", "orders"));
+
+        breaker.recordFailure();
+        clock.addAndGet(3_000);
+        breaker.recordFailure();
+        clock.addAndGet(3_000);
+        breaker.recordSuccess();
+        Assertions.assertEquals(3, breaker.getCalls());
+        // the bucket of the first 2 calls is out of the window, it'd be only the first call for 10 buckets.
+        clock.addAndGet(4_000);
+        breaker.recordSuccess();
+        Assertions.assertEquals(2, breaker.getCalls());
+        Assertions.assertEquals(0, breaker.getFailureRate());
+    }
+
+    @Test
+    public void test_concurrent_records() throws InterruptedException {
+
+        var registry = new CircuitBreakerRegistry(10, 10, 5, 0.5, 30, () -> 1_000_000);
+        var breaker = registry.get(new ResourceInfo("Service", "prices"));
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            boolean failed = i % 4 == 0;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    if (failed)
+                        breaker.recordFailure();
+                    else
+                        breaker.recordSuccess();
+                }
+            }));
+        }
+        for (var thread : threads)
+            thread.join();
+
+        Assertions.assertEquals(80_000, breaker.getCalls());
+        Assertions.assertEquals(0.25, breaker.getFailureRate(), 1e-9);
+    }
+}
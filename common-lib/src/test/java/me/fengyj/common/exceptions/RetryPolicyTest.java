@@ -3,6 +3,14 @@ package me.fengyj.common.exceptions;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class RetryPolicyTest {
 
     @Test
@@ -83,4 +91,224 @@ public class RetryPolicyTest {
 
         Assertions.assertEquals(3, ex.getTriedTimes());
     }
+
+    @Test
+    public void test_async_retry_without_blocking() {
+
+        var policy = new RetryPolicy(3, 0.05, RetryPolicy.AdditionIntervalPolicy.Jitter);
+        int threads = Thread.activeCount();
+        var attempts = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+
+        // each operation fails twice, all the backoffs are waited by the shared timer.
+        for (int i = 0; i < 100_000; i++) {
+            var tried = new AtomicInteger();
+            int value = i;
+            futures.add(policy.getAsync(() -> {
+                attempts.incrementAndGet();
+                return tried.incrementAndGet() < 3
+                        ? CompletableFuture.failedFuture(new IllegalStateException())
+                        : CompletableFuture.completedFuture(value);
+            }, ex -> {
+                throw new RetrievableException(ErrorSeverity.Info, null, null, ex);
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).orTimeout(30, TimeUnit.SECONDS).join();
+
+        Assertions.assertEquals(300_000, attempts.get());
+        Assertions.assertEquals(99_999, futures.get(99_999).join());
+        Assertions.assertTrue(Thread.activeCount() - threads < 5, () -> "threads " + Thread.activeCount());
+    }
+
+    @Test
+    public void test_async_retry_not_blocking_timer() throws Exception {
+
+        var policy = new RetryPolicy(2, 0.01);
+        var timedOut = new CountDownLatch(1);
+        var tried = new AtomicInteger();
+
+        var future = policy.<Boolean>getAsync(() -> {
+            if (tried.incrementAndGet() == 1)
+                return CompletableFuture.failedFuture(new IllegalStateException());
+            // the retry blocks until an unrelated timeout fires, which never happens if it blocks the shared timer.
+            try {
+                return CompletableFuture.completedFuture(timedOut.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }, ex -> {
+            throw new RetrievableException(ErrorSeverity.Info, null, null, ex);
+        });
+        while (tried.get() < 2)
+            Thread.sleep(1);
+        new CompletableFuture<Void>().orTimeout(10, TimeUnit.MILLISECONDS).whenComplete((v, ex) -> timedOut.countDown());
+
+        Assertions.assertTrue(future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_async_retry_failed() {
+
+        var policy = new RetryPolicy(4, 0.01, RetryPolicy.AdditionIntervalPolicy.Increasing);
+        var attempts = new AtomicInteger();
+
+        var ex = Assertions.assertThrows(CompletionException.class, () -> policy.<Integer>getAsync(() -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException());
+        }, e -> {
+            throw new RetrievableException(ErrorSeverity.Info, null, null, e);
+        }).join());
+        Assertions.assertInstanceOf(IllegalStateException.class, ex.getCause());
+        Assertions.assertEquals(4, attempts.get());
+
+        // the handle decides not to retry.
+        attempts.set(0);
+        ex = Assertions.assertThrows(CompletionException.class, () -> policy.<Integer>getAsync(() -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException());
+        }, e -> {
+            throw new UnsupportedOperationException();
+        }).join());
+        Assertions.assertInstanceOf(UnsupportedOperationException.class, ex.getCause());
+        Assertions.assertEquals(1, attempts.get());
+
+        // the retries are called on the executor, and stopped by the cancellation.
+        var executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-retry"));
+        try {
+            var names = new ArrayList<String>();
+            var future = new RetryPolicy(100, 0.05).<Integer>getAsync(() -> {
+                synchronized (names) {
+                    names.add(Thread.currentThread().getName());
+                }
+                return CompletableFuture.failedFuture(new IllegalStateException());
+            }, e -> {
+                throw new RetrievableException(ErrorSeverity.Info, null, null, e);
+            }, executor);
+            Assertions.assertThrows(
+                    Exception.class, () -> future.get(200, TimeUnit.MILLISECONDS));
+            future.cancel(false);
+            int count;
+            synchronized (names) {
+                count = names.size();
+                Assertions.assertTrue(names.subList(1, count).stream().allMatch("test-retry"::equals));
+            }
+            Assertions.assertTrue(count > 1 && count < 10, () -> "attempts " + names.size());
+            Thread.sleep(200);
+            synchronized (names) {
+                Assertions.assertTrue(names.size() <= count + 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_retry_on_virtual_threads() {
+
+        var policy = new RetryPolicy(3, 0.1);
+        var virtual = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+
+        // thousands of blocking retries at once, without a pool of platform threads.
+        for (int i = 0; i < 5000; i++) {
+            var tried = new AtomicInteger();
+            int value = i;
+            futures.add(policy.getOnVirtualThread(() -> {
+                if (Thread.currentThread().isVirtual() && Thread.currentThread().getName().startsWith("retry-policy-"))
+                    virtual.incrementAndGet();
+                if (tried.incrementAndGet() < 3)
+                    throw new RetrievableException(ErrorSeverity.Info, null, null);
+                return value;
+            }, null, null));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).orTimeout(30, TimeUnit.SECONDS).join();
+
+        Assertions.assertEquals(15_000, virtual.get());
+        Assertions.assertEquals(4999, futures.get(4999).join());
+
+        var ex = Assertions.assertThrows(CompletionException.class, () -> policy.runOnVirtualThread(() -> {
+            throw new RetrievableException(ErrorSeverity.Info, null, null);
+        }, null, null).join());
+        Assertions.assertEquals(3, ((RetrievableException) ex.getCause()).getTriedTimes());
+    }
+
+    @Test
+    public void test_cancel_retry_on_virtual_thread() throws InterruptedException {
+
+        var attempts = new AtomicInteger();
+        var future = new RetryPolicy(100, 0.05).runOnVirtualThread(() -> {
+            attempts.incrementAndGet();
+            throw new RetrievableException(ErrorSeverity.Info, null, null);
+        }, null, null);
+
+        Thread.sleep(200);
+        Assertions.assertTrue(future.cancel(true));
+        Thread.sleep(200);
+        int count = attempts.get();
+        Assertions.assertTrue(count > 1 && count < 10, () -> "attempts " + count);
+        Thread.sleep(200);
+        // the interruption stops the backoff and the retries.
+        Assertions.assertEquals(count, attempts.get());
+    }
+
+    @Test
+    public void test_circuit_breaker_fail_fast() {
+
+        var resource = new ResourceInfo("Service", "quotes");
+        var registry = new CircuitBreakerRegistry(60, 3, 0.5, 60);
+        var policy = new RetryPolicy(registry, 5, 0.01);
+        var attempts = new AtomicInteger();
+
+        // the breaker opens after 3 failures, the 2 retries left are skipped.
+        var ex = Assertions.assertThrows(RetrievableException.class, () -> policy.run(resource, () -> {
+            attempts.incrementAndGet();
+            throw new RetrievableException(ErrorSeverity.Info, resource, null);
+        }, null, null));
+        Assertions.assertEquals(3, attempts.get());
+        Assertions.assertEquals(resource, ex.getResourceInfo());
+        Assertions.assertEquals(3, ex.getTriedTimes());
+        Assertions.assertInstanceOf(RetrievableException.class, ex.getCause());
+        Assertions.assertEquals(CircuitBreaker.State.Open, registry.get(resource).getState());
+
+        // the resource is taken from the exception, the breaker is checked before the retry.
+        attempts.set(0);
+        ex = Assertions.assertThrows(RetrievableException.class, () -> policy.get(() -> {
+            attempts.incrementAndGet();
+            throw new RetrievableException(ErrorSeverity.Info, resource, null);
+        }, null, null));
+        Assertions.assertEquals(1, attempts.get());
+        Assertions.assertEquals(resource, ex.getResourceInfo());
+        Assertions.assertEquals(1, ex.getTriedTimes());
+
+        attempts.set(0);
+        var asyncEx = Assertions.assertThrows(CompletionException.class, () -> policy.<Integer>getAsync(
+                resource,
+                () -> CompletableFuture.completedFuture(attempts.incrementAndGet()),
+                e -> {
+                    throw new RetrievableException(ErrorSeverity.Info, resource, null, e);
+                },
+                Runnable::run).join());
+        Assertions.assertEquals(0, attempts.get());
+        Assertions.assertEquals(resource, ((RetrievableException) asyncEx.getCause()).getResourceInfo());
+
+        // the other resources aren't affected.
+        var other = new ResourceInfo("Service", "prices");
+        Assertions.assertEquals(1, policy.get(other, attempts::incrementAndGet, null, null));
+        Assertions.assertEquals(2, policy.<Integer>getAsync(
+                other,
+                () -> CompletableFuture.completedFuture(attempts.incrementAndGet()),
+                e -> {},
+                Runnable::run).join());
+        Assertions.assertEquals(CircuitBreaker.State.Closed, registry.get(other).getState());
+
+        // the same on a virtual thread.
+        attempts.set(0);
+        var virtualEx = Assertions.assertThrows(CompletionException.class, () -> policy.runOnVirtualThread(
+                resource, attempts::incrementAndGet, null, null).join());
+        Assertions.assertEquals(0, attempts.get());
+        Assertions.assertEquals(resource, ((RetrievableException) virtualEx.getCause()).getResourceInfo());
+        Assertions.assertEquals(1, policy.getOnVirtualThread(other, attempts::incrementAndGet, null, null).join());
+    }
 }
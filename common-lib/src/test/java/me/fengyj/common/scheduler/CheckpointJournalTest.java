@@ -0,0 +1,223 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.utils.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CheckpointJournalTest {
+
+    @Test
+    public void test_replay_after_reopen() throws IOException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        try {
+            try (var journal = CheckpointJournal.open(path)) {
+                journal.record("job-1", 1000);
+                journal.record("job-2", 2000);
+                journal.record("job-1", 3000);
+                journal.record("job-1", 2500);
+                journal.record("作业-3", 4000);
+                journal.remove("job-2");
+                Assertions.assertEquals(3000, journal.getLastFireTime("job-1"));
+                Assertions.assertEquals(-1, journal.getLastFireTime("job-2"));
+            }
+
+            // a torn record at the end is dropped.
+            try (var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                int end = CheckpointJournal.HEADER_SIZE + 3 * (2 + 5 + 8) + (2 + 8 + 8) + (2 + 5 + 8);
+                channel.write(ByteBuffer.wrap("job-4".getBytes(StandardCharsets.UTF_8)), end + 2);
+            }
+
+            try (var journal = CheckpointJournal.open(path)) {
+                Assertions.assertEquals(2, journal.size());
+                Assertions.assertEquals(3000, journal.getLastFireTime("job-1"));
+                Assertions.assertEquals(-1, journal.getLastFireTime("job-2"));
+                Assertions.assertEquals(4000, journal.getLastFireTime("作业-3"));
+                Assertions.assertEquals(-1, journal.getLastFireTime("job-4"));
+                journal.record("job-4", 5000);
+            }
+            try (var journal = CheckpointJournal.open(path)) {
+                Assertions.assertEquals(5000, journal.getLastFireTime("job-4"));
+            }
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    @Test
+    public void test_not_a_journal_file() throws IOException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        try {
+            IOUtils.writeFile(path, "not a journal");
+            Assertions.assertThrows(IOException.class, () -> CheckpointJournal.open(path));
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    @Test
+    public void test_compaction() throws IOException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        try {
+            try (var journal = CheckpointJournal.open(path)) {
+                for (int i = 1; i <= 1_000_000; i++) {
+                    journal.record("job-" + i % 100, i);
+                }
+            }
+            // the old records are dropped instead of growing the file.
+            Assertions.assertEquals(CheckpointJournal.MIN_CAPACITY, Files.size(path));
+            try (var journal = CheckpointJournal.open(path)) {
+                Assertions.assertEquals(100, journal.size());
+                Assertions.assertEquals(1_000_000, journal.getLastFireTime("job-0"));
+                Assertions.assertEquals(999_999, journal.getLastFireTime("job-99"));
+            }
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    @Test
+    public void test_compact_removed_jobs() throws IOException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        try {
+            try (var journal = CheckpointJournal.open(path)) {
+                for (int i = 0; i < 100_000; i++) {
+                    journal.record("job-" + i, i);
+                }
+                long size = Files.size(path);
+                Assertions.assertTrue(size > 1_000_000);
+                // the file shrinks once the old records are as large as the latest ones, before it's full.
+                for (int i = 10; i < 100_000; i++) {
+                    journal.remove("job-" + i);
+                }
+                Assertions.assertEquals(CheckpointJournal.MIN_CAPACITY, Files.size(path));
+                Assertions.assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".tmp")));
+                Assertions.assertEquals(10, journal.size());
+                journal.close();
+                Assertions.assertThrows(IllegalStateException.class, () -> journal.record("job-0", 1));
+            }
+            try (var journal = CheckpointJournal.open(path)) {
+                Assertions.assertEquals(10, journal.size());
+                Assertions.assertEquals(9, journal.getLastFireTime("job-9"));
+            }
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    @Test
+    public void test_remove_jobs() throws IOException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        try {
+            try (var journal = CheckpointJournal.open(path)) {
+                for (int i = 0; i < 10_000; i++) {
+                    journal.record("job-" + i, i);
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    if (i % 4 != 0)
+                        journal.remove("job-" + i);
+                }
+                journal.remove("job-none");
+                Assertions.assertEquals(2_500, journal.size());
+                for (int i = 0; i < 10_000; i++) {
+                    Assertions.assertEquals(i % 4 == 0 ? i : -1, journal.getLastFireTime("job-" + i));
+                }
+                journal.record("job-1", 1);
+            }
+            try (var journal = CheckpointJournal.open(path)) {
+                var times = journal.getLastFireTimes();
+                Assertions.assertEquals(2_501, times.size());
+                Assertions.assertEquals(1, times.get("job-1"));
+                Assertions.assertEquals(9_996, times.get("job-9996"));
+                Assertions.assertNull(times.get("job-2"));
+            }
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    @Test
+    public void test_recover_many_jobs() throws IOException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        try {
+            int jobs = 100_000;
+            recordJobs(path, jobs);
+            try (var journal = CheckpointJournal.open(path)) {
+                Assertions.assertEquals(jobs, journal.size());
+                for (int i = 0; i < jobs; i++) {
+                    Assertions.assertEquals(1_700_000_000_000L + i, journal.getLastFireTime("job-" + i));
+                }
+            }
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_recover_a_million_jobs() throws IOException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        try {
+            int jobs = 1_000_000;
+            recordJobs(path, jobs);
+
+            long start = System.nanoTime();
+            try (var journal = CheckpointJournal.open(path)) {
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("recovered %d jobs in %d ms%n", jobs, elapsed / 1_000_000);
+                Assertions.assertEquals(jobs, journal.size());
+                Assertions.assertTrue(elapsed < TimeUnit.SECONDS.toNanos(1));
+            }
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    @Test
+    public void test_scheduler_records_fire_times() throws IOException, ParseException, InterruptedException {
+
+        var path = Path.of(IOUtils.createTmpFile("journal"));
+        var cron = CronExpression.compile("* * * * * ?", ZoneId.of("UTC"));
+        try (var journal = CheckpointJournal.open(path)) {
+            var latch = new CountDownLatch(2);
+            try (var scheduler = new CronScheduler("test-scheduler")) {
+                scheduler.setJournal(journal);
+                scheduler.schedule("job", cron, MisfirePolicy.Skip, -1, time -> latch.countDown());
+                Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            }
+            long last = journal.getLastFireTime("job");
+            Assertions.assertTrue(last > 0 && last % 1000 == 0);
+            Assertions.assertTrue(last <= System.currentTimeMillis());
+        } finally {
+            IOUtils.deleteFile(path);
+        }
+    }
+
+    private static void recordJobs(Path path, int jobs) throws IOException {
+
+        try (var journal = CheckpointJournal.open(path)) {
+            for (int i = 0; i < jobs; i++) {
+                journal.record("job-" + i, 1_700_000_000_000L + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ClusterCronSchedulerTest {
+
+    private static final int SHARDS = 16;
+    private static final int JOBS = 40;
+    private static final long LEASE_MILLIS = 1500;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void test_shard_ring() {
+
+        var ring = new ShardRing(SHARDS);
+        var counts = new int[SHARDS];
+        for (int i = 0; i < 16_000; i++) {
+            counts[ring.shardOf("job-" + i)]++;
+        }
+        for (int count : counts) {
+            Assertions.assertTrue(count > 500 && count < 1500, () -> "count " + count);
+        }
+        // adding a shard only moves the ids to the new one.
+        var bigger = new ShardRing(SHARDS + 1);
+        int moved = 0;
+        for (int i = 0; i < 16_000; i++) {
+            int before = ring.shardOf("job-" + i);
+            int after = bigger.shardOf("job-" + i);
+            if (before != after) {
+                Assertions.assertEquals(SHARDS, after);
+                moved++;
+            }
+        }
+        Assertions.assertTrue(moved > 0 && moved < 16_000 / 8, () -> "moved");
+
+        // a node leaving only gives up its own shards.
+        var nodes = List.of("a", "b", "c");
+        for (int shard = 0; shard < SHARDS; shard++) {
+            var owner = ShardRing.ownerOf(shard, nodes);
+            if (!owner.equals("c")) {
+                Assertions.assertEquals(owner, ShardRing.ownerOf(shard, List.of("a", "b")));
+            }
+        }
+        Assertions.assertNull(ShardRing.ownerOf(0, List.of()));
+    }
+
+    @Test
+    public void test_fire_once_in_cluster() throws Exception {
+
+        var store = FileLeaseStore.open(dir);
+        var cron = CronExpression.compile("* * * * * ?", ZoneId.of("UTC"));
+        // the count of the runs of each job and fire time, and the count of the runs of each node.
+        var runs = new ConcurrentHashMap<String, AtomicInteger>();
+        var nodeRuns = new ConcurrentHashMap<String, AtomicInteger>();
+
+        var nodes = new ArrayList<ClusterCronScheduler>();
+        for (var id : List.of("a", "b", "c")) {
+            var node = new ClusterCronScheduler("test", id, new CronScheduler("cluster-" + id), store, SHARDS,
+                                                LEASE_MILLIS);
+            for (int i = 0; i < JOBS; i++) {
+                var job = "job-" + i;
+                node.schedule(job, cron, MisfirePolicy.FireAll, fireTime -> {
+                    runs.computeIfAbsent(job + "@" + fireTime, k -> new AtomicInteger()).incrementAndGet();
+                    nodeRuns.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+                });
+            }
+            nodes.add(node);
+            Thread.sleep(300);
+        }
+        // the fire times from here are run by the nodes no matter how the shards move.
+        long from = System.currentTimeMillis() / 1000 * 1000 + 1000;
+
+        // the shards are handed off within a lease time and a renewal.
+        Thread.sleep(LEASE_MILLIS * 2 + 500);
+        var owned = new HashSet<Integer>();
+        for (var node : nodes) {
+            var shards = node.getOwnedShards();
+            Assertions.assertFalse(shards.isEmpty(), node.getNodeId());
+            for (int shard : shards) {
+                Assertions.assertTrue(owned.add(shard), () -> "shard " + shard + " is owned twice");
+            }
+            Assertions.assertEquals(3, node.getNodes().size());
+        }
+        Assertions.assertEquals(SHARDS, owned.size());
+
+        // the shards of the closed node are taken by the others.
+        nodes.get(2).close();
+        Thread.sleep(LEASE_MILLIS + 1000);
+        Assertions.assertEquals(SHARDS, nodes.get(0).getOwnedShards().size() + nodes.get(1).getOwnedShards().size());
+        long to = System.currentTimeMillis() / 1000 * 1000 - 1000;
+        nodes.get(0).close();
+        nodes.get(1).close();
+
+        for (var entry : runs.entrySet()) {
+            Assertions.assertEquals(1, entry.getValue().get(), entry.getKey());
+        }
+        for (int i = 0; i < JOBS; i++) {
+            for (long time = from; time <= to; time += 1000) {
+                Assertions.assertTrue(runs.containsKey("job-" + i + "@" + time), "job-" + i + "@" + time);
+            }
+        }
+        for (var entry : nodeRuns.entrySet()) {
+            Assertions.assertTrue(entry.getValue().get() > 0, entry.getKey());
+        }
+        Assertions.assertEquals(3, nodeRuns.size(), () -> Map.copyOf(nodeRuns).toString());
+    }
+}
@@ -0,0 +1,189 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+public class CompiledCronExpressionTest {
+
+    @Test
+    public void test_compile_returns_cached_instance() throws ParseException {
+
+        var ny = ZoneId.of("America/New_York");
+        var compiled = CronExpression.compile("0 15 10 ? * MON-FRI", ny);
+
+        Assertions.assertSame(compiled, CronExpression.compile("0 15 10 ? * MON-FRI", ny));
+        Assertions.assertNotSame(compiled, CronExpression.compile("0 15 10 ? * MON-FRI", ZoneId.of("UTC")));
+        // the same as the parser reads it.
+        Assertions.assertSame(compiled, CronExpression.compile("0 15 10 ? * mon-fri", ny));
+        Assertions.assertSame(compiled, CronExpression.compile(" 0  15\t10 ? * MON-FRI ", ny));
+        Assertions.assertEquals("0 15 10 ? * MON-FRI", compiled.getCronExpression());
+        Assertions.assertEquals(ny, compiled.getZone());
+
+        Assertions.assertThrows(ParseException.class, () -> CronExpression.compile("0 15 10 * * MON-FRI", ny));
+        // the error offsets are in the given string.
+        for (var expression : List.of("0  15\t10 ? *  ", " 0 15 10 ? * FOO", "0  61 10 ? * MON-FRI", "0 15 10 ")) {
+            var expected = Assertions.assertThrows(ParseException.class, () -> new CronExpression(expression));
+            var error = Assertions.assertThrows(ParseException.class, () -> CronExpression.compile(expression, ny));
+            Assertions.assertEquals(expected.getMessage(), error.getMessage());
+            Assertions.assertEquals(expected.getErrorOffset(), error.getErrorOffset(), expression);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CronExpression.compile("0 15 10 ? * *", null));
+    }
+
+    @Test
+    public void test_compile_keeps_used_instances() throws ParseException {
+
+        var zone = ZoneId.of("Europe/Paris");
+        var hot = CronExpression.compile("0 0 12 ? * WED", zone);
+        var cold = CronExpression.compile("0 0 13 ? * WED", zone);
+        for (int i = 0; i < CronExpression.COMPILED_CACHE_CAPACITY * 2; i++) {
+            CronExpression.compile(i % 60 + " " + i / 60 % 60 + " " + i / 3600 + " * * ?", zone);
+            if (i % 64 == 0) {
+                Assertions.assertSame(hot, CronExpression.compile("0 0 12 ? * WED", zone));
+            }
+        }
+        // the one used all the time is kept, the one not used is dropped.
+        Assertions.assertSame(hot, CronExpression.compile("0 0 12 ? * WED", zone));
+        Assertions.assertNotSame(cold, CronExpression.compile("0 0 13 ? * WED", zone));
+        Assertions.assertEquals(cold, CronExpression.compile("0 0 13 ? * WED", zone));
+    }
+
+    @Test
+    public void test_compile_concurrently() {
+
+        var expressions = IntStream.range(0, 100).mapToObj(i -> "0 " + i % 60 + " " + i % 24 + " * * ?").toList();
+        var zone = ZoneId.of("Asia/Shanghai");
+        var instances = ConcurrentHashMap.<CompiledCronExpression>newKeySet();
+
+        IntStream.range(0, 10_000).parallel().forEach(i -> {
+            try {
+                instances.add(CronExpression.compile(expressions.get(i % expressions.size()), zone));
+            } catch (ParseException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // the instances in the set are equal, each expression may only be parsed more than once by a race.
+        Assertions.assertEquals(expressions.size(), new HashSet<>(instances).size());
+    }
+
+    @Test
+    public void test_same_result_as_cron_expression() throws ParseException {
+
+        var random = new Random(20240620L);
+        var zones = new String[] { "UTC", "America/New_York", "Australia/Lord_Howe" };
+
+        for (int i = 0; i < 500; i++) {
+            var expr = CronExpressionTest.randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var cron = new CronExpression(expr);
+            var compiled = CronExpression.compile(expr, zone);
+
+            long after = CronExpressionTest.randomDate(random).getTime() + random.nextInt(1000);
+            long next = cron.nextFireEpochMillis(after, zone);
+            Assertions.assertEquals(next, compiled.nextFireEpochMillis(after), expr);
+            Assertions.assertEquals(cron.previousFireEpochMillis(after, zone), compiled.previousFireEpochMillis(after), expr);
+            Assertions.assertEquals(cron.nextInvalidEpochMillis(after, zone), compiled.nextInvalidEpochMillis(after), expr);
+            if (next != -1) {
+                Assertions.assertTrue(compiled.isSatisfiedBy(next + 999), expr);
+            }
+            cron.setTimeZone(TimeZone.getTimeZone(zone));
+            Assertions.assertEquals(cron.isSatisfiedBy(new Date(after)), compiled.isSatisfiedBy(after), expr);
+        }
+    }
+
+    @Test
+    public void test_binary_form_same_as_parsed() throws ParseException, IOException, ClassNotFoundException {
+
+        var random = new Random(20240920L);
+        var zones = new String[] { "UTC", "America/New_York", "Australia/Lord_Howe", "GMT+8", "Z" };
+        long binarySize = 0;
+        long serializedSize = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            var expr = CronExpressionTest.randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var compiled = CronExpression.compile(expr, zone);
+            if (i % 4 == 0) {
+                var start = LocalDate.of(2020 + random.nextInt(15), 1, 1);
+                compiled = compiled.excluding(ExclusionCalendar.of(
+                    IntStream.range(0, 50).mapToObj(d -> start.plusDays(random.nextInt(800))).toList()));
+            }
+
+            var bytes = compiled.toBytes();
+            var loaded = CompiledCronExpression.fromBytes(bytes);
+            Assertions.assertEquals(compiled, loaded, expr);
+            Assertions.assertEquals(zone, loaded.getZone(), expr);
+            long from = CronExpressionTest.randomDate(random).getTime();
+            Assertions.assertArrayEquals(compiled.nextN(from, 20), loaded.nextN(from, 20), expr);
+
+            var cron = new CronExpression(expr);
+            cron.setTimeZone(TimeZone.getTimeZone(zone));
+            cron.setExclusionCalendar(compiled.getExclusionCalendar());
+            CronExpression deserialized;
+            try (var in = new ObjectInputStream(new ByteArrayInputStream(serialize(cron)))) {
+                deserialized = (CronExpression) in.readObject();
+            }
+            Assertions.assertEquals(cron.getExpressionSummary(), deserialized.getExpressionSummary(), expr);
+            Assertions.assertEquals(cron.getTimeZone(), deserialized.getTimeZone(), expr);
+            Assertions.assertArrayEquals(cron.nextN(from, 20), deserialized.nextN(from, 20), expr);
+
+            if (compiled.getExclusionCalendar() == null) {
+                binarySize += bytes.length;
+                serializedSize += serialize(cron).length;
+            }
+        }
+        long binary = binarySize;
+        long serialized = serializedSize;
+        // the serialized form carries the bitmask fields as well, but also the class descriptors and the time zone.
+        Assertions.assertTrue(
+            binary * 2 < serialized,
+            () -> String.format("binary form %d bytes, java serialization %d bytes", binary, serialized));
+    }
+
+    @Test
+    public void test_binary_form_rejects_bad_bytes() throws ParseException {
+
+        var bytes = CronExpression.compile("0 0/5 9-17 LW * ? 2024-2030", ZoneId.of("UTC")).toBytes();
+
+        var badMagic = bytes.clone();
+        badMagic[0] = 0;
+        Assertions.assertThrows(IOException.class, () -> CompiledCronExpression.fromBytes(badMagic));
+        var badVersion = bytes.clone();
+        badVersion[2] = 99;
+        Assertions.assertThrows(IOException.class, () -> CompiledCronExpression.fromBytes(badVersion));
+        Assertions.assertThrows(
+            IOException.class, () -> CompiledCronExpression.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        Assertions.assertThrows(
+            IOException.class, () -> CompiledCronExpression.fromBytes(Arrays.copyOf(bytes, bytes.length + 1)));
+        // no time zone
+        Assertions.assertThrows(
+            IOException.class, () -> CompiledCronExpression.fromBytes(new CronExpression("0 0 * * * ?").toBytes()));
+    }
+
+    private static byte[] serialize(Object obj) throws IOException {
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(obj);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.utils.ThreadUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CronExecutorTest {
+
+    @Test
+    public void test_skip_overlapping_runs() throws ParseException, InterruptedException {
+
+        var cron = new CronExpression("* * * * * ?");
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var virtual = new AtomicInteger();
+        var latch = new CountDownLatch(2);
+
+        try (var executor = ThreadUtils.createCronExecutor("test-cron")) {
+            // each run takes 2.5 seconds, so 2 of the 3 fire times in between are skipped.
+            var registration = executor.schedule(cron, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                if (Thread.currentThread().isVirtual() && Thread.currentThread().getName().startsWith("test-cron-")) {
+                    virtual.incrementAndGet();
+                }
+                ThreadUtils.sleep(2500);
+                running.decrementAndGet();
+                latch.countDown();
+            });
+            // changing the expression doesn't change the registration.
+            cron.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo"));
+            Assertions.assertEquals(ZoneId.of("UTC"), registration.getExpression().getZone());
+
+            Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, maxRunning.get());
+            Assertions.assertTrue(registration.getRuns() >= 2);
+            Assertions.assertTrue(
+                registration.getSkippedRuns() >= 2, () -> "skipped " + registration.getSkippedRuns());
+            Assertions.assertEquals(registration.getRuns(), virtual.get());
+
+            Assertions.assertTrue(registration.cancel());
+            Assertions.assertFalse(registration.cancel());
+            Assertions.assertEquals(-1, registration.getNextFireTime());
+            Assertions.assertEquals(0, executor.getTaskCount());
+        }
+    }
+
+    @Test
+    public void test_one_timer_for_all_tasks() throws ParseException, InterruptedException {
+
+        var everySecond = CronExpression.compile("* * * * * ?", ZoneId.of("UTC"));
+        var never = CronExpression.compile("0 0 0 1 1 ? 2001", ZoneId.of("UTC"));
+        var runs = new AtomicInteger();
+        var latch = new CountDownLatch(1000);
+        var registrations = new ArrayList<CronExecutor.Registration>();
+
+        try (var executor = ThreadUtils.createCronExecutor("test-cron-pool", 2)) {
+            for (int i = 0; i < 1000; i++) {
+                var fired = new AtomicInteger();
+                registrations.add(executor.schedule(everySecond, () -> {
+                    runs.incrementAndGet();
+                    if (fired.getAndIncrement() == 0) {
+                        latch.countDown();
+                    }
+                }));
+            }
+            Assertions.assertEquals(-1, executor.schedule(never, () -> {}).getNextFireTime());
+            Assertions.assertEquals(1000, executor.getTaskCount());
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            long timers = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith("test-cron-pool-timer"))
+                .count();
+            Assertions.assertEquals(1, timers);
+            long pooled = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith("test-cron-pool-thread-"))
+                .count();
+            Assertions.assertEquals(2, pooled);
+
+            // the cancelled tasks are dropped from the queue by the timer, or all at once when they are the most.
+            for (var registration : registrations.subList(0, 400)) {
+                Assertions.assertTrue(registration.cancel());
+            }
+            Assertions.assertEquals(600, executor.getTaskCount());
+            for (var registration : registrations.subList(400, 1000)) {
+                Assertions.assertTrue(registration.cancel());
+            }
+            Assertions.assertEquals(0, executor.getTaskCount());
+            long started = registrations.stream().mapToLong(CronExecutor.Registration::getRuns).sum();
+            Thread.sleep(1500);
+            // no run is started after the cancellation, only the ones already handed to the pool go on.
+            Assertions.assertEquals(
+                started, registrations.stream().mapToLong(CronExecutor.Registration::getRuns).sum());
+            Assertions.assertTrue(runs.get() <= started);
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            var executor = CronExecutor.ofVirtualThreads("test-cron-closed");
+            executor.close();
+            executor.schedule(everySecond, () -> {});
+        });
+    }
+}
@@ -0,0 +1,312 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.scheduler.CronExpressionDescriptor.DescriptionType;
+import me.fengyj.common.scheduler.CronExpressionDescriptor.Options;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static me.fengyj.common.scheduler.CronExpressionDescriptor.DescriptionType.*;
+
+public class CronExpressionDescriptorTest {
+
+    // the descriptions of the implementation before the cache: the expression, the flags of the options, from the
+    // lowest bit throwExceptionOnParseError, verbose, use24HourTimeFormat and useJavaEeScheduleExpression, the type,
+    // and the description, or the type and the message of the error.
+    private static final Object[][] DESCRIPTIONS = {
+        { "* * * * *", 5, FULL, "Every minute" },
+        { "* * * * *", 2, FULL, "Every minute, every hour, every day" },
+        { "*/5 * * * *", 5, FULL, "Every 5 minutes" },
+        { "*/5 * * * *", 2, FULL, "Every 5 minutes, every hour, every day" },
+        { "0 12 * * MON-FRI", 5, FULL, "At 12:00, Monday through Friday" },
+        { "0 12 * * MON-FRI", 2, FULL, "At 12:00 PM, every day, Monday through Friday" },
+        { "0 0 9 ? * MON-FRI", 5, FULL, "At 09:00, Monday through Friday" },
+        { "0 0 9 ? * MON-FRI", 2, FULL, "At 09:00 AM, every day, Monday through Friday" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, FULL,
+            "Every 15 minutes, between 08:00 and 17:59, Monday through Friday, only in 2025" },
+        { "0 0/15 8-17 ? * 2-6 2025", 2, FULL,
+            "Every 15 minutes, between 08:00 AM and 05:59 PM, every day, Monday through Friday, only in 2025" },
+        { "30 6,14,16 * * *", 5, FULL, "At 06:30, 14:30 and  16:30" },
+        { "30 6,14,16 * * *", 2, FULL, "At 06:30 AM, 02:30 PM and  04:30 PM, every day" },
+        { "0-10 11 * * *", 5, FULL, "Every minute between 11:00 and 11:10" },
+        { "0-10 11 * * *", 2, FULL, "Every minute between 11:00 AM and 11:10 AM, every day" },
+        { "0 0 12 L * ?", 5, FULL, "At 12:00, on the last day of the month" },
+        { "0 0 12 L * ?", 2, FULL, "At 12:00 PM, on the last day of the month" },
+        { "0 0 12 LW * ?", 5, FULL, "At 12:00, on the last weekday of the month" },
+        { "0 0 12 LW * ?", 2, FULL, "At 12:00 PM, on the last weekday of the month" },
+        { "0 0 12 L-5 * ?", 5, FULL, "At 12:00, 5 days before the last day of the month" },
+        { "0 0 12 L-5 * ?", 2, FULL, "At 12:00 PM, 5 days before the last day of the month" },
+        { "0 0 12 15W * ?", 5, FULL, "At 12:00, on the weekday nearest day 15 of the month" },
+        { "0 0 12 15W * ?", 2, FULL, "At 12:00 PM, on the weekday nearest day 15 of the month" },
+        { "0 0 12 1W * ?", 5, FULL, "At 12:00, on the first weekday of the month" },
+        { "0 0 12 1W * ?", 2, FULL, "At 12:00 PM, on the first weekday of the month" },
+        { "0 0 12 ? * 6L", 5, FULL, "At 12:00, on the last Friday of the month" },
+        { "0 0 12 ? * 6L", 2, FULL, "At 12:00 PM, every day, on the last Friday of the month" },
+        { "0 0 12 ? * 2#3", 5, FULL, "At 12:00, on the third Monday of the month" },
+        { "0 0 12 ? * 2#3", 2, FULL, "At 12:00 PM, every day, on the third Monday of the month" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, FULL, "At 12:00, only on Monday, only in January, March, and December" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 2, FULL,
+            "At 12:00 PM, every day, only on Monday, only in January, March, and December" },
+        { "0 0 12 ? 3/2 *", 5, FULL, "At 12:00, every 2 months, March through December" },
+        { "0 0 12 ? 3/2 *", 2, FULL, "At 12:00 PM, every day, every 2 months, March through December" },
+        { "0 0 12 ? * 3/2", 5, FULL, "At 12:00, every 2 days of the week, Tuesday through Saturday" },
+        { "0 0 12 ? * 3/2", 2, FULL, "At 12:00 PM, every day, every 2 days of the week, Tuesday through Saturday" },
+        { "0 0 12 1 * ? 2020/5", 5, FULL, "At 12:00, on day 1 of the month, every 5 years, 2020 through 2099" },
+        { "0 0 12 1 * ? 2020/5", 2, FULL, "At 12:00 PM, on day 1 of the month, every 5 years, 2020 through 2099" },
+        { "0 0 12 1 * ? 2020-2030", 5, FULL, "At 12:00, on day 1 of the month, 2020 through 2030" },
+        { "0 0 12 1 * ? 2020-2030", 2, FULL, "At 12:00 PM, on day 1 of the month, 2020 through 2030" },
+        { "0 0 12 1 * ? 2020,2022,2024", 5, FULL, "NumberFormatException: For input string: \"2020,2022,2024\"" },
+        { "0 0 12 1 * ? 2020,2022,2024", 2, FULL, "For input string: \"2020,2022,2024\"" },
+        { "0 30 10 * * 7", 5, FULL, "At 10:30, only on Saturday" },
+        { "0 30 10 * * 7", 2, FULL, "At 10:30 AM, every day, only on Saturday" },
+        { "0 30 10 * * 0", 5, FULL,
+            "CronExpressionParseException: The expression describing the DAY OF WEEK field is not in a valid format" },
+        { "0 30 10 * * 0", 2, FULL, "The expression describing the DAY OF WEEK field is not in a valid format" },
+        { "5/10 * * * * ?", 5, FULL, "Every 10 seconds, starting at 5 seconds past the minute" },
+        { "5/10 * * * * ?", 2, FULL,
+            "Every 10 seconds, starting at 5 seconds past the minute, every minute, every hour, every day" },
+        { "2-59/3 1 * * * ?", 5, FULL,
+            "Every 3 seconds, seconds 2 through 59 past the minute, at 1 minutes past the hour" },
+        { "2-59/3 1 * * * ?", 2, FULL,
+            "Every 3 seconds, seconds 2 through 59 past the minute, at 1 minutes past the hour, every hour, every"
+            + " day" },
+        { "0 0 12 * * ? 1900", 5, FULL,
+            "CronExpressionParseException: The expression describing the YEAR field is not in a valid format."
+            + " Accepted year values are 1970-2099" },
+        { "0 0 12 * * ? 1900", 2, FULL,
+            "The expression describing the YEAR field is not in a valid format. Accepted year values are 1970-2099" },
+        { "* * *", 5, FULL,
+            "CronExpressionParseException: The cron expression \"* * *\" only has [3] parts. At least 5 parts are"
+            + " required." },
+        { "* * *", 2, FULL, "The cron expression \"* * *\" only has [3] parts. At least 5 parts are required." },
+        { "0 0 25 * * ?", 5, FULL,
+            "CronExpressionParseException: The expression describing the HOUR field is not in a valid format" },
+        { "0 0 25 * * ?", 2, FULL, "The expression describing the HOUR field is not in a valid format" },
+        { "0 0 12 1 * 2", 5, FULL,
+            "CronExpressionParseException: Specifying both a Day of Month and Day of Week is not supported. Either"
+            + " one or the other should be declared as \"?\"" },
+        { "0 0 12 1 * 2", 2, FULL,
+            "Specifying both a Day of Month and Day of Week is not supported. Either one or the other should be"
+            + " declared as \"?\"" },
+        { "a b c d e", 5, FULL,
+            "CronExpressionParseException: The expression describing the MINUTE field is not in a valid format" },
+        { "a b c d e", 2, FULL, "The expression describing the MINUTE field is not in a valid format" },
+        { "0 0 12 ? * 9", 5, FULL,
+            "CronExpressionParseException: The expression describing the DAY OF WEEK field is not in a valid format" },
+        { "0 0 12 ? * 9", 2, FULL, "The expression describing the DAY OF WEEK field is not in a valid format" },
+        { "1 2 3 4 5 6 7 8", 5, FULL,
+            "CronExpressionParseException: The cron expression \"1 2 3 4 5 6 7 8\" has too many parts [8]."
+            + " Expressions must not have more than 7 parts." },
+        { "1 2 3 4 5 6 7 8", 2, FULL,
+            "Specifying both a Day of Month and Day of Week is not supported. Either one or the other should be"
+            + " declared as \"?\"" },
+        { "0 0 12 ? * W", 5, FULL,
+            "CronExpressionParseException: The expression describing the DAY OF WEEK field is not in a valid format" },
+        { "0 0 12 ? * W", 2, FULL, "The expression describing the DAY OF WEEK field is not in a valid format" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, TIMEOFDAY, "Every 15 minutes, between 08:00 and 17:59" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, SECONDS,
+            "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, MINUTES, "Every 15 minutes" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, HOURS, "Between 08:00 and 17:59" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, DAYOFWEEK, ", Monday through Friday" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, MONTH,
+            "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, DAYOFMONTH, ", every day" },
+        { "0 0/15 8-17 ? * 2-6 2025", 5, YEAR, ", only in 2025" },
+        { "2-59/3 1 * * * ?", 5, TIMEOFDAY,
+            "Every 3 seconds, seconds 2 through 59 past the minute, at 1 minutes past the hour, every hour" },
+        { "2-59/3 1 * * * ?", 5, SECONDS, "Every 3 seconds, seconds 2 through 59 past the minute" },
+        { "2-59/3 1 * * * ?", 5, MINUTES, "At 1 minutes past the hour" },
+        { "2-59/3 1 * * * ?", 5, HOURS, "Every hour" },
+        { "2-59/3 1 * * * ?", 5, DAYOFWEEK,
+            "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "2-59/3 1 * * * ?", 5, MONTH, "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "2-59/3 1 * * * ?", 5, DAYOFMONTH, ", every day" },
+        { "2-59/3 1 * * * ?", 5, YEAR, "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, TIMEOFDAY, "At 12:00" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, SECONDS,
+            "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, MINUTES,
+            "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, HOURS, "At 12:00" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, DAYOFWEEK, ", only on Monday" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, MONTH, ", only in January, March, and December" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, DAYOFMONTH, ", every day" },
+        { "0 0 12 ? JAN,MAR,DEC MON", 5, YEAR,
+            "StringIndexOutOfBoundsException: Range [0, 1) out of bounds for length 0" },
+        { "0 30 10 * * 7", 13, FULL, "At 10:30, only on Sunday" },
+        { "0 30 10 * * 0", 13, FULL, "At 10:30, only on Sunday" },
+        { "0 0 12 ? * 3/2", 13, FULL, "At 12:00, every 2 days of the week, Wednesday through Saturday" },
+        { "30 6,14,16 * * *", 13, FULL, "At 06:30, 14:30 and  16:30" }
+    };
+
+    @Test
+    public void test_same_description_as_before() {
+
+        for (var row : DESCRIPTIONS) {
+            var expr = (String) row[0];
+            var options = options((int) row[1]);
+            var type = (DescriptionType) row[2];
+            var expected = (String) row[3];
+            Assertions.assertEquals(expected, describe(() -> CronExpressionDescriptor.describe(expr, options, type)),
+                () -> expr + " " + row[1] + " " + type);
+            // the cached one and the instance api
+            Assertions.assertEquals(expected, describe(() -> CronExpressionDescriptor.describe(expr, options, type)));
+            Assertions.assertEquals(
+                expected, describe(() -> new CronExpressionDescriptor(expr, options).getDescription(type)));
+        }
+        Assertions.assertEquals("Every 5 minutes", CronExpressionDescriptor.getDescription("*/5 * * * *"));
+
+        var random = new Random(20241001L);
+        for (int i = 0; i < 100; i++) {
+            var expr = CronExpressionTest.randomExpression(random);
+            for (int flags = 0; flags < 16; flags++) {
+                var options = options(flags);
+                for (var type : DescriptionType.values()) {
+                    var expected = describe(() -> generate(expr, options, type));
+                    Assertions.assertEquals(
+                        expected, describe(() -> CronExpressionDescriptor.describe(expr, options, type)),
+                        () -> expr + " " + type);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_cache_follows_options() {
+
+        var options = new Options();
+        var descriptor = new CronExpressionDescriptor("0 30 14 * * ?", options);
+        Assertions.assertEquals("At 14:30", descriptor.getDescription());
+        options.setUse24HourTimeFormat(false);
+        Assertions.assertEquals("At 02:30 PM", descriptor.getDescription());
+        descriptor.setExpression("0 30 15 * * ?", options);
+        Assertions.assertEquals("At 03:30 PM", descriptor.getDescription());
+
+        // a parse error isn't cached, so it's thrown every time.
+        Assertions.assertThrows(RuntimeException.class, () -> CronExpressionDescriptor.getDescription("0 0 25 * * ?"));
+        Assertions.assertThrows(RuntimeException.class, () -> CronExpressionDescriptor.getDescription("0 0 25 * * ?"));
+    }
+
+    @Test
+    public void test_subclass_overrides_description() {
+
+        var descriptor = new CronExpressionDescriptor("0 30 14 * * MON") {
+            @Override
+            protected String formatTime(String hourExpression, String minuteExpression, String secondExpression) {
+                return hourExpression + "h" + minuteExpression;
+            }
+
+            @Override
+            protected String GetDayOfWeekDescription() {
+                return ", on Mondays";
+            }
+        };
+        Assertions.assertEquals("At 14h30, on Mondays", descriptor.getDescription());
+        Assertions.assertEquals("At 14h30", descriptor.getDescription(DescriptionType.TIMEOFDAY));
+        // the cached description of the same expression isn't changed.
+        Assertions.assertEquals("At 14:30, only on Monday", CronExpressionDescriptor.getDescription("0 30 14 * * MON"));
+        descriptor.setExpression("0 0 9 * * MON");
+        Assertions.assertEquals("At 9h0, on Mondays", descriptor.getDescription());
+    }
+
+    @Test
+    public void test_describe_in_parallel() throws InterruptedException, ExecutionException {
+
+        var random = new Random(20241002L);
+        var expressions = new String[20_000];
+        var expected = new String[expressions.length];
+        // the invalid expressions are skipped, the parse errors aren't cached.
+        for (int i = 0; i < expressions.length; ) {
+            var expr = CronExpressionTest.randomExpression(random);
+            var description = describe(() -> generate(expr, new Options(), FULL));
+            if (!description.contains("Exception: ")) {
+                expressions[i] = expr;
+                expected[i++] = description;
+            }
+        }
+
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < expressions.length; i++) {
+                        int index = (i * 7 + offset * 1013) % expressions.length;
+                        var expr = expressions[index];
+                        Assertions.assertEquals(expected[index], describe(() -> CronExpressionDescriptor.getDescription(expr)));
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // the whole list again, all from the cache.
+        for (int i = 0; i < expressions.length; i++) {
+            var expr = expressions[i];
+            Assertions.assertEquals(expected[i], describe(() -> CronExpressionDescriptor.getDescription(expr)));
+        }
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_describe_benchmark() {
+
+        var random = new Random(20241003L);
+        var expressions = new String[20_000];
+        for (int i = 0; i < expressions.length; i++) {
+            expressions[i] = CronExpressionTest.randomExpression(random);
+        }
+
+        long nanos = System.nanoTime();
+        for (var expr : expressions) {
+            describe(() -> CronExpressionDescriptor.getDescription(expr));
+        }
+        nanos = System.nanoTime() - nanos;
+        long cachedNanos = System.nanoTime();
+        for (var expr : expressions) {
+            describe(() -> CronExpressionDescriptor.getDescription(expr));
+        }
+        cachedNanos = System.nanoTime() - cachedNanos;
+        System.out.printf(
+            "describe %d expressions: first time %.1f ms, cached %.1f ms%n",
+            expressions.length, nanos / 1e6, cachedNanos / 1e6);
+    }
+
+    private static Options options(int flags) {
+
+        return new Options((flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0, (flags & 8) != 0);
+    }
+
+    // the description generated without the cache, which isn't used by a subclass.
+    private static String generate(String expr, Options options, DescriptionType type) {
+
+        return new CronExpressionDescriptor(expr, options) { }.getDescription(type);
+    }
+
+    // the description, or the type and the message of the error.
+    private static String describe(Describer describer) {
+
+        try {
+            return describer.describe();
+        } catch (RuntimeException ex) {
+            return ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Describer {
+        String describe();
+    }
+}
@@ -0,0 +1,899 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.stream.LongStream;
+
+public class CronExpressionTest {
+
+    private static final String[] MONTH_NAMES = {
+        "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC" };
+    private static final String[] DAY_NAMES = { "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT" };
+
+    // the fire times of the implementation before the bitmask fields: the expression, the time zone, the time to
+    // search after, the next fire time, or null when it never fires again, and whether the seconds from 2 before to
+    // 2 after the time searched after are satisfied, from the lowest bit.
+    private static final Object[][] FIRE_TIMES = {
+        { "31,33,31 * 19/2 ? * 7#1", "UTC", "2027-01-25T20:48:12Z", "2027-02-06T19:00:31Z", 0b00000 },
+        { "* 2-39 11,3 LW 10 ? 2024", "America/New_York", "2030-03-29T11:42:54Z", null, 0b00000 },
+        { "42-51 57 * ? 4-11 */5", "Australia/Lord_Howe", "2029-10-07T00:30:46Z", "2029-10-07T00:57:42Z", 0b00000 },
+        { "13 * 0-15 30,27,29,25 9-3 ?", "Asia/Kolkata", "2034-03-16T00:52:26Z", "2034-03-24T18:30:13Z", 0b00000 },
+        { "53 * 6-14/1 */4 1 ? *", "UTC", "2023-07-31T16:41:56Z", "2024-01-01T06:00:53Z", 0b00000 },
+        { "44-34 31/6 1-13/9 ? 7-8/1 MON-FRI", "America/New_York",
+            "2033-07-19T04:43:07Z", "2033-07-19T05:31:00Z", 0b00000 },
+        { "38-0 * 3-22/6 ? 10-11/10 */3", "Australia/Lord_Howe",
+            "2024-12-11T17:00:34Z", "2025-09-30T16:30:00Z", 0b00000 },
+        { "2-56/2 */20 21,12,10 22-10 JAN ? 2022", "Asia/Kolkata",
+            "2021-11-09T15:17:27Z", "2022-01-01T04:30:02Z", 0b00000 },
+        { "48/10 */1 22,6,8,20 LW */3 ? *", "UTC", "2033-10-17T06:01:44Z", "2033-10-31T06:00:48Z", 0b00000 },
+        { "59 * */10 L-2 12,8,12 ? 2028", "America/New_York", "2032-06-12T19:27:11Z", null, 0b00000 },
+        { "7 56-39 7-13/1 * 7/10 ? *", "Australia/Lord_Howe", "2024-10-09T01:01:22Z", "2025-06-30T20:30:07Z", 0b00000 },
+        { "56-30 39 14 ? 7 7L", "Asia/Kolkata", "2022-12-21T10:44:53Z", "2023-07-29T09:09:00Z", 0b00000 },
+        { "3 17 * ? 1-4/1 7L", "UTC", "2034-09-13T12:53:36Z", "2035-01-27T00:17:03Z", 0b00000 },
+        { "31,14 36-39/3 19 ? 11,4 */4", "America/New_York", "2028-01-07T09:29:04Z", "2028-04-02T23:36:14Z", 0b00000 },
+        { "* * 4-13/7 L-1 4-3 ?", "Australia/Lord_Howe", "2021-07-23T21:56:04Z", "2021-07-29T17:30:00Z", 0b00000 },
+        { "57/4 8-32/7 11-17/1 ? 3-6 3,6,7,2,5", "Asia/Kolkata",
+            "2020-03-28T20:58:55Z", "2020-03-30T05:38:57Z", 0b00000 },
+        { "* 56,1 3 ? */10 6,4 2032-2032", "UTC", "2026-06-21T09:52:44Z", "2032-01-02T03:01:00Z", 0b00000 },
+        { "*/2 33 */17 27-26 7 ?", "America/New_York", "2034-10-06T22:27:23Z", "2035-07-01T04:33:00Z", 0b00000 },
+        { "52 59,13,24 20/16 ? 6,10 4-6/3 2033", "Australia/Lord_Howe",
+            "2030-12-08T20:05:18Z", "2033-06-01T09:43:52Z", 0b00000 },
+        { "*/17 * 11 26W * ? 2023-2025", "Asia/Kolkata", "2034-04-22T15:09:21Z", null, 0b00000 },
+        { "1 15-0 21,0,4 ? */3 7L *", "UTC", "2025-04-15T10:48:42Z", "2025-04-26T00:00:01Z", 0b00000 },
+        { "*/19 57 12/14 7 * ?", "America/New_York", "2021-06-13T19:22:05Z", "2021-07-07T16:57:00Z", 0b00000 },
+        { "25-59 16-30 0,11,2 L 3 ? 2025-2028", "Australia/Lord_Howe",
+            "2020-10-24T09:44:26Z", "2025-03-30T13:16:25Z", 0b00000 },
+        { "7-39/9 27-18 6 ? 11 MON-FRI", "Asia/Kolkata", "2024-01-20T16:54:04Z", "2024-11-01T00:30:07Z", 0b00000 },
+        { "50/18 54-23 17 L-2 12/9 ? *", "UTC", "2023-09-09T16:56:32Z", "2023-12-29T17:00:50Z", 0b00000 },
+        { "40 48 12-12/2 L-5 * ?", "America/New_York", "2033-11-27T16:03:30Z", "2033-12-26T17:48:40Z", 0b00000 },
+        { "8 27 7 ? 7-11/10 MON", "Australia/Lord_Howe", "2026-10-09T08:44:06Z", "2027-07-04T20:57:08Z", 0b00000 },
+        { "55 34 * ? 10 3", "Asia/Kolkata", "2028-08-16T21:11:06Z", "2028-10-02T19:04:55Z", 0b00000 },
+        { "* 57-24 */12 14-22 10-12/7 ?", "UTC", "2026-02-15T13:05:39Z", "2026-10-14T00:00:00Z", 0b00000 },
+        { "* 20/8 * ? 6/11 MON-FRI", "America/New_York", "2027-12-18T14:18:15Z", "2028-06-01T04:20:00Z", 0b00000 },
+        { "55-59/2 57 17 L-4 6,10 ?", "Australia/Lord_Howe", "2020-04-17T20:16:33Z", "2020-06-26T07:27:55Z", 0b00000 },
+        { "38-53 3 0-11/5 ? 1 3L", "Asia/Kolkata", "2033-04-05T23:40:53Z", "2034-01-30T18:33:38Z", 0b00000 },
+        { "47/13 37-7 18 ? 8,7,2 6/4", "UTC", "2023-03-11T08:58:59Z", "2023-07-07T18:00:47Z", 0b00000 },
+        { "2/8 17 3-17 9 * ? 2020-2020", "America/New_York", "2030-07-13T14:07:42Z", null, 0b00000 },
+        { "33/3 52 14/7 ? JUL 3L", "Australia/Lord_Howe", "2020-02-14T14:15:10Z", "2020-07-28T04:22:33Z", 0b00000 },
+        { "11,27,41 52 */13 ? * MON-FRI 2028-2028", "Asia/Kolkata",
+            "2021-12-07T19:20:57Z", "2028-01-02T19:22:11Z", 0b00000 },
+        { "3-26/4 52-22 0-18 LW 1-4/8 ? *", "UTC", "2023-09-07T15:48:48Z", "2024-01-31T00:00:03Z", 0b00000 },
+        { "43/17 11-54/10 15,19,18,14 */15 2 ?", "America/New_York",
+            "2020-05-29T14:13:02Z", "2021-02-01T19:11:43Z", 0b00000 },
+        { "5-37/2 4/11 2-7 2 * ? 2021-2025", "Australia/Lord_Howe", "2027-10-24T05:24:29Z", null, 0b00000 },
+        { "6-51/8 54-17 9/5 ? 7 L 2033", "Asia/Kolkata", "2024-12-23T23:50:52Z", "2033-07-02T03:30:06Z", 0b00000 },
+        { "55/8 58/10 * ? */7 3#3 2032", "UTC", "2028-03-15T17:24:19Z", "2032-01-20T00:58:55Z", 0b00000 },
+        { "25/16 45/7 20 LW 10/6 ? 2025", "America/New_York", "2033-04-16T06:39:19Z", null, 0b00000 },
+        { "10-32/5 34 18-18 LW 3,2,10,6,3 ? *", "Australia/Lord_Howe",
+            "2034-09-30T05:57:11Z", "2034-10-31T07:34:10Z", 0b00000 },
+        { "15-31/6 26,23,57,40 22-18 ? * MON-FRI", "Asia/Kolkata",
+            "2026-01-27T10:10:11Z", "2026-01-27T10:10:15Z", 0b00000 },
+        { "*/4 6 19,14 LW 8 ?", "UTC", "2030-10-17T02:25:12Z", "2031-08-29T14:06:00Z", 0b00000 },
+        { "4-20/5 16 6/5 7 8 ? 2023", "America/New_York", "2034-12-09T06:14:01Z", null, 0b00000 },
+        { "44 */14 21,8,6 ? 3-11/4 3/1", "Australia/Lord_Howe",
+            "2034-02-19T10:07:27Z", "2034-02-28T19:00:44Z", 0b00000 },
+        { "* 53,8,6 18 12-24/1 1/9 ? *", "Asia/Kolkata", "2033-07-28T05:36:56Z", "2033-10-12T12:36:00Z", 0b00000 },
+        { "21,35,56,38,17 30-50 3-23/4 29 10/5 ? *", "UTC", "2021-05-22T06:41:32Z", "2021-10-29T03:30:17Z", 0b00000 },
+        { "* 25-50 16-4 ? DEC-MAR MON-FRI 2024", "America/New_York",
+            "2022-01-11T06:06:33Z", "2024-01-01T05:25:00Z", 0b00000 },
+        { "58-57 17,59,41,30,19 7 ? 6-5 */4", "Australia/Lord_Howe",
+            "2025-06-30T11:41:24Z", "2025-07-02T20:47:00Z", 0b00000 },
+        { "22-24/10 13 * 26 */9 ? *", "Asia/Kolkata", "2023-08-05T00:32:58Z", "2023-10-25T18:43:22Z", 0b00000 },
+        { "22 46/11 12-14/4 ? 4/2 L 2032", "UTC", "2025-03-06T22:48:23Z", "2032-04-03T12:46:22Z", 0b00000 },
+        { "46-36 54,15,55 * LW SEP ? 2022", "America/New_York", "2029-12-02T07:04:27Z", null, 0b00000 },
+        { "11-26/5 */16 * L */9 ? 2022", "Australia/Lord_Howe", "2028-05-27T06:19:25Z", null, 0b00000 },
+        { "48 20 3/6 L-5 11/7 ?", "Asia/Kolkata", "2023-12-02T17:42:37Z", "2024-11-24T21:50:48Z", 0b00000 },
+        { "53 46 17 22W 8/1 ? *", "UTC", "2024-04-24T08:32:46Z", "2024-08-22T17:46:53Z", 0b00000 },
+        { "52 42 20/10 8-8/3 1-10 ?", "America/New_York", "2027-02-06T01:36:38Z", "2027-02-09T01:42:52Z", 0b00000 },
+        { "57 3 6,20,21,14,14 ? 5-10 3#3", "Australia/Lord_Howe",
+            "2020-09-24T05:53:50Z", "2020-10-19T19:03:57Z", 0b00000 },
+        { "34,10,9 22 21/4 ? * 4#2", "Asia/Kolkata", "2028-11-20T08:02:03Z", "2028-12-13T15:52:09Z", 0b00000 },
+        { "43 17,37,20,13 7/18 ? 9,7,1,8 3", "UTC", "2025-09-02T11:11:23Z", "2025-09-09T07:13:43Z", 0b00000 },
+        { "31/16 52 16 20W 7-9/4 ?", "America/New_York", "2033-07-05T03:35:27Z", "2033-07-20T20:52:31Z", 0b00000 },
+        { "*/6 36-17 7,14 ? 1-2 MON-FRI 2020", "Australia/Lord_Howe", "2022-11-05T11:49:13Z", null, 0b00000 },
+        { "9,54,32 55-21 8-7 LW 3/4 ?", "Asia/Kolkata", "2030-11-06T18:01:25Z", "2030-11-28T18:30:09Z", 0b00000 },
+    };
+
+    // the same within a few days of the transitions. Lord_Howe has a gap of 30 minutes, Havana and Santiago move the
+    // clocks at midnight.
+    private static final Object[][] FIRE_TIMES_AROUND_TRANSITIONS = {
+        { "0 30 2 * * ?", "America/New_York", "2024-03-10T06:00:00Z", "2024-03-11T06:30:00Z", 0b00000 },
+        { "0 0/30 1 * * ?", "America/New_York", "2024-11-03T05:10:00Z", "2024-11-03T06:30:00Z", 0b00000 },
+        { "0 0/30 1 * * ?", "America/New_York", "2024-11-03T06:10:00Z", "2024-11-03T06:30:00Z", 0b00000 },
+        { "0 15 2 * * ?", "Australia/Lord_Howe", "2024-10-05T15:00:00Z", "2024-10-06T15:15:00Z", 0b00000 },
+        { "0 45 1 * * ?", "Australia/Lord_Howe", "2024-04-06T14:00:00Z", "2024-04-06T15:15:00Z", 0b00000 },
+        { "0 0 0 * * ?", "America/Havana", "2024-03-09T12:00:00Z", "2024-03-11T04:00:00Z", 0b00000 },
+        { "0 30 0 * * ?", "America/Havana", "2024-11-02T12:00:00Z", "2024-11-03T05:30:00Z", 0b00000 },
+        { "0 0 0 * * ?", "America/Santiago", "2024-09-07T12:00:00Z", "2024-09-09T03:00:00Z", 0b00000 },
+        { "0 30 23 * * ?", "America/Santiago", "2024-04-06T12:00:00Z", "2024-04-07T03:30:00Z", 0b00000 },
+        { "* * 1-1 */6 10 ?", "Europe/London", "2021-10-31T00:59:58Z", "2021-10-31T01:59:59Z", 0b11111 },
+        { "*/7 47 * ? 11 MON-FRI", "America/New_York", "2027-03-16T03:07:13Z", "2027-11-01T04:47:00Z", 0b00000 },
+        { "*/7 47 * ? 11 MON-FRI", "America/New_York", "2027-03-13T13:33:44Z", "2027-11-01T04:47:00Z", 0b00000 },
+        { "7,25,41 0-19/7 17 9/6 4 ? *", "Australia/Lord_Howe",
+            "2026-04-05T17:43:04Z", "2026-04-09T06:30:07Z", 0b00000 },
+        { "7,25,41 0-19/7 17 9/6 4 ? *", "Australia/Lord_Howe",
+            "2026-04-05T14:47:17Z", "2026-04-09T06:30:07Z", 0b00000 },
+        { "43 39 15-19 ? 7,4 6", "America/Havana", "2027-11-05T17:53:11Z", "2028-04-07T19:39:43Z", 0b00000 },
+        { "43 39 15-19 ? 7,4 6", "America/Havana", "2027-11-08T13:04:29Z", "2028-04-07T19:39:43Z", 0b00000 },
+        { "50/17 56-59/2 13/3 ? * 7L *", "America/Santiago", "2026-09-05T07:01:09Z", "2026-09-26T16:56:50Z", 0b00000 },
+        { "50/17 56-59/2 13/3 ? * 7L *", "America/Santiago", "2026-09-04T15:23:33Z", "2026-09-26T16:56:50Z", 0b00000 },
+        { "17-21/3 * 8 ? 4 7#5 2029", "America/New_York", "2026-11-01T17:00:11Z", null, 0b00000 },
+        { "17-21/3 * 8 ? 4 7#5 2029", "America/New_York", "2026-11-02T22:59:58Z", null, 0b00000 },
+        { "57 7 */13 ? 5-5 7-1 2022-2025", "Australia/Lord_Howe", "2027-10-01T10:32:21Z", null, 0b00000 },
+        { "57 7 */13 ? 5-5 7-1 2022-2025", "Australia/Lord_Howe", "2027-10-03T16:19:58Z", null, 0b00000 },
+        { "* 34-44/1 7,0,5,2,14 * 4-7 ?", "America/Havana", "2026-11-02T01:19:15Z", "2027-04-01T04:34:00Z", 0b00000 },
+        { "* 34-44/1 7,0,5,2,14 * 4-7 ?", "America/Havana", "2026-11-01T02:07:11Z", "2027-04-01T04:34:00Z", 0b00000 },
+        { "10-58/5 */1 * LW 2-4 ? 2027-2028", "America/Santiago",
+            "2024-09-08T22:12:01Z", "2027-02-26T03:00:10Z", 0b00000 },
+        { "10-58/5 */1 * LW 2-4 ? 2027-2028", "America/Santiago",
+            "2024-09-09T08:52:44Z", "2027-02-26T03:00:10Z", 0b00000 },
+        { "29/13 * * */5 */6 ?", "America/New_York", "2025-10-31T10:55:23Z", "2026-01-01T05:00:29Z", 0b00000 },
+        { "29/13 * * */5 */6 ?", "America/New_York", "2025-11-01T21:26:54Z", "2026-01-01T05:00:29Z", 0b00000 },
+        { "46 1/12 19,19,20,7 ? 11 MON-FRI", "Australia/Lord_Howe",
+            "2026-10-02T14:54:49Z", "2026-11-01T20:01:46Z", 0b00000 },
+        { "46 1/12 19,19,20,7 ? 11 MON-FRI", "Australia/Lord_Howe",
+            "2026-10-02T21:30:00Z", "2026-11-01T20:01:46Z", 0b00000 },
+        { "14,57 */2 * ? 7-1 7", "America/Havana", "2026-11-01T07:50:56Z", "2026-11-07T05:00:14Z", 0b00000 },
+        { "14,57 */2 * ? 7-1 7", "America/Havana", "2026-11-01T00:02:27Z", "2026-11-01T00:02:57Z", 0b00000 },
+        { "*/11 41-40 0-23 ? 9/2 3#5", "America/Santiago", "2028-04-03T08:26:42Z", "2031-09-30T03:00:00Z", 0b00000 },
+        { "*/11 41-40 0-23 ? 9/2 3#5", "America/Santiago", "2028-04-01T01:45:45Z", "2031-09-30T03:00:00Z", 0b00000 },
+        { "9 16-57/3 20 L 2,7 ?", "America/New_York", "2024-11-02T05:09:53Z", "2025-03-01T01:16:09Z", 0b00000 },
+        { "9 16-57/3 20 L 2,7 ?", "America/New_York", "2024-11-04T02:26:54Z", "2025-03-01T01:16:09Z", 0b00000 },
+        { "*/20 * */18 ? 12 7L", "Australia/Lord_Howe", "2026-10-02T12:31:32Z", "2026-12-25T13:00:00Z", 0b00000 },
+        { "*/20 * */18 ? 12 7L", "Australia/Lord_Howe", "2026-10-05T06:12:54Z", "2026-12-25T13:00:00Z", 0b00000 },
+        { "7/16 */19 19-13 ? 6,4 5-6/3", "America/Havana", "2025-10-31T07:55:51Z", "2026-04-02T04:00:07Z", 0b00000 },
+        { "7/16 */19 19-13 ? 6,4 5-6/3", "America/Havana", "2025-10-31T14:14:50Z", "2026-04-02T04:00:07Z", 0b00000 },
+        { "14 * 15 3W 11 ?", "America/Santiago", "2025-09-07T07:01:06Z", "2025-11-03T18:00:14Z", 0b00000 },
+        { "14 * 15 3W 11 ?", "America/Santiago", "2025-09-07T17:30:36Z", "2025-11-03T18:00:14Z", 0b00000 },
+        { "56/9 21,5 5,12 12 */2 ? 2033-2034", "America/New_York",
+            "2026-11-02T08:50:04Z", "2033-01-12T10:05:56Z", 0b00000 },
+        { "56/9 21,5 5,12 12 */2 ? 2033-2034", "America/New_York",
+            "2026-10-31T14:16:47Z", "2033-01-12T10:05:56Z", 0b00000 },
+        { "53-36 16,0 */11 L-5 */8 ? 2028", "Australia/Lord_Howe",
+            "2024-10-04T04:57:08Z", "2028-01-25T13:00:00Z", 0b00000 },
+        { "53-36 16,0 */11 L-5 */8 ? 2028", "Australia/Lord_Howe",
+            "2024-10-04T15:09:27Z", "2028-01-25T13:00:00Z", 0b00000 },
+        { "10-51/10 28-31/5 10/5 LW 4/11 ?", "America/Havana",
+            "2024-11-03T02:52:44Z", "2025-04-30T14:28:10Z", 0b00000 },
+        { "10-51/10 28-31/5 10/5 LW 4/11 ?", "America/Havana",
+            "2024-11-03T02:28:16Z", "2025-04-30T14:28:10Z", 0b00000 },
+        { "3 25/11 9 ? 2/5 * 2024", "America/Santiago", "2025-09-07T19:51:02Z", null, 0b00000 },
+        { "3 25/11 9 ? 2/5 * 2024", "America/Santiago", "2025-09-07T07:10:21Z", null, 0b00000 },
+        { "49/9 18-25/3 0-4 L 5 ? 2029-2033", "America/New_York",
+            "2027-11-07T17:36:56Z", "2029-05-31T04:18:49Z", 0b00000 },
+        { "49/9 18-25/3 0-4 L 5 ? 2029-2033", "America/New_York",
+            "2027-11-09T03:25:01Z", "2029-05-31T04:18:49Z", 0b00000 },
+        { "1,21,39,33 55,20,52 15-16/4 5 2 ?", "Australia/Lord_Howe",
+            "2027-09-30T21:17:09Z", "2028-02-05T04:20:01Z", 0b00000 },
+        { "1,21,39,33 55,20,52 15-16/4 5 2 ?", "Australia/Lord_Howe",
+            "2027-10-02T20:52:26Z", "2028-02-05T04:20:01Z", 0b00000 },
+        { "25,57,58,22 28-31/7 11/19 6W 9 ?", "America/Havana",
+            "2025-10-31T13:51:04Z", "2026-09-07T15:28:22Z", 0b00000 },
+        { "25,57,58,22 28-31/7 11/19 6W 9 ?", "America/Havana",
+            "2025-10-31T19:05:45Z", "2026-09-07T15:28:22Z", 0b00000 },
+        { "42 8-49/8 19/13 4 1 ? 2033", "America/Santiago", "2024-09-08T15:22:38Z", "2033-01-04T22:08:42Z", 0b00000 },
+        { "42 8-49/8 19/13 4 1 ? 2033", "America/Santiago", "2024-09-08T11:07:32Z", "2033-01-04T22:08:42Z", 0b00000 },
+        { "*/14 * 11 15/15 4,8,7 ?", "America/New_York", "2027-11-06T02:44:53Z", "2028-04-15T15:00:00Z", 0b00000 },
+        { "*/14 * 11 15/15 4,8,7 ?", "America/New_York", "2027-11-07T10:42:44Z", "2028-04-15T15:00:00Z", 0b00000 },
+        { "22/14 51-37 11-13/2 7W 1 ?", "Australia/Lord_Howe",
+            "2024-04-05T06:31:24Z", "2025-01-07T00:00:22Z", 0b00000 },
+        { "22/14 51-37 11-13/2 7W 1 ?", "Australia/Lord_Howe",
+            "2024-04-07T04:35:39Z", "2025-01-07T00:00:22Z", 0b00000 },
+        { "47,19,24 */17 4-18/10 9 1/2 ?", "America/Havana", "2027-11-06T03:27:25Z", "2027-11-09T09:00:19Z", 0b00000 },
+        { "47,19,24 */17 4-18/10 9 1/2 ?", "America/Havana", "2027-11-08T07:46:12Z", "2027-11-09T09:00:19Z", 0b00000 },
+        { "*/16 13-29/4 0,9,18,7 25 10-4 ? 2032-2034", "America/Santiago",
+            "2027-04-03T02:38:45Z", "2032-01-25T03:13:00Z", 0b00000 },
+        { "*/16 13-29/4 0,9,18,7 25 10-4 ? 2032-2034", "America/Santiago",
+            "2027-04-04T09:12:30Z", "2032-01-25T03:13:00Z", 0b00000 },
+        { "10,43,42,21,27 32/4 3-21/3 ? 2 3-2", "America/New_York",
+            "2025-10-31T10:13:09Z", "2026-02-01T08:32:10Z", 0b00000 },
+        { "10,43,42,21,27 32/4 3-21/3 ? 2 3-2", "America/New_York",
+            "2025-11-01T15:26:25Z", "2026-02-01T08:32:10Z", 0b00000 },
+        { "18,27 1 13-22/6 ? 5 L", "Australia/Lord_Howe", "2027-10-02T16:08:59Z", "2028-05-06T02:31:18Z", 0b00000 },
+        { "18,27 1 13-22/6 ? 5 L", "Australia/Lord_Howe", "2027-10-03T14:38:59Z", "2028-05-06T02:31:18Z", 0b00000 },
+        { "*/2 46 16-18/10 ? 8,5 L", "America/Havana", "2025-03-09T04:11:20Z", "2025-05-03T20:46:00Z", 0b00000 },
+        { "*/2 46 16-18/10 ? 8,5 L", "America/Havana", "2025-03-07T09:38:12Z", "2025-05-03T20:46:00Z", 0b00000 },
+        { "52/11 * 17/1 ? * */5 *", "America/Santiago", "2025-09-06T14:10:32Z", "2025-09-07T20:00:52Z", 0b00000 },
+        { "52/11 * 17/1 ? * */5 *", "America/Santiago", "2025-09-06T10:41:23Z", "2025-09-07T20:00:52Z", 0b00000 },
+    };
+
+    // the next invalid times of the implementation before the bitmask fields: the expression, the time zone, the
+    // time to search after and the first second after it which doesn't fire.
+    private static final Object[][] INVALID_TIMES = {
+        { "*/16 * 14 22 AUG-DEC ?", "UTC", "2021-08-22T13:59:59Z", "2021-08-22T14:00:01Z" },
+        { "32-35 35-9 12-21 21W 3-6/1 ? 2024-2024", "Asia/Shanghai", "2021-05-07T21:45:58Z", "2021-05-07T21:45:59Z" },
+        { "*/12 */4 * ? APR-NOV MON-FRI", "UTC", "2027-03-31T23:59:59Z", "2027-04-01T00:00:01Z" },
+        { "3-9/1 * */20 ? NOV-MAR */3", "Asia/Shanghai", "2023-03-04T06:41:01Z", "2023-03-04T06:41:02Z" },
+        { "34 42-59/4 5/12 ? 1-10/3 L 2027-2030", "UTC", "2027-01-02T05:42:33Z", "2027-01-02T05:42:35Z" },
+        { "58 * 23 12-17/1 12 ? *", "Asia/Shanghai", "2029-01-01T21:19:45Z", "2029-01-01T21:19:46Z" },
+        { "18 * 15 ? 3-6/3 */5 2028-2029", "UTC", "2029-03-02T15:00:17Z", "2029-03-02T15:00:19Z" },
+        { "2 57,36,3,53 16,23 ? */8 L", "Asia/Shanghai", "2032-05-22T20:28:49Z", "2032-05-22T20:28:50Z" },
+        { "25/19 53 7/10 ? 7/6 */6 2023", "UTC", "2023-07-01T07:53:24Z", "2023-07-01T07:53:26Z" },
+        { "14-44 27-15 */15 16-12 */3 ? 2030", "Asia/Shanghai", "2027-08-22T20:54:24Z", "2027-08-22T20:54:25Z" },
+        { "28-56/2 34-53/6 9 2/20 3/10 ?", "UTC", "2022-03-02T09:34:27Z", "2022-03-02T09:34:29Z" },
+        { "*/14 * 14,22 ? * 7/4 2025", "Asia/Shanghai", "2034-08-02T12:17:36Z", "2034-08-02T12:17:37Z" },
+        { "34-35 38 14 L-2 3/6 ?", "Asia/Shanghai", "2033-09-28T06:38:33Z", "2033-09-28T06:38:36Z" },
+        { "16-51/3 0,10,58 19/2 L-3 7 ?", "UTC", "2033-09-02T07:30:58Z", "2033-09-02T07:30:59Z" },
+        { "26,47,14,35 */19 15/5 ? 4,9 MON-FRI", "Asia/Shanghai", "2021-04-01T07:00:13Z", "2021-04-01T07:00:15Z" },
+        { "57 43 17,17,3,11,10 22/6 10 ? 2026", "UTC", "2031-12-23T21:14:36Z", "2031-12-23T21:14:37Z" },
+        { "* */12 * ? 9/2 MON-FRI *", "Asia/Shanghai", "2027-08-31T15:59:59Z", "2027-08-31T16:01:00Z" },
+        { "27 43-45/3 */16 29-6 2/1 ? 2029-2030", "UTC", "2033-05-23T10:43:17Z", "2033-05-23T10:43:18Z" },
+        { "56 52 8 */7 * ? 2031-2031", "Asia/Shanghai", "2034-11-30T23:12:46Z", "2034-11-30T23:12:47Z" },
+        { "11-49 * 11 13W * ?", "UTC", "2029-08-07T01:32:55Z", "2029-08-07T01:32:56Z" },
+        { "* 8 15 ? */1 L 2033-2035", "Asia/Shanghai", "2033-01-01T07:07:59Z", "2033-01-01T07:09:00Z" },
+        { "22 11-12 * ? 8/5 L", "UTC", "2024-11-08T07:53:59Z", "2024-11-08T07:54:00Z" },
+        { "11 31-39/9 13 L-3 */7 ? 2034-2036", "Asia/Shanghai", "2034-01-28T05:31:10Z", "2034-01-28T05:31:12Z" },
+        { "39,27,50,32 * */16 ? 2-12/7 2-7 2032-2033", "UTC", "2023-11-13T03:25:51Z", "2023-11-13T03:25:52Z" },
+        { "10,40 21 */19 * 10 ?", "Asia/Shanghai", "2022-09-30T16:21:09Z", "2022-09-30T16:21:11Z" },
+        { "* 4-56 1-4 */8 1-3/10 ? 2032", "UTC", "2020-05-07T04:31:44Z", "2020-05-07T04:31:45Z" },
+        { "12 38/18 8-9/6 L-3 11-11/5 ? *", "Asia/Shanghai", "2024-11-27T00:38:11Z", "2024-11-27T00:38:13Z" },
+        { "20/13 33/8 * 26W 4,4 ?", "UTC", "2020-05-26T17:34:59Z", "2020-05-26T17:35:00Z" },
+        { "37-27 * 15 ? 6 L 2027-2027", "Asia/Shanghai", "2027-06-05T06:59:59Z", "2027-06-05T07:00:28Z" },
+        { "* 32/14 12,12,11 ? 4,10,8,1,9 * 2031", "UTC", "2026-06-04T04:32:03Z", "2026-06-04T04:32:04Z" },
+        { "4 28-41/7 1-18 L-2 * ? *", "Asia/Shanghai", "2033-03-28T17:28:03Z", "2033-03-28T17:28:05Z" },
+        { "21-56/4 * 7 11/10 * ? 2020", "UTC", "2027-09-10T21:08:15Z", "2027-09-10T21:08:16Z" },
+    };
+
+    // whether the implementation before the bitmask fields accepts the expression.
+    private static final Object[][] VALID_EXPRESSIONS = {
+        { "0 0 12 * * MON", false },
+        { "0 60 * * * ?", false },
+        { "0 0 24 * * ?", false },
+        { "0 0 12 L,3 * ?", false },
+        { "0 0 12 ? * 2#1,3#2", false },
+        { "0 0 12 ? * 1L,2", false },
+        { "* * * * *", false },
+        { "0 0 12 32 * ?", false },
+        { "0 0 12 ? * 8", false },
+        { "0 0 12 ? JANX *", true },
+        { "0 0/0 * * * ?", true },
+        { "0 0 12 ? * MON-FOO", false },
+        { "0 0 12 ? * 6#6", false },
+        { "0 0 12 LW * ?", true },
+        { "0 0 12 L-3 * ?", true },
+        { "0 0 12 15W * ?", true },
+        { "0 0 12 ? * 6L", true },
+        { "0 0 12 ? * 2#5 2030-2040", true },
+        { "0 0 12 ? * MON-FRI 1969", true },
+        { "0 0 12 ? * * 2000/3", true },
+        { "1,3-5/2 0/7 * L-3 JAN-MAR/2 ?", true },
+        { "0 0 12 ? 13 *", false },
+        { "0 0 12 ? * ?", false },
+    };
+
+    // the summaries of the implementation before the bitmask fields.
+    private static final Object[][] SUMMARIES = {
+        { "0 15 10 ? * 6L 2024-2025",
+            "seconds: 0\nminutes: 15\nhours: 10\ndaysOfMonth: ?\nmonths: *\ndaysOfWeek: 6\nlastdayOfWeek: true\n"
+            + "nearestWeekday: false\nNthDayOfWeek: 0\nlastdayOfMonth: false\nyears: 2024,2025\n" },
+        { "0 0/5 9-17 ? * 2#3",
+            "seconds: 0\nminutes: 0,5,10,15,20,25,30,35,40,45,50,55\nhours: 9,10,11,12,13,14,15,16,17\n"
+            + "daysOfMonth: ?\nmonths: *\ndaysOfWeek: 2\nlastdayOfWeek: false\nnearestWeekday: false\n"
+            + "NthDayOfWeek: 3\nlastdayOfMonth: false\nyears: *\n" },
+        { "0 0 12 LW * ?",
+            "seconds: 0\nminutes: 0\nhours: 12\ndaysOfMonth: \nmonths: *\ndaysOfWeek: ?\nlastdayOfWeek: false\n"
+            + "nearestWeekday: true\nNthDayOfWeek: 0\nlastdayOfMonth: true\nyears: *\n" },
+        { "1,3-5/2 0/7 * L-3 JAN-MAR/2 ?",
+            "seconds: 1,3,5\nminutes: 0,7,14,21,28,35,42,49,56\nhours: *\ndaysOfMonth: \nmonths: 1,2,3\n"
+            + "daysOfWeek: ?\nlastdayOfWeek: false\nnearestWeekday: false\nNthDayOfWeek: 0\nlastdayOfMonth: true\n"
+            + "years: *\n" },
+    };
+
+    @Test
+    public void test_get_time_after() throws ParseException {
+
+        var cron = new CronExpression("0 15 10 ? * MON-FRI");
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // 2024-05-10 is a Friday.
+        var after = toDate(LocalDateTime.of(2024, 5, 10, 10, 15, 0), "UTC");
+        Assertions.assertEquals(toDate(LocalDateTime.of(2024, 5, 13, 10, 15, 0), "UTC"), cron.getTimeAfter(after));
+
+        cron = new CronExpression("0 0 12 LW * ?");
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+        // 2024-08-31 is a Saturday.
+        after = toDate(LocalDateTime.of(2024, 8, 1, 0, 0, 0), "UTC");
+        Assertions.assertEquals(toDate(LocalDateTime.of(2024, 8, 30, 12, 0, 0), "UTC"), cron.getTimeAfter(after));
+
+        cron = new CronExpression("0 0 8 ? * 6#3 2025");
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Assertions.assertEquals(toDate(LocalDateTime.of(2025, 1, 17, 8, 0, 0), "UTC"), cron.getTimeAfter(after));
+    }
+
+    @Test
+    public void test_same_result_as_before() throws ParseException {
+
+        for (var row : VALID_EXPRESSIONS) {
+            Assertions.assertEquals(row[1], CronExpression.isValidExpression((String) row[0]), (String) row[0]);
+        }
+        for (var row : SUMMARIES) {
+            var cron = new CronExpression((String) row[0]);
+            Assertions.assertEquals(row[1], cron.getExpressionSummary(), (String) row[0]);
+            // a copy has the parsed fields without parsing again.
+            Assertions.assertEquals(row[1], new CronExpression(cron).getExpressionSummary(), (String) row[0]);
+        }
+        assertFireTimes(FIRE_TIMES);
+    }
+
+    @Test
+    public void test_same_result_as_before_around_transitions() throws ParseException {
+
+        assertFireTimes(FIRE_TIMES_AROUND_TRANSITIONS);
+    }
+
+    @Test
+    public void test_next_fire_epoch_millis_same_as_get_time_after() throws ParseException {
+
+        // no daylight saving in these zones after 1991
+        var zones = new String[] { "UTC", "Asia/Shanghai", "Asia/Kolkata" };
+
+        for (var row : FIRE_TIMES) {
+            var zone = ZoneId.of((String) row[1]);
+            if (!Arrays.asList(zones).contains(zone.getId()))
+                continue;
+            long after = Instant.parse((String) row[2]).toEpochMilli();
+            long exp = row[3] == null ? -1 : Instant.parse((String) row[3]).toEpochMilli();
+            var cron = new CronExpression((String) row[0]);
+            Assertions.assertEquals(exp, cron.nextFireEpochMillis(after, zone), () -> row[0] + " after " + row[2]);
+        }
+
+        var random = new Random(20240513L);
+        for (int i = 0; i < 2000; i++) {
+            var expr = randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var cron = new CronExpression(expr);
+            cron.setTimeZone(TimeZone.getTimeZone(zone));
+
+            for (int j = 0; j < 20; j++) {
+                var after = randomDate(random);
+                var exp = cron.getTimeAfter(after);
+                var act = cron.nextFireEpochMillis(after.getTime(), zone);
+                Assertions.assertEquals(exp == null ? -1 : exp.getTime(), act, () -> expr + " after " + after);
+            }
+        }
+    }
+
+    @Test
+    public void test_next_fire_epoch_millis_in_daylight_saving() throws ParseException {
+
+        var zone = ZoneId.of("America/New_York");
+
+        // the clocks go from 02:00 to 03:00 on 2024-03-10, 02:30 fires at 03:30 instead.
+        var cron = new CronExpression("0 30 2 * * ?");
+        var next = cron.next(LocalDateTime.of(2024, 3, 9, 3, 0).atZone(zone));
+        Assertions.assertEquals(LocalDateTime.of(2024, 3, 10, 3, 30).atZone(zone), next);
+        next = cron.next(next);
+        Assertions.assertEquals(LocalDateTime.of(2024, 3, 11, 2, 30).atZone(zone), next);
+
+        // the fire time in the gap is still found when the search starts in the gap.
+        next = cron.next(LocalDateTime.of(2024, 3, 10, 1, 59, 59).atZone(zone));
+        Assertions.assertEquals(LocalDateTime.of(2024, 3, 10, 3, 30).atZone(zone), next);
+
+        // the clocks go from 02:00 back to 01:00 on 2024-11-03, the repeated wall-clock times only fire once.
+        cron = new CronExpression("0 0/30 * * * ?");
+        next = cron.next(LocalDateTime.of(2024, 11, 3, 1, 0).atZone(zone).withEarlierOffsetAtOverlap());
+        Assertions.assertEquals(
+            LocalDateTime.of(2024, 11, 3, 1, 30).atZone(zone).withEarlierOffsetAtOverlap(), next);
+        next = cron.next(next);
+        Assertions.assertEquals(LocalDateTime.of(2024, 11, 3, 2, 0).atZone(zone), next);
+        next = cron.next(LocalDateTime.of(2024, 11, 3, 1, 0).atZone(zone).withLaterOffsetAtOverlap());
+        Assertions.assertEquals(LocalDateTime.of(2024, 11, 3, 2, 0).atZone(zone), next);
+
+        cron = new CronExpression("0 0 0 1 1 ? 2020");
+        Assertions.assertNull(cron.next(LocalDateTime.of(2024, 1, 1, 0, 0).atZone(zone)));
+        Assertions.assertEquals(-1, cron.nextFireEpochMillis(System.currentTimeMillis(), zone));
+    }
+
+    @Test
+    public void test_next_invalid_time_after_same_as_before() throws ParseException {
+
+        for (var row : INVALID_TIMES) {
+            var cron = new CronExpression((String) row[0]);
+            cron.setTimeZone(TimeZone.getTimeZone((String) row[1]));
+            var after = Date.from(Instant.parse((String) row[2]));
+            Assertions.assertEquals(
+                Date.from(Instant.parse((String) row[3])),
+                cron.getNextInvalidTimeAfter(after),
+                () -> row[0] + " after " + after);
+        }
+    }
+
+    @Test
+    public void test_next_invalid_time_after_window() throws ParseException {
+
+        var cron = new CronExpression("* * 9-17 ? * MON-FRI");
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // 2024-05-13 is a Monday, the window ends at 18:00.
+        var after = toDate(LocalDateTime.of(2024, 5, 13, 8, 59, 59), "UTC");
+        Assertions.assertEquals(
+            toDate(LocalDateTime.of(2024, 5, 13, 18, 0, 0), "UTC"), cron.getNextInvalidTimeAfter(after));
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_next_invalid_time_after_benchmark() throws ParseException {
+
+        var expr = "* * 9-17 ? * MON-FRI";
+        var cron = new CronExpression(expr);
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+        var after = toDate(LocalDateTime.of(2024, 5, 13, 8, 59, 59), "UTC");
+
+        int rounds = 20;
+        // walks the fire times one by one, the way it was done before the closed form.
+        long walkNanos = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            var last = after;
+            var next = cron.getTimeAfter(last);
+            while (next != null && next.getTime() - last.getTime() == 1000) {
+                last = next;
+                next = cron.getTimeAfter(last);
+            }
+            Assertions.assertEquals(toDate(LocalDateTime.of(2024, 5, 13, 17, 59, 59), "UTC"), last);
+        }
+        walkNanos = System.nanoTime() - walkNanos;
+
+        long nanos = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            cron.getNextInvalidTimeAfter(after);
+        }
+        nanos = System.nanoTime() - nanos;
+
+        System.out.printf(
+            "getNextInvalidTimeAfter(%s): walk %.3f ms/op, closed-form %.3f ms/op%n",
+            expr, walkNanos / 1e6 / rounds, nanos / 1e6 / rounds);
+        Assertions.assertTrue(nanos * 10 < walkNanos);
+    }
+
+    @Test
+    public void test_get_time_before() throws ParseException {
+
+        var cron = new CronExpression("0 15 10 ? * 6L 2024-2025");
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // the last Friday of April 2024 is 2024-04-26.
+        var before = toDate(LocalDateTime.of(2024, 5, 31, 10, 15, 0), "UTC");
+        Assertions.assertEquals(toDate(LocalDateTime.of(2024, 4, 26, 10, 15, 0), "UTC"), cron.getTimeBefore(before));
+        // it's strictly before the given time.
+        before = toDate(LocalDateTime.of(2024, 4, 26, 10, 15, 0), "UTC");
+        Assertions.assertEquals(toDate(LocalDateTime.of(2024, 3, 29, 10, 15, 0), "UTC"), cron.getTimeBefore(before));
+        Assertions.assertEquals(
+            toDate(LocalDateTime.of(2024, 4, 26, 10, 15, 0), "UTC"),
+            cron.getTimeBefore(new Date(before.getTime() + 1)));
+        Assertions.assertNull(cron.getTimeBefore(toDate(LocalDateTime.of(2024, 1, 1, 0, 0, 0), "UTC")));
+        Assertions.assertEquals(toDate(LocalDateTime.of(2025, 12, 26, 10, 15, 0), "UTC"), cron.getFinalFireTime());
+
+        cron = new CronExpression("0 0 12 15W * ?");
+        cron.setTimeZone(TimeZone.getTimeZone("UTC"));
+        // 2024-06-15 is a Saturday.
+        before = toDate(LocalDateTime.of(2024, 6, 20, 0, 0, 0), "UTC");
+        Assertions.assertEquals(toDate(LocalDateTime.of(2024, 6, 14, 12, 0, 0), "UTC"), cron.getTimeBefore(before));
+        Assertions.assertNull(cron.getFinalFireTime());
+
+        cron = new CronExpression("0 0 8 ? * 2#1");
+        var zone = ZoneId.of("America/New_York");
+        Assertions.assertEquals(
+            LocalDateTime.of(2024, 5, 6, 8, 0).atZone(zone),
+            cron.previous(LocalDateTime.of(2024, 6, 1, 0, 0).atZone(zone)));
+    }
+
+    @Test
+    public void test_time_before_consistent_with_time_after() throws ParseException {
+
+        var random = new Random(20240515L);
+        var zones = new String[] { "UTC", "America/New_York", "Europe/London" };
+
+        for (int i = 0; i < 2000; i++) {
+            var expr = randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var cron = new CronExpression(expr);
+
+            for (int j = 0; j < 10; j++) {
+                long before = randomDate(random).getTime() + random.nextInt(1000);
+                long prev = cron.previousFireEpochMillis(before, zone);
+                if (prev == -1) {
+                    // nothing fires before it, so the first fire time is at or after it.
+                    long first = cron.nextFireEpochMillis(Long.MIN_VALUE / 2, zone);
+                    Assertions.assertTrue(first == -1 || first >= before, expr);
+                } else {
+                    Assertions.assertTrue(prev < before, expr);
+                    Assertions.assertEquals(prev, cron.nextFireEpochMillis(prev - 1, zone), expr);
+                    long next = cron.nextFireEpochMillis(prev, zone);
+                    Assertions.assertTrue(next == -1 || next >= before, () -> expr + " before " + before);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_time_before_in_overlap_same_as_time_after() throws ParseException {
+
+        var cases = new String[][] {
+            { "* * 1-1 */6 10 ?", "Europe/London", "2021-10-30T23:00:00Z", "2021-10-31T03:00:00Z" },
+            { "0 */7 1 * * ?", "America/New_York", "2024-11-03T04:00:00Z", "2024-11-03T08:00:00Z" },
+            { "0 30 1 ? 10 SUN 2021-2023", "Europe/London", "2021-10-01T00:00:00Z", "2024-01-01T00:00:00Z" }
+        };
+        for (var c : cases) {
+            var cron = new CronExpression(c[0]);
+            cron.setTimeZone(TimeZone.getTimeZone(c[1]));
+            long end = Instant.parse(c[3]).toEpochMilli();
+            Date previous = null;
+            // the repeated wall-clock times fire at the later offset both ways.
+            for (var time = cron.getTimeAfter(Date.from(Instant.parse(c[2]))); time != null && time.getTime() < end;
+                 time = cron.getTimeAfter(time)) {
+                if (previous != null) {
+                    Assertions.assertEquals(previous, cron.getTimeBefore(time), c[0]);
+                }
+                Assertions.assertEquals(time, cron.getTimeBefore(new Date(time.getTime() + 500)), c[0]);
+                previous = time;
+            }
+            Assertions.assertEquals(previous, cron.getTimeBefore(new Date(end)), c[0]);
+        }
+
+        var cron = new CronExpression("* * 1-1 */6 10 ?");
+        cron.setTimeZone(TimeZone.getTimeZone("Europe/London"));
+        Assertions.assertEquals(
+            Date.from(Instant.parse("2021-10-31T01:59:59Z")),
+            cron.getTimeBefore(Date.from(Instant.parse("2021-10-31T03:00:00Z"))));
+        cron = new CronExpression("0 30 1 31 10 ? 2021");
+        cron.setTimeZone(TimeZone.getTimeZone("Europe/London"));
+        Assertions.assertEquals(Date.from(Instant.parse("2021-10-31T01:30:00Z")), cron.getFinalFireTime());
+    }
+
+    @Test
+    public void test_fire_times_same_as_next_fire_epoch_millis() throws ParseException {
+
+        var random = new Random(20240516L);
+        var zones = new String[] { "UTC", "America/New_York", "Europe/London", "Australia/Lord_Howe" };
+
+        for (int i = 0; i < 1000; i++) {
+            var expr = randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var cron = new CronExpression(expr);
+
+            long from = randomDate(random).getTime() + random.nextInt(1000);
+            long to = from + 400L * 24 * 3600 * 1000;
+            var times = cron.fireTimes(from, to, zone).limit(2000).toArray();
+
+            long after = from - 1;
+            for (long time : times) {
+                long exp = cron.nextFireEpochMillis(after, zone);
+                Assertions.assertEquals(exp, time, () -> expr + " after " + from);
+                after = time;
+            }
+            if (times.length < 2000) {
+                long exp = cron.nextFireEpochMillis(after, zone);
+                Assertions.assertTrue(exp == -1 || exp >= to, expr);
+            }
+
+            var next = cron.nextN(from, 50, zone);
+            after = from;
+            for (long time : next) {
+                Assertions.assertEquals(cron.nextFireEpochMillis(after, zone), time, expr);
+                after = time;
+            }
+            if (next.length < 50)
+                Assertions.assertEquals(-1, cron.nextFireEpochMillis(after, zone), expr);
+        }
+    }
+
+    @Test
+    public void test_fire_times_of_a_year() throws ParseException {
+
+        var cron = new CronExpression("0 * * * * ?");
+        var zone = ZoneId.of("Europe/London");
+        long from = LocalDateTime.of(2024, 1, 1, 0, 0).atZone(zone).toInstant().toEpochMilli();
+        long to = LocalDateTime.of(2025, 1, 1, 0, 0).atZone(zone).toInstant().toEpochMilli();
+
+        // 2024 is a leap year. the skipped hour in March fires at the instants after the gap, which are the same
+        // as the hour after it, and the repeated hour in October only fires once.
+        Assertions.assertEquals(366 * 24 * 60 - 60, cron.fireTimes(from, to, zone).count());
+        Assertions.assertEquals(366 * 24 * 60 - 60, cron.countFireTimes(from, to, zone));
+        Assertions.assertArrayEquals(new long[] { from + 60_000, from + 120_000 }, cron.nextN(from, 2, zone));
+    }
+
+    @Test
+    public void test_count_fire_times_same_as_fire_times() throws ParseException {
+
+        var random = new Random(20240601L);
+        var zones = new String[] { "UTC", "America/New_York", "Europe/London", "Australia/Lord_Howe", "Asia/Kolkata" };
+        var spans = new long[] { 7_200_000L, 5L * 24 * 3600 * 1000, 400L * 24 * 3600 * 1000 };
+
+        for (int i = 0; i < 3000; i++) {
+            var expr = randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var cron = new CronExpression(expr);
+
+            long from = randomDate(random).getTime() + random.nextInt(1000) - 500;
+            long to = from + spans[random.nextInt(spans.length)] + random.nextInt(1000);
+            long exp = cron.fireTimes(from, to, zone).limit(200_000).count();
+            if (exp == 200_000) continue;
+
+            Assertions.assertEquals(exp, cron.countFireTimes(from, to, zone), () -> expr + " from " + from + " to " + to);
+        }
+    }
+
+    @Test
+    public void test_count_fire_times_in_years() throws ParseException {
+
+        var zone = ZoneId.of("America/New_York");
+        long from = LocalDateTime.of(2000, 1, 1, 0, 0).atZone(zone).toInstant().toEpochMilli();
+        long to = LocalDateTime.of(2100, 1, 1, 0, 0).atZone(zone).toInstant().toEpochMilli();
+        long days = (to - from) / 1000 / 3600 / 24;
+
+        // every second except the repeated hours in the autumn.
+        long count = new CronExpression("* * * * * ?").countFireTimes(from, to, zone);
+        Assertions.assertEquals(days * 24 * 3600 - 100 * 3600, count);
+        // the spring gap is at 2 AM, the autumn overlap at 1 AM, so both don't change the count.
+        count = new CronExpression("0 30 1,2 L * ?").countFireTimes(from, to, zone);
+        Assertions.assertEquals(100 * 12 * 2, count);
+        Assertions.assertEquals(0, new CronExpression("0 0 0 ? * 2#5 2020").countFireTimes(to, from, zone));
+    }
+
+    @Test
+    public void test_is_satisfied_by_same_as_next_fire_epoch_millis() throws ParseException {
+
+        var random = new Random(20240702L);
+        var zones = new String[] { "UTC", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata" };
+
+        for (int i = 0; i < 1000; i++) {
+            var expr = randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var cron = new CronExpression(expr);
+
+            long from = randomDate(random).getTime();
+            for (long time : cron.nextN(from, 20, zone)) {
+                for (long t = time - 2000; t <= time + 2000; t += 1000) {
+                    boolean exp = cron.nextFireEpochMillis(t - 1, zone) == t;
+                    Assertions.assertEquals(exp, cron.isSatisfiedBy(t + random.nextInt(1000), zone), expr + " at " + t);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_is_satisfied_by_in_daylight_saving() throws ParseException {
+
+        var zone = ZoneId.of("America/New_York");
+        // 2024-03-10 02:00 - 03:00 is skipped, 02:30 fires at 03:30 EDT.
+        long gap = toDate(LocalDateTime.of(2024, 3, 10, 7, 30), "UTC").getTime();
+        Assertions.assertTrue(new CronExpression("0 30 2 * * ?").isSatisfiedBy(gap, zone));
+        Assertions.assertTrue(new CronExpression("0 30 3 * * ?").isSatisfiedBy(gap, zone));
+        Assertions.assertFalse(new CronExpression("0 30 4 * * ?").isSatisfiedBy(gap, zone));
+        // 2024-11-03 01:00 - 02:00 is repeated, 01:30 only fires at 01:30 EDT.
+        long overlap = toDate(LocalDateTime.of(2024, 11, 3, 5, 30), "UTC").getTime();
+        Assertions.assertTrue(new CronExpression("0 30 1 * * ?").isSatisfiedBy(overlap, zone));
+        Assertions.assertFalse(new CronExpression("0 30 1 * * ?").isSatisfiedBy(overlap + 3_600_000, zone));
+        Assertions.assertTrue(new CronExpression("0 30 2 * * ?").isSatisfiedBy(overlap + 7_200_000, zone));
+    }
+
+    @Test
+    public void test_is_satisfied_by_third_monday() throws ParseException {
+
+        var cron = new CronExpression("0 0/5 9-17 ? * 2#3");
+        var zone = ZoneId.of("UTC");
+
+        // 2024-05-20 is the third Monday of May.
+        long time = toDate(LocalDateTime.of(2024, 5, 20, 9, 5), "UTC").getTime();
+        Assertions.assertTrue(cron.isSatisfiedBy(time, zone));
+        Assertions.assertFalse(cron.isSatisfiedBy(time + 7 * 24 * 3600 * 1000, zone));
+
+        for (int i = 0; i < 100_000; i++) {
+            long t = time + i * 60_000L;
+            var local = LocalDateTime.ofInstant(Instant.ofEpochMilli(t), zone);
+            boolean exp = local.getDayOfWeek() == DayOfWeek.MONDAY
+                && (local.getDayOfMonth() - 1) / 7 == 2
+                && local.getHour() >= 9 && local.getHour() <= 17
+                && local.getMinute() % 5 == 0;
+            Assertions.assertEquals(exp, cron.isSatisfiedBy(t, zone), () -> "at " + Instant.ofEpochMilli(t));
+        }
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_is_satisfied_by_benchmark() throws ParseException {
+
+        var expr = "0 0/5 9-17 ? * 2#3";
+        var cron = new CronExpression(expr);
+        var zone = ZoneId.of("UTC");
+        cron.setTimeZone(TimeZone.getTimeZone(zone));
+        long time = toDate(LocalDateTime.of(2024, 5, 20, 9, 5), "UTC").getTime();
+
+        int rounds = 100_000;
+        int matched = 0;
+        long searchNanos = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+        // the best of a few passes, the first ones warm up both.
+        for (int pass = 0; pass < 5; pass++) {
+            // searches the next fire time from the second before, the way it was done before the direct check.
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                long t = time + i * 60_000L;
+                var next = cron.getTimeAfter(new Date(t - 1000));
+                if (next != null && next.getTime() == t) matched++;
+            }
+            searchNanos = Math.min(searchNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                if (cron.isSatisfiedBy(time + i * 60_000L, zone)) matched--;
+            }
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+
+        System.out.printf(
+            "isSatisfiedBy(%s): search %.1f ns/op, direct %.1f ns/op%n",
+            expr, (double) searchNanos / rounds, (double) nanos / rounds);
+        Assertions.assertEquals(0, matched);
+        Assertions.assertTrue(nanos * 3 < searchNanos);
+    }
+
+    @Test
+    public void test_fire_times_around_gaps_same_as_is_satisfied_by() throws ParseException {
+
+        var random = new Random(20240801L);
+        // Lord_Howe has a gap of 30 minutes, Havana and Santiago move the clocks at midnight.
+        var zones = new String[] { "Australia/Lord_Howe", "America/New_York", "America/Havana", "America/Santiago" };
+
+        for (var zoneId : zones) {
+            var zone = ZoneId.of(zoneId);
+            var rules = zone.getRules();
+            var trans = rules.nextTransition(toDate(LocalDateTime.of(2024, 1, 1, 0, 0), "UTC").toInstant());
+            for (int i = 0; i < 4; i++, trans = rules.nextTransition(trans.getInstant())) {
+                long at = trans.toEpochSecond() * 1000;
+                for (int j = 0; j < 50; j++) {
+                    var expr = String.format(
+                        "%s %s * * * ?", random.nextInt(3) == 0 ? "*" : "0/" + (20 + random.nextInt(40)),
+                        randomField(random, 0, 59, null));
+                    var cron = new CronExpression(expr);
+                    long from = at - 7_200_000 + random.nextInt(3_600_000);
+                    long to = at + 7_200_000;
+
+                    var exp = LongStream.range(from / 1000, to / 1000)
+                                        .map(t -> t * 1000)
+                                        .filter(t -> t >= from && cron.isSatisfiedBy(t, zone))
+                                        .toArray();
+                    Assertions.assertArrayEquals(exp, cron.fireTimes(from, to, zone).toArray(), expr);
+                    Assertions.assertEquals(exp.length, cron.countFireTimes(from, to, zone), expr);
+
+                    long after = from - 1;
+                    for (long time : exp) {
+                        Assertions.assertEquals(time, cron.nextFireEpochMillis(after, zone), expr);
+                        if (after >= from)
+                            Assertions.assertEquals(after, cron.previousFireEpochMillis(time, zone), expr);
+                        after = time;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertFireTimes(Object[][] rows) throws ParseException {
+
+        for (var row : rows) {
+            var expr = (String) row[0];
+            var cron = new CronExpression(expr);
+            cron.setTimeZone(TimeZone.getTimeZone((String) row[1]));
+            // a copy has the parsed fields without parsing again.
+            var copy = new CronExpression(cron);
+            var after = Date.from(Instant.parse((String) row[2]));
+            var exp = row[3] == null ? null : Date.from(Instant.parse((String) row[3]));
+
+            Assertions.assertEquals(exp, cron.getTimeAfter(after), () -> expr + " after " + after);
+            Assertions.assertEquals(exp, copy.getTimeAfter(after), () -> expr + " after " + after);
+            for (int k = -2; k <= 2; k++) {
+                var date = new Date(after.getTime() + k * 1000);
+                boolean satisfied = ((int) row[4] & 1 << k + 2) != 0;
+                Assertions.assertEquals(satisfied, cron.isSatisfiedBy(date), () -> expr + " at " + date);
+            }
+            if (exp != null) {
+                Assertions.assertTrue(cron.isSatisfiedBy(exp), expr);
+            }
+        }
+    }
+
+    static String randomExpression(Random random) {
+
+        var sb = new StringBuilder();
+        sb.append(randomField(random, 0, 59, null)).append(' ');
+        sb.append(randomField(random, 0, 59, null)).append(' ');
+        sb.append(randomField(random, 0, 23, null)).append(' ');
+
+        boolean dayOfMonth = random.nextBoolean();
+        if (dayOfMonth) {
+            switch (random.nextInt(8)) {
+                case 0 -> sb.append('L');
+                case 1 -> sb.append("L-").append(random.nextInt(6));
+                case 2 -> sb.append("LW");
+                case 3 -> sb.append(1 + random.nextInt(28)).append('W');
+                default -> sb.append(randomField(random, 1, 31, null));
+            }
+            sb.append(' ');
+        } else {
+            sb.append("? ");
+        }
+
+        sb.append(randomField(random, 1, 12, random.nextInt(4) == 0 ? MONTH_NAMES : null)).append(' ');
+
+        if (dayOfMonth) {
+            sb.append('?');
+        } else {
+            int dow = 1 + random.nextInt(7);
+            switch (random.nextInt(8)) {
+                case 0 -> sb.append(dow).append('L');
+                case 1 -> sb.append(dow).append('#').append(1 + random.nextInt(5));
+                case 2 -> sb.append('L');
+                case 3 -> sb.append("MON-FRI");
+                default -> sb.append(randomField(random, 1, 7, random.nextInt(4) == 0 ? DAY_NAMES : null));
+            }
+        }
+
+        switch (random.nextInt(6)) {
+            case 0 -> sb.append(" *");
+            case 1 -> sb.append(' ').append(2020 + random.nextInt(15));
+            case 2 -> {
+                int from = 2020 + random.nextInt(15);
+                sb.append(' ').append(from).append('-').append(from + random.nextInt(5));
+            }
+            default -> { }
+        }
+
+        return sb.toString();
+    }
+
+    private static String randomField(Random random, int min, int max, String[] names) {
+
+        int span = max - min + 1;
+        int a = min + random.nextInt(span);
+        int b = min + random.nextInt(span);
+        switch (random.nextInt(8)) {
+            case 0:
+                return "*";
+            case 1:
+                return "*/" + (1 + random.nextInt(Math.min(span - 1, 20)));
+            case 2:
+                return a + "/" + (1 + random.nextInt(Math.min(span - 1, 20)));
+            case 3:
+                return Math.min(a, b) + "-" + Math.max(a, b) + "/" + (1 + random.nextInt(Math.min(span - 1, 10)));
+            case 4: {
+                var sb = new StringBuilder().append(a);
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    sb.append(',').append(min + random.nextInt(span));
+                }
+                return sb.toString();
+            }
+            case 5:
+                // could be an overflowing range, like 22-2
+                return names == null ? a + "-" + b : names[a - min] + "-" + names[b - min];
+            default:
+                return names == null ? String.valueOf(a) : names[a - min];
+        }
+    }
+
+    /**
+     * Returns a random date in whole seconds. The 'W' handling of getTimeAfter compares with a Calendar which keeps
+     * the milliseconds of the current time, so its result depends on the clock when the date has milliseconds.
+     */
+    static Date randomDate(Random random) {
+
+        var from = LocalDateTime.of(2020, 1, 1, 0, 0).toEpochSecond(java.time.ZoneOffset.UTC);
+        var to = LocalDateTime.of(2035, 1, 1, 0, 0).toEpochSecond(java.time.ZoneOffset.UTC);
+        return new Date((from + (long) (random.nextDouble() * (to - from))) * 1000);
+    }
+
+    static Date toDate(LocalDateTime time, String zone) {
+
+        return Date.from(time.atZone(ZoneId.of(zone)).toInstant());
+    }
+}
@@ -0,0 +1,122 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.scheduler.CronExpressionDescriptor.CronExpressionPart;
+import me.fengyj.common.scheduler.CronExpressionValidator.ValidationError;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class CronExpressionValidatorTest {
+
+    @Test
+    public void test_errors_of_fields() {
+
+        Assertions.assertNull(CronExpressionValidator.validate("0 0 12 ? * MON-FRI"));
+        assertError("0 0 25 * * ?", CronExpressionPart.HOUR, 4, "Hour values must be between 0 and 23");
+        assertError("0 0 12 ? * MON#9", CronExpressionPart.DOW, 15,
+                    "A numeric value between 1 and 5 must follow the '#' option");
+        assertError("0 0 12 ? * 2,L", CronExpressionPart.DOW, 11,
+                    "Support for specifying 'L' with other days of the week is not implemented");
+        assertError("0 0/70 12 * * ?", CronExpressionPart.MIN, 5, "Increment > 60 : 70");
+        assertError("0 0 12 * JAN,FOO ?", CronExpressionPart.MONTH, 13, "Invalid Month value: 'FOO'");
+        assertError("0 0 12", CronExpressionPart.ALL, 6, "Unexpected end of expression.");
+        assertError("0 0 12 1 * 2", CronExpressionPart.ALL, 0,
+                    "Support for specifying both a day-of-week AND a day-of-month parameter is not implemented.");
+        assertError(null, CronExpressionPart.ALL, 0, "The expression cannot be null.");
+    }
+
+    @Test
+    public void test_same_result_as_parsing() {
+
+        var random = new Random(20241010L);
+        for (var expr : randomExpressions(random, 20_000)) {
+            ParseException expected = null;
+            try {
+                new CronExpression(expr);
+            } catch (ParseException ex) {
+                expected = ex;
+            }
+            var error = CronExpressionValidator.validate(expr);
+            Assertions.assertEquals(expected == null, CronExpression.isValidExpression(expr), expr);
+            if (expected == null) {
+                Assertions.assertNull(error, expr);
+            } else {
+                Assertions.assertNotNull(error, expr);
+                Assertions.assertEquals(expected.getMessage(), error.message(), expr);
+                Assertions.assertTrue(error.position() >= 0 && error.position() <= expr.length(), expr);
+                // the public api still throws the exceptions with the stack trace.
+                Assertions.assertTrue(expected.getStackTrace().length > 0);
+            }
+        }
+    }
+
+    @Test
+    public void test_validate_all() {
+
+        var random = new Random(20241011L);
+        var distinct = randomExpressions(random, 20_000);
+        var rows = randomRows(random, distinct, 100_000);
+
+        var errors = CronExpressionValidator.validateAll(rows);
+
+        var expected = rows.stream().distinct().filter(e -> !CronExpression.isValidExpression(e)).toList();
+        Assertions.assertEquals(expected, List.copyOf(errors.keySet()));
+        for (var error : errors.values()) {
+            Assertions.assertEquals(CronExpressionValidator.validate(error.expression()), error);
+        }
+        Assertions.assertEquals(errors, CronExpressionValidator.validateAll(rows.stream(), new ForkJoinPool(2)));
+        Assertions.assertTrue(CronExpressionValidator.validateAll(List.of("0 0 12 * * ?")).isEmpty());
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_validate_all_benchmark() {
+
+        var random = new Random(20241011L);
+        var distinct = randomExpressions(random, 20_000);
+        var rows = randomRows(random, distinct, 1_000_000);
+
+        long nanos = System.nanoTime();
+        var errors = CronExpressionValidator.validateAll(rows);
+        nanos = System.nanoTime() - nanos;
+        System.out.printf(
+            "validate %d rows, %d distinct, %d invalid: %.1f ms%n",
+            rows.size(), distinct.size(), errors.size(), nanos / 1e6);
+    }
+
+    private static void assertError(String expr, CronExpressionPart field, int position, String message) {
+
+        Assertions.assertEquals(
+            new ValidationError(expr, field, position, message), CronExpressionValidator.validate(expr), expr);
+    }
+
+    private static List<String> randomRows(Random random, List<String> distinct, int count) {
+
+        var rows = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(distinct.get(random.nextInt(distinct.size())));
+        }
+        return rows;
+    }
+
+    // the valid expressions, and the ones broken by replacing a character.
+    private static List<String> randomExpressions(Random random, int count) {
+
+        var chars = "0123456789*/-,?#LW ABCXYZ";
+        var expressions = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            var expr = new StringBuilder(CronExpressionTest.randomExpression(random));
+            if (random.nextBoolean()) {
+                expr.setCharAt(random.nextInt(expr.length()), chars.charAt(random.nextInt(chars.length())));
+            }
+            expressions.add(expr.toString());
+        }
+        return expressions;
+    }
+}
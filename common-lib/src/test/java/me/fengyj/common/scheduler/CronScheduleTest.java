@@ -0,0 +1,212 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+public class CronScheduleTest {
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    @Test
+    public void test_trading_window_minus_maintenance() throws ParseException {
+
+        var trading = schedule("* * 9-16 ? * MON-FRI", NEW_YORK);
+        var maintenance = schedule("* * 12-13 ? * WED", NEW_YORK);
+        var window = trading.minus(maintenance);
+        // both the hours and the days differ, so it isn't an expression.
+        Assertions.assertFalse(window.isFieldBased());
+
+        // 2025-06-11 is a Wednesday, the 2 hours of the maintenance are skipped in one step.
+        long noon = at(2025, 6, 11, 12, 0, 0, NEW_YORK);
+        Assertions.assertEquals(at(2025, 6, 11, 14, 0, 0, NEW_YORK), window.nextFireEpochMillis(noon - 1000));
+        Assertions.assertEquals(noon, window.nextInvalidEpochMillis(noon - 2000));
+        Assertions.assertFalse(window.isSatisfiedBy(noon));
+        Assertions.assertTrue(window.isSatisfiedBy(noon + 2 * 3600_000));
+        Assertions.assertTrue(window.isSatisfiedBy(at(2025, 6, 12, 12, 30, 0, NEW_YORK)));
+
+        // the whole hours of a day are removed, it's still an expression.
+        var lunch = trading.minus(schedule("* * 12 * * ?", NEW_YORK));
+        Assertions.assertTrue(lunch.isFieldBased());
+        Assertions.assertEquals(at(2025, 6, 11, 13, 0, 0, NEW_YORK), lunch.nextFireEpochMillis(noon - 1000));
+
+        Assertions.assertTrue(trading.minus(trading).isFieldBased());
+        Assertions.assertEquals(-1, trading.minus(trading).nextFireEpochMillis(noon));
+        Assertions.assertEquals(
+            "(* * 9-16 ? * MON-FRI) - (* * 12 * * ?) America/New_York",
+            lunch.toString());
+    }
+
+    @Test
+    public void test_same_as_instants() throws ParseException {
+
+        var random = new Random(20241022L);
+        // a week without a daylight saving transition.
+        long from = at(2025, 6, 2, 0, 0, 0, UTC);
+        long to = from + 7 * 86400_000L;
+        int fieldBased = 0;
+        for (int i = 0; i < 300; i++) {
+            var zone = random.nextInt(4) == 0 ? NEW_YORK : UTC;
+            var a = randomSchedule(random, UTC);
+            var b = randomSchedule(random, zone);
+            if (random.nextInt(4) == 0) {
+                // the same expression with one field changed.
+                var fields = a.toString().split(" ");
+                fields[2] = String.valueOf(random.nextInt(24));
+                zone = UTC;
+                b = schedule(String.join(" ", List.of(fields).subList(0, fields.length - 1)), zone);
+            }
+            var union = a.union(b);
+            var intersection = a.intersect(b);
+            var difference = a.minus(b);
+            fieldBased += (union.isFieldBased() ? 1 : 0) + (difference.isFieldBased() ? 1 : 0);
+            Assertions.assertEquals(zone.equals(UTC), intersection.isFieldBased());
+
+            var left = toSet(a.fireTimes(from, to));
+            var right = toSet(b.fireTimes(from, to));
+            var expected = new TreeSet<>(left);
+            expected.addAll(right);
+            assertSchedule(expected, union, from, to);
+            expected = new TreeSet<>(left);
+            expected.retainAll(right);
+            assertSchedule(expected, intersection, from, to);
+            expected = new TreeSet<>(left);
+            expected.removeAll(right);
+            assertSchedule(expected, difference, from, to);
+        }
+        Assertions.assertTrue(fieldBased > 0);
+    }
+
+    @Test
+    public void test_exclusion_calendars() throws ParseException {
+
+        var holidays = ExclusionCalendar.of(LocalDate.of(2025, 7, 4));
+        var weekdays = CronSchedule.of(CronExpression.compile("0 0 10 ? * MON-FRI", UTC).excluding(holidays));
+        var fridays = schedule("0 0 10 ? * FRI", UTC);
+        long from = at(2025, 6, 30, 0, 0, 0, UTC);
+
+        var both = weekdays.intersect(fridays);
+        Assertions.assertTrue(both.isFieldBased());
+        Assertions.assertEquals(at(2025, 7, 11, 10, 0, 0, UTC), both.nextFireEpochMillis(from + 4 * 86400_000L));
+
+        var others = weekdays.minus(fridays);
+        Assertions.assertTrue(others.isFieldBased());
+        Assertions.assertEquals(
+            List.of(at(2025, 6, 30, 10, 0, 0, UTC), at(2025, 7, 1, 10, 0, 0, UTC),
+                    at(2025, 7, 2, 10, 0, 0, UTC), at(2025, 7, 3, 10, 0, 0, UTC)),
+            others.fireTimes(from, from + 7 * 86400_000L).boxed().toList());
+
+        // the holiday is only excluded from one side of the union.
+        var union = weekdays.union(fridays);
+        Assertions.assertFalse(union.isFieldBased());
+        Assertions.assertTrue(union.isSatisfiedBy(at(2025, 7, 4, 10, 0, 0, UTC)));
+        Assertions.assertFalse(
+            weekdays.union(CronSchedule.of(CronExpression.compile("0 0 10 ? * SAT", UTC).excluding(holidays)))
+                .isSatisfiedBy(at(2025, 7, 4, 10, 0, 0, UTC)));
+    }
+
+    @Test
+    public void test_intersection_across_zones() throws ParseException {
+
+        var london = ZoneId.of("Europe/London");
+        long from = at(2025, 3, 29, 2, 0, 0, UTC);
+        // the offsets are whole hours, so the even and the odd seconds never meet.
+        var never = schedule("0/2 * * * * ?", UTC).intersect(schedule("1/2 * * * * ?", london));
+        Assertions.assertFalse(never.isFieldBased());
+        Assertions.assertTimeoutPreemptively(
+            Duration.ofSeconds(2), () -> Assertions.assertEquals(-1, never.nextFireEpochMillis(from)));
+        var kolkata = schedule("0 0 12 * * ?", UTC).intersect(schedule("0 30 12 * * ?", ZoneId.of("Asia/Kolkata")));
+        Assertions.assertTimeoutPreemptively(
+            Duration.ofSeconds(2), () -> Assertions.assertEquals(-1, kolkata.nextFireEpochMillis(from)));
+        Assertions.assertEquals(
+            at(2025, 3, 29, 12, 0, 0, UTC),
+            schedule("0 0 12 * * ?", UTC).intersect(schedule("0 30 17 * * ?", ZoneId.of("Asia/Kolkata")))
+                .nextFireEpochMillis(from));
+
+        // 01:30 in London is 01:30 UTC in winter, and in the gap of 2025-03-30 it's moved forward to it.
+        var winter = schedule("0 30 1 * * ?", UTC).intersect(schedule("0 30 1 * * ?", london));
+        Assertions.assertEquals(at(2025, 3, 30, 1, 30, 0, UTC), winter.nextFireEpochMillis(from));
+        Assertions.assertEquals(
+            at(2025, 10, 27, 1, 30, 0, UTC), winter.nextFireEpochMillis(at(2025, 3, 30, 1, 30, 0, UTC)));
+
+        // the spans skipped don't drop a common fire time around the gap of New York.
+        var random = new Random(20250309L);
+        long start = at(2025, 3, 6, 0, 0, 0, UTC);
+        for (int i = 0; i < 100; i++) {
+            var a = randomSchedule(random, UTC);
+            var b = randomSchedule(random, NEW_YORK);
+            var expected = toSet(a.fireTimes(start, start + 7 * 86400_000L));
+            expected.removeIf(t -> !b.isSatisfiedBy(t));
+            Assertions.assertEquals(expected, toSet(a.intersect(b).fireTimes(start, start + 7 * 86400_000L)));
+        }
+    }
+
+    @Test
+    public void test_equal_by_fields() throws ParseException {
+
+        var weekdays = schedule("0 0 10 ? * MON-FRI", UTC);
+        var fridays = schedule("0 0 10 ? * FRI", UTC);
+        var mondays = schedule("0 0 10 ? * MON", UTC);
+        // the combined schedules are compared by the fields rather than the descriptions.
+        var friday = weekdays.intersect(fridays);
+        Assertions.assertNotEquals(friday, weekdays.intersect(mondays));
+        Assertions.assertEquals(friday, fridays.intersect(weekdays));
+        Assertions.assertEquals(friday.hashCode(), fridays.intersect(weekdays).hashCode());
+        Assertions.assertEquals(friday, fridays.intersect(fridays));
+        Assertions.assertNotEquals(friday, fridays);
+        Assertions.assertNotEquals(friday, schedule("0 0 10 ? * FRI", NEW_YORK).intersect(weekdays));
+        Assertions.assertNotEquals(
+            friday, CronSchedule.of(CronExpression.compile("0 0 10 ? * FRI", UTC)
+                .excluding(ExclusionCalendar.of(LocalDate.of(2025, 7, 4)))).intersect(weekdays));
+        Assertions.assertEquals(weekdays, schedule("0 0 10 ? * MON-FRI", UTC));
+    }
+
+    private static void assertSchedule(TreeSet<Long> expected, CronSchedule schedule, long from, long to) {
+
+        Assertions.assertEquals(expected, toSet(schedule.fireTimes(from, to)), schedule::toString);
+        for (int i = 0; i < 20; i++) {
+            long time = from + (to - from) / 20 * i;
+            Assertions.assertEquals(expected.contains(time), schedule.isSatisfiedBy(time), schedule::toString);
+            long invalid = schedule.nextInvalidEpochMillis(time);
+            Assertions.assertTrue(invalid > time && (invalid >= to || !expected.contains(invalid)));
+            var run = expected.subSet(time + 1000, invalid);
+            Assertions.assertEquals((invalid - time) / 1000 - 1, run.size(), schedule::toString);
+        }
+    }
+
+    private static TreeSet<Long> toSet(LongStream times) {
+
+        var set = new TreeSet<Long>();
+        times.forEach(set::add);
+        return set;
+    }
+
+    private static CronSchedule randomSchedule(Random random, ZoneId zone) throws ParseException {
+
+        // the seconds and the years are fixed, so a week has a small count of fire times.
+        var fields = CronExpressionTest.randomExpression(random).split(" ");
+        fields[0] = String.valueOf(random.nextInt(60));
+        fields[1] = random.nextBoolean() ? "*/15" : fields[1];
+        return schedule(String.join(" ", List.of(fields).subList(0, 6)), zone);
+    }
+
+    private static CronSchedule schedule(String expression, ZoneId zone) throws ParseException {
+
+        return CronSchedule.of(CronExpression.compile(expression, zone));
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute, int second, ZoneId zone) {
+
+        return ZonedDateTime.of(year, month, day, hour, minute, second, 0, zone).toInstant().toEpochMilli();
+    }
+}
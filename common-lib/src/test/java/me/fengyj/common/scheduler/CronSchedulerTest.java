@@ -0,0 +1,289 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class CronSchedulerTest {
+
+    @Test
+    public void test_run_at_fire_times() throws ParseException, InterruptedException {
+
+        var cron = CronExpression.compile("* * * * * ?", ZoneId.of("UTC"));
+        var times = new ConcurrentLinkedQueue<Long>();
+        var latch = new CountDownLatch(3);
+
+        try (var scheduler = new CronScheduler("test-scheduler")) {
+            var job = scheduler.schedule("every-second", cron, () -> {
+                times.add(System.currentTimeMillis());
+                latch.countDown();
+            });
+            Assertions.assertEquals(1, scheduler.getJobCount());
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(scheduler.cancel(job));
+            Assertions.assertFalse(scheduler.cancel(job));
+            Assertions.assertEquals(-1, job.getNextFireTime());
+        }
+
+        long last = -1;
+        for (long time : times) {
+            // never earlier than the second, and the seconds are different.
+            Assertions.assertTrue(time % 1000 < 500, () -> "fired at " + time);
+            Assertions.assertTrue(time / 1000 > last);
+            last = time / 1000;
+        }
+    }
+
+    @Test
+    public void test_timer_sleeps_without_due_jobs() throws ParseException, InterruptedException {
+
+        var latch = new CountDownLatch(1);
+        try (var scheduler = new CronScheduler("test-idle")) {
+            var timer = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals("test-idle-timer"))
+                .findFirst()
+                .orElseThrow();
+            // parked without a timeout while there is no job.
+            for (int i = 0; i < 50 && timer.getState() != Thread.State.WAITING; i++) {
+                Thread.sleep(20);
+            }
+            Assertions.assertEquals(Thread.State.WAITING, timer.getState());
+
+            // a job wakes it up, and it sleeps until the job is due.
+            var job = scheduler.schedule(
+                "next-year", CronExpression.compile("0 0 0 1 1 ?", ZoneId.of("UTC")), () -> { });
+            for (int i = 0; i < 50 && timer.getState() != Thread.State.TIMED_WAITING; i++) {
+                Thread.sleep(20);
+            }
+            Assertions.assertEquals(Thread.State.TIMED_WAITING, timer.getState());
+            scheduler.schedule(
+                "every-second", CronExpression.compile("* * * * * ?", ZoneId.of("UTC")), latch::countDown);
+            Assertions.assertTrue(latch.await(3, TimeUnit.SECONDS));
+            Assertions.assertTrue(scheduler.cancel(job));
+        }
+    }
+
+    @Test
+    public void test_metrics_of_groups() throws Exception {
+
+        var zone = ZoneId.of("UTC");
+        var everySecond = CronExpression.compile("* * * * * ?", zone);
+        var everyTwoSeconds = CronExpression.compile("*/2 * * * * ?", zone);
+        // the 7th run starts after the metrics of the 6th one are recorded.
+        var latch = new CountDownLatch(7);
+        var executor = Executors.newSingleThreadExecutor();
+
+        try (var scheduler = new CronScheduler("test-metrics", executor, 100, 256, 5000)) {
+            var name = scheduler.registerMBean();
+            for (int i = 0; i < 3; i++) {
+                // each run blocks the executor for 50 ms, the later ones in the batch start later.
+                scheduler.schedule("slow-" + i, everySecond, () -> {
+                    sleep(50);
+                    latch.countDown();
+                });
+            }
+            var other = scheduler.schedule("other", everyTwoSeconds, () -> {});
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            var metrics = scheduler.getMetrics().getGroupMetrics(everySecond);
+            var fireLag = metrics.getFireLag().snapshot();
+            var execution = metrics.getExecutionTime().snapshot();
+            Assertions.assertTrue(fireLag.getCount() >= 6);
+            Assertions.assertTrue(execution.getCount() >= 6);
+            Assertions.assertTrue(execution.getP50() >= 50_000 && execution.getP50() < 500_000, execution::toString);
+            // the third job of a batch waits for the other two.
+            Assertions.assertTrue(fireLag.getMax() >= 100_000, fireLag::toString);
+            Assertions.assertTrue(metrics.getQueueWait().snapshot().getCount() >= 2);
+            Assertions.assertTrue(metrics.getEvaluationTime().snapshot().getCount() >= 2);
+            Assertions.assertEquals(2, scheduler.getMetrics().getAllGroupMetrics().size());
+
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var total = (CompositeData) server.getAttribute(name, "TotalExecutionTime");
+            Assertions.assertTrue((Long) total.get("count") >= 6);
+            var byExpression = (TabularData) server.getAttribute(name, "FireLag");
+            Assertions.assertEquals(2, byExpression.size());
+            Assertions.assertSame(name, scheduler.registerMBean());
+
+            // the metrics of an expression are removed with its last job.
+            scheduler.cancel(other);
+            for (int i = 0; i < 50 && scheduler.getMetrics().getGroupMetrics(everyTwoSeconds) != null; i++) {
+                sleep(20);
+            }
+            Assertions.assertNull(scheduler.getMetrics().getGroupMetrics(everyTwoSeconds));
+            Assertions.assertEquals(1, scheduler.getMetrics().getAllGroupMetrics().size());
+            Assertions.assertSame(metrics, scheduler.getMetrics().getGroupMetrics(everySecond));
+            scheduler.close();
+            Assertions.assertFalse(server.isRegistered(name));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void sleep(long millis) {
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void test_cancel_and_expired_job() throws ParseException, InterruptedException {
+
+        var count = new AtomicInteger();
+        var zone = ZoneId.of("UTC");
+        try (var scheduler = new CronScheduler("test-scheduler")) {
+            var expired = scheduler.schedule(
+                "expired", CronExpression.compile("0 0 0 1 1 ? 2000", zone), count::incrementAndGet);
+            Assertions.assertEquals(-1, expired.getNextFireTime());
+            Assertions.assertFalse(scheduler.cancel(expired));
+
+            var job = scheduler.schedule(
+                "cancelled", CronExpression.compile("* * * * * ?", zone), count::incrementAndGet);
+            Assertions.assertTrue(scheduler.cancel(job));
+            Thread.sleep(1500);
+            Assertions.assertEquals(0, scheduler.getJobCount());
+        }
+        Assertions.assertEquals(0, count.get());
+    }
+
+    @Test
+    public void test_misfire_policies() throws ParseException, InterruptedException {
+
+        var cron = CronExpression.compile("* * * * * ?", ZoneId.of("UTC"));
+        long start = System.currentTimeMillis();
+        long checkpoint = start / 1000 * 1000 - 10_000;
+        long hourAgo = start / 1000 * 1000 - 3_600_000;
+        var fireOnce = new ConcurrentLinkedQueue<Long>();
+        var fireAll = new ConcurrentLinkedQueue<Long>();
+        var fireAllCapped = new ConcurrentLinkedQueue<Long>();
+        var skip = new ConcurrentLinkedQueue<Long>();
+
+        try (var scheduler = new CronScheduler("test-scheduler")) {
+            scheduler.schedule("fire-once", cron, MisfirePolicy.FireOnce, checkpoint, fireOnce::add);
+            scheduler.schedule("fire-all", cron, MisfirePolicy.FireAll, checkpoint, fireAll::add);
+            scheduler.schedule("fire-all-capped", cron, MisfirePolicy.FireAll, hourAgo, fireAllCapped::add);
+            scheduler.schedule("skip", cron, MisfirePolicy.Skip, checkpoint, skip::add);
+            Thread.sleep(1500);
+        }
+
+        // the catch-up run is for the latest missed fire time, then the job goes on from the next one.
+        var times = fireOnce.stream().mapToLong(Long::longValue).toArray();
+        Assertions.assertTrue(times[0] <= start && times[0] > checkpoint + 1000, () -> times[0] + " " + start);
+        for (int i = 1; i < times.length; i++) {
+            Assertions.assertEquals(times[i - 1] + 1000, times[i]);
+        }
+        // every missed fire time runs in order.
+        var all = fireAll.stream().mapToLong(Long::longValue).toArray();
+        Assertions.assertTrue(all.length > 10);
+        for (int i = 0; i < all.length; i++) {
+            Assertions.assertEquals(checkpoint + 1000 * (i + 1), all[i]);
+        }
+        // only the latest ones when too many are missed.
+        var capped = fireAllCapped.stream().mapToLong(Long::longValue).toArray();
+        Assertions.assertTrue(capped.length > CronScheduler.MAX_CATCH_UP_FIRES);
+        Assertions.assertEquals(capped[0] + 1000L * (CronScheduler.MAX_CATCH_UP_FIRES - 1), times[0]);
+        for (int i = 1; i < capped.length; i++) {
+            Assertions.assertEquals(capped[i - 1] + 1000, capped[i]);
+        }
+        // the missed fire times are dropped.
+        Assertions.assertFalse(skip.isEmpty());
+        Assertions.assertTrue(skip.peek() > times[0]);
+    }
+
+    @Test
+    public void test_jobs_share_groups() throws ParseException, InterruptedException {
+
+        var zone = ZoneId.of("UTC");
+        var expressions = new CompiledCronExpression[] {
+            CronExpression.compile("* * * * * ?", zone),
+            CronExpression.compile("0/2 * * * * ?", zone),
+            CronExpression.compile("* * * * * ?", ZoneId.of("Asia/Shanghai"))
+        };
+        var count = new AtomicInteger();
+
+        try (var scheduler = new CronScheduler("test-scheduler")) {
+            for (int i = 0; i < 30_000; i++) {
+                scheduler.schedule("job-" + i, expressions[i % 3], count::incrementAndGet);
+            }
+            Thread.sleep(300);
+            Assertions.assertEquals(3, scheduler.getGroupCount());
+
+            // a job from an old checkpoint is on its own until it catches up.
+            long checkpoint = System.currentTimeMillis() - 60_000;
+            var job = scheduler.schedule("late", expressions[0], MisfirePolicy.Skip, checkpoint, t -> {});
+            // the timer may catch it up at once, so the first fire time is checked rather than the next one.
+            Assertions.assertTrue(job.firstFireTime < checkpoint + 2000);
+            Thread.sleep(1500);
+            Assertions.assertEquals(3, scheduler.getGroupCount());
+            Assertions.assertTrue(job.getNextFireTime() > System.currentTimeMillis());
+
+            scheduler.cancel(job);
+            Assertions.assertEquals(-1, job.getNextFireTime());
+            // the cancellation is applied by the timer thread.
+            Thread.sleep(300);
+            Assertions.assertEquals(30_000, scheduler.getJobCount());
+        }
+        Assertions.assertTrue(count.get() >= 20_000);
+    }
+
+    @Test
+    public void test_schedule_many_jobs() throws ParseException, InterruptedException {
+
+        scheduleJobs(20_000);
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_schedule_a_million_jobs() throws ParseException, InterruptedException {
+
+        int jobs = 1_000_000;
+        var nanos = scheduleJobs(jobs);
+        System.out.printf(
+            "scheduled %d jobs in %d ms, all of them run in %d ms%n", jobs, nanos[0] / 1_000_000, nanos[1] / 1_000_000);
+    }
+
+    /**
+     * Schedules the jobs firing every 2 seconds, and waits for all of them to run once.
+     *
+     * @return the nanoseconds to schedule the jobs, and to run all of them
+     */
+    private static long[] scheduleJobs(int jobs) throws ParseException, InterruptedException {
+
+        var fired = new AtomicIntegerArray(jobs);
+        var remaining = new CountDownLatch(jobs);
+        var zone = ZoneId.of("UTC");
+        var expressions = new CompiledCronExpression[] {
+            CronExpression.compile("0/2 * * * * ?", zone), CronExpression.compile("1/2 * * * * ?", zone)
+        };
+
+        try (var scheduler = new CronScheduler("test-scheduler")) {
+            long start = System.nanoTime();
+            for (int i = 0; i < jobs; i++) {
+                int id = i;
+                scheduler.schedule("job-" + i, expressions[i % 2], () -> {
+                    if (fired.getAndIncrement(id) == 0) remaining.countDown();
+                });
+            }
+            long scheduled = System.nanoTime();
+            Assertions.assertEquals(jobs, scheduler.getJobCount());
+
+            Assertions.assertTrue(remaining.await(60, TimeUnit.SECONDS), () -> remaining.getCount() + " jobs never run");
+            Assertions.assertEquals(jobs, scheduler.getJobCount());
+            return new long[] { scheduled - start, System.nanoTime() - start };
+        }
+    }
+}
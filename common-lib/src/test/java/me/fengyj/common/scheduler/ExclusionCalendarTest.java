@@ -0,0 +1,205 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.Random;
+
+public class ExclusionCalendarTest {
+
+    @Test
+    public void test_excluded_days_of_months() {
+
+        var random = new Random(20240901L);
+        var days = new HashSet<LocalDate>();
+        for (int i = 0; i < 5000; i++) {
+            days.add(LocalDate.of(1999 + random.nextInt(5), 1, 1).plusDays(random.nextInt(366)));
+        }
+        var calendar = ExclusionCalendar.of(days);
+        Assertions.assertEquals(days.size(), calendar.size());
+
+        for (var day = LocalDate.of(1998, 12, 1); day.isBefore(LocalDate.of(2005, 2, 1)); day = day.plusDays(1)) {
+            Assertions.assertEquals(days.contains(day), calendar.isExcluded(day), day.toString());
+            long mask = calendar.getExcludedDays(day.getYear(), day.getMonthValue());
+            Assertions.assertEquals(days.contains(day), (mask & (1L << day.getDayOfMonth())) != 0, day.toString());
+            Assertions.assertEquals(0, mask & ~(-1L >>> (63 - day.lengthOfMonth())) & ~1L);
+        }
+
+        var other = ExclusionCalendar.of(LocalDate.of(2010, 12, 31), LocalDate.of(2000, 2, 29));
+        var union = calendar.union(other);
+        Assertions.assertTrue(union.isExcluded(LocalDate.of(2010, 12, 31)));
+        Assertions.assertEquals(calendar.size() + (days.contains(LocalDate.of(2000, 2, 29)) ? 1 : 2), union.size());
+        Assertions.assertEquals(union, other.union(calendar));
+        Assertions.assertEquals(union.hashCode(), other.union(calendar).hashCode());
+        Assertions.assertNotEquals(calendar, union);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExclusionCalendar.of(LocalDate.of(-1, 1, 1)));
+    }
+
+    @Test
+    public void test_same_as_filtering_fire_times() throws ParseException {
+
+        var random = new Random(20240902L);
+        var zones = new String[] { "UTC", "America/New_York", "Australia/Lord_Howe" };
+
+        for (int i = 0; i < 300; i++) {
+            var days = new HashSet<LocalDate>();
+            var start = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365));
+            for (int j = 0; j < 200; j++) {
+                days.add(start.plusDays(random.nextInt(400)));
+            }
+            var expr = CronExpressionTest.randomExpression(random);
+            var zone = ZoneId.of(zones[i % zones.length]);
+            var cron = new CronExpression(expr);
+            var excluding = new CronExpression(expr);
+            excluding.setExclusionCalendar(ExclusionCalendar.of(days));
+
+            long from = start.atStartOfDay(zone).toInstant().toEpochMilli() - 86_400_000L * random.nextInt(30);
+            long to = from + 500L * 86_400_000;
+            var exp = cron.fireTimes(from, to, zone)
+                          .limit(100_000)
+                          .filter(t -> !days.contains(LocalDate.ofInstant(Instant.ofEpochMilli(t), zone)))
+                          .toArray();
+            if (exp.length == 0 || cron.fireTimes(from, to, zone).limit(100_000).count() == 100_000) continue;
+
+            Assertions.assertArrayEquals(exp, excluding.fireTimes(from, to, zone).toArray(), expr);
+            Assertions.assertEquals(exp.length, excluding.countFireTimes(from, to, zone), expr);
+            Assertions.assertEquals(exp[0], excluding.nextFireEpochMillis(from - 1, zone), expr);
+            Assertions.assertEquals(
+                exp[exp.length - 1], excluding.previousFireEpochMillis(exp[exp.length - 1] + 1, zone), expr);
+            for (long t : exp) {
+                Assertions.assertTrue(excluding.isSatisfiedBy(t, zone), expr);
+            }
+        }
+    }
+
+    @Test
+    public void test_read_binary_form() throws IOException {
+
+        var calendar = ExclusionCalendar.of(LocalDate.of(2000, 2, 29), LocalDate.of(2003, 1, 1));
+        var bytes = new ByteArrayOutputStream();
+        calendar.writeTo(new DataOutputStream(bytes));
+        Assertions.assertEquals(calendar, read(bytes.toByteArray()));
+        Assertions.assertEquals(ExclusionCalendar.of(), read(encode(0, 0)));
+        Assertions.assertEquals(
+            ExclusionCalendar.of(LocalDate.of(2000, 1, 1), LocalDate.of(2001, 1, 1)), read(encode(2000, 2, 0, 1)));
+
+        // a negative first year, the varint of -1.
+        Assertions.assertThrows(StreamCorruptedException.class, () -> read(encode(-1, 1, 0)));
+        // the count of the years is checked before reading them.
+        Assertions.assertThrows(StreamCorruptedException.class, () -> read(encode(2000, Long.MAX_VALUE)));
+        Assertions.assertThrows(StreamCorruptedException.class, () -> read(encode(2000, CronExpression.MAX_YEAR)));
+        // the years must be in ascending order and not after the max year.
+        Assertions.assertThrows(StreamCorruptedException.class, () -> read(encode(2000, 2, 0, 0)));
+        Assertions.assertThrows(StreamCorruptedException.class, () -> read(encode(2000, 2, 0, -1)));
+        Assertions.assertThrows(
+            StreamCorruptedException.class, () -> read(encode(2000, 1, CronExpression.MAX_YEAR)));
+    }
+
+    @Test
+    public void test_skip_long_runs_of_excluded_days() throws ParseException {
+
+        var zone = ZoneId.of("America/New_York");
+        var calendar = excludeYear2025();
+
+        var cron = CronExpression.compile("0 0 9 ? * MON-FRI", zone).excluding(calendar);
+        Assertions.assertEquals(cron, CronExpression.compile("0 0 9 ? * MON-FRI", zone).excluding(calendar));
+        Assertions.assertNotEquals(cron, CronExpression.compile("0 0 9 ? * MON-FRI", zone));
+        Assertions.assertNull(CronExpression.compile("0 0 9 ? * MON-FRI", zone).getExclusionCalendar());
+
+        long from = LocalDateTime.of(2024, 12, 31, 10, 0).atZone(zone).toInstant().toEpochMilli();
+        Assertions.assertEquals(
+            LocalDateTime.of(2025, 12, 31, 9, 0).atZone(zone).toInstant().toEpochMilli(),
+            cron.nextFireEpochMillis(from));
+        long to = LocalDateTime.of(2026, 1, 1, 0, 0).atZone(zone).toInstant().toEpochMilli();
+        Assertions.assertEquals(1, cron.countFireTimes(from, to));
+
+        // the same as filtering the fire times one by one.
+        var plain = CronExpression.compile("0 0 9 ? * MON-FRI", zone);
+        Assertions.assertEquals(cron.nextFireEpochMillis(from), nextNotExcluded(plain, calendar, from, zone));
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_skip_long_runs_of_excluded_days_benchmark() throws ParseException {
+
+        var zone = ZoneId.of("America/New_York");
+        var calendar = excludeYear2025();
+        var cron = CronExpression.compile("0 0 9 ? * MON-FRI", zone).excluding(calendar);
+        var plain = CronExpression.compile("0 0 9 ? * MON-FRI", zone);
+        long from = LocalDateTime.of(2024, 12, 31, 10, 0).atZone(zone).toInstant().toEpochMilli();
+
+        // the days are skipped by the day bitmasks instead of the fire times one by one.
+        int rounds = 2000;
+        long filterNanos = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            nextNotExcluded(plain, calendar, from, zone);
+        }
+        filterNanos = System.nanoTime() - filterNanos;
+
+        long nanos = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            cron.nextFireEpochMillis(from);
+        }
+        nanos = System.nanoTime() - nanos;
+        System.out.printf(
+            "next fire time over a year of holidays: filtered %.1f us/op, excluded %.1f us/op%n",
+            filterNanos / 1000.0 / rounds, nanos / 1000.0 / rounds);
+        Assertions.assertTrue(nanos * 10 < filterNanos);
+    }
+
+    // every day of 2025 is excluded except the last one.
+    private static ExclusionCalendar read(byte[] bytes) throws IOException {
+
+        return ExclusionCalendar.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    // the first year, the count, then the distance and a bitmap of the first day for each year
+    private static byte[] encode(long first, long count, long... distances) throws IOException {
+
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        CronExpression.writeVarLong(out, first);
+        CronExpression.writeVarLong(out, count);
+        for (long distance : distances) {
+            CronExpression.writeVarLong(out, distance);
+            out.writeLong(1L);
+            for (int i = 1; i < (366 + 63) / 64; i++) {
+                out.writeLong(0L);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ExclusionCalendar excludeYear2025() {
+
+        var days = new HashSet<LocalDate>();
+        for (var day = LocalDate.of(2025, 1, 1); day.getYear() == 2025; day = day.plusDays(1)) {
+            days.add(day);
+        }
+        days.remove(LocalDate.of(2025, 12, 31));
+        return ExclusionCalendar.of(days);
+    }
+
+    private static long nextNotExcluded(
+        CompiledCronExpression cron, ExclusionCalendar calendar, long from, ZoneId zone) {
+
+        long next = cron.nextFireEpochMillis(from);
+        while (calendar.isExcluded(LocalDate.ofInstant(Instant.ofEpochMilli(next), zone))) {
+            next = cron.nextFireEpochMillis(next);
+        }
+        return next;
+    }
+}
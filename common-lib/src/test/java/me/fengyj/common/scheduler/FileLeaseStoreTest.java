@@ -0,0 +1,80 @@
+package me.fengyj.common.scheduler;
+
+import me.fengyj.common.scheduler.LeaseStore.Lease;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FileLeaseStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void test_acquire_and_release() throws IOException {
+
+        var store = FileLeaseStore.open(dir.resolve("leases"));
+        Assertions.assertEquals(0, store.tryAcquire("c/shard/1", "a", 1000, 2000));
+        // renewed by the owner, taken by others only after it ends.
+        Assertions.assertEquals(2000, store.tryAcquire("c/shard/1", "a", 1500, 2500));
+        Assertions.assertEquals(-1, store.tryAcquire("c/shard/1", "b", 2499, 3000));
+        Assertions.assertEquals(2500, store.tryAcquire("c/shard/1", "b", 2500, 3500));
+
+        Assertions.assertFalse(store.release("c/shard/1", "a", 3000));
+        Assertions.assertTrue(store.release("c/shard/1", "b", 3000));
+        // a released lease can be taken before the time it's released at.
+        Assertions.assertEquals(3000, store.tryAcquire("c/shard/1", "a", 2600, 4000));
+        Assertions.assertFalse(store.release("c/shard/2", "a", 3000));
+
+        // the same directory opened again, and the keys which aren't valid file names.
+        var other = FileLeaseStore.open(dir.resolve("leases"));
+        Assertions.assertEquals(0, other.tryAcquire("c/node/x:1?", "x:1? \n", 1000, 2000));
+        var leases = new ArrayList<>(other.list("c/"));
+        leases.sort(Comparator.comparing(Lease::key));
+        Assertions.assertEquals(
+            List.of(new Lease("c/node/x:1?", "x:1? \n", 2000), new Lease("c/shard/1", "a", 4000)), leases);
+        Assertions.assertEquals(List.of(new Lease("c/shard/1", "a", 4000)), other.list("c/shard/"));
+        Assertions.assertTrue(other.list("d/").isEmpty());
+    }
+
+    @Test
+    public void test_one_owner_at_a_time() throws Exception {
+
+        var store = FileLeaseStore.open(dir);
+        var wins = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            var owner = "node-" + i;
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int key = 0; key < 100; key++) {
+                    if (store.tryAcquire("key-" + key, owner, 1000, 2000) != -1) {
+                        wins.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+        // each lease is taken by one of the threads.
+        Assertions.assertEquals(100, wins.get());
+        Assertions.assertEquals(100, store.list("key-").size());
+    }
+}
@@ -0,0 +1,117 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class FireSimulationTest {
+
+    private static final long HOUR = 3600_000L;
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    public void test_same_as_fire_times() throws ParseException {
+
+        var random = new Random(20241020L);
+        var expressions = randomExpressions(random, 300);
+        // the same expressions of other jobs are counted again.
+        expressions.addAll(expressions.subList(0, 50));
+
+        // a month over the daylight saving transition, the last bucket is half an hour.
+        long from = ZonedDateTime.of(2025, 3, 1, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+        long to = from + 31 * 24 * HOUR + HOUR / 2;
+        var simulation = FireSimulation.simulate(expressions, from, to, HOUR, new ForkJoinPool(3));
+
+        var expected = new long[(int) Math.ceilDiv(to - from, HOUR)];
+        long total = 0;
+        for (var expression : expressions) {
+            expression.fireTimes(from, to).forEach(t -> expected[(int) ((t - from) / HOUR)]++);
+            total += expression.countFireTimes(from, to);
+        }
+        Assertions.assertArrayEquals(expected, simulation.getCounts());
+        Assertions.assertEquals(total, simulation.getTotal());
+        Assertions.assertEquals(expected.length, simulation.getBucketCount());
+        Assertions.assertEquals(from + 2 * HOUR, simulation.getBucketStart(2));
+        long peak = simulation.getPeak();
+        Assertions.assertEquals(peak, simulation.getCount(simulation.getPeakBucket()));
+        for (long count : expected) {
+            Assertions.assertTrue(count <= peak);
+        }
+
+        var empty = FireSimulation.simulate(List.of(), from, to, HOUR);
+        Assertions.assertEquals(0, empty.getTotal());
+        Assertions.assertEquals(expected.length, empty.getBucketCount());
+        Assertions.assertThrows(
+            IllegalArgumentException.class, () -> FireSimulation.simulate(expressions, from, to, 0));
+    }
+
+    @Test
+    public void test_year_ahead() throws ParseException {
+
+        var expressions = yearAheadJobs(new Random(20241021L), 500);
+        long from = ZonedDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+        long to = ZonedDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+
+        var simulation = FireSimulation.simulate(expressions, from, to, MINUTE);
+
+        long total = 0;
+        for (var expression : expressions) {
+            total += expression.countFireTimes(from, to);
+        }
+        Assertions.assertEquals(365 * 24 * 60, simulation.getBucketCount());
+        Assertions.assertEquals(total, simulation.getTotal());
+        Assertions.assertArrayEquals(
+            simulation.getCounts(),
+            FireSimulation.simulate(expressions, from, to, MINUTE, new ForkJoinPool(2)).getCounts());
+    }
+
+    @Test
+    @Tag("perf")
+    public void test_year_ahead_benchmark() throws ParseException {
+
+        var expressions = yearAheadJobs(new Random(20241021L), 2000);
+        long from = ZonedDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+        long to = ZonedDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+
+        long nanos = System.nanoTime();
+        var simulation = FireSimulation.simulate(expressions, from, to, MINUTE);
+        nanos = System.nanoTime() - nanos;
+        System.out.printf(
+            "simulate %d jobs, %d fires in a year: %.1f ms, %s%n",
+            expressions.size(), simulation.getTotal(), nanos / 1e6, simulation);
+    }
+
+    // the jobs of the random expressions at a fixed second, 1 to 5 jobs of each expression.
+    private static List<CompiledCronExpression> yearAheadJobs(Random random, int count) throws ParseException {
+
+        var jobs = new ArrayList<CompiledCronExpression>();
+        for (var expression : randomExpressions(random, count)) {
+            // the jobs firing every second aren't usual, the ones at a fixed second are.
+            var fields = expression.getCronExpression().split(" ", 2);
+            var compiled = CronExpression.compile("0 " + fields[1], expression.getZone());
+            for (int i = 0, n = 1 + random.nextInt(5); i < n; i++) {
+                jobs.add(compiled);
+            }
+        }
+        return jobs;
+    }
+
+    private static List<CompiledCronExpression> randomExpressions(Random random, int count) throws ParseException {
+
+        var zones = List.of(ZoneId.of("UTC"), ZoneId.of("America/New_York"), ZoneId.of("Europe/London"));
+        var expressions = new ArrayList<CompiledCronExpression>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(CronExpression.compile(
+                CronExpressionTest.randomExpression(random), zones.get(random.nextInt(zones.size()))));
+        }
+        return expressions;
+    }
+}
@@ -0,0 +1,65 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void test_buckets() {
+
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            Assertions.assertTrue(value <= LatencyHistogram.upperBoundOf(index));
+            Assertions.assertTrue(index == 0 || value > LatencyHistogram.upperBoundOf(index - 1));
+        }
+        Assertions.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+        int last = LatencyHistogram.BUCKETS - 1;
+        Assertions.assertEquals(last, LatencyHistogram.indexOf(LatencyHistogram.upperBoundOf(last)));
+    }
+
+    @Test
+    public void test_percentiles_of_recorded_values() throws InterruptedException {
+
+        var random = new Random(20241020L);
+        var values = new long[400_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20);
+        }
+
+        // recorded by 4 threads at the same time, nothing is lost.
+        var histogram = new LatencyHistogram();
+        var executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int from = t * values.length / 4;
+            executor.execute(() -> {
+                for (int i = from; i < from + values.length / 4; i++) {
+                    histogram.record(values[i]);
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        var snapshot = histogram.snapshot();
+        Arrays.sort(values);
+        Assertions.assertEquals(values.length, snapshot.getCount());
+        Assertions.assertEquals(Arrays.stream(values).sum(), snapshot.getTotal());
+        Assertions.assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percent : new double[] { 1, 10, 50, 90, 99, 99.9, 100 }) {
+            long exact = values[(int) Math.ceil(values.length * percent / 100) - 1];
+            long estimated = snapshot.getPercentile(percent);
+            Assertions.assertTrue(estimated >= exact && estimated <= exact * 1.5, () -> percent + ": " + estimated);
+        }
+
+        var merged = snapshot.merge(new LatencyHistogram().snapshot());
+        Assertions.assertEquals(snapshot.getCount(), merged.getCount());
+        Assertions.assertEquals(snapshot.getP99(), merged.getP99());
+        Assertions.assertEquals(0, new LatencyHistogram().snapshot().getP50());
+    }
+}
@@ -0,0 +1,120 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class TimingWheelTest {
+
+    private static final class TestEntry extends TimingWheel.Entry {
+
+        final long due;
+
+        TestEntry(long due) {
+
+            this.due = due;
+        }
+    }
+
+    @Test
+    public void test_entries_are_due_at_deadline() {
+
+        var random = new Random(20240710L);
+        long start = 1_000_000_007L;
+        var wheel = new TimingWheel(start);
+        var entries = new ArrayList<TestEntry>();
+        for (int i = 0; i < 100_000; i++) {
+            // from the current tick to far away, in every level
+            long delta = random.nextInt(7) == 0 ? random.nextInt(3) - 1 : (long) Math.pow(2, random.nextDouble() * 24);
+            var entry = new TestEntry(start + delta);
+            entries.add(entry);
+            wheel.add(entry, entry.due);
+        }
+        Assertions.assertEquals(entries.size(), wheel.size());
+
+        var removed = new HashSet<TimingWheel.Entry>();
+        for (int i = 0; i < 1000; i++) {
+            var entry = entries.get(random.nextInt(entries.size()));
+            if (removed.add(entry)) {
+                Assertions.assertTrue(wheel.remove(entry));
+            }
+            Assertions.assertFalse(wheel.remove(entry));
+        }
+
+        var count = new int[1];
+        long end = start + (1 << 24) + 1;
+        for (long tick = start; tick <= end; tick += 1 + random.nextInt(50)) {
+            long current = tick;
+            wheel.advanceTo(tick, e -> {
+                var entry = (TestEntry) e;
+                Assertions.assertFalse(removed.contains(entry));
+                Assertions.assertTrue(entry.due <= current && entry.due > current - 51, () -> entry.due + " at " + current);
+                Assertions.assertFalse(entry.isScheduled());
+                count[0]++;
+            });
+        }
+        Assertions.assertEquals(entries.size() - removed.size(), count[0]);
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void test_advance_to_next_tick() {
+
+        var random = new Random(20241017L);
+        long start = 1_000_000_007L;
+        var wheel = new TimingWheel(start);
+        Assertions.assertEquals(Long.MAX_VALUE, wheel.nextTick());
+        for (int i = 0; i < 1000; i++) {
+            var entry = new TestEntry(start + (long) Math.pow(2, random.nextDouble() * 30));
+            wheel.add(entry, entry.due);
+        }
+
+        // the wheel only moves to the ticks it has something to do at, the entries are still due at the deadlines.
+        int count = 0;
+        int wakes = 0;
+        while (wheel.size() > 0) {
+            long tick = wheel.nextTick();
+            Assertions.assertTrue(tick > wheel.getCurrentTick());
+            var due = new ArrayList<TestEntry>();
+            wheel.advanceTo(tick, e -> due.add((TestEntry) e));
+            for (var entry : due) {
+                Assertions.assertEquals(tick, entry.due);
+            }
+            count += due.size();
+            wakes++;
+        }
+        Assertions.assertEquals(1000, count);
+        Assertions.assertTrue(wakes < 1000 * TimingWheel.LEVELS, "wakes: " + wakes);
+
+        // an entry already due is due at the current tick, and an empty wheel skips to the tick at once.
+        wheel.add(new TestEntry(0), wheel.getCurrentTick());
+        Assertions.assertEquals(wheel.getCurrentTick(), wheel.nextTick());
+        wheel.advanceTo(wheel.getCurrentTick(), e -> { });
+        wheel.advanceTo(Long.MAX_VALUE / 2, e -> Assertions.fail());
+        Assertions.assertEquals(Long.MAX_VALUE / 2, wheel.getCurrentTick());
+    }
+
+    @Test
+    public void test_add_entry_back_when_due() {
+
+        var wheel = new TimingWheel(0);
+        var entry = new TestEntry(0);
+        wheel.add(entry, 1);
+
+        var ticks = new ArrayList<Long>();
+        for (long tick = 1; tick <= 10_000; tick++) {
+            long current = tick;
+            wheel.advanceTo(tick, e -> {
+                ticks.add(current);
+                wheel.add(e, current + current);
+            });
+        }
+        Assertions.assertEquals(
+            List.of(1L, 2L, 4L, 8L, 16L, 32L, 64L, 128L, 256L, 512L, 1024L, 2048L, 4096L, 8192L), ticks);
+        Assertions.assertEquals(1, wheel.size());
+    }
+}
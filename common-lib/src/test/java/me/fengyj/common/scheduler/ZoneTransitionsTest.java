@@ -0,0 +1,111 @@
+package me.fengyj.common.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+public class ZoneTransitionsTest {
+
+    private static final String[] ZONES = {
+        "UTC", "GMT+8", "Asia/Shanghai", "Asia/Kolkata", "Asia/Tokyo", "Asia/Tehran", "Asia/Kathmandu",
+        "America/New_York", "America/Chicago", "America/Los_Angeles", "America/Sao_Paulo", "America/Santiago",
+        "America/Havana", "America/St_Johns", "Europe/London", "Europe/Paris", "Europe/Moscow", "Europe/Dublin",
+        "Africa/Casablanca", "Australia/Sydney", "Australia/Lord_Howe", "Pacific/Auckland", "Pacific/Chatham",
+        "Pacific/Apia", "Antarctica/Troll" };
+
+    @Test
+    public void test_same_offsets_as_zone_rules() {
+
+        var random = new Random(20240810L);
+        long from = LocalDateTime.of(1900, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        long to = CronExpression.END_OF_MAX_YEAR - 86400;
+
+        for (var zoneId : ZONES) {
+            var zone = ZoneId.of(zoneId);
+            var rules = zone.getRules();
+            var transitions = ZoneTransitions.of(zone);
+            Assertions.assertSame(transitions, ZoneTransitions.of(zone));
+            Assertions.assertEquals(rules.isFixedOffset(), transitions.isFixedOffset(), zoneId);
+
+            for (int i = 0; i < 20_000; i++) {
+                long epochSecond = from + (long) (random.nextDouble() * (to - from));
+                Assertions.assertEquals(
+                    rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds(),
+                    transitions.offsetAt(epochSecond),
+                    () -> zoneId + " at " + epochSecond);
+
+                // the wall-clock times in a gap or an overlap are at the offset before the transition.
+                long local = from + (long) (random.nextDouble() * (to - from));
+                var ldt = LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC);
+                var trans = rules.getTransition(ldt);
+                int offset = trans == null ? rules.getOffset(ldt).getTotalSeconds()
+                                           : trans.getOffsetBefore().getTotalSeconds();
+                Assertions.assertEquals(local - offset, transitions.toEpochSecond(local), () -> zoneId + " at " + ldt);
+            }
+        }
+    }
+
+    @Test
+    public void test_around_transitions() {
+
+        for (var zoneId : ZONES) {
+            var zone = ZoneId.of(zoneId);
+            var rules = zone.getRules();
+            var transitions = ZoneTransitions.of(zone);
+
+            var trans = rules.nextTransition(Instant.parse("2020-01-01T00:00:00Z"));
+            for (int i = 0; i < 10 && trans != null; i++, trans = rules.nextTransition(trans.getInstant())) {
+                long at = trans.toEpochSecond();
+                int index = transitions.indexAt(at);
+                Assertions.assertEquals(at, transitions.instant(index), zoneId);
+                Assertions.assertEquals(index - 1, transitions.indexAt(at - 1), zoneId);
+                Assertions.assertEquals(trans.isGap(), transitions.isGap(index), zoneId);
+                Assertions.assertEquals(trans.getOffsetBefore().getTotalSeconds(), transitions.offsetAt(at - 1));
+                Assertions.assertEquals(trans.getOffsetAfter().getTotalSeconds(), transitions.offsetAt(at));
+
+                long start = transitions.localStart(index);
+                long end = transitions.localEnd(index);
+                Assertions.assertEquals(Math.abs(trans.getDuration().getSeconds()), end - start, zoneId);
+                for (long local = start - 1; local <= end; local++) {
+                    var ldt = LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC);
+                    Assertions.assertEquals(rules.getTransition(ldt) != null, local >= start && local < end, zoneId);
+                    Assertions.assertEquals(local < start ? index - 1 : index, transitions.indexOfLocal(local), zoneId);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_extended_lazily() {
+
+        // not used by the other tests, so the table is new.
+        var zone = ZoneId.of("America/Winnipeg");
+        var rules = zone.getRules();
+        var transitions = ZoneTransitions.of(zone);
+        long now = System.currentTimeMillis() / 1000;
+        Assertions.assertTrue(transitions.coveredUntil() > now);
+        Assertions.assertTrue(transitions.coveredUntil() < CronExpression.END_OF_MAX_YEAR);
+
+        // an index found before the table is extended is still valid after it.
+        int index = transitions.indexAt(now);
+        long instant = transitions.instant(index);
+        long far = CronExpression.END_OF_MAX_YEAR - 86400 * 400L;
+        Assertions.assertEquals(
+            rules.getOffset(Instant.ofEpochSecond(far)).getTotalSeconds(), transitions.offsetAt(far));
+        Assertions.assertTrue(transitions.coveredUntil() > far);
+        Assertions.assertEquals(instant, transitions.instant(index));
+        Assertions.assertEquals(
+            rules.nextTransition(Instant.ofEpochSecond(instant)).toEpochSecond(),
+            transitions.instant(index + 1));
+
+        // the next transition is found even if it isn't in the table yet.
+        var fixed = ZoneTransitions.of(ZoneId.of("GMT+3"));
+        Assertions.assertEquals(Long.MAX_VALUE, fixed.nextLocalStart(-1));
+        Assertions.assertTrue(fixed.isFixedOffset());
+    }
+}